@@ -0,0 +1,158 @@
+package com.carboncalc.service;
+
+import com.carboncalc.model.CupsCenterMapping;
+import com.carboncalc.model.factors.ElectricityGeneralFactors;
+import com.carboncalc.model.factors.FuelEmissionFactor;
+import com.carboncalc.model.factors.GasFactorEntry;
+import com.carboncalc.model.factors.RefrigerantEmissionFactor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Loading the CSV-backed reference data: the CUPS/center inventory and the
+ * per-year factor files of each module.
+ *
+ * <p>
+ * Files are written through the services themselves into a temporary data
+ * directory, so the benchmark always reads the layout the services
+ * produce. The factor files are written one entry at a time, as the UI does,
+ * which keeps their sizes modest.
+ * </p>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class CsvServiceLoadBenchmark {
+
+    static final int YEAR = 2025;
+
+    @State(Scope.Benchmark)
+    public static class CupsData {
+        @Param({ "1000", "10000", "100000" })
+        public int cups;
+
+        Path dir;
+        CupsServiceCsv service;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            dir = Files.createTempDirectory("bench-cups");
+            service = new CupsServiceCsv(dir.toString());
+            List<CupsCenterMapping> mappings = new ArrayList<>(cups);
+            for (int i = 0; i < cups; i++) {
+                mappings.add(new CupsCenterMapping(String.format("ES%016dAB", i), "Comercializadora " + i % 20,
+                        "Centro " + i % 500, "C" + i % 500, "Campus " + i % 5, i % 3 == 0 ? "gas" : "electricity",
+                        "Calle " + i, "28040", "Madrid", "Madrid"));
+            }
+            service.saveCupsData(mappings);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            deleteTree(dir);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FactorData {
+        @Param({ "10", "100", "1000" })
+        public int entries;
+
+        Path dir;
+        ElectricityFactorServiceCsv electricity;
+        EmissionFactorServiceCsv emission;
+        GasFactorServiceCsv gas;
+        FuelFactorServiceCsv fuel;
+        RefrigerantFactorServiceCsv refrigerant;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            dir = Files.createTempDirectory("bench-factors");
+            String base = dir.toString();
+            electricity = new ElectricityFactorServiceCsv(base);
+            emission = new EmissionFactorServiceCsv(base);
+            gas = new GasFactorServiceCsv(base);
+            fuel = new FuelFactorServiceCsv(base);
+            refrigerant = new RefrigerantFactorServiceCsv(base);
+
+            ElectricityGeneralFactors general = new ElectricityGeneralFactors();
+            general.setMixSinGdo(0.25);
+            general.setLocationBasedFactor(0.2);
+            for (int i = 0; i < entries; i++) {
+                general.addTradingCompany(
+                        new ElectricityGeneralFactors.TradingCompany("Comercializadora " + i, 0.1 + i % 30 / 100.0,
+                                i % 2 == 0 ? "RENOVABLE" : ""));
+                gas.saveGasFactor(new GasFactorEntry("Gas " + i, "Gas " + i, YEAR, 0.18, 0.2, "kWh"));
+                fuel.saveFuelFactor(new FuelEmissionFactor("Fuel " + i, YEAR, 2.6, "Fuel " + i, "Vehiculo " + i % 4));
+                refrigerant.saveRefrigerantFactor(new RefrigerantEmissionFactor("R-" + i, YEAR, 1000 + i, "R-" + i));
+            }
+            electricity.saveFactors(general, YEAR);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            deleteTree(dir);
+        }
+    }
+
+    @Benchmark
+    public List<CupsCenterMapping> cupsLoadCupsData(CupsData data) throws IOException {
+        return data.service.loadCupsData();
+    }
+
+    @Benchmark
+    public ElectricityGeneralFactors electricityLoadFactors(FactorData data) throws IOException {
+        return data.electricity.loadFactors(YEAR);
+    }
+
+    @Benchmark
+    public Object emissionLoadElectricityFactors(FactorData data) {
+        return data.emission.loadEmissionFactors("ELECTRICITY", YEAR);
+    }
+
+    @Benchmark
+    public List<GasFactorEntry> gasLoadGasFactors(FactorData data) {
+        return data.gas.loadGasFactors(YEAR);
+    }
+
+    @Benchmark
+    public List<FuelEmissionFactor> fuelLoadFuelFactors(FactorData data) {
+        return data.fuel.loadFuelFactors(YEAR);
+    }
+
+    @Benchmark
+    public List<RefrigerantEmissionFactor> refrigerantLoadRefrigerantFactors(FactorData data) {
+        return data.refrigerant.loadRefrigerantFactors(YEAR);
+    }
+
+    static void deleteTree(Path root) throws IOException {
+        if (root == null || !Files.exists(root))
+            return;
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+                Files.deleteIfExists(p);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.carboncalc.util;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a provider CSV into an in-memory workbook, the first step of every
+ * CSV-based export.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExcelCsvLoaderBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    public int rows;
+
+    private Path csv;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        csv = Files.createTempFile("bench-provider", ".csv");
+        Random random = new Random(rows);
+        try (BufferedWriter w = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            w.write("CUPS,Factura,Fecha inicio,Fecha fin,Consumo kWh,Centro,Comercializadora\n");
+            for (int i = 0; i < rows; i++) {
+                int month = 1 + i % 12;
+                w.write(String.format("ES%016dAB,F%07d,01/%02d/2025,28/%02d/2025,%d.%02d,Centro %d,Comercializadora %d%n",
+                        i % Math.max(1, rows / 4), i, month, month, random.nextInt(50_000), random.nextInt(100),
+                        i % 200, i % 20));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(csv);
+    }
+
+    @Benchmark
+    public int loadCsvAsWorkbookFromPath() throws IOException {
+        try (Workbook wb = ExcelCsvLoader.loadCsvAsWorkbookFromPath(csv.toString())) {
+            return wb.getSheetAt(0).getLastRowNum();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.carboncalc.util;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-value parsing helpers used for every source row: lenient date parsing,
+ * cell-to-string conversion and lenient number parsing.
+ *
+ * <p>
+ * Each invocation processes a fixed batch of {@value #BATCH} inputs with the
+ * mix of formats found in provider and Teams workbooks, so scores are per
+ * value.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParsingBenchmark {
+
+    static final int BATCH = 1024;
+
+    private String[] dates;
+    private String[] numbers;
+    private List<Cell> cells;
+    private Workbook workbook;
+    private DataFormatter df;
+    private FormulaEvaluator eval;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        dates = new String[BATCH];
+        numbers = new String[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            LocalDate d = LocalDate.of(2024, 1, 1).plusDays(random.nextInt(730));
+            switch (i % 4) {
+                case 0:
+                    dates[i] = d.toString();
+                    break;
+                case 1:
+                    dates[i] = String.format("%02d/%02d/%d", d.getDayOfMonth(), d.getMonthValue(), d.getYear());
+                    break;
+                case 2:
+                    dates[i] = String.format("%d-%d-%02d", d.getDayOfMonth(), d.getMonthValue(), d.getYear() % 100);
+                    break;
+                default:
+                    dates[i] = String.format("%d%02d%02d", d.getYear(), d.getMonthValue(), d.getDayOfMonth());
+            }
+            double v = random.nextInt(1_000_000) / 100.0;
+            switch (i % 3) {
+                case 0:
+                    numbers[i] = Double.toString(v);
+                    break;
+                case 1:
+                    numbers[i] = String.format(Locale.ROOT, "%.2f", v).replace('.', ',');
+                    break;
+                default:
+                    numbers[i] = i % 2 == 0 ? "" : "n/a";
+            }
+        }
+
+        workbook = new XSSFWorkbook();
+        Sheet sheet = workbook.createSheet("cells");
+        CellStyle dateStyle = workbook.createCellStyle();
+        dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("dd/mm/yyyy"));
+        cells = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH / 4; i++) {
+            Row r = sheet.createRow(i);
+            r.createCell(0).setCellValue(numbers[i]);
+            r.createCell(1).setCellValue(random.nextInt(100_000) / 10.0);
+            Cell date = r.createCell(2);
+            date.setCellValue(LocalDate.of(2025, 1, 1).plusDays(i % 365));
+            date.setCellStyle(dateStyle);
+            r.createCell(3).setCellFormula("B" + (i + 1) + "*2");
+            for (Cell c : r)
+                cells.add(c);
+        }
+        df = new DataFormatter();
+        eval = workbook.getCreationHelper().createFormulaEvaluator();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        workbook.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void parseDateLenient(Blackhole bh) {
+        for (String s : dates)
+            bh.consume(DateUtils.parseDateLenient(s));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void getCellString(Blackhole bh) {
+        for (Cell c : cells)
+            bh.consume(CellUtils.getCellString(c, df, eval));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void parseDoubleSafe(Blackhole bh) {
+        for (String s : numbers)
+            bh.consume(CellUtils.parseDoubleSafe(s));
+    }
+}
@@ -0,0 +1,161 @@
+package com.carboncalc.util.excel;
+
+import com.carboncalc.model.ElectricityMapping;
+import com.carboncalc.model.FuelMapping;
+import com.carboncalc.model.GasMapping;
+import com.carboncalc.model.RefrigerantMapping;
+import com.carboncalc.util.SyntheticDataGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end module exports and the consolidated results report at several
+ * input sizes.
+ *
+ * <p>
+ * Provider and Teams workbooks are generated once per trial with
+ * {@link SyntheticDataGenerator}; gas reuses the electricity layout. The
+ * exporters read CUPS and factor reference data from the {@code data}
+ * directory of the working directory, exactly as the application does, so
+ * run the benchmarks from the project root (or a directory prepared with
+ * {@code SyntheticDataGenerator --out}); with no reference data the exports
+ * still read, prorate and write every row but find no factors.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ExportBenchmark {
+
+    static final int YEAR = 2025;
+    static final String SHEET = SyntheticDataGenerator.SHEET;
+
+    @Param({ "1000", "10000", "100000" })
+    public int rows;
+
+    private Path dir;
+    private Path provider;
+    private Path fuelForm;
+    private Path refrigerantForm;
+    private File electricityResult;
+    private File gasResult;
+    private File fuelResult;
+    private File refrigerantResult;
+
+    private ElectricityMapping electricityMapping;
+    private GasMapping gasMapping;
+    private FuelMapping fuelMapping;
+    private RefrigerantMapping refrigerantMapping;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("bench-export");
+        provider = dir.resolve("provider.xlsx");
+        fuelForm = dir.resolve("fuel.xlsx");
+        refrigerantForm = dir.resolve("refrigerant.xlsx");
+        SyntheticDataGenerator.Options options = new SyntheticDataGenerator.Options();
+        options.setYear(YEAR);
+        options.setRows(rows);
+        options.setCups(Math.max(1, rows / 12));
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(options);
+        generator.writeElectricityProvider(provider);
+        generator.writeFuelForm(fuelForm);
+        generator.writeRefrigerantForm(refrigerantForm);
+        electricityMapping = generator.electricityMapping();
+        gasMapping = generator.gasMapping();
+        fuelMapping = generator.fuelMapping();
+        refrigerantMapping = generator.refrigerantMapping();
+
+        electricityResult = dir.resolve("electricity-result.xlsx").toFile();
+        gasResult = dir.resolve("gas-result.xlsx").toFile();
+        fuelResult = dir.resolve("fuel-result.xlsx").toFile();
+        refrigerantResult = dir.resolve("refrigerant-result.xlsx").toFile();
+        exportElectricity(electricityResult.getPath());
+        exportGas(gasResult.getPath());
+        exportFuel(fuelResult.getPath());
+        exportRefrigerant(refrigerantResult.getPath());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) paths::iterator)
+                Files.deleteIfExists(p);
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public long exportElectricityData() throws IOException {
+        return exportElectricity(dir.resolve("out-electricity.xlsx").toString());
+    }
+
+    @Benchmark
+    public long exportGasData() throws IOException {
+        return exportGas(dir.resolve("out-gas.xlsx").toString());
+    }
+
+    @Benchmark
+    public long exportFuelData() throws IOException {
+        return exportFuel(dir.resolve("out-fuel.xlsx").toString());
+    }
+
+    @Benchmark
+    public long exportRefrigerantData() throws IOException {
+        return exportRefrigerant(dir.resolve("out-refrigerant.xlsx").toString());
+    }
+
+    @Benchmark
+    public long exportResultsReport() throws Exception {
+        File out = dir.resolve("out-results.xlsx").toFile();
+        GeneralExcelExporter.exportResultsReport(out.getPath(), electricityResult, gasResult, fuelResult,
+                refrigerantResult, true);
+        return out.length();
+    }
+
+    private long exportElectricity(String out) throws IOException {
+        ElectricityExcelExporter.exportElectricityData(out, provider.toString(), SHEET, null, null,
+                electricityMapping, YEAR, "extended", Collections.emptySet());
+        return new File(out).length();
+    }
+
+    private long exportGas(String out) throws IOException {
+        GasExcelExporter.exportGasData(out, provider.toString(), SHEET, null, null, gasMapping, YEAR, "extended",
+                Collections.emptySet());
+        return new File(out).length();
+    }
+
+    private long exportFuel(String out) throws IOException {
+        FuelExcelExporter.exportFuelData(out, fuelForm.toString(), SHEET, fuelMapping, YEAR, "extended", null,
+                null);
+        return new File(out).length();
+    }
+
+    private long exportRefrigerant(String out) throws IOException {
+        RefrigerantExcelExporter.exportRefrigerantData(out, refrigerantForm.toString(), SHEET, refrigerantMapping,
+                YEAR, "extended", null, null);
+        return new File(out).length();
+    }
+}
@@ -11,7 +11,15 @@ import java.util.Locale;
 import java.util.ResourceBundle;
 import com.carboncalc.util.Settings;
 import com.carboncalc.util.DataInitializer;
+import com.carboncalc.util.StartupTracer;
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public class App {
     // Application version. This will be used by About dialogs and may be
@@ -19,6 +27,8 @@ public class App {
     // manifest or via resource filtering.
     public static final String VERSION = "0.0.1";
 
+    private static final AtomicInteger STARTUP_THREADS = new AtomicInteger();
+
     /**
      * Application entry point.
      *
@@ -26,8 +36,88 @@ public class App {
      * - Load persisted language preference (via {@link Settings}).
      * - Configure a small set of UI defaults and look-and-feel settings.
      * - Start the Swing UI on the EDT using localized messages.
+     *
+     * The data-folder check and the language/bundle loading run on helper
+     * threads while the look and feel is set up on the main thread; every
+     * phase is recorded by {@link StartupTracer}.
      */
     public static void main(String[] args) {
+        StartupTracer tracer = StartupTracer.global();
+        tracer.mark("main");
+
+        // macOS reads the application name when the toolkit starts, so the
+        // localized title must be known before the look and feel is set up
+        Consumer<ResourceBundle> beforeLaf = null;
+        if (System.getProperty("os.name", "").toLowerCase().startsWith("mac")) {
+            beforeLaf = bundle -> System.setProperty("apple.awt.application.name",
+                    bundle.getString("application.title"));
+        }
+        ResourceBundle messages = runStartupPhases(tracer, App::ensureDataFolders, App::loadMessages,
+                beforeLaf, App::setupLookAndFeel);
+
+        // Schedule GUI creation on EDT using localized messages
+        SwingUtilities.invokeLater(() -> {
+            try {
+                tracer.run("ui.create", () -> createAndShowGUI(messages));
+            } catch (Exception e) {
+                e.printStackTrace();
+                // Show a localized error dialog (do not display internal exception text to
+                // users)
+                JOptionPane.showMessageDialog(null,
+                        messages.getString("error.starting"),
+                        messages.getString("error.title"),
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        });
+    }
+
+    /**
+     * Run the independent start-up phases concurrently: {@code dataFolders}
+     * and {@code messagesLoader} on helper threads, {@code lafSetup} on the
+     * caller thread. Returns once all of them finished.
+     *
+     * @param beforeLaf optional hook that needs the bundle before
+     *                  {@code lafSetup} runs (null to run both concurrently)
+     * @return the loaded bundle
+     */
+    static ResourceBundle runStartupPhases(StartupTracer tracer, Runnable dataFolders,
+            Callable<ResourceBundle> messagesLoader, Consumer<ResourceBundle> beforeLaf, Runnable lafSetup) {
+        ExecutorService startup = Executors.newFixedThreadPool(2, r -> {
+            Thread t = new Thread(r, "startup-" + STARTUP_THREADS.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Future<?> folders = startup.submit(() -> tracer.run("data.folders", dataFolders));
+            Future<ResourceBundle> bundle = startup.submit(() -> tracer.call("messages.load", messagesLoader));
+            if (beforeLaf != null)
+                beforeLaf.accept(await(bundle));
+            tracer.run("laf.setup", lafSetup);
+            ResourceBundle messages = await(bundle);
+            await(folders);
+            return messages;
+        } finally {
+            startup.shutdown();
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static void ensureDataFolders() {
         // Ensure workspace data folders exist before any settings IO
         try {
             DataInitializer.ensureDataFolders();
@@ -36,7 +126,9 @@ public class App {
             // a clearer IOException if attempted. We avoid hard-failing the
             // application startup here to keep the UI available for debugging.
         }
+    }
 
+    private static ResourceBundle loadMessages() {
         // Load persisted language code (if any) and create appropriate Locale
         Locale locale = Locale.getDefault();
         try {
@@ -50,15 +142,12 @@ public class App {
         } catch (IOException e) {
             // ignore and proceed with system default
         }
+        return ResourceBundle.getBundle("Messages", locale);
+    }
 
-        // Load language resources early so we can use localized strings in system
-        // properties
-        ResourceBundle messages = ResourceBundle.getBundle("Messages", locale);
-
-        // Set system look and feel properties (macOS menu integration uses the
-        // localized app title)
+    private static void setupLookAndFeel() {
+        // Set system look and feel properties (macOS menu integration)
         System.setProperty("apple.laf.useScreenMenuBar", "true");
-        System.setProperty("apple.awt.application.name", messages.getString("application.title"));
 
         // Enable native font rendering hints and file dialogs
         System.setProperty("swing.useSystemFontSettings", "true");
@@ -94,25 +183,16 @@ public class App {
         UIManager.put("Button.hoverBackground", UIUtils.UPM_LIGHT_BLUE);
         // pressed color: slightly darker variant of primary
         UIManager.put("Button.pressedBackground", UIUtils.UPM_BLUE.darker());
-
-        // Schedule GUI creation on EDT using localized messages
-        SwingUtilities.invokeLater(() -> {
-            try {
-                createAndShowGUI(messages);
-            } catch (Exception e) {
-                e.printStackTrace();
-                // Show a localized error dialog (do not display internal exception text to
-                // users)
-                JOptionPane.showMessageDialog(null,
-                        messages.getString("error.starting"),
-                        messages.getString("error.title"),
-                        JOptionPane.ERROR_MESSAGE);
-            }
-        });
     }
 
     private static void createAndShowGUI(ResourceBundle messages) {
-        MainController controller = new MainController(messages);
-        controller.showWindow();
+        MainController controller;
+        StartupTracer.Span span = StartupTracer.global().begin("main.controller");
+        try {
+            controller = new MainController(messages);
+        } finally {
+            span.close();
+        }
+        StartupTracer.global().run("main.show", controller::showWindow);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,302 @@
+package com.carboncalc.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * BatchJob
+ *
+ * <p>
+ * One export described by a job descriptor. A descriptor is a properties
+ * file listing job names in {@code jobs} and, for each job, keys prefixed
+ * with the job name:
+ * </p>
+ *
+ * <pre>
+ * jobs=elec,report
+ * elec.module=electricity
+ * elec.input=in/provider.xlsx
+ * elec.sheet=data
+ * elec.year=2025
+ * elec.output=out/electricity.xlsx
+ * # columns by header name or zero-based index
+ * elec.column.cups=CUPS
+ * elec.column.invoice=1
+ * ...
+ * report.module=general
+ * # job name or result file
+ * report.electricity=elec
+ * report.output=out/results.xlsx
+ * </pre>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>{@code module} is one of {@code electricity}, {@code gas},
+ * {@code fuel}, {@code refrigerant} or {@code general}; the column keys of
+ * each module are listed in {@link #columnKeys()}.</li>
+ * <li>Module jobs require {@code input}, {@code sheet}, {@code year} and
+ * {@code output}; {@code general} jobs require {@code output}.</li>
+ * <li>Optional keys: {@code mode} (sheet mode, default {@code extended}),
+ * {@code erp}, {@code erp.sheet}, {@code erp.invoice},
+ * {@code erp.conformity} (electricity and gas), {@code gasType} (gas), {@code dateLimit} and
+ * {@code lastModifiedHeader} (fuel and refrigerant), {@code cache} and
+ * {@code metrics} (true/false), {@code data} (reference data directory,
+ * default {@code data}) and {@code memory} (estimated heap in MB, used for
+ * admission instead of the input-size estimate).</li>
+ * <li>Electricity and gas jobs may read further provider files with the
+ * same sheet and columns as {@code input.2}, {@code input.3}, ...; their
+ * rows are merged into one export and invoices repeated across files are
+ * exported once.</li>
+ * <li>{@code append=true} (electricity and gas) adds the rows of invoices
+ * not yet in an existing {@code output} instead of rebuilding it, so a
+ * {@code watch} folder receiving one file per month keeps a year report
+ * current.</li>
+ * <li>{@code watch} (a folder) may replace {@code input}: the job then runs
+ * in {@link WatchDaemon} on the files of the folder matching
+ * {@code pattern} (default {@value WatchDaemon#DEFAULT_PATTERN}): all of
+ * them for electricity and gas, each new one with {@code append}, the
+ * newest for fuel and refrigerant.</li>
+ * <li>A {@code general} job depends on the module jobs it names and runs
+ * after them; values that are not job names are used as file paths.</li>
+ * <li>{@link #parse(Properties)} only checks the descriptor structure;
+ * files and columns are resolved when the job runs.</li>
+ * </ul>
+ * </p>
+ */
+public final class BatchJob {
+
+    /** Module run by a job. */
+    public enum Module {
+        ELECTRICITY("cups", "invoice", "start", "end", "consumption", "center", "entity"),
+        GAS("cups", "invoice", "start", "end", "consumption", "center", "entity"),
+        FUEL("center", "responsible", "invoice", "provider", "invoiceDate", "fuelType", "vehicleType", "amount",
+                "completionTime"),
+        REFRIGERANT("center", "person", "invoice", "provider", "invoiceDate", "refrigerantType", "quantity",
+                "completionTime"),
+        GENERAL();
+
+        private final List<String> columns;
+
+        Module(String... columns) {
+            this.columns = List.of(columns);
+        }
+
+        public String id() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        static Module from(String s) {
+            for (Module m : values()) {
+                if (m.id().equalsIgnoreCase(s == null ? "" : s.trim()))
+                    return m;
+            }
+            throw new IllegalArgumentException("Unknown module: " + s);
+        }
+    }
+
+    /** Module result keys of a {@code general} job, in report order. */
+    public static final List<String> REPORT_INPUTS = List.of("electricity", "gas", "fuel", "refrigerant");
+
+    private static final Pattern EXTRA_INPUT = Pattern.compile("input\\.([0-9]{1,4})");
+
+    private final String name;
+    private final Module module;
+    private final Map<String, String> values;
+
+    BatchJob(String name, Module module, Map<String, String> values) {
+        this.name = name;
+        this.module = module;
+        this.values = values;
+    }
+
+    /**
+     * Read all jobs of a descriptor.
+     *
+     * @throws IllegalArgumentException when the descriptor is malformed
+     *                                  (missing {@code jobs}, unknown module,
+     *                                  missing required keys, duplicate names
+     *                                  or a {@code general} job reading
+     *                                  another {@code general} job)
+     */
+    public static List<BatchJob> parse(Properties descriptor) {
+        String list = descriptor.getProperty("jobs", "").trim();
+        if (list.isEmpty())
+            throw new IllegalArgumentException("Descriptor has no 'jobs' entry");
+        Set<String> names = new LinkedHashSet<>();
+        for (String n : list.split(",")) {
+            String name = n.trim();
+            if (name.isEmpty())
+                continue;
+            if (!names.add(name))
+                throw new IllegalArgumentException("Duplicate job name: " + name);
+        }
+        Map<String, BatchJob> jobs = new LinkedHashMap<>();
+        for (String name : names) {
+            String prefix = name + ".";
+            Map<String, String> values = new LinkedHashMap<>();
+            for (String key : descriptor.stringPropertyNames()) {
+                if (key.startsWith(prefix))
+                    values.put(key.substring(prefix.length()), descriptor.getProperty(key).trim());
+            }
+            Module module;
+            try {
+                module = Module.from(values.get("module"));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Job '" + name + "': " + e.getMessage());
+            }
+            BatchJob job = new BatchJob(name, module, values);
+            job.require("output");
+            if (module != Module.GENERAL) {
+                if (job.get("watch") == null)
+                    job.require("input");
+                job.require("sheet");
+                job.require("year");
+                job.getInt("year", 0);
+            }
+            job.getInt("memory", 0);
+            if (job.inputs().size() > 1 && module != Module.ELECTRICITY && module != Module.GAS)
+                throw new IllegalArgumentException(
+                        "Job '" + name + "': several inputs are only supported for electricity and gas");
+            if (job.getBoolean("append") && module != Module.ELECTRICITY && module != Module.GAS)
+                throw new IllegalArgumentException(
+                        "Job '" + name + "': append is only supported for electricity and gas");
+            jobs.put(name, job);
+        }
+        for (BatchJob job : jobs.values()) {
+            for (String dep : job.dependencies(jobs.keySet())) {
+                if (jobs.get(dep).module == Module.GENERAL)
+                    throw new IllegalArgumentException(
+                            "Job '" + job.name + "' cannot read the output of general job '" + dep + "'");
+            }
+        }
+        return new ArrayList<>(jobs.values());
+    }
+
+    /**
+     * Read one job from {@code values}, whose keys carry no job prefix
+     * ({@code module}, {@code input}, {@code column.cups}, ...).
+     *
+     * @throws IllegalArgumentException as {@link #parse(Properties)}
+     */
+    public static BatchJob single(String name, Properties values) {
+        Properties p = new Properties();
+        p.setProperty("jobs", name);
+        for (String key : values.stringPropertyNames())
+            p.setProperty(name + "." + key, values.getProperty(key));
+        return parse(p).get(0);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Module getModule() {
+        return module;
+    }
+
+    /** @return a copy of this job with {@code key} set to {@code value} */
+    BatchJob with(String key, String value) {
+        Map<String, String> copy = new LinkedHashMap<>(values);
+        copy.put(key, value);
+        return new BatchJob(name, module, copy);
+    }
+
+    /** @return the value of {@code key} (without the job prefix), or null */
+    public String get(String key) {
+        String v = values.get(key);
+        return v == null || v.isEmpty() ? null : v;
+    }
+
+    /** @return the value of {@code key}, or {@code fallback} when unset */
+    public String get(String key, String fallback) {
+        String v = get(key);
+        return v != null ? v : fallback;
+    }
+
+    public boolean getBoolean(String key) {
+        return Boolean.parseBoolean(get(key, "false"));
+    }
+
+    /** @return the integer value of {@code key}, or {@code fallback} */
+    public int getInt(String key, int fallback) {
+        String v = get(key);
+        if (v == null)
+            return fallback;
+        try {
+            return Integer.parseInt(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Job '" + name + "': '" + key + "' is not a number: " + v);
+        }
+    }
+
+    /**
+     * @return {@code input} followed by {@code input.2}, {@code input.3}, ...
+     *         in numeric order; empty when {@code input} is unset
+     */
+    public List<String> inputs() {
+        String first = get("input");
+        if (first == null)
+            return Collections.emptyList();
+        TreeMap<Integer, String> extra = new TreeMap<>();
+        for (String key : values.keySet()) {
+            String v = get(key);
+            if (v != null && isExtraInput(key))
+                extra.put(Integer.parseInt(key.substring("input.".length())), v);
+        }
+        List<String> out = new ArrayList<>();
+        out.add(first);
+        out.addAll(extra.values());
+        return out;
+    }
+
+    /** @return every key of this job (without the job prefix), sorted */
+    Map<String, String> settings() {
+        return new TreeMap<>(values);
+    }
+
+    /** @return whether {@code key} names an additional provider file */
+    static boolean isExtraInput(String key) {
+        return EXTRA_INPUT.matcher(key).matches();
+    }
+
+    /** @return the column keys of this job's module, in mapping order */
+    public List<String> columnKeys() {
+        return module.columns;
+    }
+
+    /**
+     * @param jobNames names of all jobs in the descriptor
+     * @return the jobs a {@code general} job reads, empty for module jobs
+     */
+    public List<String> dependencies(Set<String> jobNames) {
+        if (module != Module.GENERAL)
+            return Collections.emptyList();
+        List<String> deps = new ArrayList<>();
+        for (String key : REPORT_INPUTS) {
+            String v = get(key);
+            if (v != null && jobNames.contains(v))
+                deps.add(v);
+        }
+        return deps;
+    }
+
+    private void require(String key) {
+        if (get(key) == null)
+            throw new IllegalArgumentException("Job '" + name + "': missing '" + key + "'");
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + module.id() + ")";
+    }
+}
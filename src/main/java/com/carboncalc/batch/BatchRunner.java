@@ -0,0 +1,617 @@
+package com.carboncalc.batch;
+
+import com.carboncalc.model.ElectricityMapping;
+import com.carboncalc.model.FuelMapping;
+import com.carboncalc.model.GasMapping;
+import com.carboncalc.model.RefrigerantMapping;
+import com.carboncalc.util.CellUtils;
+import com.carboncalc.util.ExcelCsvLoader;
+import com.carboncalc.util.InvoiceKeySet;
+import com.carboncalc.util.WorkbookLoader;
+import com.carboncalc.util.excel.DataRoot;
+import com.carboncalc.util.excel.ElectricityExcelExporter;
+import com.carboncalc.util.excel.ErpInvoiceReader;
+import com.carboncalc.util.excel.ExportMetrics;
+import com.carboncalc.util.excel.ExportOptions;
+import com.carboncalc.util.excel.ExportResultCache;
+import com.carboncalc.util.excel.FuelExcelExporter;
+import com.carboncalc.util.excel.GasExcelExporter;
+import com.carboncalc.util.excel.GeneralExcelExporter;
+import com.carboncalc.util.excel.MappingPreview;
+import com.carboncalc.util.excel.ProviderSource;
+import com.carboncalc.util.excel.RefrigerantExcelExporter;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * BatchRunner
+ *
+ * <p>
+ * Headless entry point for scheduled exports. Runs the jobs of a
+ * {@link BatchJob} descriptor through the module exporters and
+ * {@link GeneralExcelExporter} without creating any Swing component, so it
+ * works on servers without a display:
+ * </p>
+ *
+ * <pre>
+ * java -cp carbon-footprint-calculator.jar com.carboncalc.batch.BatchRunner jobs.properties [--threads N] [--memory MB] [--work DIR]
+ * </pre>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>Independent jobs run in parallel on {@code --threads} workers
+ * (default: one per job, at most the number of processors); a
+ * {@code general} job starts once the module jobs it reads have
+ * finished.</li>
+ * <li>Jobs are admitted by {@link BatchScheduler} so their estimated memory
+ * stays under {@code --memory} (default: a share of the maximum heap); a
+ * job's {@code memory} key (MB) overrides its estimate.</li>
+ * <li>Every finished job prints one JSON line on stdout
+ * ({@code job, module, status, output, millis, rowsRead, rowsWritten,
+ * error, resumed}); a last line carries the totals. Status is {@code ok},
+ * {@code failed} or {@code skipped} (a job it depends on failed).</li>
+ * <li>With {@code --work}, finished jobs are recorded in that directory and
+ * a re-run after a failure resumes them instead of exporting again (see
+ * {@link RunCheckpoint}).</li>
+ * <li>Exit codes: {@value #EXIT_OK} all jobs ok, {@value #EXIT_FAILED} at
+ * least one job failed or was skipped, {@value #EXIT_USAGE} bad arguments
+ * or descriptor.</li>
+ * <li>Relative paths resolve against the working directory. Each job reads
+ * its CUPS and factor files from its {@code data} directory (default
+ * {@code data}, as in the UI), so one descriptor can cover several
+ * organizations; the export cache of a job lives under that directory
+ * too.</li>
+ * <li>ERP filters follow the UI: electricity keeps invoices with any
+ * conformity date, gas keeps invoices conformed in the job year or
+ * later.</li>
+ * </ul>
+ * </p>
+ */
+public final class BatchRunner {
+
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_FAILED = 1;
+    public static final int EXIT_USAGE = 2;
+
+    public static final String STATUS_OK = "ok";
+    public static final String STATUS_FAILED = "failed";
+    public static final String STATUS_SKIPPED = "skipped";
+
+    private static final long MB = 1024L * 1024;
+
+    private BatchRunner() {
+    }
+
+    public static void main(String[] args) {
+        // Exporters autosize columns through AWT font metrics; never open a display
+        System.setProperty("java.awt.headless", "true");
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Parse {@code args}, run the descriptor and print the status lines.
+     *
+     * @return the process exit code
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        String descriptorPath = null;
+        int threads = 0;
+        long budget = BatchScheduler.defaultBudget();
+        RunCheckpoint checkpoint = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if ("--threads".equals(args[i]) && i + 1 < args.length)
+                    threads = Integer.parseInt(args[++i]);
+                else if ("--memory".equals(args[i]) && i + 1 < args.length)
+                    budget = Long.parseLong(args[++i]) * MB;
+                else if ("--work".equals(args[i]) && i + 1 < args.length)
+                    checkpoint = new RunCheckpoint(Paths.get(args[++i]));
+                else if (descriptorPath == null && !args[i].startsWith("--"))
+                    descriptorPath = args[i];
+                else
+                    throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            if (descriptorPath == null)
+                throw new IllegalArgumentException("Missing job descriptor");
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println("Usage: BatchRunner <jobs.properties> [--threads N] [--memory MB] [--work DIR]");
+            return EXIT_USAGE;
+        }
+
+        List<BatchJob> jobs;
+        try (InputStream in = Files.newInputStream(Paths.get(descriptorPath))) {
+            Properties p = new Properties();
+            p.load(in);
+            jobs = BatchJob.parse(p);
+        } catch (IOException | IllegalArgumentException e) {
+            err.println("Invalid job descriptor " + descriptorPath + ": " + e.getMessage());
+            return EXIT_USAGE;
+        }
+
+        long start = System.nanoTime();
+        List<JobResult> results = runJobs(jobs, threads, budget, checkpoint, r -> {
+            synchronized (out) {
+                out.println(r.toJson());
+            }
+        });
+        int ok = 0;
+        int failed = 0;
+        int skipped = 0;
+        for (JobResult r : results) {
+            if (STATUS_OK.equals(r.status))
+                ok++;
+            else if (STATUS_SKIPPED.equals(r.status))
+                skipped++;
+            else
+                failed++;
+        }
+        out.println("{\"summary\": true, \"ok\": " + ok + ", \"failed\": " + failed + ", \"skipped\": " + skipped
+                + ", \"millis\": " + (System.nanoTime() - start) / 1_000_000 + "}");
+        out.flush();
+        return failed + skipped == 0 ? EXIT_OK : EXIT_FAILED;
+    }
+
+    /** Receives each job result as soon as the job finishes. */
+    public interface Listener {
+        void jobFinished(JobResult result);
+    }
+
+    /**
+     * Run {@code jobs} with the default memory budget.
+     *
+     * @see #runJobs(List, int, long, Listener)
+     */
+    public static List<JobResult> runJobs(List<BatchJob> jobs, int threads, Listener listener) {
+        return runJobs(jobs, threads, BatchScheduler.defaultBudget(), listener);
+    }
+
+    /**
+     * Run {@code jobs}, in parallel where they do not depend on each other
+     * and their estimated memory fits in {@code budgetBytes}.
+     *
+     * @param threads     worker threads, or 0 for one per job up to the number
+     *                    of processors
+     * @param budgetBytes memory budget shared by running jobs
+     * @param listener    notified as jobs finish (may be null)
+     * @return one result per job, in descriptor order
+     */
+    public static List<JobResult> runJobs(List<BatchJob> jobs, int threads, long budgetBytes,
+            Listener listener) {
+        return runJobs(jobs, threads, budgetBytes, null, listener);
+    }
+
+    /**
+     * Run {@code jobs} as {@link #runJobs(List, int, long, Listener)},
+     * resuming the jobs {@code checkpoint} recorded as finished with the same
+     * inputs. The records are cleared when every job ends ok.
+     *
+     * @param checkpoint work directory of the run, or null
+     */
+    public static List<JobResult> runJobs(List<BatchJob> jobs, int threads, long budgetBytes,
+            RunCheckpoint checkpoint, Listener listener) {
+        int workers = threads > 0 ? threads
+                : Math.max(1, Math.min(jobs.size(), Runtime.getRuntime().availableProcessors()));
+        try (BatchScheduler scheduler = new BatchScheduler(workers, budgetBytes)) {
+            Map<String, BatchJob> byName = new LinkedHashMap<>();
+            for (BatchJob job : jobs)
+                byName.put(job.getName(), job);
+            Map<String, CompletableFuture<JobResult>> futures = new LinkedHashMap<>();
+            // Module jobs first so general jobs can chain on them
+            for (BatchJob job : jobs) {
+                if (job.getModule() != BatchJob.Module.GENERAL)
+                    futures.put(job.getName(), scheduler.submit(estimateBytes(job, null),
+                            () -> notify(listener, execute(job, null, checkpoint))));
+            }
+            for (BatchJob job : jobs) {
+                if (job.getModule() != BatchJob.Module.GENERAL)
+                    continue;
+                List<CompletableFuture<JobResult>> deps = new ArrayList<>();
+                for (String dep : job.dependencies(byName.keySet()))
+                    deps.add(futures.get(dep));
+                // Queued only once its inputs exist, so they can be sized
+                CompletableFuture<JobResult> f = CompletableFuture.allOf(deps.toArray(new CompletableFuture<?>[0]))
+                        .thenCompose(v -> {
+                            Map<String, JobResult> done = new HashMap<>();
+                            for (CompletableFuture<JobResult> d : deps) {
+                                JobResult r = d.join();
+                                if (!STATUS_OK.equals(r.status))
+                                    return CompletableFuture.completedFuture(notify(listener, JobResult.skipped(job,
+                                            "dependency '" + r.job + "' " + r.status)));
+                                done.put(r.job, r);
+                            }
+                            return scheduler.submit(estimateBytes(job, done), () -> notify(listener,
+                                    execute(job, done, checkpoint)));
+                        });
+                futures.put(job.getName(), f);
+            }
+            List<JobResult> results = new ArrayList<>();
+            boolean allOk = true;
+            for (BatchJob job : jobs) {
+                JobResult r = futures.get(job.getName()).join();
+                allOk &= STATUS_OK.equals(r.status);
+                results.add(r);
+            }
+            if (checkpoint != null && allOk)
+                checkpoint.clear();
+            return results;
+        }
+    }
+
+    /**
+     * Estimated heap needed by {@code job}: its {@code memory} key (MB) when
+     * set, otherwise {@link BatchScheduler#BASE_JOB_BYTES} plus the estimate
+     * of every workbook it loads.
+     *
+     * @param finished results of the jobs a {@code general} job reads
+     */
+    static long estimateBytes(BatchJob job, Map<String, JobResult> finished) {
+        int memory = job.getInt("memory", 0);
+        if (memory > 0)
+            return memory * MB;
+        long bytes = BatchScheduler.BASE_JOB_BYTES;
+        if (job.getModule() == BatchJob.Module.GENERAL) {
+            for (String key : BatchJob.REPORT_INPUTS) {
+                String ref = job.get(key);
+                JobResult dep = ref != null && finished != null ? finished.get(ref) : null;
+                if (ref != null)
+                    bytes += BatchScheduler.estimateBytes(Paths.get(dep != null ? dep.output : ref));
+            }
+            return bytes;
+        }
+        for (String path : job.inputs())
+            bytes += BatchScheduler.estimateBytes(Paths.get(path));
+        String erp = job.get("erp");
+        if (erp != null)
+            bytes += BatchScheduler.estimateBytes(Paths.get(erp));
+        return bytes;
+    }
+
+    private static JobResult notify(Listener listener, JobResult result) {
+        if (listener != null) {
+            try {
+                listener.jobFinished(result);
+            } catch (RuntimeException ignored) {
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Run one job on the calling thread, or resume it from {@code checkpoint}
+     * when it already finished with the same inputs.
+     *
+     * @param checkpoint work directory of the run, or null
+     */
+    static JobResult execute(BatchJob job, Map<String, JobResult> finished, RunCheckpoint checkpoint) {
+        if (checkpoint == null)
+            return execute(job, finished);
+        long start = System.nanoTime();
+        String key = checkpoint.key(job, finished);
+        JobResult resumed = checkpoint.resume(job, key, start);
+        if (resumed != null)
+            return resumed;
+        JobResult r = execute(job, finished);
+        if (STATUS_OK.equals(r.status))
+            checkpoint.complete(job, key, r);
+        return r;
+    }
+
+    /**
+     * Run one job on the calling thread.
+     *
+     * @param finished results of the jobs a {@code general} job reads
+     */
+    static JobResult execute(BatchJob job, Map<String, JobResult> finished) {
+        long start = System.nanoTime();
+        String output = job.get("output");
+        ExportMetrics[] metrics = new ExportMetrics[1];
+        try {
+            ExportOptions options = new ExportOptions();
+            String data = job.get("data");
+            if (data != null) {
+                Path root = Paths.get(data);
+                if (!Files.isDirectory(root))
+                    throw new IOException("Data directory not found: " + data);
+                options.setDataRoot(new DataRoot(root));
+            }
+            if (job.getBoolean("cache"))
+                options.setResultCache(data == null ? new ExportResultCache()
+                        : new ExportResultCache(Paths.get(data, "cache", "exports"),
+                                ExportResultCache.DEFAULT_MAX_ENTRIES));
+            options.setMetricsSidecar(job.getBoolean("metrics"));
+            options.setAppend(job.getBoolean("append"));
+            options.setMetricsListener(m -> metrics[0] = m);
+            String input = job.get("input");
+            String sheet = job.get("sheet");
+            String mode = job.get("mode", "extended");
+            int year = job.getInt("year", 0);
+            if (input == null && job.getModule() != BatchJob.Module.GENERAL)
+                throw new IOException("No input; watched jobs run in the watch daemon");
+            List<ProviderSource> sources = new ArrayList<>();
+            for (String path : job.inputs()) {
+                if (!new File(path).isFile())
+                    throw new IOException("Input not found: " + path);
+                sources.add(new ProviderSource(path, sheet));
+            }
+            switch (job.getModule()) {
+                case ELECTRICITY: {
+                    int[] c = resolveColumns(job, input, sheet);
+                    ElectricityMapping mapping = new ElectricityMapping(c[0], c[1], c[2], c[3], c[4], c[5], c[6]);
+                    requireComplete(job, mapping.isComplete());
+                    ElectricityExcelExporter.exportElectricityData(output, sources, job.get("erp"),
+                            job.get("erp.sheet"), mapping, year, mode, validInvoices(job, year), options);
+                    break;
+                }
+                case GAS: {
+                    int[] c = resolveColumns(job, input, sheet);
+                    GasMapping mapping = new GasMapping(c[0], c[1], c[2], c[3], c[4], c[5], c[6],
+                            job.get("gasType"));
+                    requireComplete(job, mapping.isComplete());
+                    GasExcelExporter.exportGasData(output, sources, job.get("erp"), job.get("erp.sheet"),
+                            mapping, year, mode, validInvoices(job, year), options);
+                    break;
+                }
+                case FUEL: {
+                    int[] c = resolveColumns(job, input, sheet);
+                    FuelMapping mapping = new FuelMapping(c[0], c[1], c[2], c[3], c[4], c[5], c[6], c[7], c[8]);
+                    requireComplete(job, mapping.isComplete());
+                    FuelExcelExporter.exportFuelData(output, input, sheet, mapping, year, mode,
+                            job.get("dateLimit"), job.get("lastModifiedHeader"), options);
+                    break;
+                }
+                case REFRIGERANT: {
+                    int[] c = resolveColumns(job, input, sheet);
+                    RefrigerantMapping mapping = new RefrigerantMapping(c[0], c[1], c[2], c[3], c[4], c[5], c[6],
+                            c[7]);
+                    requireComplete(job, mapping.isComplete());
+                    RefrigerantExcelExporter.exportRefrigerantData(output, input, sheet, mapping, year, mode,
+                            job.get("dateLimit"), job.get("lastModifiedHeader"), options);
+                    break;
+                }
+                case GENERAL: {
+                    File[] files = new File[BatchJob.REPORT_INPUTS.size()];
+                    for (int i = 0; i < files.length; i++) {
+                        String ref = job.get(BatchJob.REPORT_INPUTS.get(i));
+                        if (ref == null)
+                            continue;
+                        JobResult dep = finished != null ? finished.get(ref) : null;
+                        files[i] = new File(dep != null ? dep.output : ref);
+                        if (!files[i].isFile())
+                            throw new IOException("Result file not found: " + files[i]);
+                    }
+                    GeneralExcelExporter.exportResultsReport(output, files[0], files[1], files[2], files[3],
+                            !"false".equalsIgnoreCase(job.get("moduleSheets")));
+                    break;
+                }
+                default:
+                    throw new IllegalStateException(job.getModule().id());
+            }
+            return JobResult.of(job, STATUS_OK, output, start, null, metrics[0]);
+        } catch (Exception | LinkageError e) {
+            String msg = e.getMessage() != null ? e.getClass().getSimpleName() + ": " + e.getMessage()
+                    : e.getClass().getName();
+            return JobResult.of(job, STATUS_FAILED, output, start, msg, metrics[0]);
+        }
+    }
+
+    private static void requireComplete(BatchJob job, boolean complete) {
+        if (!complete)
+            throw new IllegalArgumentException("Incomplete column mapping; expected " + job.columnKeys());
+    }
+
+    /**
+     * Resolve the {@code column.*} keys of {@code job}: integers are used as
+     * zero-based indices, anything else is matched (normalized) against the
+     * header row of the input sheet. Unset columns are -1.
+     */
+    static int[] resolveColumns(BatchJob job, String input, String sheetName) throws IOException {
+        List<String> keys = job.columnKeys();
+        int[] out = new int[keys.size()];
+        Map<String, Integer> header = null;
+        for (int i = 0; i < keys.size(); i++) {
+            String v = job.get("column." + keys.get(i));
+            out[i] = -1;
+            if (v == null)
+                continue;
+            try {
+                out[i] = Integer.parseInt(v);
+                continue;
+            } catch (NumberFormatException notAnIndex) {
+                // header name
+            }
+            if (header == null)
+                header = readHeader(input, sheetName);
+            Integer idx = header.get(CellUtils.normalizeKey(v));
+            if (idx == null)
+                throw new IllegalArgumentException("Column '" + v + "' (" + keys.get(i) + ") not found in "
+                        + input + " [" + sheetName + "]");
+            out[i] = idx;
+        }
+        return out;
+    }
+
+    private static Map<String, Integer> readHeader(String path, String sheetName) throws IOException {
+        try (Workbook wb = openWorkbook(path)) {
+            Sheet sheet = requireSheet(wb, path, sheetName);
+            DataFormatter df = new DataFormatter();
+            FormulaEvaluator eval = wb.getCreationHelper().createFormulaEvaluator();
+            return headerIndex(sheet, df, eval);
+        }
+    }
+
+    private static Map<String, Integer> headerIndex(Sheet sheet, DataFormatter df, FormulaEvaluator eval) {
+        Map<String, Integer> out = new HashMap<>();
+        int headerRow = MappingPreview.findHeaderRow(sheet, df, eval);
+        if (headerRow < 0)
+            return out;
+        for (Cell c : sheet.getRow(headerRow)) {
+            String key = CellUtils.normalizeKey(CellUtils.getCellString(c, df, eval));
+            if (!key.isEmpty())
+                out.putIfAbsent(key, c.getColumnIndex());
+        }
+        return out;
+    }
+
+    /**
+     * Invoice numbers accepted by the ERP export of {@code job}, or an empty
+     * set (no filter) when the job has no ERP file.
+     */
+    static Set<String> validInvoices(BatchJob job, int year) throws IOException {
+        String erp = job.get("erp");
+        if (erp == null)
+            return new InvoiceKeySet();
+        for (String key : new String[] { "erp.invoice", "erp.conformity" }) {
+            if (job.get(key) == null)
+                throw new IllegalArgumentException("ERP file given without '" + key + "'");
+        }
+        return ErpInvoiceReader.read(erp, job.get("erp.sheet"),
+                ErpInvoiceReader.byKey(job.get("erp.invoice"), job.get("erp.conformity")),
+                job.getModule() == BatchJob.Module.GAS ? ErpInvoiceReader.conformedSince(year)
+                        : ErpInvoiceReader.conformed());
+    }
+
+    private static Workbook openWorkbook(String path) throws IOException {
+        String lower = path.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".csv"))
+            return ExcelCsvLoader.loadCsvAsWorkbookFromPath(path);
+        return WorkbookLoader.open(new File(path));
+    }
+
+    private static Sheet requireSheet(Workbook wb, String path, String sheetName) {
+        Sheet sheet = sheetName != null ? wb.getSheet(sheetName) : null;
+        if (sheet == null)
+            throw new IllegalArgumentException("Sheet '" + sheetName + "' not found in " + path);
+        return sheet;
+    }
+
+    /** Outcome of one job. */
+    public static final class JobResult {
+        private final String job;
+        private final String module;
+        private final String status;
+        private final String output;
+        private final long millis;
+        private final String error;
+        private final long rowsRead;
+        private final long rowsWritten;
+        private final boolean resumed;
+
+        private JobResult(String job, String module, String status, String output, long millis, String error,
+                long rowsRead, long rowsWritten, boolean resumed) {
+            this.job = job;
+            this.module = module;
+            this.status = status;
+            this.output = output;
+            this.millis = millis;
+            this.error = error;
+            this.rowsRead = rowsRead;
+            this.rowsWritten = rowsWritten;
+            this.resumed = resumed;
+        }
+
+        static JobResult of(BatchJob job, String status, String output, long startNanos, String error,
+                ExportMetrics metrics) {
+            return new JobResult(job.getName(), job.getModule().id(), status, output,
+                    (System.nanoTime() - startNanos) / 1_000_000, error,
+                    metrics != null ? metrics.getRowsRead() : -1, metrics != null ? metrics.getRowsWritten() : -1,
+                    false);
+        }
+
+        static JobResult skipped(BatchJob job, String reason) {
+            return new JobResult(job.getName(), job.getModule().id(), STATUS_SKIPPED, job.get("output"), 0, reason,
+                    -1, -1, false);
+        }
+
+        /** Result of a job resumed from a checkpoint, with its recorded row counts. */
+        static JobResult resumed(BatchJob job, String output, long startNanos, long rowsRead, long rowsWritten) {
+            return new JobResult(job.getName(), job.getModule().id(), STATUS_OK, output,
+                    (System.nanoTime() - startNanos) / 1_000_000, null, rowsRead, rowsWritten, true);
+        }
+
+        public String getJob() {
+            return job;
+        }
+
+        public String getModule() {
+            return module;
+        }
+
+        /** @return {@link #STATUS_OK}, {@link #STATUS_FAILED} or {@link #STATUS_SKIPPED} */
+        public String getStatus() {
+            return status;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        /** @return failure or skip reason, null when ok */
+        public String getError() {
+            return error;
+        }
+
+        /** @return rows read by a module export, -1 when unknown */
+        public long getRowsRead() {
+            return rowsRead;
+        }
+
+        /** @return detailed rows written by a module export, -1 when unknown */
+        public long getRowsWritten() {
+            return rowsWritten;
+        }
+
+        /** @return true when the job was resumed from a checkpoint, not run */
+        public boolean isResumed() {
+            return resumed;
+        }
+
+        /** @return the result as a single-line JSON object */
+        public String toJson() {
+            return "{\"job\": " + quote(job) + ", \"module\": " + quote(module) + ", \"status\": " + quote(status)
+                    + ", \"output\": " + quote(output) + ", \"millis\": " + millis + ", \"rowsRead\": " + rowsRead
+                    + ", \"rowsWritten\": " + rowsWritten + ", \"error\": " + quote(error) + ", \"resumed\": "
+                    + resumed + "}";
+        }
+
+        static String quote(String s) {
+            if (s == null)
+                return "null";
+            StringBuilder sb = new StringBuilder("\"");
+            for (char c : s.toCharArray()) {
+                if (c == '"' || c == '\\')
+                    sb.append('\\').append(c);
+                else if (c < 0x20)
+                    sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                else
+                    sb.append(c);
+            }
+            return sb.append('"').toString();
+        }
+    }
+}
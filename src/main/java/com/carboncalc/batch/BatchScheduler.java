@@ -0,0 +1,197 @@
+package com.carboncalc.batch;
+
+import com.carboncalc.util.WorkbookFootprint;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * BatchScheduler
+ *
+ * <p>
+ * Runs batch jobs on a fixed number of worker threads while keeping the sum
+ * of their estimated memory under a budget. Workbook exports hold the whole
+ * source workbook in memory, so running as many jobs as there are cores is
+ * safe for small inputs but two large workbooks at once can exhaust the
+ * heap; admission by estimated memory keeps the cores busy with small jobs
+ * and serializes the large ones.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>A task starts when a worker is free and its estimate fits in the
+ * unreserved budget. A task larger than the whole budget starts only when
+ * nothing else runs, so it is never rejected.</li>
+ * <li>Tasks start in submission order, except that a task that fits may
+ * overtake the first waiting task; after {@value #MAX_OVERTAKES} overtakes
+ * the first task is guaranteed to be next, so large jobs do not
+ * starve.</li>
+ * <li>Estimates are heuristics ({@link #estimateBytes(Path)}); the budget
+ * should leave headroom below the maximum heap.</li>
+ * <li>Failures complete the returned future exceptionally and release the
+ * reservation like a normal completion.</li>
+ * </ul>
+ * </p>
+ */
+public final class BatchScheduler implements AutoCloseable {
+
+    /** Share of the maximum heap used as default budget. */
+    public static final double DEFAULT_BUDGET_RATIO = 0.7;
+    /** Fixed overhead per job (workbook templates, styles, factor maps). */
+    public static final long BASE_JOB_BYTES = 32L * 1024 * 1024;
+    /** Times the first waiting task may be overtaken by smaller tasks. */
+    static final int MAX_OVERTAKES = 8;
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private final ExecutorService pool;
+    private final int threads;
+    private final long budget;
+    private final List<Task<?>> pending = new ArrayList<>();
+    private int running;
+    private long reserved;
+    private int peakRunning;
+    private long peakReserved;
+
+    /**
+     * @param threads     worker threads (at least 1)
+     * @param budgetBytes memory budget shared by running tasks
+     */
+    public BatchScheduler(int threads, long budgetBytes) {
+        this.threads = Math.max(1, threads);
+        this.budget = Math.max(1, budgetBytes);
+        this.pool = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread t = new Thread(r, "batch-" + THREADS.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** @return {@value #DEFAULT_BUDGET_RATIO} of the maximum heap */
+    public static long defaultBudget() {
+        return (long) (Runtime.getRuntime().maxMemory() * DEFAULT_BUDGET_RATIO);
+    }
+
+    /**
+     * Estimated heap needed to load {@code file}; see
+     * {@link WorkbookFootprint#estimatedDomBytes()}. For {@code .xlsx} files
+     * it follows the inflated sheet sizes of the zip directory, otherwise the
+     * file size times the expansion factor of its format. Missing files count
+     * as 0.
+     */
+    public static long estimateBytes(Path file) {
+        return file != null ? WorkbookFootprint.inspect(file.toFile()).estimatedDomBytes() : 0L;
+    }
+
+    /**
+     * Queue {@code work} with an estimated footprint of {@code estimateBytes}.
+     *
+     * @return future completed with the result of {@code work}
+     */
+    public <T> CompletableFuture<T> submit(long estimateBytes, Supplier<T> work) {
+        Task<T> task = new Task<>(Math.max(0L, estimateBytes), work);
+        synchronized (this) {
+            pending.add(task);
+            dispatch();
+        }
+        return task.future;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /** @return the largest number of tasks that ran at the same time */
+    public synchronized int getPeakRunning() {
+        return peakRunning;
+    }
+
+    /** @return the largest sum of estimates of tasks running at the same time */
+    public synchronized long getPeakReserved() {
+        return peakReserved;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // Called with the monitor held
+    private void dispatch() {
+        while (running < threads && !pending.isEmpty()) {
+            Task<?> next = admissible();
+            if (next == null)
+                return;
+            pending.remove(next);
+            running++;
+            reserved += next.estimate;
+            peakRunning = Math.max(peakRunning, running);
+            peakReserved = Math.max(peakReserved, reserved);
+            pool.execute(() -> run(next));
+        }
+    }
+
+    private Task<?> admissible() {
+        Task<?> first = pending.get(0);
+        if (fits(first))
+            return first;
+        if (first.overtaken >= MAX_OVERTAKES)
+            return null;
+        for (int i = 1; i < pending.size(); i++) {
+            Task<?> t = pending.get(i);
+            if (fits(t)) {
+                first.overtaken++;
+                return t;
+            }
+        }
+        return null;
+    }
+
+    private boolean fits(Task<?> task) {
+        return running == 0 || reserved + task.estimate <= budget;
+    }
+
+    private <T> void run(Task<T> task) {
+        T value = null;
+        Throwable failure = null;
+        try {
+            value = task.work.get();
+        } catch (Throwable t) {
+            failure = t;
+        }
+        // Release before completing so dependants submitted on completion
+        // see the freed budget
+        synchronized (this) {
+            running--;
+            reserved -= task.estimate;
+            dispatch();
+        }
+        if (failure != null)
+            task.future.completeExceptionally(failure);
+        else
+            task.future.complete(value);
+    }
+
+    private static final class Task<T> {
+        private final long estimate;
+        private final Supplier<T> work;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private int overtaken;
+
+        private Task(long estimate, Supplier<T> work) {
+            this.estimate = estimate;
+            this.work = work;
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package com.carboncalc.batch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * JobServer
+ *
+ * <p>
+ * Embedded HTTP API for submitting exports from other local tools without
+ * starting a JVM per report. Bound to the loopback interface only:
+ * </p>
+ *
+ * <pre>
+ * POST /files?name=provider.xlsx   raw file body        -> 201 {"file": "&lt;id&gt;", "bytes": n}
+ * POST /jobs                       job properties body  -> 202 {"job": "&lt;id&gt;", "status": "queued"}
+ * GET  /jobs/&lt;id&gt;                                        -> 200 status JSON
+ * GET  /jobs/&lt;id&gt;/result                                 -> 200 workbook
+ * </pre>
+ *
+ * <p>
+ * A job body uses the keys of a {@link BatchJob} without the job prefix
+ * ({@code module}, {@code sheet}, {@code year}, {@code column.cups}, ...);
+ * {@code input}, {@code input.N} and {@code erp} name uploaded files and the
+ * inputs of a {@code general} job name finished jobs.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>Jobs run on a fixed pool of {@code threads} workers behind a queue
+ * of {@code queue} jobs; a job that does not fit is refused with
+ * {@code 429} and a {@code Retry-After} header.</li>
+ * <li>Status is {@code queued} (with its queue position), {@code running},
+ * then the {@link BatchRunner} result ({@code ok} or {@code failed}, rows
+ * read and written, error).</li>
+ * <li>Jobs cannot name server paths: {@code output} is chosen by the server
+ * and {@code data} is refused; every job reads the server's {@code data}
+ * directory.</li>
+ * <li>Finished jobs beyond {@code keep} are forgotten, oldest first, and
+ * their result deleted. Uploaded files stay until the work directory is
+ * cleaned.</li>
+ * </ul>
+ * </p>
+ */
+public final class JobServer {
+
+    public static final int DEFAULT_PORT = 8765;
+    public static final int DEFAULT_QUEUE = 16;
+    public static final int DEFAULT_KEEP = 256;
+    public static final long DEFAULT_MAX_UPLOAD = 256L * 1024 * 1024;
+
+    public static final String STATUS_QUEUED = "queued";
+    public static final String STATUS_RUNNING = "running";
+
+    /** Seconds suggested to clients refused with 429. */
+    static final int RETRY_AFTER_SECONDS = 5;
+
+    private static final Pattern FILE_ID = Pattern.compile("[0-9a-f\\-]{36}\\.(xlsx|xls|csv)");
+    private static final Pattern JOB_ID = Pattern.compile("[0-9a-f\\-]{36}");
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private final Path uploads;
+    private final Path results;
+    private final int keep;
+    private final long maxUpload;
+    private final HttpServer http;
+    private final ExecutorService httpThreads;
+    private final ThreadPoolExecutor workers;
+    // id -> job, in submission order
+    private final Map<String, ServerJob> jobs = new LinkedHashMap<>();
+
+    /**
+     * @param port      loopback port, 0 for any free port
+     * @param dir       work directory for uploads and results
+     * @param threads   worker threads running exports (at least 1)
+     * @param queue     jobs waiting beyond the running ones (0 for none)
+     * @param keep      finished jobs remembered
+     * @param maxUpload largest accepted upload in bytes
+     */
+    public JobServer(int port, Path dir, int threads, int queue, int keep, long maxUpload) throws IOException {
+        this.uploads = Files.createDirectories(dir.resolve("uploads"));
+        this.results = Files.createDirectories(dir.resolve("results"));
+        this.keep = Math.max(1, keep);
+        this.maxUpload = maxUpload;
+        int n = Math.max(1, threads);
+        BlockingQueue<Runnable> waiting = queue > 0 ? new ArrayBlockingQueue<>(queue) : new SynchronousQueue<>();
+        this.workers = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS, waiting,
+                r -> daemon(r, "job-" + THREADS.incrementAndGet()), new ThreadPoolExecutor.AbortPolicy());
+        this.http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.httpThreads = Executors.newFixedThreadPool(4, r -> daemon(r, "http-" + THREADS.incrementAndGet()));
+        http.setExecutor(httpThreads);
+        http.createContext("/files", this::handleFiles);
+        http.createContext("/jobs", this::handleJobs);
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queue = DEFAULT_QUEUE;
+        Path dir = Paths.get("data", "server");
+        try {
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                switch (args[i]) {
+                    case "--port":
+                        port = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "--queue":
+                        queue = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "--dir":
+                        dir = Paths.get(args[i + 1]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+                }
+            }
+            if (args.length % 2 != 0)
+                throw new IllegalArgumentException("Missing value for " + args[args.length - 1]);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: JobServer [--port N] [--threads N] [--queue N] [--dir DIR]");
+            System.exit(BatchRunner.EXIT_USAGE);
+            return;
+        }
+        JobServer server = new JobServer(port, dir, threads, queue, DEFAULT_KEEP, DEFAULT_MAX_UPLOAD);
+        server.start();
+        System.out.println("Listening on http://localhost:" + server.getPort() + "/");
+        new CountDownLatch(1).await();
+    }
+
+    public void start() {
+        http.start();
+    }
+
+    /** Stop accepting requests; running exports finish in the background. */
+    public void stop() {
+        http.stop(0);
+        httpThreads.shutdown();
+        workers.shutdown();
+    }
+
+    /** @return the bound port (useful when constructed with port 0) */
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    /** Worker pool, exposed so tests can occupy it. */
+    ThreadPoolExecutor workers() {
+        return workers;
+    }
+
+    private void handleFiles(HttpExchange ex) throws IOException {
+        try {
+            if (!"POST".equals(ex.getRequestMethod())) {
+                send(ex, 405, error("Use POST"));
+                return;
+            }
+            String name = query(ex.getRequestURI(), "name");
+            String ext = extension(name);
+            if (ext == null) {
+                send(ex, 400, error("Query parameter 'name' must end in .xlsx, .xls or .csv"));
+                return;
+            }
+            String id = UUID.randomUUID() + ext;
+            Path target = uploads.resolve(id);
+            long bytes = copy(ex.getRequestBody(), target);
+            if (bytes < 0) {
+                Files.deleteIfExists(target);
+                send(ex, 413, error("Upload larger than " + maxUpload + " bytes"));
+                return;
+            }
+            send(ex, 201, "{\"file\": " + quote(id) + ", \"bytes\": " + bytes + "}");
+        } catch (Exception e) {
+            send(ex, 500, error(e.toString()));
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void handleJobs(HttpExchange ex) throws IOException {
+        try {
+            String path = ex.getRequestURI().getPath();
+            String[] parts = path.substring("/jobs".length()).split("/");
+            // "/jobs" -> [""], "/jobs/<id>" -> ["", id], "/jobs/<id>/result" -> ["", id, "result"]
+            if (parts.length <= 1) {
+                if ("POST".equals(ex.getRequestMethod()))
+                    submit(ex);
+                else
+                    send(ex, 405, error("Use POST"));
+                return;
+            }
+            if (!"GET".equals(ex.getRequestMethod())) {
+                send(ex, 405, error("Use GET"));
+                return;
+            }
+            ServerJob job = JOB_ID.matcher(parts[1]).matches() ? find(parts[1]) : null;
+            if (job == null) {
+                send(ex, 404, error("Unknown job"));
+                return;
+            }
+            if (parts.length == 2)
+                send(ex, 200, statusJson(job));
+            else if (parts.length == 3 && "result".equals(parts[2]))
+                sendResult(ex, job);
+            else
+                send(ex, 404, error("Unknown resource"));
+        } catch (Exception e) {
+            send(ex, 500, error(e.toString()));
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void submit(HttpExchange ex) throws IOException {
+        Properties values = new Properties();
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] body = in.readNBytes(64 * 1024 + 1);
+            if (body.length > 64 * 1024) {
+                send(ex, 413, error("Job description too large"));
+                return;
+            }
+            values.load(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+        }
+        String id = UUID.randomUUID().toString();
+        BatchJob job;
+        try {
+            job = BatchJob.single(id, resolve(values, id));
+        } catch (IllegalArgumentException e) {
+            send(ex, 400, error(e.getMessage()));
+            return;
+        } catch (IllegalStateException e) {
+            send(ex, 409, error(e.getMessage()));
+            return;
+        }
+        ServerJob sj = new ServerJob(job);
+        synchronized (jobs) {
+            jobs.put(id, sj);
+        }
+        try {
+            workers.execute(sj);
+        } catch (RejectedExecutionException e) {
+            synchronized (jobs) {
+                jobs.remove(id);
+            }
+            ex.getResponseHeaders().set("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+            send(ex, 429, error("Too many jobs; retry later"));
+            return;
+        }
+        send(ex, 202, "{\"job\": " + quote(id) + ", \"status\": " + quote(STATUS_QUEUED) + "}");
+    }
+
+    /**
+     * Map the client's job body onto server paths: uploaded file ids to
+     * upload paths, job ids of a {@code general} job to their results and
+     * the output to the job's result file.
+     *
+     * @throws IllegalArgumentException for a malformed body
+     * @throws IllegalStateException    when a referenced job has no result
+     */
+    private Properties resolve(Properties values, String id) {
+        Properties p = new Properties();
+        for (String key : values.stringPropertyNames())
+            p.setProperty(key, values.getProperty(key).trim());
+        for (String key : new String[] { "output", "data" }) {
+            if (p.containsKey(key))
+                throw new IllegalArgumentException("'" + key + "' is set by the server");
+        }
+        for (String key : p.stringPropertyNames()) {
+            if (!"input".equals(key) && !"erp".equals(key) && !BatchJob.isExtraInput(key))
+                continue;
+            String v = p.getProperty(key);
+            if (v.isEmpty())
+                continue;
+            if (!FILE_ID.matcher(v).matches() || !Files.isRegularFile(uploads.resolve(v)))
+                throw new IllegalArgumentException("'" + key + "' is not an uploaded file: " + v);
+            p.setProperty(key, uploads.resolve(v).toString());
+        }
+        if ("general".equalsIgnoreCase(p.getProperty("module", "").trim())) {
+            for (String key : BatchJob.REPORT_INPUTS) {
+                String v = p.getProperty(key);
+                if (v == null || v.isEmpty())
+                    continue;
+                ServerJob dep = JOB_ID.matcher(v).matches() ? find(v) : null;
+                if (dep == null)
+                    throw new IllegalArgumentException("'" + key + "' is not a job: " + v);
+                BatchRunner.JobResult r = dep.result;
+                if (r == null || !BatchRunner.STATUS_OK.equals(r.getStatus()))
+                    throw new IllegalStateException("Job " + v + " has no result yet");
+                p.setProperty(key, r.getOutput());
+            }
+        }
+        p.setProperty("output", results.resolve(id + ".xlsx").toString());
+        return p;
+    }
+
+    private ServerJob find(String id) {
+        synchronized (jobs) {
+            return jobs.get(id);
+        }
+    }
+
+    private String statusJson(ServerJob job) {
+        BatchRunner.JobResult r = job.result;
+        if (r != null)
+            return r.toJson();
+        String head = "{\"job\": " + quote(job.job.getName()) + ", \"module\": " + quote(job.job.getModule().id());
+        if (job.started > 0)
+            return head + ", \"status\": " + quote(STATUS_RUNNING) + ", \"millis\": "
+                    + (System.nanoTime() - job.started) / 1_000_000 + "}";
+        return head + ", \"status\": " + quote(STATUS_QUEUED) + ", \"queuePosition\": " + queuePosition(job) + "}";
+    }
+
+    private int queuePosition(ServerJob job) {
+        int i = 0;
+        for (Runnable r : workers.getQueue()) {
+            if (r == job)
+                return i;
+            i++;
+        }
+        return -1;
+    }
+
+    private void sendResult(HttpExchange ex, ServerJob job) throws IOException {
+        BatchRunner.JobResult r = job.result;
+        if (r == null || !BatchRunner.STATUS_OK.equals(r.getStatus())) {
+            send(ex, 409, error("Job has no result" + (r != null ? " (" + r.getStatus() + ")" : "")));
+            return;
+        }
+        Path file = Paths.get(r.getOutput());
+        ex.getResponseHeaders().set("Content-Type",
+                "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        ex.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"" + file.getFileName() + "\"");
+        ex.sendResponseHeaders(200, Files.size(file));
+        try (OutputStream out = ex.getResponseBody()) {
+            Files.copy(file, out);
+        }
+    }
+
+    // Forget the oldest finished jobs beyond 'keep'
+    private void evict() {
+        List<ServerJob> dropped = new ArrayList<>();
+        synchronized (jobs) {
+            int finished = 0;
+            for (ServerJob j : jobs.values())
+                if (j.result != null)
+                    finished++;
+            for (Iterator<ServerJob> it = jobs.values().iterator(); it.hasNext() && finished > keep;) {
+                ServerJob j = it.next();
+                if (j.result != null) {
+                    it.remove();
+                    dropped.add(j);
+                    finished--;
+                }
+            }
+        }
+        for (ServerJob j : dropped) {
+            try {
+                Files.deleteIfExists(Paths.get(j.job.get("output")));
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /** @return bytes copied, or -1 when the body exceeds {@code maxUpload} */
+    private long copy(InputStream in, Path target) throws IOException {
+        long total = 0;
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream body = in; OutputStream out = Files.newOutputStream(target)) {
+            int n;
+            while ((n = body.read(buf)) > 0) {
+                total += n;
+                if (total > maxUpload)
+                    return -1;
+                out.write(buf, 0, n);
+            }
+        }
+        return total;
+    }
+
+    private static String extension(String name) {
+        if (name == null)
+            return null;
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (String ext : new String[] { ".xlsx", ".xls", ".csv" }) {
+            if (lower.endsWith(ext))
+                return ext;
+        }
+        return null;
+    }
+
+    private static String query(URI uri, String key) {
+        String q = uri.getRawQuery();
+        if (q == null)
+            return null;
+        for (String pair : q.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(key))
+                return URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+
+    private static void send(HttpExchange ex, int code, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(code, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String error(String message) {
+        return "{\"error\": " + quote(message) + "}";
+    }
+
+    private static String quote(String s) {
+        return BatchRunner.JobResult.quote(s);
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    /** A submitted job; runs on a worker and keeps its result. */
+    private final class ServerJob implements Runnable {
+        private final BatchJob job;
+        private volatile long started;
+        private volatile BatchRunner.JobResult result;
+
+        private ServerJob(BatchJob job) {
+            this.job = job;
+        }
+
+        @Override
+        public void run() {
+            started = System.nanoTime();
+            result = BatchRunner.execute(job, null);
+            evict();
+        }
+    }
+}
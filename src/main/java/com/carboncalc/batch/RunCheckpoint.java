@@ -0,0 +1,167 @@
+package com.carboncalc.batch;
+
+import com.carboncalc.util.excel.DataRoot;
+import com.carboncalc.util.excel.ExportResultCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * RunCheckpoint
+ *
+ * <p>
+ * Work directory recording which jobs of a descriptor run have finished, so
+ * a run that fails near the end (disk full, a malformed module result) can
+ * be repeated without recomputing the jobs that already succeeded:
+ * </p>
+ *
+ * <pre>
+ * java -cp carbon-footprint-calculator.jar com.carboncalc.batch.BatchRunner jobs.properties --work work/jobs
+ * </pre>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>A job's key is a SHA-256 digest of its descriptor keys and of the
+ * content of everything it reads: provider and ERP files, the reference
+ * data of its {@code data} directory for the job year and, for a
+ * {@code general} job, the module results it consolidates. An append job
+ * also digests its existing output.</li>
+ * <li>A finished job leaves {@code <job>.done} with its key, the digest of
+ * its output and its row counts. The outputs are the checkpointed state:
+ * module workbooks carry the per-row results and per-center aggregates the
+ * consolidated report reads, so they are not copied.</li>
+ * <li>A job resumes when its record has the same key and its output still
+ * has the recorded digest; it is reported {@code ok} with
+ * {@code resumed: true} and its inputs are not parsed. Anything else runs
+ * the job again.</li>
+ * <li>The granularity is the whole job, recorded only by {@link BatchRunner}
+ * runs with {@code --work}. Nothing inside an export (parsed inputs,
+ * per-row results, per-module aggregates) is checkpointed, so a job that
+ * fails runs again from its first row. Desktop, JobServer and WatchDaemon
+ * runs keep no records; their module exports can only be reused through
+ * {@link ExportResultCache} (the {@code cache} job key).</li>
+ * <li>Records are cleared once a run finishes with every job ok.</li>
+ * <li>Checkpointing never fails a job: unreadable or unwritable records
+ * count as missing.</li>
+ * </ul>
+ * </p>
+ */
+public final class RunCheckpoint {
+
+    private static final String SUFFIX = ".done";
+
+    private final Path dir;
+
+    public RunCheckpoint(Path dir) {
+        this.dir = dir;
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    /**
+     * @param finished results of the jobs a {@code general} job reads
+     * @return the checkpoint key of {@code job} for its current inputs
+     */
+    String key(BatchJob job, Map<String, BatchRunner.JobResult> finished) {
+        ExportResultCache.KeyBuilder key = ExportResultCache.key("job").text(job.getModule().id());
+        for (Map.Entry<String, String> e : job.settings().entrySet())
+            key.text(e.getKey()).text(e.getValue());
+        if (job.getModule() == BatchJob.Module.GENERAL) {
+            for (String input : BatchJob.REPORT_INPUTS) {
+                String ref = job.get(input);
+                BatchRunner.JobResult dep = ref != null && finished != null ? finished.get(ref) : null;
+                key.file(dep != null ? dep.getOutput() : ref);
+            }
+            return key.build();
+        }
+        for (String input : job.inputs())
+            key.file(input);
+        key.file(job.get("erp"));
+        String data = job.get("data");
+        key.dataFiles(data != null ? new DataRoot(Paths.get(data)) : DataRoot.DEFAULT, job.getInt("year", 0));
+        if (job.getBoolean("append"))
+            key.file(job.get("output"));
+        return key.build();
+    }
+
+    /**
+     * @return the recorded result of {@code job} when it finished with
+     *         {@code key} and its output is unchanged, otherwise null
+     */
+    BatchRunner.JobResult resume(BatchJob job, String key, long startNanos) {
+        Path record = record(job);
+        if (!Files.isRegularFile(record))
+            return null;
+        Properties p = new Properties();
+        try (InputStream in = Files.newInputStream(record)) {
+            p.load(in);
+        } catch (IOException e) {
+            return null;
+        }
+        String output = job.get("output");
+        if (!key.equals(p.getProperty("key")) || !outputDigest(output).equals(p.getProperty("outputDigest")))
+            return null;
+        try {
+            return BatchRunner.JobResult.resumed(job, output, startNanos,
+                    Long.parseLong(p.getProperty("rowsRead", "-1")),
+                    Long.parseLong(p.getProperty("rowsWritten", "-1")));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** Record that {@code job} finished with {@code key}. */
+    void complete(BatchJob job, String key, BatchRunner.JobResult result) {
+        Properties p = new Properties();
+        p.setProperty("key", key);
+        p.setProperty("outputDigest", outputDigest(result.getOutput()));
+        p.setProperty("rowsRead", String.valueOf(result.getRowsRead()));
+        p.setProperty("rowsWritten", String.valueOf(result.getRowsWritten()));
+        try {
+            Files.createDirectories(dir);
+            // Write then move so a crash never leaves a half-written record
+            Path tmp = Files.createTempFile(dir, fileName(job), ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                p.store(out, "job " + job.getName());
+            }
+            Files.move(tmp, record(job), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // checkpointing is best-effort
+        }
+    }
+
+    /** Delete every record; called once a run has fully succeeded. */
+    void clear() {
+        if (!Files.isDirectory(dir))
+            return;
+        try (DirectoryStream<Path> records = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path p : records)
+                Files.deleteIfExists(p);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private Path record(BatchJob job) {
+        return dir.resolve(fileName(job) + SUFFIX);
+    }
+
+    // Job names come from the descriptor; keep them file-name safe
+    private static String fileName(BatchJob job) {
+        return job.getName().replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private static String outputDigest(String output) {
+        return ExportResultCache.key("output").file(output).build();
+    }
+}
@@ -0,0 +1,471 @@
+package com.carboncalc.batch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WatchDaemon
+ *
+ * <p>
+ * Keeps the exports of a {@link BatchJob} descriptor current while provider
+ * files land in shared folders. Module jobs with a {@code watch} folder are
+ * re-run once the matching files of that folder have stopped changing; the
+ * {@code general} jobs that read them are then rebuilt from the latest
+ * result of every module, so unchanged modules are never recomputed:
+ * </p>
+ *
+ * <pre>
+ * java -cp carbon-footprint-calculator.jar com.carboncalc.batch.WatchDaemon jobs.properties [--debounce MILLIS]
+ * </pre>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>A file is processed once its size and modification time have not
+ * changed for the debounce interval (default
+ * {@value #DEFAULT_DEBOUNCE_MILLIS} ms), so copies in progress are not read
+ * half written. Office lock files ({@code ~$*}), hidden files and
+ * {@code .tmp}/{@code .part} files are ignored.</li>
+ * <li>Electricity and gas jobs export every matching file of the folder as
+ * one provider list, oldest first, so a folder receiving one file per month
+ * yields a report of the whole year. With {@code append=true} each file not
+ * yet appended runs on its own, oldest first, and is recorded in
+ * {@code <output>.watched}; files that arrive together or while the daemon
+ * is down are all appended on the next run. Fuel and refrigerant jobs,
+ * whose form exports are cumulative, run on the newest file.</li>
+ * <li>The column mapping of a job (indices or header names) is applied to
+ * every file of its folder.</li>
+ * <li>At start, a module whose output is newer than all of its inputs counts
+ * as done; the others run after the debounce interval.</li>
+ * <li>A set of files is processed once even when its export fails; the next
+ * change in the folder retries. An append run stops at the first failing
+ * file, which is not recorded, so later files keep their order. A failed
+ * module keeps its previous result in the consolidated report.</li>
+ * <li>Jobs without {@code watch} run once at start when their output is
+ * missing or older than their input.</li>
+ * <li>Each run prints one {@link BatchRunner.JobResult} JSON line.</li>
+ * </ul>
+ * </p>
+ */
+public final class WatchDaemon implements Runnable {
+
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 5000;
+    public static final String DEFAULT_PATTERN = "*.{xlsx,xls,csv}";
+    /** Suffix of the file next to an append job's output listing appended files. */
+    public static final String LEDGER_SUFFIX = ".watched";
+
+    private final List<BatchJob> modules = new ArrayList<>();
+    private final List<BatchJob> reports = new ArrayList<>();
+    private final Map<String, BatchJob> byName = new HashMap<>();
+    private final long debounceMillis;
+    private final BatchRunner.Listener listener;
+    // job -> signature of the last inputs it ran on
+    private final Map<String, String> done = new HashMap<>();
+    // append job -> signatures of the files already appended to its output
+    private final Map<String, Set<String>> appended = new HashMap<>();
+    // job -> input waiting to settle
+    private final Map<String, Pending> pending = new HashMap<>();
+    private final Set<String> reportsRun = new HashSet<>();
+    private volatile boolean stopped;
+    private volatile WatchService watcher;
+
+    /**
+     * @param jobs           jobs of a descriptor
+     * @param debounceMillis time a file must stay unchanged before it is read
+     * @param listener       notified with every result (may be null)
+     */
+    public WatchDaemon(List<BatchJob> jobs, long debounceMillis, BatchRunner.Listener listener) {
+        for (BatchJob job : jobs) {
+            byName.put(job.getName(), job);
+            if (job.getModule() == BatchJob.Module.GENERAL)
+                reports.add(job);
+            else
+                modules.add(job);
+        }
+        this.debounceMillis = Math.max(0, debounceMillis);
+        this.listener = listener;
+        for (BatchJob job : modules)
+            seed(job);
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        PrintStream out = System.out;
+        String descriptor = null;
+        long debounce = DEFAULT_DEBOUNCE_MILLIS;
+        List<BatchJob> jobs;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if ("--debounce".equals(args[i]) && i + 1 < args.length)
+                    debounce = Long.parseLong(args[++i]);
+                else if (descriptor == null && !args[i].startsWith("--"))
+                    descriptor = args[i];
+                else
+                    throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            if (descriptor == null)
+                throw new IllegalArgumentException("Missing job descriptor");
+            try (InputStream in = Files.newInputStream(Paths.get(descriptor))) {
+                Properties p = new Properties();
+                p.load(in);
+                jobs = BatchJob.parse(p);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: WatchDaemon <jobs.properties> [--debounce MILLIS]");
+            System.exit(BatchRunner.EXIT_USAGE);
+            return;
+        }
+        new WatchDaemon(jobs, debounce, r -> {
+            synchronized (out) {
+                out.println(r.toJson());
+            }
+        }).run();
+    }
+
+    /**
+     * Watch the folders until {@link #stop()}. Folder events only wake the
+     * loop early; every wake-up rescans all jobs, so a missed or overflowed
+     * event is never fatal.
+     */
+    @Override
+    public void run() {
+        try (WatchService ws = FileSystems.getDefault().newWatchService()) {
+            watcher = ws;
+            for (BatchJob job : modules) {
+                String dir = job.get("watch");
+                if (dir != null && Files.isDirectory(Paths.get(dir)))
+                    Paths.get(dir).register(ws, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+            long wait = Math.max(50, debounceMillis / 2);
+            while (!stopped) {
+                tick(System.currentTimeMillis());
+                WatchKey key = ws.poll(wait, TimeUnit.MILLISECONDS);
+                while (key != null) {
+                    key.pollEvents();
+                    key.reset();
+                    key = ws.poll();
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // stopped
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot watch folders: " + e.getMessage(), e);
+        }
+    }
+
+    public void stop() {
+        stopped = true;
+        WatchService ws = watcher;
+        if (ws != null) {
+            try {
+                ws.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Run every module whose input settled since the last call, then the
+     * reports that read a module that ran.
+     *
+     * @param now current time in milliseconds
+     * @return results of the jobs that ran, in run order
+     */
+    List<BatchRunner.JobResult> tick(long now) {
+        List<BatchRunner.JobResult> ran = new ArrayList<>();
+        Set<String> changed = new HashSet<>();
+        for (BatchJob job : modules) {
+            List<Path> inputs = sources(job);
+            if (inputs.isEmpty()) {
+                pending.remove(job.getName());
+                continue;
+            }
+            String sig = signature(inputs);
+            if (sig == null || sig.equals(done.get(job.getName()))) {
+                pending.remove(job.getName());
+                continue;
+            }
+            Pending p = pending.get(job.getName());
+            if (p == null || !p.signature.equals(sig)) {
+                // New or still growing: restart the quiet period
+                pending.put(job.getName(), new Pending(sig, now));
+                continue;
+            }
+            if (now - p.since < debounceMillis)
+                continue;
+            pending.remove(job.getName());
+            done.put(job.getName(), sig);
+            if (appends(job)) {
+                // One run per file so every file is appended exactly once
+                for (Path input : inputs) {
+                    BatchRunner.JobResult r = report(BatchRunner.execute(withInputs(job, List.of(input)), null));
+                    ran.add(r);
+                    if (!BatchRunner.STATUS_OK.equals(r.getStatus()))
+                        break;
+                    changed.add(job.getName());
+                    recordAppended(job, signature(input));
+                }
+                continue;
+            }
+            BatchRunner.JobResult r = report(BatchRunner.execute(withInputs(job, inputs), null));
+            ran.add(r);
+            if (BatchRunner.STATUS_OK.equals(r.getStatus()))
+                changed.add(job.getName());
+        }
+        for (BatchJob job : reports) {
+            List<String> deps = job.dependencies(byName.keySet());
+            boolean depChanged = false;
+            for (String dep : deps)
+                depChanged |= changed.contains(dep);
+            if (!depChanged && (reportsRun.contains(job.getName()) || isCurrent(job, deps)))
+                continue;
+            BatchJob resolved = job;
+            boolean any = false;
+            for (String key : BatchJob.REPORT_INPUTS) {
+                String ref = job.get(key);
+                BatchJob dep = ref != null ? byName.get(ref) : null;
+                if (dep == null) {
+                    any |= ref != null;
+                    continue;
+                }
+                // Latest result of every module, rebuilt or not
+                Path output = Paths.get(dep.get("output"));
+                boolean exists = Files.isRegularFile(output);
+                resolved = resolved.with(key, exists ? output.toString() : "");
+                any |= exists;
+            }
+            if (!any)
+                continue;
+            reportsRun.add(job.getName());
+            ran.add(report(BatchRunner.execute(resolved, null)));
+        }
+        return ran;
+    }
+
+    // A module whose output is newer than all of its inputs is up to date
+    // at start; an append job without a ledger records them as appended
+    private void seed(BatchJob job) {
+        Path output = Paths.get(job.get("output"));
+        if (appends(job)) {
+            Set<String> ledger = new HashSet<>();
+            Path file = ledger(job);
+            try {
+                if (Files.isRegularFile(output) && Files.isRegularFile(file))
+                    ledger.addAll(Files.readAllLines(file, StandardCharsets.UTF_8));
+            } catch (IOException ignored) {
+            }
+            appended.put(job.getName(), ledger);
+            if (Files.isRegularFile(file))
+                return;
+        }
+        List<Path> inputs = sources(job);
+        String sig = signature(inputs);
+        if (sig == null)
+            return;
+        for (Path input : inputs) {
+            if (!newer(output, input))
+                return;
+        }
+        if (appends(job)) {
+            for (Path input : inputs)
+                recordAppended(job, signature(input));
+        } else {
+            done.put(job.getName(), sig);
+        }
+    }
+
+    // A report is current when its output is newer than every module result
+    private boolean isCurrent(BatchJob job, List<String> deps) {
+        Path output = Paths.get(job.get("output"));
+        if (!Files.isRegularFile(output))
+            return false;
+        for (String dep : deps) {
+            Path result = Paths.get(byName.get(dep).get("output"));
+            if (Files.isRegularFile(result) && !newer(output, result))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the files a module job should run on now, oldest first: every
+     *         matching file for electricity and gas, the files not yet
+     *         appended for an append job, the newest file otherwise; empty
+     *         when there is nothing to read
+     */
+    List<Path> sources(BatchJob job) {
+        String watch = job.get("watch");
+        if (watch == null) {
+            List<Path> inputs = new ArrayList<>();
+            for (String input : job.inputs()) {
+                if (!Files.isRegularFile(Paths.get(input)))
+                    return Collections.emptyList();
+                inputs.add(Paths.get(input));
+            }
+            return inputs;
+        }
+        Path dir = Paths.get(watch);
+        if (!Files.isDirectory(dir))
+            return Collections.emptyList();
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + job.get("pattern", DEFAULT_PATTERN));
+        List<Path> found = new ArrayList<>();
+        Map<Path, Long> times = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path f : files) {
+                if (!Files.isRegularFile(f) || ignored(f.getFileName().toString())
+                        || !matcher.matches(f.getFileName()))
+                    continue;
+                times.put(f, Files.getLastModifiedTime(f).toMillis());
+                found.add(f);
+            }
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+        found.sort(Comparator.comparing((Path f) -> times.get(f)).thenComparing(Comparator.naturalOrder()));
+        if (found.isEmpty())
+            return found;
+        if (appends(job)) {
+            Set<String> ledger = appended(job);
+            found.removeIf(f -> ledger.contains(signature(f)));
+            return found;
+        }
+        BatchJob.Module module = job.getModule();
+        if (module == BatchJob.Module.ELECTRICITY || module == BatchJob.Module.GAS)
+            return found;
+        return List.of(found.get(found.size() - 1));
+    }
+
+    private static boolean appends(BatchJob job) {
+        return job.get("watch") != null && job.getBoolean("append");
+    }
+
+    private static Path ledger(BatchJob job) {
+        return Paths.get(job.get("output") + LEDGER_SUFFIX);
+    }
+
+    // Appended files, forgotten once the output is gone since the next run
+    // starts a new report
+    private Set<String> appended(BatchJob job) {
+        Set<String> ledger = appended.computeIfAbsent(job.getName(), k -> new HashSet<>());
+        if (!ledger.isEmpty() && !Files.isRegularFile(Paths.get(job.get("output")))) {
+            ledger.clear();
+            try {
+                Files.deleteIfExists(ledger(job));
+            } catch (IOException ignored) {
+            }
+        }
+        return ledger;
+    }
+
+    private void recordAppended(BatchJob job, String sig) {
+        if (sig == null)
+            return;
+        Set<String> ledger = appended.computeIfAbsent(job.getName(), k -> new HashSet<>());
+        ledger.add(sig);
+        try {
+            Files.write(ledger(job), new TreeSet<>(ledger), StandardCharsets.UTF_8);
+        } catch (IOException ignored) {
+            // the file is appended again after a restart; append skips its
+            // invoices already in the report
+        }
+    }
+
+    // Run on exactly these provider files
+    private static BatchJob withInputs(BatchJob job, List<Path> inputs) {
+        BatchJob out = job;
+        for (String key : job.settings().keySet()) {
+            if (BatchJob.isExtraInput(key))
+                out = out.with(key, "");
+        }
+        out = out.with("input", inputs.get(0).toString());
+        for (int i = 1; i < inputs.size(); i++)
+            out = out.with("input." + (i + 1), inputs.get(i).toString());
+        return out;
+    }
+
+    private static boolean ignored(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return lower.startsWith("~$") || lower.startsWith(".") || lower.endsWith(".tmp") || lower.endsWith(".part");
+    }
+
+    private static String signature(List<Path> files) {
+        if (files.isEmpty())
+            return null;
+        StringBuilder sb = new StringBuilder();
+        for (Path f : files) {
+            String sig = signature(f);
+            if (sig == null)
+                return null;
+            sb.append(sig).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String signature(Path file) {
+        try {
+            return file.toAbsolutePath() + "|" + Files.size(file) + "|" + Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean newer(Path a, Path b) {
+        try {
+            if (!Files.isRegularFile(a) || !Files.isRegularFile(b))
+                return false;
+            FileTime ta = Files.getLastModifiedTime(a);
+            return ta.compareTo(Files.getLastModifiedTime(b)) >= 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private BatchRunner.JobResult report(BatchRunner.JobResult r) {
+        if (listener != null) {
+            try {
+                listener.jobFinished(r);
+            } catch (RuntimeException ignored) {
+            }
+        }
+        return r;
+    }
+
+    private static final class Pending {
+        private final String signature;
+        private final long since;
+
+        private Pending(String signature, long since) {
+            this.signature = signature;
+            this.since = since;
+        }
+    }
+}
@@ -3,12 +3,12 @@ package com.carboncalc.controller;
 import com.carboncalc.model.CenterData;
 import com.carboncalc.model.CupsCenterMapping;
 import com.carboncalc.view.CupsConfigPanel;
+import com.carboncalc.view.CupsCentersTableModel;
 import com.carboncalc.model.enums.EnergyType;
 import com.carboncalc.service.CupsService;
-import com.carboncalc.service.CupsServiceCsv;
+import com.carboncalc.util.excel.DataRoot;
 import com.carboncalc.util.ValidationUtils;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
@@ -16,8 +16,8 @@ import java.awt.GridBagLayout;
 import java.awt.GridBagConstraints;
 import java.awt.Insets;
 import com.carboncalc.util.UIUtils;
+import com.carboncalc.util.WorkbookLoader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ResourceBundle;
@@ -52,8 +52,10 @@ public class CupsConfigController {
     private final ResourceBundle messages;
     private CupsConfigPanel view;
     private Workbook currentWorkbook;
+    private WorkbookLoader workbookLoader;
+    private boolean energyLabelerInstalled;
     private File currentFile;
-    private final CupsService csvService = new CupsServiceCsv();
+    private final CupsService csvService = DataRoot.DEFAULT.cups();
     // Map localized label (lowercase) -> EnergyType for quick resolution
     private final Map<String, EnergyType> energyLabelToEnum = new HashMap<>();
     // Spanish bundle used to persist canonical Spanish labels regardless of UI
@@ -157,31 +159,26 @@ public class CupsConfigController {
      * Load centers from the CSV and populate the centers table model.
      *
      * This method queries the {@code CupsService} for persisted mappings and
-     * populates the view's table model. It converts stored canonical energy
-     * tokens into localized display labels via {@link #localizedLabelFor}.
+     * hands the list to the view's {@link CupsCentersTableModel} in one bulk
+     * update. Stored canonical energy tokens are shown as localized display
+     * labels via {@link #localizedLabelFor}.
      */
     private void loadCentersTable() throws Exception {
         List<CupsCenterMapping> mappings = csvService.loadCupsData();
-        DefaultTableModel model = (DefaultTableModel) view.getCentersTable().getModel();
-        model.setRowCount(0);
-        for (CupsCenterMapping m : mappings) {
-            // Convert stored energy token (e.g. ELECTRICITY) to localized display label if
-            // possible
-            String displayEnergy = localizedLabelFor(m.getEnergyType());
-            model.addRow(new Object[] {
-                    m.getId(),
-                    m.getCups(),
-                    m.getMarketer(),
-                    m.getCenterName(),
-                    m.getAcronym(),
-                    m.getCampus(),
-                    displayEnergy,
-                    m.getStreet(),
-                    m.getPostalCode(),
-                    m.getCity(),
-                    m.getProvince()
-            });
+        centersModel().setMappings(mappings);
+    }
+
+    /**
+     * @return the centers table model, with the localized energy labeler
+     *         installed on first use
+     */
+    private CupsCentersTableModel centersModel() {
+        CupsCentersTableModel model = (CupsCentersTableModel) view.getCentersTable().getModel();
+        if (!energyLabelerInstalled) {
+            model.setEnergyLabeler(this::localizedLabelFor);
+            energyLabelerInstalled = true;
         }
+        return model;
     }
 
     /**
@@ -198,23 +195,51 @@ public class CupsConfigController {
     /**
      * Open and cache the selected spreadsheet.
      *
-     * The workbook instance is stored in {@link #currentWorkbook} and used by
+     * The workbook is parsed in the background by {@link WorkbookLoader};
+     * once loaded it is stored in {@link #currentWorkbook} and used by
      * subsequent preview and import flows (sheet list, column mapping and
-     * previews).
+     * previews). Selecting another file while a load is running supersedes
+     * it.
      *
-     * @param file the Excel/CSV file selected by the user
+     * @param file the Excel file selected by the user
      */
     private void loadExcelFile(File file) {
-        try {
-            currentFile = file;
-            currentWorkbook = new XSSFWorkbook(new FileInputStream(file));
-            updateSheetList();
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(view,
-                    messages.getString("error.file.read"),
-                    messages.getString("error.title"),
-                    JOptionPane.ERROR_MESSAGE);
-        }
+        currentFile = file;
+        currentWorkbook = null;
+        if (workbookLoader == null)
+            workbookLoader = new WorkbookLoader(view, messages);
+        workbookLoader.load(file, new WorkbookLoader.Listener() {
+            @Override
+            public void sheetNamesRead(List<String> names) {
+                UIUtils.replaceComboItems(view.getSheetSelector(), names);
+            }
+
+            @Override
+            public void loaded(Workbook workbook) {
+                currentWorkbook = workbook;
+                updateSheetList();
+            }
+
+            @Override
+            public void failed(Exception error) {
+                resetCurrentFile();
+                JOptionPane.showMessageDialog(view,
+                        messages.getString("error.file.read"),
+                        messages.getString("error.title"),
+                        JOptionPane.ERROR_MESSAGE);
+            }
+
+            @Override
+            public void cancelled() {
+                resetCurrentFile();
+            }
+        });
+    }
+
+    private void resetCurrentFile() {
+        currentFile = null;
+        currentWorkbook = null;
+        view.getSheetSelector().removeAllItems();
     }
 
     /**
@@ -223,15 +248,14 @@ public class CupsConfigController {
      * selectors / preview are updated.
      */
     private void updateSheetList() {
-        JComboBox<String> sheetSelector = view.getSheetSelector();
-        sheetSelector.removeAllItems();
-
+        List<String> names = new ArrayList<>();
         for (int i = 0; i < currentWorkbook.getNumberOfSheets(); i++) {
-            sheetSelector.addItem(currentWorkbook.getSheetName(i));
+            names.add(currentWorkbook.getSheetName(i));
         }
 
-        if (sheetSelector.getItemCount() > 0) {
-            sheetSelector.setSelectedIndex(0);
+        // Keeps a sheet the user already picked from the early list
+        UIUtils.replaceComboItems(view.getSheetSelector(), names);
+        if (!names.isEmpty()) {
             updateColumnSelectors();
             updatePreview();
         }
@@ -803,26 +827,9 @@ public class CupsConfigController {
                     centerData.getPostalCode(),
                     centerData.getCity(),
                     centerData.getProvince());
-            // Reload table from saved CSV so it's sorted and IDs are assigned
-            List<CupsCenterMapping> mappings = csvService.loadCupsData();
-            DefaultTableModel model = (DefaultTableModel) view.getCentersTable().getModel();
-            // Clear existing rows
-            model.setRowCount(0);
-            for (CupsCenterMapping m : mappings) {
-                model.addRow(new Object[] {
-                        m.getId(),
-                        m.getCups(),
-                        m.getMarketer(),
-                        m.getCenterName(),
-                        m.getAcronym(),
-                        m.getCampus(),
-                        m.getEnergyType(),
-                        m.getStreet(),
-                        m.getPostalCode(),
-                        m.getCity(),
-                        m.getProvince()
-                });
-            }
+            // Show what the service kept (its order, ids and duplicate
+            // rules) as row events
+            centersModel().commit(csvService.loadCupsData());
 
             clearManualInputFields();
         } catch (Exception e) {
@@ -847,27 +854,19 @@ public class CupsConfigController {
                     JOptionPane.WARNING_MESSAGE);
             return;
         }
-        DefaultTableModel model = (DefaultTableModel) view.getCentersTable().getModel();
-        // Read id from hidden column 0, and shift other columns by +1
-        Long originalId = null;
-        try {
-            Object idObj = model.getValueAt(selectedRow, 0);
-            if (idObj instanceof Number)
-                originalId = ((Number) idObj).longValue();
-            else if (idObj instanceof String)
-                originalId = Long.parseLong((String) idObj);
-        } catch (Exception ignored) {
-        }
-        String originalCups = (String) model.getValueAt(selectedRow, 1);
-        String originalMarketer = (String) model.getValueAt(selectedRow, 2);
-        String originalCenterName = (String) model.getValueAt(selectedRow, 3);
-        String originalAcronym = (String) model.getValueAt(selectedRow, 4);
-        String originalCampus = (String) model.getValueAt(selectedRow, 5);
-        String originalEnergy = (String) model.getValueAt(selectedRow, 6);
-        String originalStreet = (String) model.getValueAt(selectedRow, 7);
-        String originalPostal = (String) model.getValueAt(selectedRow, 8);
-        String originalCity = (String) model.getValueAt(selectedRow, 9);
-        String originalProvince = (String) model.getValueAt(selectedRow, 10);
+        CupsCentersTableModel model = centersModel();
+        int modelRow = view.getCentersTable().convertRowIndexToModel(selectedRow);
+        CupsCenterMapping original = model.getMappingAt(modelRow);
+        String originalCups = original.getCups();
+        String originalMarketer = original.getMarketer();
+        String originalCenterName = original.getCenterName();
+        String originalAcronym = original.getAcronym();
+        String originalCampus = original.getCampus();
+        String originalEnergy = original.getEnergyType();
+        String originalStreet = original.getStreet();
+        String originalPostal = original.getPostalCode();
+        String originalCity = original.getCity();
+        String originalProvince = original.getProvince();
 
         // Build an edit form similar to other modules so user can accept or cancel
         JTextField cupsField = UIUtils.createCompactTextField(160, 25);
@@ -992,11 +991,9 @@ public class CupsConfigController {
             return;
         }
 
-        // Normalize and persist: delete original entry and append new
+        // Normalize and persist: replace the selected mapping in the table's
+        // snapshot, save it and apply the change to the table as row events
         try {
-            // Load existing mappings and update the matching entry in-memory
-            List<CupsCenterMapping> mappings = csvService.loadCupsData();
-
             String normalizedCups = ValidationUtils.normalizeCups(newData.getCups());
             String newAcronym = newData.getCenterAcronym();
             if (newAcronym != null)
@@ -1004,96 +1001,17 @@ public class CupsConfigController {
             EnergyType resolved = resolveEnergyType(newData.getEnergyType());
             String energyToSave = resolved != null ? resolved.name() : newData.getEnergyType();
 
-            boolean updated = false;
-            for (CupsCenterMapping m : mappings) {
-                // Prefer matching by id when available to handle N:N relations correctly
-                if (originalId != null && m.getId() != null) {
-                    if (m.getId().longValue() == originalId.longValue()) {
-                        m.setCups(normalizedCups);
-                        m.setMarketer(newData.getMarketer());
-                        m.setCenterName(newData.getCenterName());
-                        m.setAcronym(newAcronym);
-                        m.setCampus(newData.getCampus());
-                        m.setEnergyType(energyToSave);
-                        m.setStreet(newData.getStreet());
-                        m.setPostalCode(newData.getPostalCode());
-                        m.setCity(newData.getCity());
-                        m.setProvince(newData.getProvince());
-                        updated = true;
-                        break;
-                    } else {
-                        continue;
-                    }
-                }
-                String mc = m.getCups() != null ? m.getCups().trim() : "";
-                String mn = m.getCenterName() != null ? m.getCenterName().trim() : "";
-                if (mc.equalsIgnoreCase(originalCups) && mn.equalsIgnoreCase(originalCenterName)) {
-                    m.setCups(normalizedCups);
-                    m.setMarketer(newData.getMarketer());
-                    m.setCenterName(newData.getCenterName());
-                    m.setAcronym(newAcronym);
-                    m.setCampus(newData.getCampus());
-                    m.setEnergyType(energyToSave);
-                    m.setStreet(newData.getStreet());
-                    m.setPostalCode(newData.getPostalCode());
-                    m.setCity(newData.getCity());
-                    m.setProvince(newData.getProvince());
-                    updated = true;
-                    break;
-                }
-            }
+            // Edit a copy so a failed save leaves the table untouched
+            CupsCenterMapping edited = new CupsCenterMapping(normalizedCups, newData.getMarketer(),
+                    newData.getCenterName(), newAcronym, newData.getCampus(), energyToSave, newData.getStreet(),
+                    newData.getPostalCode(), newData.getCity(), newData.getProvince());
+            edited.setId(original.getId());
+            List<CupsCenterMapping> mappings = model.getMappings();
+            mappings.set(modelRow, edited);
 
-            if (!updated) {
-                // The original mapping was not found. Do not append a new entry when
-                // user intended to edit — this would create duplicates. Reload the
-                // table and inform the user instead.
-                JOptionPane.showMessageDialog(view,
-                        messages.getString("error.edit.notfound") != null ? messages.getString("error.edit.notfound")
-                                : "Original entry not found; edit aborted.",
-                        messages.getString("error.title"),
-                        JOptionPane.WARNING_MESSAGE);
-                // Reload to ensure UI reflects persisted state
-                List<CupsCenterMapping> refreshed = csvService.loadCupsData();
-                model.setRowCount(0);
-                for (CupsCenterMapping m : refreshed) {
-                    model.addRow(new Object[] {
-                            m.getId(),
-                            m.getCups(),
-                            m.getMarketer(),
-                            m.getCenterName(),
-                            m.getAcronym(),
-                            m.getCampus(),
-                            m.getEnergyType(),
-                            m.getStreet(),
-                            m.getPostalCode(),
-                            m.getCity(),
-                            m.getProvince()
-                    });
-                }
-                return;
-            }
-
-            // Persist full mappings atomically
+            // Persist full mappings atomically and show what the service kept
             csvService.saveCupsData(mappings);
-
-            // Reload table from disk
-            List<CupsCenterMapping> refreshed = csvService.loadCupsData();
-            model.setRowCount(0);
-            for (CupsCenterMapping m : refreshed) {
-                model.addRow(new Object[] {
-                        m.getId(),
-                        m.getCups(),
-                        m.getMarketer(),
-                        m.getCenterName(),
-                        m.getAcronym(),
-                        m.getCampus(),
-                        m.getEnergyType(),
-                        m.getStreet(),
-                        m.getPostalCode(),
-                        m.getCity(),
-                        m.getProvince()
-                });
-            }
+            model.commit(csvService.loadCupsData());
         } catch (Exception e) {
             JOptionPane.showMessageDialog(view,
                     messages.getString("error.save.failed"),
@@ -1121,32 +1039,17 @@ public class CupsConfigController {
                 JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            DefaultTableModel model = (DefaultTableModel) view.getCentersTable().getModel();
-
-            String cups = (String) model.getValueAt(selectedRow, 1);
-            String centerName = (String) model.getValueAt(selectedRow, 3);
+            CupsCentersTableModel model = centersModel();
+            CupsCenterMapping selected = model.getMappingAt(view.getCentersTable().convertRowIndexToModel(selectedRow));
+            String cups = selected.getCups();
+            String centerName = selected.getCenterName();
 
             try {
                 // Delete from persisted CSV via service
                 csvService.deleteCupsCenter(cups, centerName);
 
-                // Reload table from disk
-                List<CupsCenterMapping> mappings = csvService.loadCupsData();
-                model.setRowCount(0);
-                for (CupsCenterMapping m : mappings) {
-                    model.addRow(new Object[] {
-                            m.getId(),
-                            m.getCups(),
-                            m.getMarketer(),
-                            m.getCenterName(),
-                            m.getAcronym(),
-                            m.getEnergyType(),
-                            m.getStreet(),
-                            m.getPostalCode(),
-                            m.getCity(),
-                            m.getProvince()
-                    });
-                }
+                // Show the rows the service removed as row events
+                model.commit(csvService.loadCupsData());
             } catch (Exception e) {
                 JOptionPane.showMessageDialog(view,
                         messages.getString("error.save.failed"),
@@ -1213,7 +1116,7 @@ public class CupsConfigController {
      */
     private List<CenterData> extractCentersFromTable() {
         List<CenterData> centers = new ArrayList<>();
-        DefaultTableModel model = (DefaultTableModel) view.getCentersTable().getModel();
+        CupsCentersTableModel model = centersModel();
 
         for (int i = 0; i < model.getRowCount(); i++) {
             centers.add(new CenterData(
@@ -5,10 +5,18 @@ import com.carboncalc.model.Cups;
 import com.carboncalc.model.ElectricityMapping;
 import com.carboncalc.model.enums.EnergyType;
 import com.carboncalc.service.CupsService;
-import com.carboncalc.service.CupsServiceCsv;
+import com.carboncalc.util.MappingPreviewRunner;
 import com.carboncalc.util.UIUtils;
+import com.carboncalc.util.TableColumnSizer;
+import com.carboncalc.util.WorkbookLoader;
+import com.carboncalc.util.InvoiceKeySet;
 import com.carboncalc.util.EnergyTypeUtils;
+import com.carboncalc.util.excel.DataRoot;
 import com.carboncalc.util.excel.ElectricityExcelExporter;
+import com.carboncalc.util.excel.ErpInvoiceReader;
+import com.carboncalc.util.excel.ExportOptions;
+import com.carboncalc.util.excel.ExportResultCache;
+import com.carboncalc.util.excel.MappingPreview;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
@@ -17,7 +25,6 @@ import java.awt.Component;
 import java.awt.Color;
 import java.awt.CardLayout;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -28,13 +35,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Vector;
 import java.util.Set;
-import java.util.HashSet;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.awt.Dimension;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.DataFormatter;
 import org.apache.poi.ss.usermodel.FormulaEvaluator;
 
@@ -68,14 +72,17 @@ public class ElectricityController {
     private Workbook erpWorkbook;
     private File providerFile;
     private File erpFile;
+    private WorkbookLoader providerLoader;
+    private WorkbookLoader erpLoader;
     private int currentYear;
+    private MappingPreviewRunner resultPreview;
     // Path used to persist the currently selected year for the Electricity module
     private static final Path CURRENT_YEAR_FILE = Paths.get("data", "year", "current_year.txt");
 
     public ElectricityController(ResourceBundle messages) {
         this.messages = messages;
         // CSV-backed CUPS service implementation used to populate CUPS dropdowns
-        this.csvDataService = new CupsServiceCsv();
+        this.csvDataService = DataRoot.DEFAULT.cups();
         // Initialize currentYear from persisted file or system year
         int persisted = loadPersistedYear();
         this.currentYear = persisted > 0 ? persisted : Year.now().getValue();
@@ -101,7 +108,7 @@ public class ElectricityController {
         // prefer the passed value; persist and update internal state
         this.currentYear = year;
         persistCurrentYear(year);
-        // nothing else to do right now; view can trigger an export using this year
+        schedulePreview();
     }
 
     /**
@@ -160,27 +167,41 @@ public class ElectricityController {
         fileChooser.setAcceptAllFileFilterUsed(false);
 
         if (fileChooser.showOpenDialog(view) == JFileChooser.APPROVE_OPTION) {
-            try {
-                providerFile = fileChooser.getSelectedFile();
-                FileInputStream fis = new FileInputStream(providerFile);
-                String lname = providerFile.getName().toLowerCase();
-                if (lname.endsWith(".xlsx")) {
-                    providerWorkbook = new XSSFWorkbook(fis);
-                } else if (lname.endsWith(".xls")) {
-                    providerWorkbook = new HSSFWorkbook(fis);
-                } else {
-                    throw new IllegalArgumentException("Unsupported Excel format");
+            final File selected = fileChooser.getSelectedFile();
+            providerFile = selected;
+            providerWorkbook = null;
+            // Use view helper to safely display long filenames
+            view.setProviderFileName(selected.getName());
+            if (providerLoader == null)
+                providerLoader = new WorkbookLoader(view, messages);
+            // Parse off the EDT; the sheet list fills in as soon as the
+            // workbook index is read and the preview once fully loaded
+            providerLoader.load(selected, new WorkbookLoader.Listener() {
+                @Override
+                public void sheetNamesRead(List<String> names) {
+                    UIUtils.replaceComboItems(view.getProviderSheetSelector(), names);
                 }
-                updateProviderSheetList();
-                // Use view helper to safely display long filenames
-                view.setProviderFileName(providerFile.getName());
-                fis.close();
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(view,
-                        messages.getString("error.file.read"),
-                        messages.getString("error.title"),
-                        JOptionPane.ERROR_MESSAGE);
-            }
+
+                @Override
+                public void loaded(Workbook workbook) {
+                    providerWorkbook = workbook;
+                    updateProviderSheetList();
+                }
+
+                @Override
+                public void failed(Exception error) {
+                    resetProviderFile();
+                    JOptionPane.showMessageDialog(view,
+                            messages.getString("error.file.read"),
+                            messages.getString("error.title"),
+                            JOptionPane.ERROR_MESSAGE);
+                }
+
+                @Override
+                public void cancelled() {
+                    resetProviderFile();
+                }
+            });
         }
     }
 
@@ -198,27 +219,41 @@ public class ElectricityController {
         fileChooser.setAcceptAllFileFilterUsed(false);
 
         if (fileChooser.showOpenDialog(view) == JFileChooser.APPROVE_OPTION) {
-            try {
-                erpFile = fileChooser.getSelectedFile();
-                FileInputStream fis = new FileInputStream(erpFile);
-                String lname = erpFile.getName().toLowerCase();
-                if (lname.endsWith(".xlsx")) {
-                    erpWorkbook = new XSSFWorkbook(fis);
-                } else if (lname.endsWith(".xls")) {
-                    erpWorkbook = new HSSFWorkbook(fis);
-                } else {
-                    throw new IllegalArgumentException("Unsupported Excel format");
+            final File selected = fileChooser.getSelectedFile();
+            erpFile = selected;
+            erpWorkbook = null;
+            // Use view helper to safely display long filenames
+            view.setErpFileName(selected.getName());
+            if (erpLoader == null)
+                erpLoader = new WorkbookLoader(view, messages);
+            // Parse off the EDT; the sheet list fills in as soon as the
+            // workbook index is read and the preview once fully loaded
+            erpLoader.load(selected, new WorkbookLoader.Listener() {
+                @Override
+                public void sheetNamesRead(List<String> names) {
+                    UIUtils.replaceComboItems(view.getErpSheetSelector(), names);
                 }
-                updateErpSheetList();
-                // Use view helper to safely display long filenames
-                view.setErpFileName(erpFile.getName());
-                fis.close();
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(view,
-                        messages.getString("error.file.read"),
-                        messages.getString("error.title"),
-                        JOptionPane.ERROR_MESSAGE);
-            }
+
+                @Override
+                public void loaded(Workbook workbook) {
+                    erpWorkbook = workbook;
+                    updateErpSheetList();
+                }
+
+                @Override
+                public void failed(Exception error) {
+                    resetErpFile();
+                    JOptionPane.showMessageDialog(view,
+                            messages.getString("error.file.read"),
+                            messages.getString("error.title"),
+                            JOptionPane.ERROR_MESSAGE);
+                }
+
+                @Override
+                public void cancelled() {
+                    resetErpFile();
+                }
+            });
         }
     }
 
@@ -228,38 +263,51 @@ public class ElectricityController {
      */
 
     private void updateProviderSheetList() {
-        JComboBox<String> sheetSelector = view.getProviderSheetSelector();
-        sheetSelector.removeAllItems();
-
+        List<String> names = new ArrayList<>();
         for (int i = 0; i < providerWorkbook.getNumberOfSheets(); i++) {
-            sheetSelector.addItem(providerWorkbook.getSheetName(i));
+            names.add(providerWorkbook.getSheetName(i));
         }
 
-        if (sheetSelector.getItemCount() > 0) {
-            sheetSelector.setSelectedIndex(0);
+        // Keeps a sheet the user already picked from the early list
+        UIUtils.replaceComboItems(view.getProviderSheetSelector(), names);
+        if (!names.isEmpty()) {
             handleProviderSheetSelection();
         }
     }
 
+    private void resetProviderFile() {
+        providerFile = null;
+        providerWorkbook = null;
+        view.getProviderSheetSelector().removeAllItems();
+        view.setProviderFileName(messages.getString("label.file.none"));
+        resultPreview().clear();
+    }
+
     /**
      * Populate the provider sheet selector combo with sheets from the loaded
      * provider workbook and select the first sheet by default.
      */
 
     private void updateErpSheetList() {
-        JComboBox<String> sheetSelector = view.getErpSheetSelector();
-        sheetSelector.removeAllItems();
-
+        List<String> names = new ArrayList<>();
         for (int i = 0; i < erpWorkbook.getNumberOfSheets(); i++) {
-            sheetSelector.addItem(erpWorkbook.getSheetName(i));
+            names.add(erpWorkbook.getSheetName(i));
         }
 
-        if (sheetSelector.getItemCount() > 0) {
-            sheetSelector.setSelectedIndex(0);
+        // Keeps a sheet the user already picked from the early list
+        UIUtils.replaceComboItems(view.getErpSheetSelector(), names);
+        if (!names.isEmpty()) {
             handleErpSheetSelection();
         }
     }
 
+    private void resetErpFile() {
+        erpFile = null;
+        erpWorkbook = null;
+        view.getErpSheetSelector().removeAllItems();
+        view.setErpFileName(messages.getString("label.file.none"));
+    }
+
     /**
      * Populate the ERP sheet selector combo with sheets from the loaded ERP
      * workbook and select the first sheet by default.
@@ -277,6 +325,7 @@ public class ElectricityController {
         Sheet sheet = providerWorkbook.getSheet(selectedSheet);
         updateProviderColumnSelectors(sheet);
         updatePreviewTable(sheet, true);
+        schedulePreview();
     }
 
     /**
@@ -516,9 +565,7 @@ public class ElectricityController {
         targetTable.setGridColor(Color.LIGHT_GRAY);
 
         // Adjust column widths
-        for (int i = 0; i < targetTable.getColumnCount(); i++) {
-            packColumn(targetTable, i, 3);
-        }
+        TableColumnSizer.packAll(targetTable, 3);
 
         // Setup preview-specific UI helpers (row header and column letters) now that
         // model is set and table is in a scrollpane
@@ -573,34 +620,6 @@ public class ElectricityController {
      * @param isProvider true for provider preview, false for ERP preview
      */
 
-    private void packColumn(JTable table, int colIndex, int margin) {
-        TableColumnModel colModel = table.getColumnModel();
-        TableColumn col = colModel.getColumn(colIndex);
-        int width = 0;
-
-        // Get width of column header
-        TableCellRenderer renderer = col.getHeaderRenderer();
-        if (renderer == null) {
-            renderer = table.getTableHeader().getDefaultRenderer();
-        }
-        Component comp = renderer.getTableCellRendererComponent(table, col.getHeaderValue(), false, false, 0, 0);
-        width = Math.max(width, comp.getPreferredSize().width);
-
-        // Get maximum width of column data
-        for (int r = 0; r < table.getRowCount(); r++) {
-            renderer = table.getCellRenderer(r, colIndex);
-            comp = renderer.getTableCellRendererComponent(table, table.getValueAt(r, colIndex), false, false, r,
-                    colIndex);
-            width = Math.max(width, comp.getPreferredSize().width);
-        }
-
-        width += 2 * margin;
-        width = Math.max(width, 40); // Minimum width
-        int maxColumnWidth = 300; // avoid excessive width that breaks layout
-        width = Math.min(width, maxColumnWidth);
-        col.setPreferredWidth(width);
-    }
-
     /**
      * Measure and set a preferred width for the given table column based on
      * header and cell renderer preferred sizes.
@@ -666,7 +685,36 @@ public class ElectricityController {
      */
 
     public void handleColumnSelection() {
-        // This method will be implemented when we add validation and processing logic
+        schedulePreview();
+    }
+
+    /**
+     * Recompute the sampled result preview once the provider mapping settles.
+     * The ERP invoice filter is not applied; the preview only reflects the
+     * provider sheet and the current year.
+     */
+    private void schedulePreview() {
+        if (view == null)
+            return;
+        resultPreview().schedule(() -> {
+            Object sheetName = view.getProviderSheetSelector().getSelectedItem();
+            if (providerWorkbook == null || sheetName == null)
+                return null;
+            Sheet sheet = providerWorkbook.getSheet(sheetName.toString());
+            ElectricityMapping mapping = view.getSelectedColumns();
+            if (sheet == null || !mapping.isComplete())
+                return null;
+            int year = (Integer) view.getYearSpinner().getValue();
+            Sheet sample = MappingPreview.snapshot(sheet, MappingPreview.DEFAULT_SAMPLE_ROWS);
+            return () -> ElectricityExcelExporter.preview(sample, mapping, year, MappingPreview.DEFAULT_SAMPLE_ROWS);
+        });
+    }
+
+    private MappingPreviewRunner resultPreview() {
+        if (resultPreview == null)
+            resultPreview = new MappingPreviewRunner(view.getResultPreviewTable(), view.getResultPreviewSummary(),
+                    messages);
+        return resultPreview;
     }
 
     /**
@@ -776,76 +824,27 @@ public class ElectricityController {
                 sheetMode = "extended";
             }
 
-            // Build set of valid invoice numbers from ERP file (conformity date >=
-            // selectedYear)
-            Set<String> validInvoices = new HashSet<>();
+            // Build set of valid invoice numbers from ERP file (invoices with a conformity date).
+            // The ERP sheet is streamed; only the two mapped columns are kept.
+            Set<String> validInvoices = new InvoiceKeySet();
             if (erpPath != null && erpSheet != null && view.getErpInvoiceNumberSelector().getSelectedItem() != null) {
-                try (FileInputStream fis = new FileInputStream(erpPath)) {
-                    Workbook erpWb = erpPath.toLowerCase().endsWith(".xlsx") ? new XSSFWorkbook(fis)
-                            : new HSSFWorkbook(fis);
-                    Sheet sheet = erpWb.getSheet(erpSheet);
-                    if (sheet != null) {
-                        DataFormatter df = new DataFormatter();
-                        FormulaEvaluator eval = sheet.getWorkbook().getCreationHelper().createFormulaEvaluator();
-                        int headerRowIndex = -1;
-                        for (int r = sheet.getFirstRowNum(); r <= sheet.getLastRowNum(); r++) {
-                            Row row = sheet.getRow(r);
-                            if (row == null)
-                                continue;
-                            boolean nonEmpty = false;
-                            for (Cell c : row) {
-                                if (!getCellString(c, df, eval).isEmpty()) {
-                                    nonEmpty = true;
-                                    break;
-                                }
-                            }
-                            if (nonEmpty) {
-                                headerRowIndex = r;
-                                break;
-                            }
-                        }
-                        if (headerRowIndex != -1) {
-                            Row headerRow = sheet.getRow(headerRowIndex);
-                            int invoiceCol = -1;
-                            int conformityCol = -1;
-                            String selInvoiceHeader = (String) view.getErpInvoiceNumberSelector().getSelectedItem();
-                            String selConformityHeader = (String) view.getConformityDateSelector().getSelectedItem();
-                            for (Cell c : headerRow) {
-                                String h = getCellString(c, df, eval);
-                                if (selInvoiceHeader != null && selInvoiceHeader.equals(h))
-                                    invoiceCol = c.getColumnIndex();
-                                if (selConformityHeader != null && selConformityHeader.equals(h))
-                                    conformityCol = c.getColumnIndex();
-                            }
-                            if (invoiceCol != -1 && conformityCol != -1) {
-                                for (int r = headerRowIndex + 1; r <= sheet.getLastRowNum(); r++) {
-                                    Row row = sheet.getRow(r);
-                                    if (row == null)
-                                        continue;
-                                    String invoice = getCellString(row.getCell(invoiceCol), df, eval);
-                                    String conformity = getCellString(row.getCell(conformityCol), df, eval);
-                                    if (invoice != null && !invoice.isEmpty()) {
-                                        String confTrim = conformity == null ? "" : conformity.trim();
-                                        // An invoice is considered valid only if ERP provides a conformity date
-                                        // (non-empty)
-                                        if (!confTrim.isEmpty()) {
-                                            validInvoices.add(invoice.trim());
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    erpWb.close();
+                try {
+                    validInvoices = ErpInvoiceReader.read(erpPath, erpSheet,
+                            ErpInvoiceReader.byHeader((String) view.getErpInvoiceNumberSelector().getSelectedItem(),
+                                    (String) view.getConformityDateSelector().getSelectedItem()),
+                            ErpInvoiceReader.conformed());
                 } catch (Exception ex) {
                     // ignore ERP parsing errors and continue with empty filter (means include all)
                 }
             }
 
             // Generate the Excel report with mapping, year context and invoice filter
+            // Unchanged inputs are served from the export result cache
+            ExportOptions exportOptions = new ExportOptions();
+            exportOptions.setResultCache(new ExportResultCache());
             ElectricityExcelExporter.exportElectricityData(
                     outputFile.getAbsolutePath(), providerPath, providerSheet, erpPath, erpSheet, mapping, selectedYear,
-                    sheetMode, validInvoices);
+                    sheetMode, validInvoices, exportOptions);
 
             // Show success message
             JOptionPane.showMessageDialog(view,
@@ -6,6 +6,8 @@ import com.carboncalc.service.EmissionFactorService;
 import com.carboncalc.view.EmissionFactorsPanel;
 import com.carboncalc.view.factors.ElectricityFactorPanel;
 import com.carboncalc.util.UIUtils;
+import com.carboncalc.util.TableColumnSizer;
+import com.carboncalc.util.WorkbookLoader;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
@@ -16,13 +18,10 @@ import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.*;
 import javax.swing.JFormattedTextField;
-import java.awt.Component;
 import java.awt.Color;
 import java.awt.KeyboardFocusManager;
 import java.io.File;
-import java.io.FileInputStream;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.Files;
@@ -675,11 +674,9 @@ public class EmissionFactorsController {
         if (fileChooser.showOpenDialog(view) == JFileChooser.APPROVE_OPTION) {
             try {
                 currentFile = fileChooser.getSelectedFile();
-                FileInputStream fis = new FileInputStream(currentFile);
-                workbook = new XSSFWorkbook(fis);
+                workbook = WorkbookLoader.open(currentFile);
                 updateSheetList();
                 view.getFileLabel().setText(currentFile.getName());
-                fis.close();
             } catch (Exception e) {
                 JOptionPane.showMessageDialog(view,
                         messages.getString("error.file.read"),
@@ -748,9 +745,7 @@ public class EmissionFactorsController {
         previewTable.setGridColor(Color.LIGHT_GRAY);
 
         // Adjust column widths
-        for (int i = 0; i < previewTable.getColumnCount(); i++) {
-            packColumn(previewTable, i, 3);
-        }
+        TableColumnSizer.packAll(previewTable, 3);
     }
 
     private String getCellValueAsString(Cell cell) {
@@ -778,22 +773,6 @@ public class EmissionFactorsController {
         }
     }
 
-    private void packColumn(JTable table, int colIndex, int margin) {
-        TableColumn column = table.getColumnModel().getColumn(colIndex);
-        int width = 0;
-
-        for (int row = 0; row < table.getRowCount(); row++) {
-            TableCellRenderer renderer = table.getCellRenderer(row, colIndex);
-            Component comp = renderer.getTableCellRendererComponent(table,
-                    table.getValueAt(row, colIndex), false, false, row, colIndex);
-            width = Math.max(width, comp.getPreferredSize().width);
-        }
-
-        width += 2 * margin;
-        width = Math.max(width, 40); // Minimum width
-        column.setPreferredWidth(width);
-    }
-
     public void handleApplyAndSave() {
         if (workbook == null || view.getSheetSelector().getSelectedItem() == null) {
             JOptionPane.showMessageDialog(view,
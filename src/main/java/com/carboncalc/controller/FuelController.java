@@ -3,16 +3,16 @@ package com.carboncalc.controller;
 import com.carboncalc.view.FuelPanel;
 import com.carboncalc.model.FuelMapping;
 import com.carboncalc.util.excel.FuelExcelExporter;
+import com.carboncalc.util.excel.ExportOptions;
+import com.carboncalc.util.excel.ExportResultCache;
+import com.carboncalc.util.excel.MappingPreview;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.DefaultTableModel;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -22,6 +22,9 @@ import java.util.*;
 import java.text.MessageFormat;
 
 import com.carboncalc.util.ExcelCsvLoader;
+import com.carboncalc.util.MappingPreviewRunner;
+import com.carboncalc.util.UIUtils;
+import com.carboncalc.util.WorkbookLoader;
 import com.carboncalc.util.CellUtils;
 import com.carboncalc.util.ValidationUtils;
 
@@ -51,7 +54,9 @@ public class FuelController {
     private FuelPanel view;
     private Workbook teamsWorkbook;
     private File teamsFile;
+    private WorkbookLoader teamsLoader;
     private int currentYear;
+    private MappingPreviewRunner resultPreview;
     private static final Path CURRENT_YEAR_FILE = Paths.get("data", "year", "current_year.txt");
 
     public FuelController(ResourceBundle messages) {
@@ -71,6 +76,7 @@ public class FuelController {
     public void handleYearSelection(int year) {
         this.currentYear = year;
         persistCurrentYear(year);
+        schedulePreview();
     }
 
     private int loadPersistedYear() {
@@ -114,44 +120,65 @@ public class FuelController {
         fileChooser.setAcceptAllFileFilterUsed(false);
 
         if (fileChooser.showOpenDialog(view) == JFileChooser.APPROVE_OPTION) {
-            try {
-                teamsFile = fileChooser.getSelectedFile();
-                FileInputStream fis = new FileInputStream(teamsFile);
-                String lname = teamsFile.getName().toLowerCase();
-                if (lname.endsWith(".xlsx")) {
-                    teamsWorkbook = new XSSFWorkbook(fis);
-                } else if (lname.endsWith(".xls")) {
-                    teamsWorkbook = new HSSFWorkbook(fis);
-                } else if (lname.endsWith(".csv")) {
-                    // Simple CSV -> Workbook conversion for preview and mapping
-                    teamsWorkbook = ExcelCsvLoader.loadCsvAsWorkbookFromPath(teamsFile.getAbsolutePath());
-                } else {
-                    throw new IllegalArgumentException("Unsupported file format");
+            final File selected = fileChooser.getSelectedFile();
+            teamsFile = selected;
+            teamsWorkbook = null;
+            view.setTeamsFileName(selected.getName());
+            if (teamsLoader == null)
+                teamsLoader = new WorkbookLoader(view, messages);
+            // Parse off the EDT; the sheet list fills in as soon as the
+            // workbook index is read and the preview once fully loaded
+            teamsLoader.load(selected, file -> file.getName().toLowerCase().endsWith(".csv")
+                            // Simple CSV -> Workbook conversion for preview and mapping
+                            ? ExcelCsvLoader.loadCsvAsWorkbookFromPath(file.getAbsolutePath())
+                            : WorkbookLoader.open(file), new WorkbookLoader.Listener() {
+                @Override
+                public void sheetNamesRead(List<String> names) {
+                    UIUtils.replaceComboItems(view.getTeamsSheetSelector(), names);
                 }
-                updateTeamsSheetsList();
-                view.setTeamsFileName(teamsFile.getName());
-                fis.close();
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(view, messages.getString("error.file.read"),
-                        messages.getString("error.title"), JOptionPane.ERROR_MESSAGE);
-            }
+
+                @Override
+                public void loaded(Workbook workbook) {
+                    teamsWorkbook = workbook;
+                    updateTeamsSheetsList();
+                }
+
+                @Override
+                public void failed(Exception error) {
+                    resetTeamsFile();
+                    JOptionPane.showMessageDialog(view, messages.getString("error.file.read"),
+                            messages.getString("error.title"), JOptionPane.ERROR_MESSAGE);
+                }
+
+                @Override
+                public void cancelled() {
+                    resetTeamsFile();
+                }
+            });
         }
     }
 
     private void updateTeamsSheetsList() {
-        JComboBox<String> sheetSelector = view.getTeamsSheetSelector();
-        sheetSelector.removeAllItems();
-
+        List<String> names = new ArrayList<>();
         for (int i = 0; i < teamsWorkbook.getNumberOfSheets(); i++) {
-            sheetSelector.addItem(teamsWorkbook.getSheetName(i));
+            names.add(teamsWorkbook.getSheetName(i));
         }
 
-        if (sheetSelector.getItemCount() > 0) {
-            sheetSelector.setSelectedIndex(0);
+        // Keeps a sheet the user already picked from the early list
+        UIUtils.replaceComboItems(view.getTeamsSheetSelector(), names);
+        if (!names.isEmpty()) {
             handleTeamsSheetSelection();
         }
     }
 
+    private void resetTeamsFile() {
+        teamsFile = null;
+        teamsWorkbook = null;
+        view.getTeamsSheetSelector().removeAllItems();
+        view.setTeamsFileName(messages.getString("label.file.none"));
+        resultPreview().clear();
+    }
+
     /**
      * Invoked when the user selects a sheet in the Teams workbook. This
      * method populates the mapping combos and refreshes the preview.
@@ -168,6 +195,7 @@ public class FuelController {
         Sheet sheet = teamsWorkbook.getSheet(selectedSheet);
         updateTeamsColumnSelectors(sheet);
         updatePreviewTable(sheet);
+        schedulePreview();
     }
 
     /**
@@ -353,7 +381,38 @@ public class FuelController {
      * disables the Apply button; additional validation may be added here.
      */
     public void handleColumnSelection() {
-        // no-op for now; the view controls Apply button state
+        schedulePreview();
+    }
+
+    /**
+     * Recompute the sampled result preview once the Teams mapping settles.
+     */
+    private void schedulePreview() {
+        if (view == null)
+            return;
+        resultPreview().schedule(() -> {
+            Object sheetName = view.getTeamsSheetSelector().getSelectedItem();
+            if (teamsWorkbook == null || sheetName == null)
+                return null;
+            Sheet sheet = teamsWorkbook.getSheet(sheetName.toString());
+            FuelMapping mapping = view.getSelectedColumns();
+            if (sheet == null || !mapping.isComplete())
+                return null;
+            int year = this.currentYear;
+            String dateLimit = view.getDateLimit();
+            Object completion = view.getCompletionTimeSelector().getSelectedItem();
+            String lastModifiedHeader = completion != null ? completion.toString() : null;
+            Sheet sample = MappingPreview.snapshot(sheet, MappingPreview.DEFAULT_SAMPLE_ROWS);
+            return () -> FuelExcelExporter.preview(sample, mapping, year, dateLimit, lastModifiedHeader,
+                    MappingPreview.DEFAULT_SAMPLE_ROWS);
+        });
+    }
+
+    private MappingPreviewRunner resultPreview() {
+        if (resultPreview == null)
+            resultPreview = new MappingPreviewRunner(view.getResultPreviewTable(), view.getResultPreviewSummary(),
+                    messages);
+        return resultPreview;
     }
 
     /**
@@ -493,9 +552,13 @@ public class FuelController {
             } catch (Exception ignored) {
             }
 
+            // Unchanged inputs are served from the export result cache
+            ExportOptions exportOptions = new ExportOptions();
+            exportOptions.setResultCache(new ExportResultCache());
             FuelExcelExporter.exportFuelData(outputFile.getAbsolutePath(),
                     teamsFile != null ? teamsFile.getAbsolutePath() : null,
-                    selectedSheet, mapping, this.currentYear, sheetMode, view.getDateLimit(), completionHeader);
+                    selectedSheet, mapping, this.currentYear, sheetMode, view.getDateLimit(), completionHeader,
+                    exportOptions);
 
             JOptionPane.showMessageDialog(view, messages.getString("excel.save.success"),
                     messages.getString("success.title"), JOptionPane.INFORMATION_MESSAGE);
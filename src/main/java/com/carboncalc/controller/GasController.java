@@ -5,7 +5,6 @@ import com.carboncalc.service.CupsService;
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.*;
-import java.awt.Component;
 import java.awt.Color;
 import java.awt.CardLayout;
 import java.io.File;
@@ -15,13 +14,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.Files;
 import java.time.Year;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 import java.util.Set;
-import java.util.HashSet;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import java.io.FileInputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Vector;
@@ -29,10 +23,18 @@ import com.carboncalc.model.Cups;
 import com.carboncalc.model.GasMapping;
 import com.carboncalc.model.enums.EnergyType;
 import com.carboncalc.model.factors.GasFactorEntry;
-import com.carboncalc.service.CupsServiceCsv;
-import com.carboncalc.service.GasFactorServiceCsv;
+import com.carboncalc.service.GasFactorService;
+import com.carboncalc.util.MappingPreviewRunner;
 import com.carboncalc.util.UIUtils;
+import com.carboncalc.util.TableColumnSizer;
+import com.carboncalc.util.WorkbookLoader;
+import com.carboncalc.util.InvoiceKeySet;
+import com.carboncalc.util.excel.DataRoot;
 import com.carboncalc.util.excel.GasExcelExporter;
+import com.carboncalc.util.excel.ErpInvoiceReader;
+import com.carboncalc.util.excel.ExportOptions;
+import com.carboncalc.util.excel.ExportResultCache;
+import com.carboncalc.util.excel.MappingPreview;
 import com.carboncalc.util.EnergyTypeUtils;
 
 /**
@@ -65,12 +67,15 @@ public class GasController {
     private Workbook erpWorkbook;
     private File providerFile;
     private File erpFile;
+    private WorkbookLoader providerLoader;
+    private WorkbookLoader erpLoader;
     private int currentYear;
+    private MappingPreviewRunner resultPreview;
     private static final Path CURRENT_YEAR_FILE = Paths.get("data", "year", "current_year.txt");
 
     public GasController(ResourceBundle messages) {
         this.messages = messages;
-        this.csvDataService = new CupsServiceCsv();
+        this.csvDataService = DataRoot.DEFAULT.cups();
         int persisted = loadPersistedYear();
         this.currentYear = persisted > 0 ? persisted : Year.now().getValue();
     }
@@ -122,20 +127,41 @@ public class GasController {
         fileChooser.setAcceptAllFileFilterUsed(false);
 
         if (fileChooser.showOpenDialog(view) == JFileChooser.APPROVE_OPTION) {
-            try {
-                providerFile = fileChooser.getSelectedFile();
-                FileInputStream fis = new FileInputStream(providerFile);
-                providerWorkbook = new XSSFWorkbook(fis);
-                updateProviderSheetList();
-                // Use view helper to set ellipsized display and tooltip
-                view.setProviderFileName(providerFile.getName());
-                fis.close();
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(view,
-                        messages.getString("error.file.read"),
-                        messages.getString("error.title"),
-                        JOptionPane.ERROR_MESSAGE);
-            }
+            final File selected = fileChooser.getSelectedFile();
+            providerFile = selected;
+            providerWorkbook = null;
+            // Use view helper to set ellipsized display and tooltip
+            view.setProviderFileName(selected.getName());
+            if (providerLoader == null)
+                providerLoader = new WorkbookLoader(view, messages);
+            // Parse off the EDT; the sheet list fills in as soon as the
+            // workbook index is read and the preview once fully loaded
+            providerLoader.load(selected, new WorkbookLoader.Listener() {
+                @Override
+                public void sheetNamesRead(List<String> names) {
+                    UIUtils.replaceComboItems(view.getProviderSheetSelector(), names);
+                }
+
+                @Override
+                public void loaded(Workbook workbook) {
+                    providerWorkbook = workbook;
+                    updateProviderSheetList();
+                }
+
+                @Override
+                public void failed(Exception error) {
+                    resetProviderFile();
+                    JOptionPane.showMessageDialog(view,
+                            messages.getString("error.file.read"),
+                            messages.getString("error.title"),
+                            JOptionPane.ERROR_MESSAGE);
+                }
+
+                @Override
+                public void cancelled() {
+                    resetProviderFile();
+                }
+            });
         }
     }
 
@@ -156,6 +182,7 @@ public class GasController {
             populateGasTypesForYear(year);
         } catch (Exception ignored) {
         }
+        schedulePreview();
     }
 
     private int loadPersistedYear() {
@@ -193,7 +220,7 @@ public class GasController {
      */
     public void populateGasTypesForYear(int year) {
         try {
-            GasFactorServiceCsv svc = new GasFactorServiceCsv();
+            GasFactorService svc = DataRoot.DEFAULT.gasFactors();
             List<GasFactorEntry> entries = svc.loadGasFactors(year);
             JComboBox<String> combo = view.getGasTypeSelector();
             if (combo == null)
@@ -210,20 +237,6 @@ public class GasController {
         }
     }
 
-    // Extract a 4-digit year from a string if possible. Returns -1 if none found.
-    private int extractYearFromString(String s) {
-        if (s == null)
-            return -1;
-        Matcher m = Pattern.compile("(19|20)\\d{2}").matcher(s);
-        if (m.find()) {
-            try {
-                return Integer.parseInt(m.group());
-            } catch (NumberFormatException ignored) {
-            }
-        }
-        return -1;
-    }
-
     /**
      * Open a file chooser for selecting the ERP spreadsheet and load it
      * into memory for preview and processing.
@@ -238,51 +251,85 @@ public class GasController {
         fileChooser.setAcceptAllFileFilterUsed(false);
 
         if (fileChooser.showOpenDialog(view) == JFileChooser.APPROVE_OPTION) {
-            try {
-                erpFile = fileChooser.getSelectedFile();
-                FileInputStream fis = new FileInputStream(erpFile);
-                erpWorkbook = new XSSFWorkbook(fis);
-                updateErpSheetList();
-                // Use view helper to set ellipsized display and tooltip
-                view.setErpFileName(erpFile.getName());
-                fis.close();
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(view,
-                        messages.getString("error.file.read"),
-                        messages.getString("error.title"),
-                        JOptionPane.ERROR_MESSAGE);
-            }
+            final File selected = fileChooser.getSelectedFile();
+            erpFile = selected;
+            erpWorkbook = null;
+            // Use view helper to set ellipsized display and tooltip
+            view.setErpFileName(selected.getName());
+            if (erpLoader == null)
+                erpLoader = new WorkbookLoader(view, messages);
+            // Parse off the EDT; the sheet list fills in as soon as the
+            // workbook index is read and the preview once fully loaded
+            erpLoader.load(selected, new WorkbookLoader.Listener() {
+                @Override
+                public void sheetNamesRead(List<String> names) {
+                    UIUtils.replaceComboItems(view.getErpSheetSelector(), names);
+                }
+
+                @Override
+                public void loaded(Workbook workbook) {
+                    erpWorkbook = workbook;
+                    updateErpSheetList();
+                }
+
+                @Override
+                public void failed(Exception error) {
+                    resetErpFile();
+                    JOptionPane.showMessageDialog(view,
+                            messages.getString("error.file.read"),
+                            messages.getString("error.title"),
+                            JOptionPane.ERROR_MESSAGE);
+                }
+
+                @Override
+                public void cancelled() {
+                    resetErpFile();
+                }
+            });
         }
     }
 
     private void updateProviderSheetList() {
-        JComboBox<String> sheetSelector = view.getProviderSheetSelector();
-        sheetSelector.removeAllItems();
-
+        List<String> names = new ArrayList<>();
         for (int i = 0; i < providerWorkbook.getNumberOfSheets(); i++) {
-            sheetSelector.addItem(providerWorkbook.getSheetName(i));
+            names.add(providerWorkbook.getSheetName(i));
         }
 
-        if (sheetSelector.getItemCount() > 0) {
-            sheetSelector.setSelectedIndex(0);
+        // Keeps a sheet the user already picked from the early list
+        UIUtils.replaceComboItems(view.getProviderSheetSelector(), names);
+        if (!names.isEmpty()) {
             handleProviderSheetSelection();
         }
     }
 
-    private void updateErpSheetList() {
-        JComboBox<String> sheetSelector = view.getErpSheetSelector();
-        sheetSelector.removeAllItems();
+    private void resetProviderFile() {
+        providerFile = null;
+        providerWorkbook = null;
+        view.getProviderSheetSelector().removeAllItems();
+        view.setProviderFileName(messages.getString("label.file.none"));
+        resultPreview().clear();
+    }
 
+    private void updateErpSheetList() {
+        List<String> names = new ArrayList<>();
         for (int i = 0; i < erpWorkbook.getNumberOfSheets(); i++) {
-            sheetSelector.addItem(erpWorkbook.getSheetName(i));
+            names.add(erpWorkbook.getSheetName(i));
         }
 
-        if (sheetSelector.getItemCount() > 0) {
-            sheetSelector.setSelectedIndex(0);
+        // Keeps a sheet the user already picked from the early list
+        UIUtils.replaceComboItems(view.getErpSheetSelector(), names);
+        if (!names.isEmpty()) {
             handleErpSheetSelection();
         }
     }
 
+    private void resetErpFile() {
+        erpFile = null;
+        erpWorkbook = null;
+        view.getErpSheetSelector().removeAllItems();
+        view.setErpFileName(messages.getString("label.file.none"));
+    }
+
     /**
      * Update provider column selectors and preview when the provider sheet
      * selection changes in the UI.
@@ -299,6 +346,7 @@ public class GasController {
         Sheet sheet = providerWorkbook.getSheet(selectedSheet);
         updateProviderColumnSelectors(sheet);
         updatePreviewTable(sheet, true);
+        schedulePreview();
     }
 
     /**
@@ -421,34 +469,7 @@ public class GasController {
         targetTable.setGridColor(Color.LIGHT_GRAY);
 
         // Adjust column widths
-        for (int i = 0; i < targetTable.getColumnCount(); i++) {
-            packColumn(targetTable, i, 3);
-        }
-    }
-
-    private void packColumn(JTable table, int colIndex, int margin) {
-        TableColumnModel colModel = table.getColumnModel();
-        TableColumn col = colModel.getColumn(colIndex);
-        int width = 0;
-
-        // Get width of column header
-        TableCellRenderer renderer = col.getHeaderRenderer();
-        if (renderer == null) {
-            renderer = table.getTableHeader().getDefaultRenderer();
-        }
-        Component comp = renderer.getTableCellRendererComponent(table, col.getHeaderValue(), false, false, 0, 0);
-        width = comp.getPreferredSize().width;
-
-        // Get maximum width of column data
-        for (int r = 0; r < table.getRowCount(); r++) {
-            renderer = table.getCellRenderer(r, colIndex);
-            comp = renderer.getTableCellRendererComponent(table, table.getValueAt(r, colIndex), false, false, r,
-                    colIndex);
-            width = Math.max(width, comp.getPreferredSize().width);
-        }
-
-        width += 2 * margin;
-        col.setPreferredWidth(width);
+        TableColumnSizer.packAll(targetTable, 3);
     }
 
     private String convertToExcelColumn(int columnNumber) {
@@ -514,7 +535,36 @@ public class GasController {
     }
 
     public void handleColumnSelection() {
-        // This method will be implemented when we add validation and processing logic
+        schedulePreview();
+    }
+
+    /**
+     * Recompute the sampled result preview once the provider mapping settles.
+     * The ERP invoice filter is not applied; the preview only reflects the
+     * provider sheet, the selected gas type and the current year.
+     */
+    private void schedulePreview() {
+        if (view == null)
+            return;
+        resultPreview().schedule(() -> {
+            Object sheetName = view.getProviderSheetSelector().getSelectedItem();
+            if (providerWorkbook == null || sheetName == null)
+                return null;
+            Sheet sheet = providerWorkbook.getSheet(sheetName.toString());
+            GasMapping mapping = view.getSelectedColumns();
+            if (sheet == null || !mapping.isComplete())
+                return null;
+            int year = (Integer) view.getYearSpinner().getValue();
+            Sheet sample = MappingPreview.snapshot(sheet, MappingPreview.DEFAULT_SAMPLE_ROWS);
+            return () -> GasExcelExporter.preview(sample, mapping, year, MappingPreview.DEFAULT_SAMPLE_ROWS);
+        });
+    }
+
+    private MappingPreviewRunner resultPreview() {
+        if (resultPreview == null)
+            resultPreview = new MappingPreviewRunner(view.getResultPreviewTable(), view.getResultPreviewSummary(),
+                    messages);
+        return resultPreview;
     }
 
     public void handleSave() {
@@ -616,73 +666,27 @@ public class GasController {
                 sheetMode = "extended";
             }
 
-            // Build set of valid invoice numbers from ERP file (conformity date >=
-            // selectedYear)
-            Set<String> validInvoices = new HashSet<>();
+            // Build set of valid invoice numbers from ERP file (conformity date >= selectedYear).
+            // The ERP sheet is streamed; only the two mapped columns are kept.
+            Set<String> validInvoices = new InvoiceKeySet();
             if (erpPath != null && erpSheet != null && view.getErpInvoiceNumberSelector().getSelectedItem() != null) {
-                try (java.io.FileInputStream fis = new java.io.FileInputStream(erpPath)) {
-                    org.apache.poi.ss.usermodel.Workbook erpWb = erpPath.toLowerCase().endsWith(".xlsx")
-                            ? new XSSFWorkbook(fis)
-                            : new org.apache.poi.hssf.usermodel.HSSFWorkbook(fis);
-                    Sheet sheet = erpWb.getSheet(erpSheet);
-                    if (sheet != null) {
-                        // DataFormatter and FormulaEvaluator are not required here since
-                        // getCellValueAsString handles cell formatting. Keep parsing simple.
-                        int headerRowIndex = -1;
-                        for (int r = sheet.getFirstRowNum(); r <= sheet.getLastRowNum(); r++) {
-                            Row row = sheet.getRow(r);
-                            if (row == null)
-                                continue;
-                            boolean nonEmpty = false;
-                            for (Cell c : row) {
-                                if (!getCellValueAsString(c).isEmpty()) {
-                                    nonEmpty = true;
-                                    break;
-                                }
-                            }
-                            if (nonEmpty) {
-                                headerRowIndex = r;
-                                break;
-                            }
-                        }
-                        if (headerRowIndex != -1) {
-                            Row headerRow = sheet.getRow(headerRowIndex);
-                            int invoiceCol = -1;
-                            int conformityCol = -1;
-                            String selInvoiceHeader = (String) view.getErpInvoiceNumberSelector().getSelectedItem();
-                            String selConformityHeader = (String) view.getConformityDateSelector().getSelectedItem();
-                            for (Cell c : headerRow) {
-                                String h = getCellValueAsString(c);
-                                if (selInvoiceHeader != null && selInvoiceHeader.equals(h))
-                                    invoiceCol = c.getColumnIndex();
-                                if (selConformityHeader != null && selConformityHeader.equals(h))
-                                    conformityCol = c.getColumnIndex();
-                            }
-                            if (invoiceCol != -1 && conformityCol != -1) {
-                                for (int r = headerRowIndex + 1; r <= sheet.getLastRowNum(); r++) {
-                                    Row row = sheet.getRow(r);
-                                    if (row == null)
-                                        continue;
-                                    String invoice = getCellValueAsString(row.getCell(invoiceCol));
-                                    String conformity = getCellValueAsString(row.getCell(conformityCol));
-                                    int y = extractYearFromString(conformity);
-                                    if (y >= selectedYear && invoice != null && !invoice.isEmpty()) {
-                                        validInvoices.add(invoice.trim());
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    erpWb.close();
+                try {
+                    validInvoices = ErpInvoiceReader.read(erpPath, erpSheet,
+                            ErpInvoiceReader.byHeader((String) view.getErpInvoiceNumberSelector().getSelectedItem(),
+                                    (String) view.getConformityDateSelector().getSelectedItem()),
+                            ErpInvoiceReader.conformedSince(selectedYear));
                 } catch (Exception ex) {
-                    // ignore ERP parsing errors and continue with empty filter
+                    // ignore ERP parsing errors and continue with empty filter (means include all)
                 }
             }
 
             // Generate the Excel report with mapping, year context and invoice filter
+            // Unchanged inputs are served from the export result cache
+            ExportOptions exportOptions = new ExportOptions();
+            exportOptions.setResultCache(new ExportResultCache());
             GasExcelExporter.exportGasData(
                     outputFile.getAbsolutePath(), providerPath, providerSheet, erpPath, erpSheet, mapping, selectedYear,
-                    sheetMode, validInvoices);
+                    sheetMode, validInvoices, exportOptions);
 
             // Show success message
             JOptionPane.showMessageDialog(view,
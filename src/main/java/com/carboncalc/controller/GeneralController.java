@@ -3,17 +3,13 @@ package com.carboncalc.controller;
 import com.carboncalc.view.GeneralPanel;
 import com.carboncalc.util.ExcelCsvLoader;
 import com.carboncalc.util.CellUtils;
+import com.carboncalc.util.WorkbookLoader;
 
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.apache.poi.openxml4j.util.ZipSecureFile;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.util.ResourceBundle;
 import java.util.Vector;
 import javax.swing.filechooser.FileNameExtensionFilter;
@@ -43,8 +39,12 @@ import com.carboncalc.util.excel.GeneralExcelExporter;
  * </p>
  */
 public class GeneralController {
+    // Data rows shown below the header in the preview table
+    private static final int PREVIEW_ROWS = 50;
+
     private final ResourceBundle messages;
     private GeneralPanel view;
+    private WorkbookLoader previewLoader;
 
     public GeneralController(ResourceBundle messages) {
         this.messages = messages;
@@ -138,14 +138,31 @@ public class GeneralController {
         if (f == null)
             return;
 
-        try {
-            Workbook wb = loadWorkbookFromFile(f);
-            if (wb == null) {
+        if (previewLoader == null)
+            previewLoader = new WorkbookLoader(view, messages);
+        // Parse off the EDT; adding another file meanwhile supersedes this load
+        previewLoader.load(f, this::loadWorkbookFromFile, new WorkbookLoader.Listener() {
+            @Override
+            public void loaded(Workbook wb) {
+                showPreview(wb);
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                ex.printStackTrace();
                 JOptionPane.showMessageDialog(null, messages.getString("error.file.read"),
                         messages.getString("error.title"), JOptionPane.ERROR_MESSAGE);
-                return;
             }
+        });
+    }
 
+    private void showPreview(Workbook wb) {
+        if (wb == null) {
+            JOptionPane.showMessageDialog(null, messages.getString("error.file.read"),
+                    messages.getString("error.title"), JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        try {
             // Use the first sheet for preview
             Sheet sh = wb.getNumberOfSheets() > 0 ? wb.getSheetAt(0) : null;
             if (sh == null) {
@@ -157,15 +174,15 @@ public class GeneralController {
             DefaultTableModel model = buildPreviewModel(sh);
             view.setPreviewModel(model);
             view.setSaveButtonsEnabled(true);
-
-            try {
-                wb.close();
-            } catch (Exception ignored) {
-            }
         } catch (Exception ex) {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(null, messages.getString("error.file.read"),
                     messages.getString("error.title"), JOptionPane.ERROR_MESSAGE);
+        } finally {
+            try {
+                wb.close();
+            } catch (Exception ignored) {
+            }
         }
     }
 
@@ -201,39 +218,12 @@ public class GeneralController {
         if (name.endsWith(".csv")) {
             return ExcelCsvLoader.loadCsvAsWorkbookFromPath(f.getAbsolutePath());
         }
-        // Attempt to open XLSX/XLS workbooks. Apache POI applies a safety
-        // check against 'zip bomb' files; some legitimate spreadsheets with
-        // extreme compression ratios may trigger it. We'll catch that case
-        // and retry with a lowered inflate ratio, but keep the change local
-        // and short-lived. This reduces risk but the caller should still
-        // validate file sources.
-        if (name.endsWith(".xlsx")) {
-            try (FileInputStream fis = new FileInputStream(f)) {
-                return new XSSFWorkbook(fis);
-            } catch (IOException ioex) {
-                // Detect zip-bomb style error and retry with a relaxed threshold
-                String msg = ioex.getMessage() == null ? "" : ioex.getMessage();
-                if (msg.contains("Zip bomb") || msg.contains("exceed the max. ratio")) {
-                    // Lower the minimum inflate ratio temporarily and retry
-                    // NOTE: This weakens Apache POI's zip-bomb protection; only do
-                    // this when necessary and ensure files come from trusted sources.
-                    try {
-                        ZipSecureFile.setMinInflateRatio(0.001);
-                    } catch (Throwable t) {
-                        // ignore if not supported
-                    }
-                    try (FileInputStream fis2 = new FileInputStream(f)) {
-                        return new XSSFWorkbook(fis2);
-                    }
-                }
-                throw ioex;
-            }
-        }
-        if (name.endsWith(".xls")) {
-            try (FileInputStream fis = new FileInputStream(f)) {
-                return new HSSFWorkbook(fis);
-            }
-        }
+        // The preview only needs the first rows: workbooks too large for the
+        // heap are streamed up to them instead of being loaded whole. Highly
+        // compressed files are checked against their zip directory before the
+        // single parse (see WorkbookFootprint).
+        if (name.endsWith(".xlsx") || name.endsWith(".xls"))
+            return WorkbookLoader.openHead(f, PREVIEW_ROWS);
         return null;
     }
 
@@ -261,9 +251,9 @@ public class GeneralController {
         if (headerRowIndex == -1)
             headerRowIndex = sheet.getFirstRowNum();
 
-        // Determine max columns across header + 50 rows
+        // Determine max columns across header + PREVIEW_ROWS rows
         int maxColumns = 0;
-        int scanEnd = Math.min(sheet.getLastRowNum(), headerRowIndex + 50);
+        int scanEnd = Math.min(sheet.getLastRowNum(), headerRowIndex + PREVIEW_ROWS);
         for (int r = headerRowIndex; r <= scanEnd; r++) {
             Row row = sheet.getRow(r);
             if (row == null)
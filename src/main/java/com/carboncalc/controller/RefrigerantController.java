@@ -7,12 +7,12 @@ import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.DefaultTableModel;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import com.carboncalc.util.excel.RefrigerantExcelExporter;
+import com.carboncalc.util.excel.ExportOptions;
+import com.carboncalc.util.excel.ExportResultCache;
+import com.carboncalc.util.excel.MappingPreview;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -22,6 +22,9 @@ import java.text.MessageFormat;
 import java.math.BigDecimal;
 import com.carboncalc.util.ValidationUtils;
 import com.carboncalc.util.ExcelCsvLoader;
+import com.carboncalc.util.MappingPreviewRunner;
+import com.carboncalc.util.UIUtils;
+import com.carboncalc.util.WorkbookLoader;
 import java.io.IOException;
 
 /**
@@ -53,8 +56,10 @@ public class RefrigerantController {
     private RefrigerantPanel view;
     private Workbook teamsWorkbook;
     private File teamsFile;
+    private WorkbookLoader teamsLoader;
     private String teamsLastModifiedHeaderName;
     private int currentYear;
+    private MappingPreviewRunner resultPreview;
     private static final Path CURRENT_YEAR_FILE = Paths.get("data", "year", "current_year.txt");
 
     public RefrigerantController(ResourceBundle messages) {
@@ -86,6 +91,7 @@ public class RefrigerantController {
     public void handleYearSelection(int year) {
         this.currentYear = year;
         persistCurrentYear(year);
+        schedulePreview();
     }
 
     private int loadPersistedYear() {
@@ -129,33 +135,47 @@ public class RefrigerantController {
         fileChooser.setAcceptAllFileFilterUsed(false);
 
         if (fileChooser.showOpenDialog(view) == JFileChooser.APPROVE_OPTION) {
-            try {
-                teamsFile = fileChooser.getSelectedFile();
-                FileInputStream fis = new FileInputStream(teamsFile);
-                String lname = teamsFile.getName().toLowerCase();
-                if (lname.endsWith(".xlsx")) {
-                    teamsWorkbook = new XSSFWorkbook(fis);
-                } else if (lname.endsWith(".xls")) {
-                    teamsWorkbook = new HSSFWorkbook(fis);
-                } else if (lname.endsWith(".csv")) {
-                    teamsWorkbook = loadCsvAsWorkbook(teamsFile);
-                } else {
-                    throw new IllegalArgumentException("Unsupported file format");
+            final File selected = fileChooser.getSelectedFile();
+            teamsFile = selected;
+            teamsWorkbook = null;
+            teamsLastModifiedHeaderName = null;
+            view.setTeamsFileName(selected.getName());
+            if (teamsLoader == null)
+                teamsLoader = new WorkbookLoader(view, messages);
+            // Parse off the EDT; the sheet list fills in as soon as the
+            // workbook index is read and the preview once fully loaded
+            teamsLoader.load(selected, file -> file.getName().toLowerCase().endsWith(".csv") ? loadCsvAsWorkbook(file)
+                            : WorkbookLoader.open(file), new WorkbookLoader.Listener() {
+                @Override
+                public void sheetNamesRead(List<String> names) {
+                    UIUtils.replaceComboItems(view.getTeamsSheetSelector(), names);
                 }
-                updateTeamsSheetsList();
-                // Detect a 'Last Modified' header in the provided workbook and store
-                // the header name to be passed to the exporter.
-                try {
-                    this.teamsLastModifiedHeaderName = detectLastModifiedHeader(teamsWorkbook);
-                } catch (Exception ignored) {
-                    this.teamsLastModifiedHeaderName = null;
+
+                @Override
+                public void loaded(Workbook workbook) {
+                    teamsWorkbook = workbook;
+                    updateTeamsSheetsList();
+                    // Detect a 'Last Modified' header in the provided workbook and store
+                    // the header name to be passed to the exporter.
+                    try {
+                        teamsLastModifiedHeaderName = detectLastModifiedHeader(workbook);
+                    } catch (Exception ignored) {
+                        teamsLastModifiedHeaderName = null;
+                    }
                 }
-                view.setTeamsFileName(teamsFile.getName());
-                fis.close();
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(view, messages.getString("error.file.read"),
-                        messages.getString("error.title"), JOptionPane.ERROR_MESSAGE);
-            }
+
+                @Override
+                public void failed(Exception error) {
+                    resetTeamsFile();
+                    JOptionPane.showMessageDialog(view, messages.getString("error.file.read"),
+                            messages.getString("error.title"), JOptionPane.ERROR_MESSAGE);
+                }
+
+                @Override
+                public void cancelled() {
+                    resetTeamsFile();
+                }
+            });
         }
     }
 
@@ -204,19 +224,27 @@ public class RefrigerantController {
     }
 
     private void updateTeamsSheetsList() {
-        JComboBox<String> sheetSelector = view.getTeamsSheetSelector();
-        sheetSelector.removeAllItems();
-
+        List<String> names = new ArrayList<>();
         for (int i = 0; i < teamsWorkbook.getNumberOfSheets(); i++) {
-            sheetSelector.addItem(teamsWorkbook.getSheetName(i));
+            names.add(teamsWorkbook.getSheetName(i));
         }
 
-        if (sheetSelector.getItemCount() > 0) {
-            sheetSelector.setSelectedIndex(0);
+        // Keeps a sheet the user already picked from the early list
+        UIUtils.replaceComboItems(view.getTeamsSheetSelector(), names);
+        if (!names.isEmpty()) {
             handleTeamsSheetSelection();
         }
     }
 
+    private void resetTeamsFile() {
+        teamsFile = null;
+        teamsWorkbook = null;
+        teamsLastModifiedHeaderName = null;
+        view.getTeamsSheetSelector().removeAllItems();
+        view.setTeamsFileName(messages.getString("label.file.none"));
+        resultPreview().clear();
+    }
+
     /**
      * Invoked when the user selects a sheet from the Teams Forms workbook.
      * This populates the column mapping dropdowns and updates the preview
@@ -234,6 +262,7 @@ public class RefrigerantController {
         Sheet sheet = teamsWorkbook.getSheet(selectedSheet);
         updateTeamsColumnSelectors(sheet);
         updatePreviewTable(sheet);
+        schedulePreview();
     }
 
     private void updateTeamsColumnSelectors(Sheet sheet) {
@@ -420,7 +449,37 @@ public class RefrigerantController {
      * may be implemented here later.
      */
     public void handleColumnSelection() {
-        // no-op for now
+        schedulePreview();
+    }
+
+    /**
+     * Recompute the sampled result preview once the Teams mapping settles.
+     */
+    private void schedulePreview() {
+        if (view == null)
+            return;
+        resultPreview().schedule(() -> {
+            Object sheetName = view.getTeamsSheetSelector().getSelectedItem();
+            if (teamsWorkbook == null || sheetName == null)
+                return null;
+            Sheet sheet = teamsWorkbook.getSheet(sheetName.toString());
+            RefrigerantMapping mapping = view.getSelectedColumns();
+            if (sheet == null || !mapping.isComplete())
+                return null;
+            int year = this.currentYear;
+            String dateLimit = view.getDateLimit();
+            String lastModifiedHeader = this.teamsLastModifiedHeaderName;
+            Sheet sample = MappingPreview.snapshot(sheet, MappingPreview.DEFAULT_SAMPLE_ROWS);
+            return () -> RefrigerantExcelExporter.preview(sample, mapping, year, dateLimit, lastModifiedHeader,
+                    MappingPreview.DEFAULT_SAMPLE_ROWS);
+        });
+    }
+
+    private MappingPreviewRunner resultPreview() {
+        if (resultPreview == null)
+            resultPreview = new MappingPreviewRunner(view.getResultPreviewTable(), view.getResultPreviewSummary(),
+                    messages);
+        return resultPreview;
     }
 
     private boolean validateInputs() {
@@ -558,10 +617,13 @@ public class RefrigerantController {
             }
 
             // Call exporter (reads provider file again internally)
+            // Unchanged inputs are served from the export result cache
+            ExportOptions exportOptions = new ExportOptions();
+            exportOptions.setResultCache(new ExportResultCache());
             RefrigerantExcelExporter.exportRefrigerantData(outputFile.getAbsolutePath(),
                     teamsFile != null ? teamsFile.getAbsolutePath() : null,
                     selectedSheet, mapping, this.currentYear, sheetMode, view.getDateLimit(),
-                    this.teamsLastModifiedHeaderName);
+                    this.teamsLastModifiedHeaderName, exportOptions);
 
             JOptionPane.showMessageDialog(view, messages.getString("excel.save.success"),
                     messages.getString("success.title"), JOptionPane.INFORMATION_MESSAGE);
@@ -415,7 +415,7 @@ public class ElectricityFactorController implements FactorSubController {
     }
 
     public void handleEditTradingCompany() {
-        int selectedRow = panel.getTradingCompaniesTable().getSelectedRow();
+        int selectedRow = UIUtils.selectedModelRow(panel.getTradingCompaniesTable());
         if (selectedRow == -1) {
             JOptionPane.showMessageDialog(panel, messages.getString("error.no.selection"),
                     messages.getString("error.title"), JOptionPane.WARNING_MESSAGE);
@@ -487,7 +487,7 @@ public class ElectricityFactorController implements FactorSubController {
     }
 
     public void handleDeleteTradingCompany() {
-        int selectedRow = panel.getTradingCompaniesTable().getSelectedRow();
+        int selectedRow = UIUtils.selectedModelRow(panel.getTradingCompaniesTable());
         if (selectedRow == -1) {
             JOptionPane.showMessageDialog(panel, messages.getString("error.no.selection"),
                     messages.getString("error.title"), JOptionPane.WARNING_MESSAGE);
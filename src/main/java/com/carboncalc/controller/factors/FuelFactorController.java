@@ -230,7 +230,7 @@ public class FuelFactorController extends GenericFactorController {
 
                 // Edit selected row
                 panel.getEditButton().addActionListener(ev -> {
-                    int sel = panel.getFactorsTable().getSelectedRow();
+                    int sel = UIUtils.selectedModelRow(panel.getFactorsTable());
                     if (sel < 0) {
                         JOptionPane.showMessageDialog(panel, messages.getString("error.no.selection"),
                                 messages.getString("error.title"), JOptionPane.WARNING_MESSAGE);
@@ -333,7 +333,7 @@ public class FuelFactorController extends GenericFactorController {
 
                 // Delete listener
                 panel.getDeleteButton().addActionListener(ev -> {
-                    int sel = panel.getFactorsTable().getSelectedRow();
+                    int sel = UIUtils.selectedModelRow(panel.getFactorsTable());
                     if (sel < 0) {
                         JOptionPane.showMessageDialog(panel, messages.getString("error.no.selection"),
                                 messages.getString("error.title"), JOptionPane.WARNING_MESSAGE);
@@ -6,17 +6,15 @@ import com.carboncalc.service.EmissionFactorService;
 import com.carboncalc.service.RefrigerantFactorService;
 import com.carboncalc.util.ValidationUtils;
 import com.carboncalc.util.UIUtils;
+import com.carboncalc.util.WorkbookLoader;
 import com.carboncalc.view.EmissionFactorsPanel;
 import com.carboncalc.view.factors.RefrigerantFactorPanel;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import java.awt.*;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import com.carboncalc.util.ExcelCsvLoader;
 import java.time.Year;
@@ -160,7 +158,7 @@ public class RefrigerantFactorController extends GenericFactorController {
 
                 // Edit selected PCA row: open dialog, validate and persist
                 panel.getEditButton().addActionListener(ev -> {
-                    int sel = panel.getFactorsTable().getSelectedRow();
+                    int sel = UIUtils.selectedModelRow(panel.getFactorsTable());
                     if (sel < 0) {
                         JOptionPane.showMessageDialog(panel, messages.getString("error.no.selection"),
                                 messages.getString("error.title"), JOptionPane.WARNING_MESSAGE);
@@ -244,7 +242,7 @@ public class RefrigerantFactorController extends GenericFactorController {
 
                 // Delete selected PCA row: confirm and remove from storage and table
                 panel.getDeleteButton().addActionListener(ev -> {
-                    int sel = panel.getFactorsTable().getSelectedRow();
+                    int sel = UIUtils.selectedModelRow(panel.getFactorsTable());
                     if (sel < 0) {
                         JOptionPane.showMessageDialog(panel, messages.getString("error.no.selection"),
                                 messages.getString("error.title"), JOptionPane.WARNING_MESSAGE);
@@ -402,12 +400,9 @@ public class RefrigerantFactorController extends GenericFactorController {
         if (fileChooser.showOpenDialog(panel) == JFileChooser.APPROVE_OPTION) {
             try {
                 importFile = fileChooser.getSelectedFile();
-                FileInputStream fis = new FileInputStream(importFile);
                 String lname = importFile.getName().toLowerCase();
-                if (lname.endsWith(".xlsx")) {
-                    importWorkbook = new XSSFWorkbook(fis);
-                } else if (lname.endsWith(".xls")) {
-                    importWorkbook = new HSSFWorkbook(fis);
+                if (lname.endsWith(".xlsx") || lname.endsWith(".xls")) {
+                    importWorkbook = WorkbookLoader.open(importFile);
                 } else if (lname.endsWith(".csv")) {
                     importWorkbook = loadCsvAsWorkbook(importFile);
                 } else {
@@ -419,7 +414,6 @@ public class RefrigerantFactorController extends GenericFactorController {
                 } catch (Exception ignored) {
                     this.importLastModifiedHeaderName = null;
                 }
-                fis.close();
             } catch (Exception e) {
                 JOptionPane.showMessageDialog(panel, messages.getString("error.file.read"),
                         messages.getString("error.title"), JOptionPane.ERROR_MESSAGE);
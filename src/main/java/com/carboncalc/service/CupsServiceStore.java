@@ -0,0 +1,157 @@
+package com.carboncalc.service;
+
+import com.carboncalc.model.Cups;
+import com.carboncalc.model.CupsCenterMapping;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * CupsServiceStore
+ *
+ * <p>
+ * {@link CupsService} backed by the {@link ReferenceStore#CUPS_CENTERS}
+ * table of a {@link ReferenceStore}. Adding or deleting one mapping appends
+ * a single record instead of rewriting {@code cups_center/cups.csv}.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>Mappings are keyed by (CUPS, center) compared case-insensitively, so
+ * an append never creates a duplicate of an existing pair.</li>
+ * <li>IDs are not stored: loaders number the mappings 1..n in center-name
+ * order, which is the order and numbering {@link CupsServiceCsv} writes.</li>
+ * <li>{@link #loadCups()} is the CUPS projection of the mappings, with the
+ * marketer as emission entity. {@link #saveCups(List)} adds a row without a
+ * center for every CUPS not mapped yet instead of replacing the
+ * mappings.</li>
+ * <li>{@link #findByCups(String)} and {@link #findByCenter(String)} read
+ * the store indexes without loading the whole table.</li>
+ * </ul>
+ * </p>
+ */
+public class CupsServiceStore implements CupsService {
+
+    private final ReferenceStore store;
+
+    public CupsServiceStore(ReferenceStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public List<Cups> loadCups() throws IOException {
+        List<Cups> out = new ArrayList<>();
+        for (CupsCenterMapping m : loadCupsData()) {
+            Cups c = new Cups(m.getCups(), m.getMarketer(), m.getEnergyType());
+            c.setId(m.getId());
+            out.add(c);
+        }
+        return out;
+    }
+
+    @Override
+    public void saveCups(List<Cups> cupsList) throws IOException {
+        Collections.sort(cupsList);
+        try (ReferenceStore.Transaction tx = store.begin()) {
+            for (Cups c : cupsList) {
+                if (c.getCups() != null && store.lookup(ReferenceStore.CUPS_CENTERS, ReferenceStore.BY_CUPS,
+                        c.getCups()).isEmpty())
+                    put(tx, new CupsCenterMapping(c.getCups(), c.getEmissionEntity(), "", "", "", c.getEnergyType(),
+                            "", "", "", ""));
+            }
+            tx.commit();
+        }
+    }
+
+    @Override
+    public void saveCups(String cups, String emissionEntity, String energyType) throws IOException {
+        List<Cups> one = new ArrayList<>();
+        one.add(new Cups(cups, emissionEntity, energyType));
+        saveCups(one);
+    }
+
+    @Override
+    public List<CupsCenterMapping> loadCupsData() throws IOException {
+        return mappings(store.ordered(ReferenceStore.CUPS_CENTERS, ReferenceStore.BY_CENTER), true);
+    }
+
+    /**
+     * Replace every mapping with {@code mappings} in one transaction. Like
+     * {@link CupsServiceCsv}, the list is sorted by center and renumbered.
+     */
+    @Override
+    public void saveCupsData(List<CupsCenterMapping> mappings) throws IOException {
+        Collections.sort(mappings);
+        long id = 1;
+        for (CupsCenterMapping m : mappings)
+            m.setId(id++);
+        try (ReferenceStore.Transaction tx = store.begin()) {
+            tx.clear(ReferenceStore.CUPS_CENTERS);
+            for (CupsCenterMapping m : mappings)
+                put(tx, m);
+            tx.commit();
+        }
+    }
+
+    @Override
+    public void saveCupsData(String cups, String centerName) throws IOException {
+        appendCupsCenter(cups, "", centerName, "", "", "", "", "", "", "");
+    }
+
+    @Override
+    public void appendCupsCenter(String cups, String marketer, String centerName, String acronym, String campus,
+            String energyType, String street, String postalCode,
+            String city, String province) throws IOException {
+        if (store.get(ReferenceStore.CUPS_CENTERS, ReferenceStore.key(cups, centerName)) != null)
+            return;
+        try (ReferenceStore.Transaction tx = store.begin()) {
+            put(tx, new CupsCenterMapping(cups, marketer, centerName, acronym, campus, energyType, street,
+                    postalCode, city, province));
+            tx.commit();
+        }
+    }
+
+    @Override
+    public void deleteCupsCenter(String cups, String centerName) throws IOException {
+        String key = ReferenceStore.key(cups, centerName);
+        if (store.get(ReferenceStore.CUPS_CENTERS, key) == null)
+            return;
+        try (ReferenceStore.Transaction tx = store.begin()) {
+            tx.delete(ReferenceStore.CUPS_CENTERS, key);
+            tx.commit();
+        }
+    }
+
+    /** @return mappings of {@code cups} (case-insensitive), without IDs */
+    public List<CupsCenterMapping> findByCups(String cups) {
+        return mappings(store.lookup(ReferenceStore.CUPS_CENTERS, ReferenceStore.BY_CUPS, cups), false);
+    }
+
+    /** @return mappings of {@code centerName} (case-insensitive), without IDs */
+    public List<CupsCenterMapping> findByCenter(String centerName) {
+        return mappings(store.lookup(ReferenceStore.CUPS_CENTERS, ReferenceStore.BY_CENTER, centerName), false);
+    }
+
+    /** Add {@code m} to {@code tx}, replacing the mapping of the same pair. */
+    static void put(ReferenceStore.Transaction tx, CupsCenterMapping m) {
+        tx.put(ReferenceStore.CUPS_CENTERS, ReferenceStore.key(m.getCups(), m.getCenterName()), m.getCups(),
+                m.getMarketer(), m.getCenterName(), m.getAcronym(), m.getCampus(), m.getEnergyType(),
+                m.getStreet(), m.getPostalCode(), m.getCity(), m.getProvince());
+    }
+
+    private static List<CupsCenterMapping> mappings(List<String[]> rows, boolean numbered) {
+        List<CupsCenterMapping> out = new ArrayList<>(rows.size());
+        long id = 1;
+        for (String[] r : rows) {
+            CupsCenterMapping m = new CupsCenterMapping(r[0], r[1], r[2], r[3], r[4], r[5], r[6], r[7], r[8],
+                    r[9]);
+            if (numbered)
+                m.setId(id++);
+            out.add(m);
+        }
+        return out;
+    }
+}
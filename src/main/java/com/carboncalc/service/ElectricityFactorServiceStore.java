@@ -0,0 +1,94 @@
+package com.carboncalc.service;
+
+import com.carboncalc.model.factors.ElectricityGeneralFactors;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * ElectricityFactorServiceStore
+ *
+ * <p>
+ * {@link ElectricityFactorService} backed by a {@link ReferenceStore}: the
+ * general factors of a year are the single
+ * {@link ReferenceStore#ELECTRICITY_GENERAL} row and the trading companies
+ * the {@link ReferenceStore#ELECTRICITY} rows of that year.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>{@link #saveFactors} replaces the general row and every company of
+ * the year in one transaction, where the CSV service replaces two files one
+ * after the other.</li>
+ * <li>Companies load sorted by name, case-insensitively, as the CSV service
+ * writes them.</li>
+ * <li>{@link #getYearDirectory(int)} is the store directory: every year is
+ * written there.</li>
+ * </ul>
+ * </p>
+ */
+public class ElectricityFactorServiceStore implements ElectricityFactorService {
+
+    private final ReferenceStore store;
+
+    public ElectricityFactorServiceStore(ReferenceStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public ElectricityGeneralFactors loadFactors(int year) throws IOException {
+        ElectricityGeneralFactors factors = new ElectricityGeneralFactors();
+        String[] general = store.get(ReferenceStore.FACTORS,
+                ReferenceStore.factorKey(ReferenceStore.ELECTRICITY_GENERAL, year, ""));
+        if (general != null) {
+            factors.setMixSinGdo(ReferenceStore.number(general[0]));
+            factors.setGdoRenovable(ReferenceStore.number(general[1]));
+            factors.setGdoCogeneracionAltaEficiencia(ReferenceStore.number(general[2]));
+            factors.setLocationBasedFactor(ReferenceStore.number(general[3]));
+        }
+        for (String[] r : store.scan(ReferenceStore.FACTORS,
+                ReferenceStore.prefix(ReferenceStore.ELECTRICITY, String.valueOf(year))))
+            factors.addTradingCompany(
+                    new ElectricityGeneralFactors.TradingCompany(r[0], ReferenceStore.number(r[1]), r[2]));
+        return factors;
+    }
+
+    @Override
+    public void saveFactors(ElectricityGeneralFactors factors, int year) throws IOException {
+        try (ReferenceStore.Transaction tx = store.begin()) {
+            put(tx, factors, year);
+            tx.commit();
+        }
+    }
+
+    @Override
+    public Path getYearDirectory(int year) {
+        return store.getDir();
+    }
+
+    /** Replace the general factors and companies of {@code year}. */
+    private void put(ReferenceStore.Transaction tx, ElectricityGeneralFactors factors, int year) {
+        putGeneral(tx, factors, year);
+        for (String key : store.keys(ReferenceStore.FACTORS,
+                ReferenceStore.prefix(ReferenceStore.ELECTRICITY, String.valueOf(year))))
+            tx.delete(ReferenceStore.FACTORS, key);
+        for (ElectricityGeneralFactors.TradingCompany c : factors.getTradingCompanies())
+            putCompany(tx, year, c.getName(), c.getEmissionFactor(), c.getGdoType(), null);
+    }
+
+    /** Add or replace the general factors of {@code year}. */
+    static void putGeneral(ReferenceStore.Transaction tx, ElectricityGeneralFactors factors, int year) {
+        tx.put(ReferenceStore.FACTORS, ReferenceStore.factorKey(ReferenceStore.ELECTRICITY_GENERAL, year, ""),
+                String.valueOf(factors.getMixSinGdo()), String.valueOf(factors.getGdoRenovable()),
+                String.valueOf(factors.getGdoCogeneracionAltaEficiencia()),
+                String.valueOf(factors.getLocationBasedFactor()));
+    }
+
+    /** Add or replace one trading company of {@code year}. */
+    static void putCompany(ReferenceStore.Transaction tx, int year, String name, double factor, String gdoType,
+            String unit) {
+        tx.put(ReferenceStore.FACTORS, ReferenceStore.factorKey(ReferenceStore.ELECTRICITY, year, name),
+                name == null ? "" : name, String.valueOf(factor), gdoType == null ? "" : gdoType, unit);
+    }
+}
@@ -0,0 +1,196 @@
+package com.carboncalc.service;
+
+import com.carboncalc.model.factors.ElectricityEmissionFactor;
+import com.carboncalc.model.factors.EmissionFactor;
+import com.carboncalc.model.factors.FuelEmissionFactor;
+import com.carboncalc.model.factors.GasEmissionFactor;
+import com.carboncalc.model.factors.RefrigerantEmissionFactor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * EmissionFactorServiceStore
+ *
+ * <p>
+ * {@link EmissionFactorService} backed by a {@link ReferenceStore}. Factors
+ * of type {@code ELECTRICITY} are the trading-company rows shared with
+ * {@link ElectricityFactorServiceStore}, as both CSV services share
+ * {@code electricity_factors.csv}; other types are the
+ * {@code EMISSION_<type>} rows.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>Entities are matched like {@link EmissionFactorServiceCsv} deletes
+ * them: NFKC-normalized, trimmed and case-insensitive.</li>
+ * <li>Saving an electricity factor keeps the GdO type of the company.</li>
+ * <li>{@link #exportToCSV(String, int)} writes the rows of a type and year
+ * to the CSV layout under the factors directory given at
+ * construction.</li>
+ * <li>Years need no directory: {@link #createYearDirectory(int)} always
+ * succeeds and {@link #getAvailableYears(String)} lists the years holding
+ * rows of the type.</li>
+ * </ul>
+ * </p>
+ */
+public class EmissionFactorServiceStore implements EmissionFactorService {
+
+    private final ReferenceStore store;
+    private final Path csvDir;
+    private Integer defaultYear;
+
+    /**
+     * @param csvDir factors directory {@link #exportToCSV} writes to (the
+     *               {@code emission_factors} folder of the CSV layout)
+     */
+    public EmissionFactorServiceStore(ReferenceStore store, Path csvDir) {
+        this.store = store;
+        this.csvDir = csvDir != null ? csvDir : Paths.get("data", "emission_factors");
+        this.defaultYear = Year.now().getValue();
+    }
+
+    @Override
+    public void saveEmissionFactor(EmissionFactor factor) {
+        try (ReferenceStore.Transaction tx = store.begin()) {
+            put(tx, store, factor, factor.getYear());
+            tx.commit();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public List<? extends EmissionFactor> loadEmissionFactors(String type, int year) {
+        List<EmissionFactor> result = new ArrayList<>();
+        String prefix = ReferenceStore.prefix(kind(type), String.valueOf(year));
+        for (String[] r : store.scan(ReferenceStore.FACTORS, prefix)) {
+            EmissionFactor ef = createEmissionFactor(type);
+            String entity = r[0];
+            double base = ReferenceStore.number(r[1]);
+            if (ef instanceof ElectricityEmissionFactor) {
+                ElectricityEmissionFactor e = (ElectricityEmissionFactor) ef;
+                e.setEntity(entity);
+                e.setYear(year);
+                e.setBaseFactor(base);
+            } else if (ef instanceof GasEmissionFactor) {
+                GasEmissionFactor e = (GasEmissionFactor) ef;
+                e.setEntity(entity);
+                e.setYear(year);
+                e.setBaseFactor(base);
+            } else if (ef instanceof FuelEmissionFactor) {
+                FuelEmissionFactor e = (FuelEmissionFactor) ef;
+                e.setEntity(entity);
+                e.setYear(year);
+                e.setBaseFactor(base);
+                if (r.length > 3 && r[3] != null)
+                    e.setVehicleType(r[3]);
+            } else if (ef instanceof RefrigerantEmissionFactor) {
+                RefrigerantEmissionFactor e = (RefrigerantEmissionFactor) ef;
+                e.setEntity(entity);
+                e.setYear(year);
+                e.setBaseFactor(base);
+            }
+            result.add(ef);
+        }
+        return result;
+    }
+
+    @Override
+    public void exportToCSV(String type, int year) {
+        try {
+            ReferenceStoreMigrator.exportFactors(store, kind(type), year, csvDir);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void deleteEmissionFactor(String type, int year, String entity) {
+        String key = ReferenceStore.factorKey(kind(type), year, entity);
+        if (store.get(ReferenceStore.FACTORS, key) == null)
+            return;
+        try (ReferenceStore.Transaction tx = store.begin()) {
+            tx.delete(ReferenceStore.FACTORS, key);
+            tx.commit();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public Optional<Integer> getDefaultYear() {
+        return Optional.ofNullable(defaultYear);
+    }
+
+    @Override
+    public void setDefaultYear(int year) {
+        if (year > Year.now().getValue()) {
+            throw new IllegalArgumentException("Cannot set future year as default");
+        }
+        this.defaultYear = year;
+    }
+
+    @Override
+    public boolean createYearDirectory(int year) {
+        return true;
+    }
+
+    @Override
+    public List<Integer> getAvailableYears(String type) {
+        TreeSet<Integer> years = new TreeSet<>(Collections.reverseOrder());
+        for (String key : store.keys(ReferenceStore.FACTORS, ReferenceStore.prefix(kind(type)))) {
+            try {
+                years.add(Integer.parseInt(ReferenceStore.parts(key)[1]));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return new ArrayList<>(years);
+    }
+
+    /** @return store kind of the factors of {@code type} */
+    static String kind(String type) {
+        String t = type == null ? "" : type.trim().toUpperCase(Locale.ROOT);
+        return ReferenceStore.ELECTRICITY.equals(t) ? t : ReferenceStore.EMISSION + t;
+    }
+
+    /** Add or replace {@code factor} as a factor of {@code year}. */
+    static void put(ReferenceStore.Transaction tx, ReferenceStore store, EmissionFactor factor, int year) {
+        String entity = factor.getEntity() == null ? "" : factor.getEntity();
+        String kind = kind(factor.getType());
+        if (ReferenceStore.ELECTRICITY.equals(kind)) {
+            String[] company = store.get(ReferenceStore.FACTORS, ReferenceStore.factorKey(kind, year, entity));
+            ElectricityFactorServiceStore.putCompany(tx, year, entity, factor.getBaseFactor(),
+                    company != null ? company[2] : "", factor.getUnit());
+            return;
+        }
+        String vehicle = factor instanceof FuelEmissionFactor ? ((FuelEmissionFactor) factor).getVehicleType() : null;
+        tx.put(ReferenceStore.FACTORS, ReferenceStore.factorKey(kind, year, entity), entity,
+                String.valueOf(factor.getBaseFactor()), factor.getUnit(), vehicle);
+    }
+
+    // Helper method to create EmissionFactor based on type
+    private EmissionFactor createEmissionFactor(String type) {
+        switch (type.toUpperCase()) {
+            case "ELECTRICITY":
+                return new ElectricityEmissionFactor();
+            case "GAS":
+                return new GasEmissionFactor();
+            case "FUEL":
+                return new FuelEmissionFactor();
+            case "REFRIGERANT":
+                return new RefrigerantEmissionFactor();
+            default:
+                throw new IllegalArgumentException("Unknown emission factor type: " + type);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.carboncalc.service;
+
+import com.carboncalc.model.factors.FuelEmissionFactor;
+
+import java.io.IOException;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * FuelFactorServiceStore
+ *
+ * <p>
+ * {@link FuelFactorService} backed by the {@link ReferenceStore#FUEL} rows
+ * of a {@link ReferenceStore}, one per fuel type, vehicle type and year.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>A factor's entity is {@code "fuel (vehicle)"}, or the fuel type alone
+ * without a vehicle, as {@link FuelFactorServiceCsv} builds it; deletes
+ * match it case-insensitively.</li>
+ * <li>When the vehicle type is empty it is taken from the parentheses of
+ * the entity, as the CSV service does.</li>
+ * </ul>
+ * </p>
+ */
+public class FuelFactorServiceStore implements FuelFactorService {
+
+    private final ReferenceStore store;
+    private Integer defaultYear;
+
+    public FuelFactorServiceStore(ReferenceStore store) {
+        this.store = store;
+        this.defaultYear = Year.now().getValue();
+    }
+
+    @Override
+    public void saveFuelFactor(FuelEmissionFactor entry) {
+        try (ReferenceStore.Transaction tx = store.begin()) {
+            put(tx, entry, entry.getYear() <= 0 ? defaultYear : entry.getYear());
+            tx.commit();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public List<FuelEmissionFactor> loadFuelFactors(int year) {
+        List<FuelEmissionFactor> out = new ArrayList<>();
+        for (String[] r : store.scan(ReferenceStore.FACTORS,
+                ReferenceStore.prefix(ReferenceStore.FUEL, String.valueOf(year)))) {
+            FuelEmissionFactor f = new FuelEmissionFactor(entity(r[0], r[1]), year, ReferenceStore.number(r[2]),
+                    r[0], r[1]);
+            f.setPricePerUnit(ReferenceStore.number(r[3]));
+            out.add(f);
+        }
+        return out;
+    }
+
+    @Override
+    public void deleteFuelFactor(int year, String entity) {
+        String key = ReferenceStore.factorKey(ReferenceStore.FUEL, year, entity);
+        if (store.get(ReferenceStore.FACTORS, key) == null)
+            return;
+        try (ReferenceStore.Transaction tx = store.begin()) {
+            tx.delete(ReferenceStore.FACTORS, key);
+            tx.commit();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public Optional<Integer> getDefaultYear() {
+        return Optional.ofNullable(defaultYear);
+    }
+
+    @Override
+    public void setDefaultYear(int year) {
+        this.defaultYear = year;
+    }
+
+    /** Add or replace {@code entry} as a fuel factor of {@code year}. */
+    static void put(ReferenceStore.Transaction tx, FuelEmissionFactor entry, int year) {
+        String fuelType = entry.getFuelType() == null ? "" : entry.getFuelType().trim();
+        String vehicle = entry.getVehicleType() == null ? "" : entry.getVehicleType().trim();
+        if (vehicle.isEmpty() && entry.getEntity() != null) {
+            String entity = entry.getEntity();
+            int open = entity.indexOf('(');
+            int close = entity.indexOf(')');
+            if (open >= 0 && close > open)
+                vehicle = entity.substring(open + 1, close).trim();
+        }
+        String key = ReferenceStore.factorKey(ReferenceStore.FUEL, year, entity(fuelType, vehicle));
+        tx.put(ReferenceStore.FACTORS, key, fuelType, vehicle, String.valueOf(entry.getBaseFactor()),
+                String.valueOf(entry.getPricePerUnit()));
+    }
+
+    private static String entity(String fuelType, String vehicle) {
+        return vehicle == null || vehicle.isBlank() ? fuelType : fuelType + " (" + vehicle + ")";
+    }
+}
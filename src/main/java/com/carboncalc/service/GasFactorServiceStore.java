@@ -0,0 +1,90 @@
+package com.carboncalc.service;
+
+import com.carboncalc.model.factors.GasFactorEntry;
+
+import java.io.IOException;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * GasFactorServiceStore
+ *
+ * <p>
+ * {@link GasFactorService} backed by the {@link ReferenceStore#GAS} rows of
+ * a {@link ReferenceStore}, one per gas type and year.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>Gas types are stored upper-cased, as {@link GasFactorServiceCsv}
+ * writes them, and load in alphabetical order.</li>
+ * <li>Factors are stored with full precision instead of the six decimals
+ * of the CSV layout.</li>
+ * </ul>
+ * </p>
+ */
+public class GasFactorServiceStore implements GasFactorService {
+
+    private final ReferenceStore store;
+    private Integer defaultYear;
+
+    public GasFactorServiceStore(ReferenceStore store) {
+        this.store = store;
+        this.defaultYear = Year.now().getValue();
+    }
+
+    @Override
+    public void saveGasFactor(GasFactorEntry entry) {
+        try (ReferenceStore.Transaction tx = store.begin()) {
+            put(tx, entry, entry.getYear() <= 0 ? defaultYear : entry.getYear());
+            tx.commit();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public List<GasFactorEntry> loadGasFactors(int year) {
+        List<GasFactorEntry> out = new ArrayList<>();
+        for (String[] r : store.scan(ReferenceStore.FACTORS,
+                ReferenceStore.prefix(ReferenceStore.GAS, String.valueOf(year))))
+            out.add(new GasFactorEntry(r[0], r[0], year, ReferenceStore.number(r[1]), ReferenceStore.number(r[2]),
+                    r[3] == null ? "" : r[3]));
+        return out;
+    }
+
+    @Override
+    public void deleteGasFactor(int year, String entity) {
+        String key = ReferenceStore.factorKey(ReferenceStore.GAS, year, entity);
+        if (store.get(ReferenceStore.FACTORS, key) == null)
+            return;
+        try (ReferenceStore.Transaction tx = store.begin()) {
+            tx.delete(ReferenceStore.FACTORS, key);
+            tx.commit();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public Optional<Integer> getDefaultYear() {
+        return Optional.ofNullable(defaultYear);
+    }
+
+    @Override
+    public void setDefaultYear(int year) {
+        this.defaultYear = year;
+    }
+
+    /** Add or replace {@code entry} as a gas factor of {@code year}. */
+    static void put(ReferenceStore.Transaction tx, GasFactorEntry entry, int year) {
+        String gas = entry.getGasType() == null ? "" : entry.getGasType().trim().toUpperCase(Locale.ROOT);
+        tx.put(ReferenceStore.FACTORS, ReferenceStore.factorKey(ReferenceStore.GAS, year, gas), gas,
+                String.valueOf(entry.getMarketFactor()), String.valueOf(entry.getLocationFactor()),
+                entry.getUnit());
+    }
+}
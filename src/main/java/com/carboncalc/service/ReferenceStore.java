@@ -0,0 +1,771 @@
+package com.carboncalc.service;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * ReferenceStore
+ *
+ * <p>
+ * Embedded, file-based store for the reference data the CSV services keep
+ * under {@code data/}: the CUPS-to-center inventory and the factor rows of
+ * every module and year. A change is appended to a single log,
+ * {@code <dir>/reference.log}, instead of rewriting a whole CSV file, and
+ * the live rows are kept in sorted in-memory tables rebuilt from the log
+ * when the store is opened and brought up to date with the records other
+ * processes append.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>Every {@link Transaction} is appended as one checksummed record and
+ * forced to disk before {@link Transaction#commit()} returns, so a batch of
+ * writes is applied entirely or not at all. A record torn by a crash fails
+ * its checksum and is cut off, with anything after it, when the store is
+ * next opened.</li>
+ * <li>Rows are string tuples under a composite key built by
+ * {@link #key(String...)}: trimmed, NFKC-normalized, upper-cased parts.
+ * Tables are sorted by key, so the factor table keyed by (kind, year,
+ * entity) answers per-kind and per-year reads with range scans.</li>
+ * <li>{@link #CUPS_CENTERS} is also indexed on the CUPS code
+ * ({@link #BY_CUPS}) and the center name ({@link #BY_CENTER}). Indexes live
+ * in memory only and are rebuilt from the rows on open.</li>
+ * <li>Once the log holds mostly overwritten rows it is compacted: the live
+ * rows are written to a new log that atomically replaces the old one.</li>
+ * <li>{@link #open(Path)} returns one shared instance per directory and
+ * all methods are thread-safe. Several processes (the application, the
+ * batch runner, the watch daemon, the job server) may open the same
+ * directory: each operation holds a lock on {@code store.lock} only while
+ * it runs, shared for reads and exclusive for commits and compactions, and
+ * first applies the records appended since the previous one. A compaction
+ * bumps a generation number kept in the lock file, so the other processes
+ * reload the new log instead of reading past its end.</li>
+ * <li>Reads that cannot reach the log throw
+ * {@link UncheckedIOException}.</li>
+ * </ul>
+ * </p>
+ */
+public final class ReferenceStore implements Closeable {
+
+    /** Log file name inside the store directory. */
+    public static final String LOG_FILE = "reference.log";
+
+    /**
+     * CUPS-to-center rows keyed by (CUPS, center): cups, marketer,
+     * centerName, acronym, campus, energyType, street, postalCode, city,
+     * province.
+     */
+    public static final String CUPS_CENTERS = "cups_center";
+    /** Index of {@link #CUPS_CENTERS} on the CUPS code. */
+    public static final String BY_CUPS = "cups";
+    /** Index of {@link #CUPS_CENTERS} on the center name. */
+    public static final String BY_CENTER = "center";
+    /**
+     * Factor rows keyed by (kind, year, entity); one kind per CSV file of a
+     * year folder.
+     */
+    public static final String FACTORS = "factors";
+
+    /** {@code electricity_general_factors.csv}: a single row per year. */
+    public static final String ELECTRICITY_GENERAL = "ELECTRICITY_GENERAL";
+    /** {@code electricity_factors.csv}: trading companies. */
+    public static final String ELECTRICITY = "ELECTRICITY";
+    /** {@code gas_factors.csv} */
+    public static final String GAS = "GAS";
+    /** {@code fuel_factors.csv} */
+    public static final String FUEL = "FUEL";
+    /** {@code refrigerant_factors.csv} */
+    public static final String REFRIGERANT = "REFRIGERANT";
+    /** Prefix of the kinds of {@code emission_factors_<type>.csv}. */
+    public static final String EMISSION = "EMISSION_";
+
+    private static final String LOCK_FILE = "store.lock";
+    // "CCRS" followed by the format version
+    private static final int MAGIC = 0x43435253;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final byte OP_CLEAR = 3;
+    private static final char SEPARATOR = '\u001F';
+    // Compact once the log holds this many operations and COMPACT_FACTOR
+    // times the live rows
+    private static final long COMPACT_MIN_OPS = 4096;
+    private static final int COMPACT_FACTOR = 4;
+    private static final int SNAPSHOT_BATCH = 1024;
+
+    private static final Map<Path, ReferenceStore> OPEN = new HashMap<>();
+
+    private final Path dir;
+    private final Path log;
+    private final FileChannel lockChannel;
+    private final Map<String, Table> tables = new HashMap<>();
+    // Log generation and offset the tables reflect
+    private long generation = -1;
+    private long synced;
+    private long logOps;
+    private boolean closed;
+
+    private ReferenceStore(Path dir) throws IOException {
+        this.dir = dir;
+        this.log = dir.resolve(LOG_FILE);
+        Files.createDirectories(dir);
+        lockChannel = FileChannel.open(dir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            FileLock lock = lockChannel.lock();
+            try {
+                // left over by a compaction that did not finish
+                Files.deleteIfExists(dir.resolve(LOG_FILE + ".tmp"));
+                if (!Files.isRegularFile(log) || Files.size(log) == 0) {
+                    try (FileChannel out = openLog()) {
+                        writeHeader(out);
+                        out.force(true);
+                    }
+                }
+                sync();
+                try (FileChannel out = openLog()) {
+                    cutTail(out);
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                lockChannel.close();
+            } catch (IOException ignored) {
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Open the store in {@code dir}, creating it when missing. Callers in
+     * the same process share one instance per directory; other processes
+     * may have it open at the same time.
+     *
+     * @throws IOException when the log cannot be read
+     */
+    public static ReferenceStore open(Path dir) throws IOException {
+        Path key = dir.toAbsolutePath().normalize();
+        synchronized (OPEN) {
+            ReferenceStore store = OPEN.get(key);
+            if (store == null) {
+                store = new ReferenceStore(key);
+                OPEN.put(key, store);
+            }
+            return store;
+        }
+    }
+
+    // A second instance on the same directory, standing in for another
+    // process in tests
+    static ReferenceStore openUnshared(Path dir) throws IOException {
+        return new ReferenceStore(dir.toAbsolutePath().normalize());
+    }
+
+    /** @return true when {@code dir} holds a store log */
+    public static boolean exists(Path dir) {
+        return dir != null && Files.isRegularFile(dir.resolve(LOG_FILE));
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    /**
+     * Composite key of normalized parts; entities differing only in case,
+     * surrounding blanks or Unicode compatibility forms share a key.
+     */
+    public static String key(String... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0)
+                sb.append(SEPARATOR);
+            sb.append(normalize(parts[i]));
+        }
+        return sb.toString();
+    }
+
+    /** @return prefix matching every key that starts with {@code parts} */
+    public static String prefix(String... parts) {
+        return key(parts) + SEPARATOR;
+    }
+
+    /** @return the normalized parts of {@code key} */
+    public static String[] parts(String key) {
+        return key.split(String.valueOf(SEPARATOR), -1);
+    }
+
+    /** @return key of a factor row */
+    public static String factorKey(String kind, int year, String entity) {
+        return key(kind, String.valueOf(year), entity);
+    }
+
+    /** @return a copy of the row under {@code key}, or null */
+    public synchronized String[] get(String table, String key) {
+        refresh();
+        Table t = tables.get(table);
+        String[] row = t != null ? t.rows.get(key) : null;
+        return row != null ? row.clone() : null;
+    }
+
+    /** @return copies of the rows whose key starts with {@code prefix}, in key order */
+    public synchronized List<String[]> scan(String table, String prefix) {
+        refresh();
+        List<String[]> out = new ArrayList<>();
+        Table t = tables.get(table);
+        if (t == null)
+            return out;
+        for (Map.Entry<String, String[]> e : t.rows.tailMap(prefix, true).entrySet()) {
+            if (!e.getKey().startsWith(prefix))
+                break;
+            out.add(e.getValue().clone());
+        }
+        return out;
+    }
+
+    /** @return the keys starting with {@code prefix}, in order */
+    public synchronized List<String> keys(String table, String prefix) {
+        refresh();
+        List<String> out = new ArrayList<>();
+        Table t = tables.get(table);
+        if (t == null)
+            return out;
+        for (String key : t.rows.tailMap(prefix, true).keySet()) {
+            if (!key.startsWith(prefix))
+                break;
+            out.add(key);
+        }
+        return out;
+    }
+
+    /**
+     * @return copies of the rows whose {@code index} column normalizes like
+     *         {@code value}, in key order
+     */
+    public synchronized List<String[]> lookup(String table, String index, String value) {
+        refresh();
+        List<String[]> out = new ArrayList<>();
+        Table t = tables.get(table);
+        Index idx = t != null ? t.indexes.get(index) : null;
+        NavigableSet<String> keys = idx != null ? idx.entries.get(normalize(value)) : null;
+        if (keys != null) {
+            for (String key : keys)
+                out.add(t.rows.get(key).clone());
+        }
+        return out;
+    }
+
+    /** @return copies of every row ordered by {@code index}, then by key */
+    public synchronized List<String[]> ordered(String table, String index) {
+        refresh();
+        List<String[]> out = new ArrayList<>();
+        Table t = tables.get(table);
+        Index idx = t != null ? t.indexes.get(index) : null;
+        if (idx == null)
+            return out;
+        for (NavigableSet<String> keys : idx.entries.values()) {
+            for (String key : keys)
+                out.add(t.rows.get(key).clone());
+        }
+        return out;
+    }
+
+    public synchronized int size(String table) {
+        refresh();
+        Table t = tables.get(table);
+        return t != null ? t.rows.size() : 0;
+    }
+
+    /** @return a new transaction; nothing is written until it commits */
+    public Transaction begin() {
+        return new Transaction();
+    }
+
+    /**
+     * Rewrite the log with the live rows only. Called automatically once
+     * overwritten rows dominate; a failed compaction leaves the previous log
+     * in place.
+     */
+    public synchronized void compact() throws IOException {
+        FileLock lock = acquire(false);
+        try {
+            compactLocked();
+        } finally {
+            lock.release();
+        }
+    }
+
+    private void compactLocked() throws IOException {
+        Path tmp = dir.resolve(LOG_FILE + ".tmp");
+        long ops = 0;
+        try {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeHeader(out);
+                List<Op> batch = new ArrayList<>();
+                for (Map.Entry<String, Table> t : new TreeMap<>(tables).entrySet()) {
+                    for (Map.Entry<String, String[]> row : t.getValue().rows.entrySet()) {
+                        batch.add(new Op(OP_PUT, t.getKey(), row.getKey(), row.getValue()));
+                        if (batch.size() == SNAPSHOT_BATCH) {
+                            writeRecord(out, encode(batch));
+                            ops += batch.size();
+                            batch.clear();
+                        }
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    writeRecord(out, encode(batch));
+                    ops += batch.size();
+                }
+                out.force(true);
+            }
+            // Bumped first: a crash before the move only makes the other
+            // processes reload the old log
+            long next = generation + 1;
+            writeGeneration(next);
+            try {
+                Files.move(tmp, log, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, log, StandardCopyOption.REPLACE_EXISTING);
+            }
+            generation = next;
+            synced = Files.size(log);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        logOps = ops;
+    }
+
+    /** @return bytes of the log on disk */
+    public synchronized long logBytes() throws IOException {
+        FileLock lock = acquire(true);
+        try {
+            return Files.size(log);
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Close the log and release the directory; a later {@link #open(Path)}
+     * reads it again.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (OPEN) {
+            OPEN.remove(dir, this);
+        }
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            lockChannel.close();
+        }
+    }
+
+    /**
+     * Batch of writes applied atomically by {@link #commit()}. Reads through
+     * the store do not see the pending writes; closing without committing
+     * discards them.
+     */
+    public final class Transaction implements AutoCloseable {
+        private final List<Op> ops = new ArrayList<>();
+        private boolean done;
+
+        private Transaction() {
+        }
+
+        /** Insert or replace the row under {@code key}. */
+        public Transaction put(String table, String key, String... row) {
+            pending().add(new Op(OP_PUT, table, key, row.clone()));
+            return this;
+        }
+
+        public Transaction delete(String table, String key) {
+            pending().add(new Op(OP_DELETE, table, key, null));
+            return this;
+        }
+
+        /** Delete every row of {@code table}. */
+        public Transaction clear(String table) {
+            pending().add(new Op(OP_CLEAR, table, null, null));
+            return this;
+        }
+
+        /** @return number of pending writes */
+        public int size() {
+            return ops.size();
+        }
+
+        /** Append the writes to the log, force it to disk and apply them. */
+        public void commit() throws IOException {
+            pending();
+            done = true;
+            ReferenceStore.this.commit(ops);
+        }
+
+        @Override
+        public void close() {
+            done = true;
+        }
+
+        private List<Op> pending() {
+            if (done)
+                throw new IllegalStateException("Transaction already finished");
+            return ops;
+        }
+    }
+
+    private synchronized void commit(List<Op> ops) throws IOException {
+        checkOpen();
+        if (ops.isEmpty())
+            return;
+        byte[] payload = encode(ops);
+        FileLock lock = acquire(false);
+        try {
+            long end = synced;
+            try (FileChannel out = openLog()) {
+                cutTail(out);
+                try {
+                    out.position(end);
+                    writeRecord(out, payload);
+                    out.force(false);
+                } catch (IOException e) {
+                    try {
+                        out.truncate(end);
+                    } catch (IOException ignored) {
+                    }
+                    throw e;
+                }
+            }
+            synced = end + RECORD_HEADER_BYTES + payload.length;
+            for (Op op : ops)
+                apply(op);
+            logOps += ops.size();
+            long live = 0;
+            for (Table t : tables.values())
+                live += t.rows.size();
+            if (logOps > COMPACT_MIN_OPS && logOps > COMPACT_FACTOR * live) {
+                try {
+                    compactLocked();
+                } catch (IOException e) {
+                    // the log stays valid; retried after the next commit
+                }
+            }
+        } finally {
+            lock.release();
+        }
+    }
+
+    // Lock the store file, shared or exclusive, and catch up with the log
+    private FileLock acquire(boolean shared) throws IOException {
+        checkOpen();
+        FileLock lock = lockChannel.lock(0L, Long.MAX_VALUE, shared);
+        try {
+            sync();
+        } catch (IOException | RuntimeException e) {
+            lock.release();
+            throw e;
+        }
+        return lock;
+    }
+
+    private void refresh() {
+        try {
+            acquire(true).release();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read reference store " + dir, e);
+        }
+    }
+
+    // Apply the records appended since the last sync; a new generation
+    // means the log was compacted and is read again from the start
+    private void sync() throws IOException {
+        long current = readGeneration();
+        long size = Files.size(log);
+        if (current != generation || size < synced) {
+            tables.clear();
+            logOps = 0;
+            synced = 0;
+            generation = current;
+        }
+        if (size != synced)
+            synced = replay(synced, size);
+    }
+
+    // Cut off a torn or damaged tail; only under the exclusive lock
+    private void cutTail(FileChannel out) throws IOException {
+        if (out.size() > synced)
+            out.truncate(synced);
+    }
+
+    private FileChannel openLog() throws IOException {
+        return FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private long readGeneration() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(Long.BYTES);
+        while (buf.hasRemaining() && lockChannel.read(buf, buf.position()) > 0) {
+            // until the whole number or the end of the file
+        }
+        return buf.hasRemaining() ? 0L : buf.getLong(0);
+    }
+
+    private void writeGeneration(long value) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(Long.BYTES).putLong(0, value);
+        while (buf.hasRemaining())
+            lockChannel.write(buf, buf.position());
+        lockChannel.force(false);
+    }
+
+    // Apply every complete record from offset from; returns the end of the
+    // last one
+    private long replay(long from, long size) throws IOException {
+        long good = from;
+        try (FileChannel ch = FileChannel.open(log, StandardOpenOption.READ);
+                DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(Channels.newInputStream(ch.position(from))))) {
+            if (from == 0) {
+                if (size < HEADER_BYTES || in.readInt() != MAGIC)
+                    throw new IOException(log + " is not a reference store log");
+                int version = in.readInt();
+                if (version != VERSION)
+                    throw new IOException("Unsupported reference store version " + version + " in " + log);
+                good = HEADER_BYTES;
+            }
+            while (size - good >= RECORD_HEADER_BYTES) {
+                int length = in.readInt();
+                int crc = in.readInt();
+                if (length < 0 || length > size - good - RECORD_HEADER_BYTES)
+                    break;
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (crc != checksum(payload))
+                    break;
+                List<Op> ops = decode(payload);
+                for (Op op : ops)
+                    apply(op);
+                logOps += ops.size();
+                good += RECORD_HEADER_BYTES + length;
+            }
+        }
+        return good;
+    }
+
+    private void apply(Op op) {
+        Table t = tables.computeIfAbsent(op.table, ReferenceStore::newTable);
+        if (op.type == OP_PUT)
+            t.put(op.key, op.row);
+        else if (op.type == OP_DELETE)
+            t.delete(op.key);
+        else
+            t.clear();
+    }
+
+    private static Table newTable(String name) {
+        Table t = new Table();
+        if (CUPS_CENTERS.equals(name)) {
+            t.indexes.put(BY_CUPS, new Index(0));
+            t.indexes.put(BY_CENTER, new Index(2));
+        }
+        return t;
+    }
+
+    private void checkOpen() {
+        if (closed)
+            throw new IllegalStateException("Reference store " + dir + " is closed");
+    }
+
+    private static void writeHeader(FileChannel out) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+        buf.flip();
+        out.position(0);
+        while (buf.hasRemaining())
+            out.write(buf);
+    }
+
+    private static void writeRecord(FileChannel out, byte[] payload) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+        buf.putInt(payload.length).putInt(checksum(payload)).put(payload);
+        buf.flip();
+        while (buf.hasRemaining())
+            out.write(buf);
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(List<Op> ops) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(ops.size());
+        for (Op op : ops) {
+            out.writeByte(op.type);
+            writeString(out, op.table);
+            if (op.type == OP_CLEAR)
+                continue;
+            writeString(out, op.key);
+            if (op.type == OP_PUT) {
+                out.writeInt(op.row.length);
+                for (String field : op.row)
+                    writeString(out, field);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static List<Op> decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int count = in.readInt();
+        List<Op> ops = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte type = in.readByte();
+            String table = readString(in);
+            String key = type == OP_CLEAR ? null : readString(in);
+            String[] row = null;
+            if (type == OP_PUT) {
+                row = new String[in.readInt()];
+                for (int f = 0; f < row.length; f++)
+                    row[f] = readString(in);
+            }
+            ops.add(new Op(type, table, key, row));
+        }
+        return ops;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        byte[] b = new byte[length];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /** @return {@code field} as a number; 0 when blank or malformed */
+    static double number(String field) {
+        try {
+            return field != null ? Double.parseDouble(field) : 0.0;
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+
+    static String normalize(String s) {
+        if (s == null)
+            return "";
+        String cleaned = s.replace('\u00A0', ' ').replace(SEPARATOR, ' ');
+        return Normalizer.normalize(cleaned, Normalizer.Form.NFKC).trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static final class Op {
+        final byte type;
+        final String table;
+        final String key;
+        final String[] row;
+
+        Op(byte type, String table, String key, String[] row) {
+            this.type = type;
+            this.table = table;
+            this.key = key;
+            this.row = row;
+        }
+    }
+
+    private static final class Table {
+        final TreeMap<String, String[]> rows = new TreeMap<>();
+        final Map<String, Index> indexes = new HashMap<>();
+
+        void put(String key, String[] row) {
+            String[] old = rows.put(key, row);
+            for (Index idx : indexes.values()) {
+                if (old != null)
+                    idx.remove(old, key);
+                idx.add(row, key);
+            }
+        }
+
+        void delete(String key) {
+            String[] old = rows.remove(key);
+            if (old == null)
+                return;
+            for (Index idx : indexes.values())
+                idx.remove(old, key);
+        }
+
+        void clear() {
+            rows.clear();
+            for (Index idx : indexes.values())
+                idx.entries.clear();
+        }
+    }
+
+    // Normalized column value -> keys of the rows holding it
+    private static final class Index {
+        final int column;
+        final TreeMap<String, NavigableSet<String>> entries = new TreeMap<>();
+
+        Index(int column) {
+            this.column = column;
+        }
+
+        void add(String[] row, String key) {
+            entries.computeIfAbsent(value(row), v -> new TreeSet<>()).add(key);
+        }
+
+        void remove(String[] row, String key) {
+            String value = value(row);
+            NavigableSet<String> keys = entries.get(value);
+            if (keys != null && keys.remove(key) && keys.isEmpty())
+                entries.remove(value);
+        }
+
+        String value(String[] row) {
+            return normalize(column < row.length ? row[column] : null);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.carboncalc.service;
+
+import com.carboncalc.model.CupsCenterMapping;
+import com.carboncalc.model.factors.ElectricityGeneralFactors;
+import com.carboncalc.model.factors.EmissionFactor;
+import com.carboncalc.model.factors.FuelEmissionFactor;
+import com.carboncalc.model.factors.GasFactorEntry;
+import com.carboncalc.model.factors.RefrigerantEmissionFactor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * ReferenceStoreMigrator
+ *
+ * <p>
+ * Moves the CSV reference data of a data directory into its
+ * {@link ReferenceStore} and writes a store back to the CSV layout, which
+ * stays the import/export interchange format:
+ * </p>
+ *
+ * <pre>
+ * java -cp carbon-footprint-calculator.jar com.carboncalc.service.ReferenceStoreMigrator import data
+ * java -cp carbon-footprint-calculator.jar com.carboncalc.service.ReferenceStoreMigrator export data out
+ * </pre>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>An import reads {@code cups_center/cups.csv} and every numeric year
+ * folder of {@code emission_factors} through the CSV services, so it accepts
+ * the same legacy variants they do, and replaces the content of
+ * {@code <data>/store} in a single transaction: a failed import leaves the
+ * store as it was.</li>
+ * <li>{@code electricity_factors.csv} holds trading companies, or, when
+ * written by {@link EmissionFactorServiceCsv}, rows starting with an
+ * {@code entity} column; both are imported as companies.</li>
+ * <li>An export replaces the CSV files of every kind and year in the store
+ * and leaves other files untouched.</li>
+ * <li>Once {@code <data>/store} exists the exports and the UI read the
+ * store; the CSV files are no longer updated.</li>
+ * </ul>
+ * </p>
+ */
+public final class ReferenceStoreMigrator {
+
+    /** Store directory inside a data directory. */
+    public static final String STORE_DIR = "store";
+
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_FAILED = 1;
+    public static final int EXIT_USAGE = 2;
+
+    private static final String FACTORS_DIR = "emission_factors";
+    private static final String EMISSION_FILE_PREFIX = "emission_factors_";
+
+    private ReferenceStoreMigrator() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /** @return the process exit code */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        boolean importing = args.length == 2 && "import".equals(args[0]);
+        boolean exporting = args.length == 3 && "export".equals(args[0]);
+        if (!importing && !exporting) {
+            err.println("Usage: ReferenceStoreMigrator import <data dir> | export <data dir> <csv dir>");
+            return EXIT_USAGE;
+        }
+        Path data = Paths.get(args[1]);
+        try {
+            if (importing) {
+                int rows = importCsv(data);
+                out.println("Imported " + rows + " rows into " + data.resolve(STORE_DIR));
+                return EXIT_OK;
+            }
+            if (!ReferenceStore.exists(data.resolve(STORE_DIR))) {
+                err.println("No reference store in " + data);
+                return EXIT_FAILED;
+            }
+            exportCsv(ReferenceStore.open(data.resolve(STORE_DIR)), Paths.get(args[2]));
+            out.println("Exported " + data.resolve(STORE_DIR) + " to " + args[2]);
+            return EXIT_OK;
+        } catch (IOException | RuntimeException e) {
+            err.println(e.getMessage());
+            return EXIT_FAILED;
+        }
+    }
+
+    /**
+     * Import the CSV data of {@code dataDir} into {@code <dataDir>/store}.
+     *
+     * @return number of rows written
+     */
+    public static int importCsv(Path dataDir) throws IOException {
+        return importCsv(dataDir, ReferenceStore.open(dataDir.resolve(STORE_DIR)));
+    }
+
+    /**
+     * Replace the content of {@code store} with the CSV data of
+     * {@code dataDir}.
+     *
+     * @return number of rows written
+     */
+    public static int importCsv(Path dataDir, ReferenceStore store) throws IOException {
+        Path factors = dataDir.resolve(FACTORS_DIR);
+        try (ReferenceStore.Transaction tx = store.begin()) {
+            tx.clear(ReferenceStore.CUPS_CENTERS).clear(ReferenceStore.FACTORS);
+            int cleared = tx.size();
+            if (Files.isRegularFile(dataDir.resolve("cups_center").resolve("cups.csv"))) {
+                for (CupsCenterMapping m : new CupsServiceCsv(dataDir.toString()).loadCupsData())
+                    CupsServiceStore.put(tx, m);
+            }
+            List<Integer> years = years(factors);
+            if (!years.isEmpty()) {
+                CsvServices csv = new CsvServices(factors);
+                for (int year : years)
+                    importYear(tx, store, csv, factors.resolve(String.valueOf(year)), year);
+            }
+            int rows = tx.size() - cleared;
+            tx.commit();
+            return rows;
+        }
+    }
+
+    /**
+     * Write the content of {@code store} to the CSV layout under
+     * {@code dataDir}: {@code cups_center/cups.csv} and the files of every
+     * year folder of {@code emission_factors}.
+     */
+    public static void exportCsv(ReferenceStore store, Path dataDir) throws IOException {
+        new CupsServiceCsv(dataDir.toString()).saveCupsData(new CupsServiceStore(store).loadCupsData());
+        // Kind and year of every factor file, in key order
+        Set<String> files = new LinkedHashSet<>();
+        for (String key : store.keys(ReferenceStore.FACTORS, "")) {
+            String[] parts = ReferenceStore.parts(key);
+            String kind = ReferenceStore.ELECTRICITY_GENERAL.equals(parts[0]) ? ReferenceStore.ELECTRICITY
+                    : parts[0];
+            files.add(kind + " " + parts[1]);
+        }
+        Path factors = dataDir.resolve(FACTORS_DIR);
+        for (String file : files) {
+            String[] kindYear = file.split(" ");
+            try {
+                exportFactors(store, kindYear[0], Integer.parseInt(kindYear[1]), factors);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Replace the CSV file of {@code kind} and {@code year} under
+     * {@code factorsDir} with the rows of {@code store}.
+     */
+    static void exportFactors(ReferenceStore store, String kind, int year, Path factorsDir) throws IOException {
+        String base = factorsDir.toString();
+        Path dir = factorsDir.resolve(String.valueOf(year));
+        Files.createDirectories(dir);
+        switch (kind) {
+            case ReferenceStore.ELECTRICITY:
+            case ReferenceStore.ELECTRICITY_GENERAL:
+                new ElectricityFactorServiceCsv(base).saveFactors(
+                        new ElectricityFactorServiceStore(store).loadFactors(year), year);
+                break;
+            case ReferenceStore.GAS:
+                Files.deleteIfExists(dir.resolve("gas_factors.csv"));
+                GasFactorServiceCsv gas = new GasFactorServiceCsv(base);
+                for (GasFactorEntry e : new GasFactorServiceStore(store).loadGasFactors(year))
+                    gas.saveGasFactor(e);
+                break;
+            case ReferenceStore.FUEL:
+                Files.deleteIfExists(dir.resolve("fuel_factors.csv"));
+                FuelFactorServiceCsv fuel = new FuelFactorServiceCsv(base);
+                for (FuelEmissionFactor f : new FuelFactorServiceStore(store).loadFuelFactors(year))
+                    fuel.saveFuelFactor(f);
+                break;
+            case ReferenceStore.REFRIGERANT:
+                Files.deleteIfExists(dir.resolve("refrigerant_factors.csv"));
+                RefrigerantFactorServiceCsv refrigerant = new RefrigerantFactorServiceCsv(base);
+                for (RefrigerantEmissionFactor f : new RefrigerantFactorServiceStore(store)
+                        .loadRefrigerantFactors(year))
+                    refrigerant.saveRefrigerantFactor(f);
+                break;
+            default:
+                if (!kind.startsWith(ReferenceStore.EMISSION))
+                    return;
+                String type = kind.substring(ReferenceStore.EMISSION.length());
+                Files.deleteIfExists(dir.resolve(EMISSION_FILE_PREFIX + type.toLowerCase(Locale.ROOT) + ".csv"));
+                EmissionFactorServiceCsv emission = new EmissionFactorServiceCsv(base);
+                for (EmissionFactor f : new EmissionFactorServiceStore(store, factorsDir).loadEmissionFactors(type,
+                        year))
+                    emission.saveEmissionFactor(f);
+        }
+    }
+
+    private static void importYear(ReferenceStore.Transaction tx, ReferenceStore store, CsvServices csv, Path dir,
+            int year) throws IOException {
+        ElectricityGeneralFactors electricity = csv.electricity.loadFactors(year);
+        if (Files.isRegularFile(dir.resolve("electricity_general_factors.csv")))
+            ElectricityFactorServiceStore.putGeneral(tx, electricity, year);
+        if (startsWithEntityColumn(dir.resolve("electricity_factors.csv"))) {
+            for (EmissionFactor f : csv.emission.loadEmissionFactors(ReferenceStore.ELECTRICITY, year))
+                ElectricityFactorServiceStore.putCompany(tx, year, f.getEntity(), f.getBaseFactor(), "",
+                        f.getUnit());
+        } else {
+            for (ElectricityGeneralFactors.TradingCompany c : electricity.getTradingCompanies())
+                ElectricityFactorServiceStore.putCompany(tx, year, c.getName(), c.getEmissionFactor(),
+                        c.getGdoType(), null);
+        }
+        for (GasFactorEntry e : csv.gas.loadGasFactors(year))
+            GasFactorServiceStore.put(tx, e, year);
+        for (FuelEmissionFactor f : csv.fuel.loadFuelFactors(year))
+            FuelFactorServiceStore.put(tx, f, year);
+        for (RefrigerantEmissionFactor f : csv.refrigerant.loadRefrigerantFactors(year))
+            RefrigerantFactorServiceStore.put(tx, f, year);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, EMISSION_FILE_PREFIX + "*.csv")) {
+            for (Path p : files) {
+                String name = p.getFileName().toString();
+                String type = name.substring(EMISSION_FILE_PREFIX.length(), name.length() - ".csv".length());
+                try {
+                    for (EmissionFactor f : csv.emission.loadEmissionFactors(type, year))
+                        EmissionFactorServiceStore.put(tx, store, f, year);
+                } catch (IllegalArgumentException unknownType) {
+                    // not a factor type the services read
+                }
+            }
+        }
+    }
+
+    // Numeric folders of the factors directory, ascending
+    private static List<Integer> years(Path factors) throws IOException {
+        List<Integer> years = new ArrayList<>();
+        if (!Files.isDirectory(factors))
+            return years;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(factors, Files::isDirectory)) {
+            for (Path p : dirs) {
+                try {
+                    years.add(Integer.parseInt(p.getFileName().toString()));
+                } catch (NumberFormatException ignored) {
+                    // Skip non-numeric directory names
+                }
+            }
+        }
+        years.sort(null);
+        return years;
+    }
+
+    private static boolean startsWithEntityColumn(Path file) {
+        if (!Files.isRegularFile(file))
+            return false;
+        try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = r.readLine();
+            return header != null
+                    && header.replace("\uFEFF", "").replace("\"", "").trim().toLowerCase(Locale.ROOT)
+                            .startsWith("entity,");
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // The CSV services create the current year folder when built; build
+    // them once per import
+    private static final class CsvServices {
+        final ElectricityFactorServiceCsv electricity;
+        final EmissionFactorServiceCsv emission;
+        final GasFactorServiceCsv gas;
+        final FuelFactorServiceCsv fuel;
+        final RefrigerantFactorServiceCsv refrigerant;
+
+        CsvServices(Path factors) {
+            String base = factors.toString();
+            electricity = new ElectricityFactorServiceCsv(base);
+            emission = new EmissionFactorServiceCsv(base);
+            gas = new GasFactorServiceCsv(base);
+            fuel = new FuelFactorServiceCsv(base);
+            refrigerant = new RefrigerantFactorServiceCsv(base);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.carboncalc.service;
+
+import com.carboncalc.model.factors.RefrigerantEmissionFactor;
+
+import java.io.IOException;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * RefrigerantFactorServiceStore
+ *
+ * <p>
+ * {@link RefrigerantFactorService} backed by the
+ * {@link ReferenceStore#REFRIGERANT} rows of a {@link ReferenceStore}, one
+ * PCA per refrigerant type and year.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>Refrigerant types load in alphabetical order and are matched
+ * case-insensitively, as in {@link RefrigerantFactorServiceCsv}.</li>
+ * <li>The entity is used as type when the refrigerant type is blank.</li>
+ * </ul>
+ * </p>
+ */
+public class RefrigerantFactorServiceStore implements RefrigerantFactorService {
+
+    private final ReferenceStore store;
+    private Integer defaultYear;
+
+    public RefrigerantFactorServiceStore(ReferenceStore store) {
+        this.store = store;
+        this.defaultYear = Year.now().getValue();
+    }
+
+    @Override
+    public void saveRefrigerantFactor(RefrigerantEmissionFactor entry) {
+        try (ReferenceStore.Transaction tx = store.begin()) {
+            put(tx, entry, entry.getYear() <= 0 ? defaultYear : entry.getYear());
+            tx.commit();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public List<RefrigerantEmissionFactor> loadRefrigerantFactors(int year) {
+        List<RefrigerantEmissionFactor> out = new ArrayList<>();
+        for (String[] r : store.scan(ReferenceStore.FACTORS,
+                ReferenceStore.prefix(ReferenceStore.REFRIGERANT, String.valueOf(year))))
+            out.add(new RefrigerantEmissionFactor(r[0], year, ReferenceStore.number(r[1]), r[0]));
+        return out;
+    }
+
+    @Override
+    public void deleteRefrigerantFactor(int year, String entity) {
+        String key = ReferenceStore.factorKey(ReferenceStore.REFRIGERANT, year, entity);
+        if (store.get(ReferenceStore.FACTORS, key) == null)
+            return;
+        try (ReferenceStore.Transaction tx = store.begin()) {
+            tx.delete(ReferenceStore.FACTORS, key);
+            tx.commit();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public Optional<Integer> getDefaultYear() {
+        return Optional.ofNullable(defaultYear);
+    }
+
+    @Override
+    public void setDefaultYear(int year) {
+        this.defaultYear = year;
+    }
+
+    /** Add or replace {@code entry} as a refrigerant factor of {@code year}. */
+    static void put(ReferenceStore.Transaction tx, RefrigerantEmissionFactor entry, int year) {
+        String type = entry.getRefrigerantType() == null || entry.getRefrigerantType().isBlank()
+                ? (entry.getEntity() == null ? "" : entry.getEntity().trim())
+                : entry.getRefrigerantType().trim();
+        tx.put(ReferenceStore.FACTORS, ReferenceStore.factorKey(ReferenceStore.REFRIGERANT, year, type), type,
+                String.valueOf(entry.getPca()));
+    }
+}
@@ -0,0 +1,286 @@
+package com.carboncalc.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Multi-dimensional aggregate cube for exporter results.
+ *
+ * <p>
+ * Exporters feed one fact per accepted row while they compute it; the cube
+ * keeps one cell per distinct combination of dimension members and sums the
+ * measures into primitive arrays. Dimension members are dictionary-encoded so
+ * a cell is just a small {@code int} tuple, which keeps memory proportional
+ * to the number of distinct combinations rather than to the number of input
+ * rows. Roll-ups and slices are single linear scans over the cells.
+ *
+ * <h3>Contract and notes</h3>
+ * <ul>
+ * <li>Members are plain strings; {@code null} is stored as the empty
+ * string.</li>
+ * <li>{@link #rollUp(Dimension...)} and {@link #slice(Dimension, String)}
+ * return new cubes sharing the member dictionaries; dimensions that were
+ * rolled up report {@code null} members.</li>
+ * <li>The class is not thread-safe; each export pass owns its cube.</li>
+ * </ul>
+ */
+public final class AggregateCube {
+
+    /** Cube dimensions, in tuple order. */
+    public enum Dimension {
+        CENTER, MONTH, MODULE, SCOPE, CAMPUS, CITY, PROVINCE, MARKETER
+    }
+
+    /** Summed measures, in array order. */
+    public enum Measure {
+        CONSUMPTION, EMISSIONS_MARKET, EMISSIONS_LOCATION
+    }
+
+    private static final int DIMS = Dimension.values().length;
+    private static final int MEASURES = Measure.values().length;
+    private static final int ROLLED_UP = -1;
+
+    private final Dictionary[] dictionaries;
+    private final int[] scratch = new int[DIMS];
+    private int[] coords;
+    private double[] values;
+    private int cellCount;
+    // Open-addressing index: slot -> cell index + 1 (0 = empty)
+    private int[] table;
+
+    public AggregateCube() {
+        this(newDictionaries());
+    }
+
+    private AggregateCube(Dictionary[] dictionaries) {
+        this.dictionaries = dictionaries;
+        this.coords = new int[16 * DIMS];
+        this.values = new double[16 * MEASURES];
+        this.table = new int[32];
+    }
+
+    private static Dictionary[] newDictionaries() {
+        Dictionary[] d = new Dictionary[DIMS];
+        for (int i = 0; i < DIMS; i++)
+            d[i] = new Dictionary();
+        return d;
+    }
+
+    /**
+     * Add one fact to the cube.
+     *
+     * @param members           member per dimension, indexed by
+     *                          {@link Dimension#ordinal()}
+     * @param consumption       consumption in the module's native unit
+     * @param emissionsMarket   market-based emissions (tCO2e)
+     * @param emissionsLocation location-based emissions (tCO2e)
+     */
+    public void add(String[] members, double consumption, double emissionsMarket, double emissionsLocation) {
+        for (int d = 0; d < DIMS; d++)
+            scratch[d] = dictionaries[d].encode(members != null && d < members.length ? members[d] : null);
+        int cell = findOrCreate(scratch);
+        int base = cell * MEASURES;
+        values[base + Measure.CONSUMPTION.ordinal()] += consumption;
+        values[base + Measure.EMISSIONS_MARKET.ordinal()] += emissionsMarket;
+        values[base + Measure.EMISSIONS_LOCATION.ordinal()] += emissionsLocation;
+    }
+
+    /** @return number of distinct cells */
+    public int cellCount() {
+        return cellCount;
+    }
+
+    /**
+     * @return the member of {@code dimension} for the given cell, or
+     *         {@code null} when the dimension was rolled up
+     */
+    public String member(int cell, Dimension dimension) {
+        int id = coords[cell * DIMS + dimension.ordinal()];
+        return id == ROLLED_UP ? null : dictionaries[dimension.ordinal()].decode(id);
+    }
+
+    /** @return summed measure of a cell */
+    public double value(int cell, Measure measure) {
+        return values[cell * MEASURES + measure.ordinal()];
+    }
+
+    /** @return sum of a measure over all cells */
+    public double total(Measure measure) {
+        double t = 0.0;
+        for (int c = 0; c < cellCount; c++)
+            t += values[c * MEASURES + measure.ordinal()];
+        return t;
+    }
+
+    /** @return distinct members seen for a dimension, in first-seen order */
+    public List<String> members(Dimension dimension) {
+        return dictionaries[dimension.ordinal()].members();
+    }
+
+    /**
+     * Aggregate the cube down to the given dimensions; every other dimension
+     * is collapsed.
+     *
+     * @param keep dimensions to keep
+     * @return a new cube with one cell per combination of kept members
+     */
+    public AggregateCube rollUp(Dimension... keep) {
+        boolean[] kept = new boolean[DIMS];
+        for (Dimension d : keep)
+            kept[d.ordinal()] = true;
+        AggregateCube out = new AggregateCube(dictionaries);
+        int[] key = new int[DIMS];
+        for (int c = 0; c < cellCount; c++) {
+            for (int d = 0; d < DIMS; d++)
+                key[d] = kept[d] ? coords[c * DIMS + d] : ROLLED_UP;
+            out.accumulate(key, values, c * MEASURES);
+        }
+        return out;
+    }
+
+    /**
+     * Keep only the cells whose member for {@code dimension} equals
+     * {@code member}.
+     *
+     * @return a new cube (empty when the member is unknown)
+     */
+    public AggregateCube slice(Dimension dimension, String member) {
+        AggregateCube out = new AggregateCube(dictionaries);
+        int id = dictionaries[dimension.ordinal()].lookup(member);
+        if (id < 0)
+            return out;
+        int[] key = new int[DIMS];
+        for (int c = 0; c < cellCount; c++) {
+            if (coords[c * DIMS + dimension.ordinal()] != id)
+                continue;
+            System.arraycopy(coords, c * DIMS, key, 0, DIMS);
+            out.accumulate(key, values, c * MEASURES);
+        }
+        return out;
+    }
+
+    /**
+     * Return the cell indices ordered by the members of the given dimensions
+     * (lexicographic, rolled-up dimensions last). Convenient for writing
+     * sorted summaries.
+     */
+    public int[] sortedCells(Dimension... by) {
+        Integer[] order = new Integer[cellCount];
+        for (int i = 0; i < cellCount; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> {
+            for (Dimension d : by) {
+                String ma = member(a, d);
+                String mb = member(b, d);
+                if (ma == null || mb == null) {
+                    if (ma != mb)
+                        return ma == null ? 1 : -1;
+                    continue;
+                }
+                int cmp = ma.compareTo(mb);
+                if (cmp != 0)
+                    return cmp;
+            }
+            return Integer.compare(a, b);
+        });
+        int[] out = new int[cellCount];
+        for (int i = 0; i < cellCount; i++)
+            out[i] = order[i];
+        return out;
+    }
+
+    private void accumulate(int[] key, double[] src, int srcBase) {
+        int cell = findOrCreate(key);
+        int base = cell * MEASURES;
+        for (int m = 0; m < MEASURES; m++)
+            values[base + m] += src[srcBase + m];
+    }
+
+    private int findOrCreate(int[] key) {
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            int entry = table[slot];
+            if (entry == 0)
+                break;
+            if (matches(entry - 1, key))
+                return entry - 1;
+            slot = (slot + 1) & mask;
+        }
+        int cell = cellCount++;
+        if (cell * DIMS + DIMS > coords.length) {
+            coords = Arrays.copyOf(coords, coords.length * 2);
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        System.arraycopy(key, 0, coords, cell * DIMS, DIMS);
+        table[slot] = cell + 1;
+        // keep the load factor at or below 0.5
+        if (cellCount * 2 > table.length)
+            rehash();
+        return cell;
+    }
+
+    private boolean matches(int cell, int[] key) {
+        int base = cell * DIMS;
+        for (int d = 0; d < DIMS; d++) {
+            if (coords[base + d] != key[d])
+                return false;
+        }
+        return true;
+    }
+
+    private void rehash() {
+        int[] next = new int[table.length * 2];
+        int mask = next.length - 1;
+        int[] key = new int[DIMS];
+        for (int c = 0; c < cellCount; c++) {
+            System.arraycopy(coords, c * DIMS, key, 0, DIMS);
+            int slot = hash(key) & mask;
+            while (next[slot] != 0)
+                slot = (slot + 1) & mask;
+            next[slot] = c + 1;
+        }
+        table = next;
+    }
+
+    private static int hash(int[] key) {
+        int h = 1;
+        for (int k : key)
+            h = 31 * h + k;
+        // spread the low bits used by the mask
+        return h ^ (h >>> 16);
+    }
+
+    /** String <-> dense id dictionary for one dimension. */
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> members = new ArrayList<>();
+
+        int encode(String member) {
+            String m = member == null ? "" : member;
+            Integer id = ids.get(m);
+            if (id != null)
+                return id;
+            int next = members.size();
+            ids.put(m, next);
+            members.add(m);
+            return next;
+        }
+
+        int lookup(String member) {
+            Integer id = ids.get(member == null ? "" : member);
+            return id == null ? -1 : id;
+        }
+
+        String decode(int id) {
+            return members.get(id);
+        }
+
+        List<String> members() {
+            return new ArrayList<>(members);
+        }
+    }
+}
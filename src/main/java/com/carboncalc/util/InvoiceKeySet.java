@@ -0,0 +1,195 @@
+package com.carboncalc.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Compact set of invoice numbers.
+ *
+ * <p>
+ * ERP exports list millions of invoice lines, and a {@code HashSet<String>}
+ * spends around 80 bytes of headers, nodes and table slots on every short
+ * invoice number. This set copies the characters of each key into one shared
+ * byte pool (one byte per character for Latin-1 keys, two otherwise) and
+ * indexes the entries with an open-addressing table of {@code int}s, so a
+ * key costs its length plus about 20 bytes.
+ * </p>
+ *
+ * <h3>Contract and notes</h3>
+ * <ul>
+ * <li>Lookups compare the stored hash first and then the characters, so
+ * colliding hashes never produce false positives.</li>
+ * <li>Iteration follows insertion order and materializes a new
+ * {@code String} per key; removal is not supported.</li>
+ * <li>Null keys are rejected. Not thread-safe; fill the set first and share
+ * it read-only afterwards.</li>
+ * </ul>
+ */
+public final class InvoiceKeySet extends AbstractSet<String> {
+
+    private static final int GOLDEN = 0x9E3779B9;
+
+    private byte[] pool = new byte[1024];
+    private int poolSize;
+    // Per entry: byte offset in pool, length in chars (~length for UTF-16 keys)
+    // and String.hashCode
+    private int[] starts = new int[64];
+    private int[] lengths = new int[64];
+    private int[] hashes = new int[64];
+    // entry index + 1; 0 is a free slot. Kept at most half full.
+    private int[] slots = new int[128];
+    private int size;
+
+    @Override
+    public boolean add(String key) {
+        Objects.requireNonNull(key, "key");
+        int h = key.hashCode();
+        int slot = find(key, h);
+        if (slots[slot] != 0)
+            return false;
+        append(key, h);
+        slots[slot] = size;
+        if (size * 2 > slots.length)
+            rehash(slots.length * 2);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String))
+            return false;
+        String key = (String) o;
+        return slots[find(key, key.hashCode())] != 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** @return bytes held by the pool and the index arrays */
+    public long footprintBytes() {
+        return pool.length + 4L * (starts.length + lengths.length + hashes.length + slots.length);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public String next() {
+                if (next >= size)
+                    throw new NoSuchElementException();
+                return key(next++);
+            }
+        };
+    }
+
+    // Slot holding key, or the free slot where it would go
+    private int find(String key, int h) {
+        int mask = slots.length - 1;
+        int i = mix(h) & mask;
+        while (true) {
+            int e = slots[i];
+            if (e == 0 || (hashes[e - 1] == h && matches(e - 1, key)))
+                return i;
+            i = (i + 1) & mask;
+        }
+    }
+
+    private boolean matches(int entry, String key) {
+        int len = lengths[entry];
+        int p = starts[entry];
+        if (len >= 0) {
+            if (len != key.length())
+                return false;
+            for (int i = 0; i < len; i++) {
+                if ((pool[p + i] & 0xFF) != key.charAt(i))
+                    return false;
+            }
+            return true;
+        }
+        len = ~len;
+        if (len != key.length())
+            return false;
+        for (int i = 0; i < len; i++) {
+            char c = (char) (((pool[p + 2 * i] & 0xFF) << 8) | (pool[p + 2 * i + 1] & 0xFF));
+            if (c != key.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private void append(String key, int h) {
+        int len = key.length();
+        boolean latin1 = true;
+        for (int i = 0; i < len && latin1; i++)
+            latin1 = key.charAt(i) <= 0xFF;
+        int bytes = latin1 ? len : 2 * len;
+        if (poolSize + bytes > pool.length) {
+            long grown = Math.max((long) pool.length * 2, (long) poolSize + bytes);
+            if (grown > Integer.MAX_VALUE - 8)
+                throw new IllegalStateException("Invoice key set is full");
+            pool = Arrays.copyOf(pool, (int) grown);
+        }
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int p = poolSize;
+        for (int i = 0; i < len; i++) {
+            char c = key.charAt(i);
+            if (latin1) {
+                pool[p++] = (byte) c;
+            } else {
+                pool[p++] = (byte) (c >>> 8);
+                pool[p++] = (byte) c;
+            }
+        }
+        starts[size] = poolSize;
+        lengths[size] = latin1 ? len : ~len;
+        hashes[size] = h;
+        poolSize = p;
+        size++;
+    }
+
+    private void rehash(int capacity) {
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int e = 0; e < size; e++) {
+            int i = mix(hashes[e]) & mask;
+            while (table[i] != 0)
+                i = (i + 1) & mask;
+            table[i] = e + 1;
+        }
+        slots = table;
+    }
+
+    private String key(int entry) {
+        int len = lengths[entry];
+        int p = starts[entry];
+        if (len >= 0)
+            return new String(pool, p, len, StandardCharsets.ISO_8859_1);
+        len = ~len;
+        char[] chars = new char[len];
+        for (int i = 0; i < len; i++)
+            chars[i] = (char) (((pool[p + 2 * i] & 0xFF) << 8) | (pool[p + 2 * i + 1] & 0xFF));
+        return new String(chars);
+    }
+
+    private static int mix(int h) {
+        h *= GOLDEN;
+        return h ^ (h >>> 16);
+    }
+}
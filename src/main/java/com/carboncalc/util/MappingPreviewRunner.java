@@ -0,0 +1,170 @@
+package com.carboncalc.util;
+
+import com.carboncalc.util.excel.MappingPreview;
+
+import javax.swing.JLabel;
+import javax.swing.JTable;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.table.DefaultTableModel;
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Live result preview for the module panels.
+ *
+ * <p>
+ * While the user edits column mappings, the controllers schedule a preview
+ * calculation here. Requests are debounced; when the timer fires the
+ * controller's supplier captures the current mapping and a
+ * {@link MappingPreview#snapshot copy} of the sampled rows on the EDT and
+ * returns a task that runs the exporter's {@code preview(...)} on that copy
+ * in a {@link SwingWorker}, so the worker never reads the panel's
+ * workbook. The result fills the panel's result table
+ * with projected per-center totals and a summary line with the sample size,
+ * skipped rows by reason and unmatched factor keys.
+ * </p>
+ *
+ * <h3>Contract and notes</h3>
+ * <ul>
+ * <li>Must be used on the EDT. Only the newest request is shown; results of
+ * superseded requests are dropped.</li>
+ * <li>A supplier returning null (no workbook, incomplete mapping) clears the
+ * preview.</li>
+ * <li>Failures clear the preview silently; the preview is advisory and
+ * must never block the export flow.</li>
+ * </ul>
+ */
+public final class MappingPreviewRunner {
+
+    /** Delay between the last mapping change and the calculation. */
+    public static final int DEBOUNCE_MS = 250;
+    /** Maximum number of centers listed in the result table. */
+    public static final int MAX_CENTERS = 200;
+
+    private final JTable table;
+    private final JLabel summary;
+    private final ResourceBundle messages;
+    private final Timer debounce;
+    private Supplier<Callable<MappingPreview>> pending;
+    private int generation;
+
+    /**
+     * @param table    result preview table to fill
+     * @param summary  label receiving the sample/skip/unmatched summary
+     * @param messages bundle with the {@code preview.*} keys
+     */
+    public MappingPreviewRunner(JTable table, JLabel summary, ResourceBundle messages) {
+        this.table = table;
+        this.summary = summary;
+        this.messages = messages;
+        this.debounce = new Timer(DEBOUNCE_MS, e -> runPending());
+        this.debounce.setRepeats(false);
+    }
+
+    /**
+     * Schedule a preview. {@code taskFactory} is called on the EDT once the
+     * mapping has been stable for {@value #DEBOUNCE_MS} ms.
+     */
+    public void schedule(Supplier<Callable<MappingPreview>> taskFactory) {
+        pending = taskFactory;
+        debounce.restart();
+    }
+
+    /** Drop any scheduled or running preview and clear the display. */
+    public void clear() {
+        debounce.stop();
+        pending = null;
+        generation++;
+        show(null);
+    }
+
+    private void runPending() {
+        Supplier<Callable<MappingPreview>> factory = pending;
+        pending = null;
+        final int gen = ++generation;
+        Callable<MappingPreview> task = null;
+        try {
+            task = factory != null ? factory.get() : null;
+        } catch (Exception ignored) {
+        }
+        if (task == null) {
+            show(null);
+            return;
+        }
+        final Callable<MappingPreview> work = task;
+        new SwingWorker<MappingPreview, Void>() {
+            @Override
+            protected MappingPreview doInBackground() throws Exception {
+                return work.call();
+            }
+
+            @Override
+            protected void done() {
+                if (gen != generation)
+                    return;
+                try {
+                    show(get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    show(null);
+                }
+            }
+        }.execute();
+    }
+
+    private void show(MappingPreview preview) {
+        DefaultTableModel model = new DefaultTableModel(new Object[] { messages.getString("preview.column.center"),
+                messages.getString("preview.column.quantity"), messages.getString("preview.column.emissions") }, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        if (preview == null) {
+            table.setModel(model);
+            summary.setText(" ");
+            return;
+        }
+        List<Map.Entry<String, double[]>> totals = preview.getProjectedTotals();
+        for (int i = 0; i < totals.size() && i < MAX_CENTERS; i++) {
+            Map.Entry<String, double[]> e = totals.get(i);
+            model.addRow(new Object[] { e.getKey(), String.format(Locale.ROOT, "%.2f", e.getValue()[0]),
+                    String.format(Locale.ROOT, "%.3f", e.getValue()[1]) });
+        }
+        table.setModel(model);
+        TableColumnSizer.packAll(table, 3);
+        summary.setText(summaryText(preview));
+    }
+
+    private String summaryText(MappingPreview preview) {
+        StringBuilder skipped = new StringBuilder();
+        for (Map.Entry<String, Integer> e : preview.getSkipped().entrySet()) {
+            if (skipped.length() > 0)
+                skipped.append(", ");
+            String key = "preview.skip." + e.getKey();
+            skipped.append(messages.containsKey(key) ? messages.getString(key) : e.getKey()).append(' ')
+                    .append(e.getValue());
+        }
+        String none = messages.getString("preview.none");
+        String unmatched = preview.getUnmatched().isEmpty() ? none : String.join(", ", preview.getUnmatched());
+        return "<html>"
+                + escape(MessageFormat.format(messages.getString("preview.sample"), preview.getSampledRows(),
+                        preview.getDataRows()))
+                + "<br>" + escape(MessageFormat.format(messages.getString("preview.skipped"),
+                        skipped.length() > 0 ? skipped.toString() : none))
+                + "<br>" + escape(MessageFormat.format(messages.getString("preview.unmatched"), unmatched))
+                + "</html>";
+    }
+
+    private static String escape(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -0,0 +1,118 @@
+package com.carboncalc.util;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+
+/**
+ * Day-based proration of billing periods onto calendar months.
+ *
+ * <p>
+ * Invoices cover arbitrary periods (for example 15 Jan - 14 Feb). Exporters
+ * already prorate each period onto the reporting year by counting overlapped
+ * days; this helper performs the same split at month granularity so a single
+ * calculation pass yields both the yearly amount and its monthly breakdown.
+ * All arithmetic is done on epoch days, so the cost per row is a fixed twelve
+ * interval intersections regardless of the period length.
+ *
+ * <h3>Contract and notes</h3>
+ * <ul>
+ * <li>The returned array always has 12 entries (January first); the sum of
+ * the entries equals the amount prorated onto the whole year.</li>
+ * <li>When only one date is known the full amount is assigned to that date's
+ * month if it falls in the year, mirroring the exporters' conservative
+ * handling of rows with a missing date.</li>
+ * <li>Periods that end before they start yield all zeros. Negative amounts
+ * (rectified invoices) keep their sign.</li>
+ * <li>{@link #touchesYear(LocalDate, LocalDate, int)} is the single rule the
+ * single-year and multi-year exporters use to decide which years a row
+ * counts towards.</li>
+ * </ul>
+ */
+public final class PeriodProration {
+
+    /** Number of months in the vectors produced by this class. */
+    public static final int MONTHS = 12;
+
+    private PeriodProration() {
+    }
+
+    /**
+     * Whether a row with period {@code [start, end]} counts towards
+     * {@code year}: either date falls in the year, or the period spans the
+     * whole year (start before it, end after it). With one known date only
+     * that date's year counts; rows without dates count nowhere.
+     *
+     * @param start period start (may be null)
+     * @param end   period end (may be null)
+     * @param year  reporting year
+     * @return true when the row belongs to the year
+     */
+    public static boolean touchesYear(LocalDate start, LocalDate end, int year) {
+        if (start == null && end == null)
+            return false;
+        if (start == null || end == null)
+            return (start != null ? start : end).getYear() == year;
+        if (start.getYear() == year || end.getYear() == year)
+            return true;
+        return start.getYear() < year && year < end.getYear();
+    }
+
+    /**
+     * Split {@code total} over the months of {@code year} proportionally to
+     * the days of {@code [start, end]} (both inclusive) falling in each month.
+     *
+     * @param start period start (may be null)
+     * @param end   period end (may be null)
+     * @param total amount billed for the whole period
+     * @param year  reporting year
+     * @return 12 monthly amounts; never null
+     */
+    public static double[] monthlyShares(LocalDate start, LocalDate end, double total, int year) {
+        double[] out = new double[MONTHS];
+        splitInto(start, end, total, year, out);
+        return out;
+    }
+
+    /**
+     * Same as {@link #monthlyShares(LocalDate, LocalDate, double, int)} but
+     * writes into a caller-owned array (first cleared) to avoid an allocation
+     * per row.
+     *
+     * @param out destination array of at least {@link #MONTHS} entries
+     * @return the amount assigned to the year (sum of {@code out})
+     */
+    public static double splitInto(LocalDate start, LocalDate end, double total, int year, double[] out) {
+        for (int m = 0; m < MONTHS; m++)
+            out[m] = 0.0;
+        if (start == null && end == null)
+            return 0.0;
+        if (start == null || end == null) {
+            LocalDate known = start != null ? start : end;
+            if (known.getYear() != year)
+                return 0.0;
+            out[known.getMonthValue() - 1] = total;
+            return total;
+        }
+        long first = start.toEpochDay();
+        long last = end.toEpochDay();
+        if (last < first)
+            return 0.0;
+        double perDay = total / (double) (last - first + 1);
+
+        boolean leap = Year.isLeap(year);
+        long monthStart = LocalDate.of(year, 1, 1).toEpochDay();
+        double assigned = 0.0;
+        for (int m = 0; m < MONTHS; m++) {
+            long nextMonth = monthStart + Month.of(m + 1).length(leap);
+            long lo = Math.max(first, monthStart);
+            long hi = Math.min(last, nextMonth - 1);
+            if (hi >= lo) {
+                out[m] = perDay * (double) (hi - lo + 1);
+                assigned += out[m];
+            }
+            monthStart = nextMonth;
+        }
+        return assigned;
+    }
+}
@@ -0,0 +1,249 @@
+package com.carboncalc.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Trigram search index over table rows.
+ *
+ * <p>
+ * Each row contributes one searchable text (typically the CUPS code, center
+ * name, acronym, marketer and city joined together). Texts are folded once at
+ * build time (accents removed, case folded, whitespace collapsed) and every
+ * distinct three-character sequence maps to the sorted list of rows that
+ * contain it. A query term of three or more characters is answered by
+ * intersecting the posting lists of its trigrams and confirming the
+ * surviving candidates with a substring check, so lookups touch only rows
+ * that can possibly match instead of every row.
+ * </p>
+ *
+ * <h3>Contract and notes</h3>
+ * <ul>
+ * <li>Queries are split on whitespace; a row matches when it contains every
+ * term as a substring (after folding). Terms shorter than three characters
+ * are checked against the candidate rows of the other terms, or against all
+ * rows when no longer term is present.</li>
+ * <li>{@link #refine(int[], String)} narrows a previous result when the user
+ * keeps typing, which is the common incremental case.</li>
+ * <li>Instances are immutable and safe to query from any thread; building
+ * is meant to run off the EDT.</li>
+ * <li>Results are row indices in ascending order.</li>
+ * </ul>
+ */
+public final class SearchIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final int[] NONE = new int[0];
+
+    private final String[] texts;
+    private final Map<Long, int[]> postings;
+
+    private SearchIndex(String[] texts, Map<Long, int[]> postings) {
+        this.texts = texts;
+        this.postings = postings;
+    }
+
+    /**
+     * Build an index over {@code rows} texts.
+     *
+     * @param rows    number of rows
+     * @param rowText raw (unfolded) text of a row; null is treated as empty
+     */
+    public static SearchIndex build(int rows, IntFunction<String> rowText) {
+        String[] texts = new String[rows];
+        Map<Long, IntList> lists = new HashMap<>();
+        for (int r = 0; r < rows; r++) {
+            String text = fold(rowText.apply(r));
+            texts[r] = text;
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                long key = trigram(text, i);
+                IntList list = lists.get(key);
+                if (list == null) {
+                    list = new IntList();
+                    lists.put(key, list);
+                }
+                // Rows are visited in order, so a repeat is always the last entry
+                if (list.size == 0 || list.data[list.size - 1] != r)
+                    list.add(r);
+            }
+        }
+        Map<Long, int[]> postings = new HashMap<>(lists.size() * 2);
+        for (Map.Entry<Long, IntList> e : lists.entrySet())
+            postings.put(e.getKey(), e.getValue().toArray());
+        return new SearchIndex(texts, postings);
+    }
+
+    /**
+     * Fold text for matching: NFKD, combining marks removed, lower case
+     * (root locale) and runs of whitespace collapsed to one space.
+     */
+    public static String fold(String s) {
+        if (s == null || s.isEmpty())
+            return "";
+        String n = Normalizer.normalize(s.replace(' ', ' '), Normalizer.Form.NFKD);
+        n = MARKS.matcher(n).replaceAll("");
+        n = SPACES.matcher(n.toLowerCase(Locale.ROOT)).replaceAll(" ");
+        return n.trim();
+    }
+
+    /** @return number of indexed rows */
+    public int size() {
+        return texts.length;
+    }
+
+    /**
+     * @return ascending indices of the rows matching every term of
+     *         {@code query}; all rows for a blank query
+     */
+    public int[] search(String query) {
+        String[] terms = terms(query);
+        if (terms.length == 0)
+            return allRows();
+
+        int[] candidates = null;
+        for (String term : terms) {
+            if (term.length() < 3)
+                continue;
+            int[] hits = lookup(term);
+            candidates = candidates == null ? hits : intersect(candidates, hits);
+            if (candidates.length == 0)
+                return NONE;
+        }
+        if (candidates == null)
+            candidates = allRows();
+        return verify(candidates, terms);
+    }
+
+    /**
+     * Narrow {@code previous} (a result of this index for a query the new
+     * one extends) to the rows matching {@code query}. Falls back to a full
+     * search when {@code previous} is null.
+     */
+    public int[] refine(int[] previous, String query) {
+        if (previous == null)
+            return search(query);
+        String[] terms = terms(query);
+        if (terms.length == 0)
+            return allRows();
+        return verify(previous, terms);
+    }
+
+    /**
+     * @return true when every term of {@code previous} is a prefix-compatible
+     *         part of {@code next}, so the results of {@code next} are a
+     *         subset of those of {@code previous}
+     */
+    public static boolean narrows(String previous, String next) {
+        if (previous == null || next == null)
+            return false;
+        String[] before = terms(previous);
+        String[] after = terms(next);
+        if (before.length == 0 || after.length < before.length)
+            return false;
+        for (int i = 0; i < before.length; i++) {
+            if (!after[i].contains(before[i]))
+                return false;
+        }
+        return true;
+    }
+
+    private static String[] terms(String query) {
+        String folded = fold(query);
+        if (folded.isEmpty())
+            return new String[0];
+        Set<String> unique = new LinkedHashSet<>(Arrays.asList(folded.split(" ")));
+        return unique.toArray(new String[0]);
+    }
+
+    private int[] lookup(String term) {
+        List<int[]> lists = new ArrayList<>();
+        for (int i = 0; i + 3 <= term.length(); i++) {
+            int[] p = postings.get(trigram(term, i));
+            if (p == null)
+                return NONE;
+            lists.add(p);
+        }
+        // Intersect the shortest lists first
+        lists.sort((a, b) -> Integer.compare(a.length, b.length));
+        int[] result = lists.get(0);
+        for (int k = 1; k < lists.size() && result.length > 0; k++)
+            result = intersect(result, lists.get(k));
+        return result;
+    }
+
+    private int[] verify(int[] candidates, String[] terms) {
+        int[] out = new int[candidates.length];
+        int n = 0;
+        for (int row : candidates) {
+            if (row < 0 || row >= texts.length)
+                continue;
+            String text = texts[row];
+            boolean all = true;
+            for (String term : terms) {
+                if (!text.contains(term)) {
+                    all = false;
+                    break;
+                }
+            }
+            if (all)
+                out[n++] = row;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private int[] allRows() {
+        int[] all = new int[texts.length];
+        for (int i = 0; i < all.length; i++)
+            all[i] = i;
+        return all;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    /** Growable int array used while building posting lists. */
+    private static final class IntList {
+        int[] data = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.carboncalc.util;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+/**
+ * Startup phase tracer.
+ *
+ * <p>
+ * Records the wall time of every start-up phase (data folder checks, bundle
+ * loading, look-and-feel setup, main window and per-panel construction) so
+ * cold start can be profiled without an external tool. Phases may run on
+ * different threads; the report lists them by start offset together with the
+ * thread that ran them, so overlapping phases are easy to spot.
+ * </p>
+ *
+ * <h3>Contract and notes</h3>
+ * <ul>
+ * <li>Thread-safe; recording a phase costs two {@link System#nanoTime()}
+ * calls and a synchronized list append.</li>
+ * <li>Offsets are relative to the tracer's creation. For the
+ * {@link #global()} instance that is class initialization, which happens at
+ * the top of {@code App.main}; the JVM uptime at that moment is reported in
+ * the header.</li>
+ * <li>{@link #exportIfRequested()} writes the report to the path given by
+ * the {@value #TRACE_PROPERTY} system property and is a no-op when the
+ * property is unset. Export failures are ignored.</li>
+ * </ul>
+ */
+public final class StartupTracer {
+
+    /** System property naming the file the report is written to. */
+    public static final String TRACE_PROPERTY = "carboncalc.startup.trace";
+
+    private static final StartupTracer GLOBAL = new StartupTracer();
+
+    private final long originNanos;
+    private final long jvmUptimeMillis;
+    private final List<Phase> phases = new ArrayList<>();
+
+    public StartupTracer() {
+        this.originNanos = System.nanoTime();
+        this.jvmUptimeMillis = jvmUptime();
+    }
+
+    /** @return the process-wide tracer used by the application start-up */
+    public static StartupTracer global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Start a phase; close the returned span to record it.
+     *
+     * @param name phase name, for example {@code panel.electricity}
+     */
+    public Span begin(String name) {
+        return new Span(name, System.nanoTime());
+    }
+
+    /** Time a task as phase {@code name}. */
+    public void run(String name, Runnable task) {
+        Span span = begin(name);
+        try {
+            task.run();
+        } finally {
+            span.close();
+        }
+    }
+
+    /** Time a task returning a value as phase {@code name}. */
+    public <T> T call(String name, Callable<T> task) throws Exception {
+        Span span = begin(name);
+        try {
+            return task.call();
+        } finally {
+            span.close();
+        }
+    }
+
+    /** Record a zero-length milestone such as {@code first.frame}. */
+    public void mark(String name) {
+        long now = System.nanoTime();
+        record(new Phase(name, Thread.currentThread().getName(), now - originNanos, now - originNanos));
+    }
+
+    /** @return recorded phases ordered by start offset */
+    public List<Phase> phases() {
+        List<Phase> copy;
+        synchronized (phases) {
+            copy = new ArrayList<>(phases);
+        }
+        copy.sort(Comparator.comparingLong((Phase p) -> p.startNanos).thenComparing(p -> p.name));
+        return copy;
+    }
+
+    /** @return the phase named {@code name}, or null when not recorded */
+    public Phase find(String name) {
+        for (Phase p : phases()) {
+            if (p.name.equals(name))
+                return p;
+        }
+        return null;
+    }
+
+    /**
+     * @return elapsed time between the start of the first phase and the end
+     *         of the last one, in milliseconds
+     */
+    public double wallMillis() {
+        List<Phase> all = phases();
+        if (all.isEmpty())
+            return 0.0;
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (Phase p : all) {
+            first = Math.min(first, p.startNanos);
+            last = Math.max(last, p.endNanos);
+        }
+        return (last - first) / 1_000_000.0;
+    }
+
+    /** @return sum of all phase durations in milliseconds */
+    public double totalPhaseMillis() {
+        double t = 0.0;
+        for (Phase p : phases())
+            t += p.durationMillis();
+        return t;
+    }
+
+    /**
+     * Render a plain-text report: one line per phase with start offset,
+     * duration and thread. When phases overlap, the sum of durations exceeds
+     * the wall time.
+     */
+    public String report() {
+        List<Phase> all = phases();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT,
+                "Startup trace: wall %.1f ms, sum of phases %.1f ms, JVM uptime at start %d ms%n",
+                wallMillis(), totalPhaseMillis(), jvmUptimeMillis));
+        sb.append(String.format(Locale.ROOT, "%10s %10s  %-24s %s%n", "start(ms)", "took(ms)", "thread", "phase"));
+        for (Phase p : all) {
+            sb.append(String.format(Locale.ROOT, "%10.1f %10.1f  %-24s %s%n", p.startMillis(), p.durationMillis(),
+                    p.thread, p.name));
+        }
+        return sb.toString();
+    }
+
+    /** Write {@link #report()} to {@code path} (UTF-8), replacing it. */
+    public void writeReport(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null)
+            Files.createDirectories(parent);
+        Files.write(path, report().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Write the report when {@value #TRACE_PROPERTY} is set. */
+    public void exportIfRequested() {
+        String target = System.getProperty(TRACE_PROPERTY);
+        if (target == null || target.isBlank())
+            return;
+        try {
+            writeReport(Paths.get(target));
+        } catch (Exception e) {
+            // tracing must never affect start-up
+        }
+    }
+
+    private void record(Phase phase) {
+        synchronized (phases) {
+            phases.add(phase);
+        }
+    }
+
+    private static long jvmUptime() {
+        try {
+            return ManagementFactory.getRuntimeMXBean().getUptime();
+        } catch (Throwable t) {
+            return -1L;
+        }
+    }
+
+    /** An open phase; closing it records the elapsed time. */
+    public final class Span implements AutoCloseable {
+        private final String name;
+        private final long startNanos;
+        private boolean closed;
+
+        private Span(String name, long startNanos) {
+            this.name = name;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void close() {
+            if (closed)
+                return;
+            closed = true;
+            record(new Phase(name, Thread.currentThread().getName(), startNanos - originNanos,
+                    System.nanoTime() - originNanos));
+        }
+    }
+
+    /** One recorded phase; offsets are relative to the tracer origin. */
+    public static final class Phase {
+        private final String name;
+        private final String thread;
+        private final long startNanos;
+        private final long endNanos;
+
+        Phase(String name, String thread, long startNanos, long endNanos) {
+            this.name = name;
+            this.thread = thread;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+
+        public double startMillis() {
+            return startNanos / 1_000_000.0;
+        }
+
+        public double endMillis() {
+            return endNanos / 1_000_000.0;
+        }
+
+        public double durationMillis() {
+            return (endNanos - startNanos) / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,677 @@
+package com.carboncalc.util;
+
+import com.carboncalc.model.CupsCenterMapping;
+import com.carboncalc.model.ElectricityMapping;
+import com.carboncalc.model.FuelMapping;
+import com.carboncalc.model.GasMapping;
+import com.carboncalc.model.RefrigerantMapping;
+import com.carboncalc.model.enums.EnergyType;
+import com.carboncalc.model.factors.ElectricityGeneralFactors;
+import com.carboncalc.model.factors.FuelEmissionFactor;
+import com.carboncalc.model.factors.GasFactorEntry;
+import com.carboncalc.model.factors.RefrigerantEmissionFactor;
+import com.carboncalc.service.CupsServiceCsv;
+import com.carboncalc.service.ElectricityFactorServiceCsv;
+import com.carboncalc.service.FuelFactorServiceCsv;
+import com.carboncalc.service.GasFactorServiceCsv;
+import com.carboncalc.service.RefrigerantFactorServiceCsv;
+import com.opencsv.CSVWriter;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic generator of large synthetic inputs for benchmarks and scale
+ * tests.
+ *
+ * <p>
+ * Writes provider workbooks laid out for {@link #electricityMapping()} and
+ * {@link #gasMapping()}, ERP conformity sheets, Teams-form fuel and
+ * refrigerant sheets, and the reference data (CUPS inventory and per-year
+ * factor files) under a data directory. Reference files are written through
+ * the {@code *ServiceCsv} classes, so they always have the layout the
+ * application reads.
+ * </p>
+ *
+ * <h3>Contract and notes</h3>
+ * <ul>
+ * <li>Output depends only on the {@link Options}: every file uses its own
+ * random stream derived from the seed, so the same options always produce
+ * the same data regardless of which files are written or in which
+ * order.</li>
+ * <li>CUPS are assigned to centers round-robin; a fraction
+ * ({@link Options#setSharedCupsRatio(double)}) is additionally assigned to a
+ * second center, which exercises the per-CUPS consumption split.</li>
+ * <li>Provider and form rows only reference CUPS, marketers, gas types, fuel
+ * types and refrigerants present in the reference data.</li>
+ * <li>XLSX files are streamed with {@link SXSSFWorkbook}, so row counts in
+ * the hundreds of thousands need little heap. {@link DateStyle#EXCEL} cells
+ * become {@code dd/MM/yyyy} text in CSV output.</li>
+ * <li>The exporters read reference data from {@code data} relative to the
+ * working directory; point {@link #writeReferenceData(Path)} there (or run
+ * from the directory containing it) to use the generated inputs
+ * end-to-end.</li>
+ * </ul>
+ */
+public final class SyntheticDataGenerator {
+
+    /** Provider sheet name used in generated workbooks. */
+    public static final String SHEET = "data";
+
+    /** Gas types written to the gas factor file; rows use the first one. */
+    public static final String[] GAS_TYPES = { "GAS NATURAL", "PROPANO" };
+    static final String[] FUEL_TYPES = { "Gasoleo A", "Gasolina 95", "GLP" };
+    static final String[] VEHICLE_TYPES = { "Turismo", "Furgoneta", "Camion" };
+    static final String[] REFRIGERANTS = { "R-410A", "R-32", "R-134a", "R-407C", "R-22" };
+    static final double[] REFRIGERANT_PCA = { 2088, 675, 1430, 1774, 1810 };
+    static final String[] CITIES = { "Madrid", "Toledo", "Segovia", "Avila", "Cuenca", "Guadalajara" };
+
+    private static final String[] PROVIDER_HEADERS = { "CUPS", "Factura", "Fecha inicio", "Fecha fin",
+            "Consumo kWh", "Centro", "Comercializadora" };
+    private static final String[] ERP_HEADERS = { "Factura", "Proveedor", "Importe", "Fecha conformidad" };
+    private static final String[] FUEL_HEADERS = { "Centro", "Responsable", "Factura", "Proveedor", "Fecha",
+            "Tipo combustible", "Tipo vehiculo", "Importe", "Last Modified" };
+    private static final String[] REFRIGERANT_HEADERS = { "Centro", "Persona", "Factura", "Proveedor", "Fecha",
+            "Tipo refrigerante", "Cantidad", "Last Modified" };
+
+    // Independent random streams, one per generated file kind
+    private static final int STREAM_ELECTRICITY = 1;
+    private static final int STREAM_GAS = 2;
+    private static final int STREAM_ERP = 3;
+    private static final int STREAM_FUEL = 4;
+    private static final int STREAM_REFRIGERANT = 5;
+    private static final int STREAM_REFERENCE = 6;
+
+    /** How date cells are written. */
+    public enum DateStyle {
+        /** {@code yyyy-MM-dd} text. */
+        ISO("yyyy-MM-dd"),
+        /** {@code dd/MM/yyyy} text. */
+        SLASH("dd/MM/yyyy"),
+        /** {@code d-M-yy} text (two-digit year). */
+        DASH_SHORT("d-M-yy"),
+        /** {@code yyyyMMdd} text. */
+        COMPACT("yyyyMMdd"),
+        /** Numeric Excel date cell ({@code dd/MM/yyyy} text in CSV). */
+        EXCEL("dd/MM/yyyy");
+
+        final DateTimeFormatter formatter;
+
+        DateStyle(String pattern) {
+            this.formatter = DateTimeFormatter.ofPattern(pattern, Locale.ROOT);
+        }
+    }
+
+    /** Output container for generated sheets. */
+    public enum Format {
+        XLSX(".xlsx"), CSV(".csv");
+
+        final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    /**
+     * Generation parameters. Plain mutable bean; defaults describe a mid-size
+     * organisation.
+     */
+    public static class Options {
+        private long seed = 42L;
+        private int year = 2025;
+        private int rows = 10_000;
+        private int centers = 200;
+        private int cups = 400;
+        private double sharedCupsRatio = 0.1;
+        private int marketers = 15;
+        private double conformedRatio = 0.9;
+        private List<DateStyle> dateStyles = Arrays.asList(DateStyle.ISO, DateStyle.SLASH, DateStyle.EXCEL);
+        private Format format = Format.XLSX;
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public void setSeed(long seed) {
+            this.seed = seed;
+        }
+
+        public int getYear() {
+            return year;
+        }
+
+        public void setYear(int year) {
+            this.year = year;
+        }
+
+        /** @return data rows per provider, ERP or form sheet */
+        public int getRows() {
+            return rows;
+        }
+
+        public void setRows(int rows) {
+            this.rows = Math.max(0, rows);
+        }
+
+        public int getCenters() {
+            return centers;
+        }
+
+        public void setCenters(int centers) {
+            this.centers = Math.max(1, centers);
+        }
+
+        /** @return number of distinct CUPS per energy type */
+        public int getCups() {
+            return cups;
+        }
+
+        public void setCups(int cups) {
+            this.cups = Math.max(1, cups);
+        }
+
+        /** @return fraction of CUPS assigned to a second center */
+        public double getSharedCupsRatio() {
+            return sharedCupsRatio;
+        }
+
+        public void setSharedCupsRatio(double sharedCupsRatio) {
+            this.sharedCupsRatio = Math.max(0.0, Math.min(1.0, sharedCupsRatio));
+        }
+
+        public int getMarketers() {
+            return marketers;
+        }
+
+        public void setMarketers(int marketers) {
+            this.marketers = Math.max(1, marketers);
+        }
+
+        /** @return fraction of ERP invoices with a conformity date */
+        public double getConformedRatio() {
+            return conformedRatio;
+        }
+
+        public void setConformedRatio(double conformedRatio) {
+            this.conformedRatio = Math.max(0.0, Math.min(1.0, conformedRatio));
+        }
+
+        /** @return date styles mixed uniformly over the rows */
+        public List<DateStyle> getDateStyles() {
+            return dateStyles;
+        }
+
+        public void setDateStyles(List<DateStyle> dateStyles) {
+            this.dateStyles = dateStyles == null || dateStyles.isEmpty()
+                    ? Collections.singletonList(DateStyle.ISO)
+                    : new ArrayList<>(dateStyles);
+        }
+
+        public Format getFormat() {
+            return format;
+        }
+
+        public void setFormat(Format format) {
+            this.format = format == null ? Format.XLSX : format;
+        }
+    }
+
+    private final Options options;
+
+    public SyntheticDataGenerator(Options options) {
+        this.options = options != null ? options : new Options();
+    }
+
+    public Options getOptions() {
+        return options;
+    }
+
+    /** @return mapping matching the generated electricity provider sheet */
+    public ElectricityMapping electricityMapping() {
+        return new ElectricityMapping(0, 1, 2, 3, 4, 5, 6);
+    }
+
+    /** @return mapping matching the generated gas provider sheet */
+    public GasMapping gasMapping() {
+        return new GasMapping(0, 1, 2, 3, 4, 5, 6, GAS_TYPES[0]);
+    }
+
+    /** @return mapping matching the generated fuel form */
+    public FuelMapping fuelMapping() {
+        return new FuelMapping(0, 1, 2, 3, 4, 5, 6, 7, 8);
+    }
+
+    /** @return mapping matching the generated refrigerant form */
+    public RefrigerantMapping refrigerantMapping() {
+        return new RefrigerantMapping(0, 1, 2, 3, 4, 5, 6, 7);
+    }
+
+    /** @return header of the ERP invoice number column */
+    public String erpInvoiceHeader() {
+        return ERP_HEADERS[0];
+    }
+
+    /** @return header of the ERP conformity date column */
+    public String erpConformityHeader() {
+        return ERP_HEADERS[3];
+    }
+
+    /**
+     * Write every input into {@code dir}: provider, ERP and form sheets next
+     * to a {@code data} directory with the reference files.
+     *
+     * @return written files by name ({@code electricity}, {@code gas},
+     *         {@code electricityErp}, {@code gasErp}, {@code fuel},
+     *         {@code refrigerant}, {@code data})
+     */
+    public Map<String, Path> writeAll(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        String ext = options.format.extension;
+        Map<String, Path> out = new LinkedHashMap<>();
+        out.put("electricity", writeElectricityProvider(dir.resolve("electricity_provider" + ext)));
+        out.put("gas", writeGasProvider(dir.resolve("gas_provider" + ext)));
+        out.put("electricityErp", writeErp(dir.resolve("electricity_erp" + ext), EnergyType.ELECTRICITY));
+        out.put("gasErp", writeErp(dir.resolve("gas_erp" + ext), EnergyType.GAS));
+        out.put("fuel", writeFuelForm(dir.resolve("fuel_form" + ext)));
+        out.put("refrigerant", writeRefrigerantForm(dir.resolve("refrigerant_form" + ext)));
+        Path data = dir.resolve("data");
+        writeReferenceData(data);
+        out.put("data", data);
+        return out;
+    }
+
+    public Path writeElectricityProvider(Path file) throws IOException {
+        return writeProvider(file, EnergyType.ELECTRICITY, STREAM_ELECTRICITY);
+    }
+
+    public Path writeGasProvider(Path file) throws IOException {
+        return writeProvider(file, EnergyType.GAS, STREAM_GAS);
+    }
+
+    /**
+     * Write an ERP conformity sheet for the invoices of the electricity or
+     * gas provider sheet. About {@link Options#getConformedRatio()} of them
+     * get a conformity date; the rest leave it empty.
+     */
+    public Path writeErp(Path file, EnergyType type) throws IOException {
+        Random random = stream(STREAM_ERP * 10 + type.ordinal());
+        try (TableWriter w = open(file, ERP_HEADERS)) {
+            for (int i = 0; i < options.rows; i++) {
+                w.text(invoice(type, i));
+                w.text(marketer(i % options.marketers));
+                w.number(Math.round(random.nextDouble() * 500_000) / 100.0);
+                if (random.nextDouble() < options.conformedRatio)
+                    w.date(randomDate(random, 0, 400), pickStyle(random));
+                else
+                    w.text("");
+                w.endRow();
+            }
+        }
+        return file;
+    }
+
+    public Path writeFuelForm(Path file) throws IOException {
+        Random random = stream(STREAM_FUEL);
+        try (TableWriter w = open(file, FUEL_HEADERS)) {
+            for (int i = 0; i < options.rows; i++) {
+                LocalDate date = randomDate(random, 0, 365);
+                w.text(center(random.nextInt(options.centers)));
+                w.text("Responsable " + random.nextInt(50));
+                w.text("FC-" + String.format(Locale.ROOT, "%07d", i + 1));
+                w.text("Proveedor " + random.nextInt(10));
+                w.date(date, pickStyle(random));
+                w.text(FUEL_TYPES[random.nextInt(FUEL_TYPES.length)]);
+                w.text(VEHICLE_TYPES[random.nextInt(VEHICLE_TYPES.length)]);
+                // A few zero amounts, as real forms contain
+                w.number(random.nextInt(50) == 0 ? 0 : Math.round(random.nextDouble() * 30_000) / 100.0);
+                w.text(lastModified(random, date));
+                w.endRow();
+            }
+        }
+        return file;
+    }
+
+    public Path writeRefrigerantForm(Path file) throws IOException {
+        Random random = stream(STREAM_REFRIGERANT);
+        try (TableWriter w = open(file, REFRIGERANT_HEADERS)) {
+            for (int i = 0; i < options.rows; i++) {
+                LocalDate date = randomDate(random, 0, 365);
+                w.text(center(random.nextInt(options.centers)));
+                w.text("Persona " + random.nextInt(50));
+                w.text("FR-" + String.format(Locale.ROOT, "%07d", i + 1));
+                w.text("Proveedor " + random.nextInt(10));
+                w.date(date, pickStyle(random));
+                w.text(REFRIGERANTS[random.nextInt(REFRIGERANTS.length)]);
+                w.number(Math.round(random.nextDouble() * 2_000) / 100.0);
+                w.text(lastModified(random, date));
+                w.endRow();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Write the CUPS inventory and the factor files for
+     * {@link Options#getYear()} under {@code dataDir} (the directory the
+     * services use as their data root).
+     */
+    public void writeReferenceData(Path dataDir) throws IOException {
+        Random random = stream(STREAM_REFERENCE);
+        new CupsServiceCsv(dataDir.toString()).saveCupsData(cupsMappings());
+
+        Path factors = dataDir.resolve("emission_factors");
+        String base = factors.toString();
+        ElectricityGeneralFactors general = new ElectricityGeneralFactors();
+        general.setMixSinGdo(0.25);
+        general.setGdoRenovable(0.0);
+        general.setGdoCogeneracionAltaEficiencia(0.2);
+        general.setLocationBasedFactor(0.22);
+        for (int m = 0; m < options.marketers; m++) {
+            general.addTradingCompany(new ElectricityGeneralFactors.TradingCompany(marketer(m),
+                    Math.round((0.05 + random.nextDouble() * 0.35) * 1000) / 1000.0, m % 4 == 0 ? "RENOVABLE" : ""));
+        }
+        new ElectricityFactorServiceCsv(base).saveFactors(general, options.year);
+
+        GasFactorServiceCsv gas = new GasFactorServiceCsv(base);
+        for (String gasType : GAS_TYPES)
+            gas.saveGasFactor(new GasFactorEntry(gasType, gasType, options.year, 0.18 + random.nextDouble() * 0.05,
+                    0.2, "kWh"));
+
+        FuelFactorServiceCsv fuel = new FuelFactorServiceCsv(base);
+        for (String fuelType : FUEL_TYPES)
+            for (String vehicle : VEHICLE_TYPES)
+                fuel.saveFuelFactor(new FuelEmissionFactor(fuelType + " (" + vehicle + ")", options.year,
+                        2.0 + random.nextDouble(), fuelType, vehicle));
+
+        RefrigerantFactorServiceCsv refrigerant = new RefrigerantFactorServiceCsv(base);
+        for (int i = 0; i < REFRIGERANTS.length; i++)
+            refrigerant.saveRefrigerantFactor(
+                    new RefrigerantEmissionFactor(REFRIGERANTS[i], options.year, REFRIGERANT_PCA[i], REFRIGERANTS[i]));
+    }
+
+    /**
+     * @return the CUPS/center rows written by
+     *         {@link #writeReferenceData(Path)}: electricity and gas CUPS, with
+     *         shared CUPS listed once per center
+     */
+    public List<CupsCenterMapping> cupsMappings() {
+        Random random = stream(STREAM_REFERENCE * 10);
+        List<CupsCenterMapping> out = new ArrayList<>();
+        for (EnergyType type : new EnergyType[] { EnergyType.ELECTRICITY, EnergyType.GAS }) {
+            for (int c = 0; c < options.cups; c++) {
+                String cups = cups(type, c);
+                String marketer = marketer(c % options.marketers);
+                int first = c % options.centers;
+                out.add(mapping(cups, marketer, first, type));
+                if (options.centers > 1 && random.nextDouble() < options.sharedCupsRatio) {
+                    int second = (first + 1 + random.nextInt(options.centers - 1)) % options.centers;
+                    out.add(mapping(cups, marketer, second, type));
+                }
+            }
+        }
+        return out;
+    }
+
+    private CupsCenterMapping mapping(String cups, String marketer, int center, EnergyType type) {
+        String city = CITIES[center % CITIES.length];
+        return new CupsCenterMapping(cups, marketer, center(center), "C" + center, "Campus " + center % 5,
+                type.name(), "Calle " + (center + 1), String.format(Locale.ROOT, "28%03d", center % 1000), city,
+                city);
+    }
+
+    // CUPS, invoice, start, end, consumption, center, marketer
+    private Path writeProvider(Path file, EnergyType type, int streamId) throws IOException {
+        Random random = stream(streamId);
+        try (TableWriter w = open(file, PROVIDER_HEADERS)) {
+            for (int i = 0; i < options.rows; i++) {
+                int c = random.nextInt(options.cups);
+                // Billing periods start from mid-December of the previous year
+                LocalDate start = randomDate(random, -15, 365);
+                DateStyle style = pickStyle(random);
+                w.text(cups(type, c));
+                w.text(invoice(type, i));
+                w.date(start, style);
+                w.date(start.plusDays(27 + random.nextInt(7)), style);
+                w.number(Math.round((50 + random.nextDouble() * 20_000) * 100) / 100.0);
+                w.text(center(c % options.centers));
+                w.text(marketer(c % options.marketers));
+                w.endRow();
+            }
+        }
+        return file;
+    }
+
+    private Random stream(int id) {
+        return new Random(options.seed * 1_000_003L + id);
+    }
+
+    private DateStyle pickStyle(Random random) {
+        return options.dateStyles.get(random.nextInt(options.dateStyles.size()));
+    }
+
+    private LocalDate randomDate(Random random, int fromDay, int toDay) {
+        return LocalDate.of(options.year, 1, 1).plusDays(fromDay + random.nextInt(Math.max(1, toDay - fromDay)));
+    }
+
+    private static String lastModified(Random random, LocalDate date) {
+        LocalDateTime lm = date.plusDays(1 + random.nextInt(20)).atTime(8 + random.nextInt(10), random.nextInt(60));
+        return lm.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm", Locale.ROOT));
+    }
+
+    static String cups(EnergyType type, int index) {
+        return String.format(Locale.ROOT, "ES%04d%012d%s", type == EnergyType.GAS ? 217 : 21, index,
+                type == EnergyType.GAS ? "GZ" : "EL");
+    }
+
+    static String invoice(EnergyType type, int index) {
+        return String.format(Locale.ROOT, "%s-%07d", type == EnergyType.GAS ? "FG" : "FE", index + 1);
+    }
+
+    static String center(int index) {
+        return String.format(Locale.ROOT, "Centro %03d", index + 1);
+    }
+
+    static String marketer(int index) {
+        return String.format(Locale.ROOT, "Comercializadora %02d", index + 1);
+    }
+
+    private TableWriter open(Path file, String[] headers) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null)
+            Files.createDirectories(parent);
+        TableWriter w = options.format == Format.CSV ? new CsvTableWriter(file) : new XlsxTableWriter(file);
+        for (String h : headers)
+            w.text(h);
+        w.endRow();
+        return w;
+    }
+
+    /** Row-at-a-time sink shared by the XLSX and CSV outputs. */
+    private interface TableWriter extends Closeable {
+        void text(String value);
+
+        void number(double value);
+
+        void date(LocalDate value, DateStyle style);
+
+        void endRow() throws IOException;
+    }
+
+    private static final class XlsxTableWriter implements TableWriter {
+        private final Path file;
+        private final SXSSFWorkbook wb = new SXSSFWorkbook(1000);
+        private final Sheet sheet = wb.createSheet(SHEET);
+        private final CellStyle dateStyle;
+        private Row row;
+        private int rowIndex;
+        private int col;
+
+        XlsxTableWriter(Path file) {
+            this.file = file;
+            this.dateStyle = wb.createCellStyle();
+            dateStyle.setDataFormat(wb.createDataFormat().getFormat("dd/mm/yyyy"));
+        }
+
+        private Cell next() {
+            if (row == null)
+                row = sheet.createRow(rowIndex);
+            return row.createCell(col++);
+        }
+
+        @Override
+        public void text(String value) {
+            next().setCellValue(value);
+        }
+
+        @Override
+        public void number(double value) {
+            next().setCellValue(value);
+        }
+
+        @Override
+        public void date(LocalDate value, DateStyle style) {
+            Cell cell = next();
+            if (style == DateStyle.EXCEL) {
+                cell.setCellValue(value);
+                cell.setCellStyle(dateStyle);
+            } else {
+                cell.setCellValue(value.format(style.formatter));
+            }
+        }
+
+        @Override
+        public void endRow() {
+            row = null;
+            rowIndex++;
+            col = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (OutputStream os = Files.newOutputStream(file)) {
+                wb.write(os);
+            } finally {
+                wb.dispose();
+                wb.close();
+            }
+        }
+    }
+
+    private static final class CsvTableWriter implements TableWriter {
+        private final CSVWriter csv;
+        private final List<String> row = new ArrayList<>();
+
+        CsvTableWriter(Path file) throws IOException {
+            Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            this.csv = new CSVWriter(writer, CSVWriter.DEFAULT_SEPARATOR, CSVWriter.DEFAULT_QUOTE_CHARACTER,
+                    CSVWriter.DEFAULT_ESCAPE_CHARACTER, CSVWriter.DEFAULT_LINE_END);
+        }
+
+        @Override
+        public void text(String value) {
+            row.add(value);
+        }
+
+        @Override
+        public void number(double value) {
+            row.add(value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value));
+        }
+
+        @Override
+        public void date(LocalDate value, DateStyle style) {
+            row.add(value.format(style.formatter));
+        }
+
+        @Override
+        public void endRow() {
+            csv.writeNext(row.toArray(new String[0]), false);
+            row.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            csv.close();
+        }
+    }
+
+    /**
+     * Command line entry point:
+     * {@code --out DIR [--seed N] [--year N] [--rows N] [--centers N] [--cups N]
+     * [--shared-ratio R] [--marketers N] [--conformed-ratio R]
+     * [--dates iso,slash,dash_short,compact,excel] [--format xlsx|csv]}.
+     */
+    public static void main(String[] args) throws IOException {
+        Options o = new Options();
+        Path out = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--out":
+                    out = Paths.get(value);
+                    break;
+                case "--seed":
+                    o.setSeed(Long.parseLong(value));
+                    break;
+                case "--year":
+                    o.setYear(Integer.parseInt(value));
+                    break;
+                case "--rows":
+                    o.setRows(Integer.parseInt(value));
+                    break;
+                case "--centers":
+                    o.setCenters(Integer.parseInt(value));
+                    break;
+                case "--cups":
+                    o.setCups(Integer.parseInt(value));
+                    break;
+                case "--shared-ratio":
+                    o.setSharedCupsRatio(Double.parseDouble(value));
+                    break;
+                case "--marketers":
+                    o.setMarketers(Integer.parseInt(value));
+                    break;
+                case "--conformed-ratio":
+                    o.setConformedRatio(Double.parseDouble(value));
+                    break;
+                case "--dates":
+                    List<DateStyle> styles = new ArrayList<>();
+                    for (String s : value.split(","))
+                        styles.add(DateStyle.valueOf(s.trim().toUpperCase(Locale.ROOT)));
+                    o.setDateStyles(styles);
+                    break;
+                case "--format":
+                    o.setFormat(Format.valueOf(value.trim().toUpperCase(Locale.ROOT)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (out == null)
+            throw new IllegalArgumentException("Missing --out DIR");
+        for (Map.Entry<String, Path> e : new SyntheticDataGenerator(o).writeAll(out).entrySet())
+            System.out.println(e.getKey() + "\t" + e.getValue());
+    }
+}
@@ -0,0 +1,172 @@
+package com.carboncalc.util;
+
+import javax.swing.JTable;
+import javax.swing.table.TableCellRenderer;
+import javax.swing.table.TableColumn;
+import javax.swing.table.TableColumnModel;
+import javax.swing.table.TableModel;
+import java.awt.Component;
+import java.awt.FontMetrics;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.WeakHashMap;
+
+/**
+ * Shared column width sizing for preview tables.
+ *
+ * <p>
+ * Sizing a column by asking the cell renderer for the preferred size of
+ * every row is O(rows x columns) layout work on the EDT, repeated on each
+ * sheet or mapping change. This helper measures cell text with the table's
+ * {@link FontMetrics} on a bounded sample of rows (the first and last rows
+ * plus a few spread over the middle) and only asks the header renderer once
+ * per column.
+ * </p>
+ *
+ * <h3>Contract and notes</h3>
+ * <ul>
+ * <li>At most {@value #SAMPLE_HEAD} + {@value #SAMPLE_TAIL} +
+ * {@value #SAMPLE_SPREAD} rows are measured per column, whatever the table
+ * size.</li>
+ * <li>Computed widths are cached per {@link TableColumnModel} together with
+ * a fingerprint of the header and sampled values; columns whose fingerprint
+ * did not change keep their cached width and are not measured again.</li>
+ * <li>Cell text is measured as {@code String.valueOf(value)}, which matches
+ * the default renderers used by the preview tables. Tables with custom
+ * renderers that draw icons or extra decorations may get slightly narrow
+ * columns.</li>
+ * <li>Must be called on the EDT.</li>
+ * </ul>
+ */
+public final class TableColumnSizer {
+
+    /** Number of leading rows always sampled. */
+    public static final int SAMPLE_HEAD = 30;
+    /** Number of trailing rows always sampled. */
+    public static final int SAMPLE_TAIL = 10;
+    /** Number of extra rows sampled from the middle of the table. */
+    public static final int SAMPLE_SPREAD = 20;
+
+    /** Minimum width applied by {@link #packAll(JTable, int)}. */
+    public static final int DEFAULT_MIN_WIDTH = 40;
+    /** Maximum width applied by {@link #packAll(JTable, int)}. */
+    public static final int DEFAULT_MAX_WIDTH = 300;
+
+    // Border of the default cell renderers (1 px each side)
+    private static final int RENDERER_PADDING = 2;
+
+    private static final Map<TableColumnModel, Map<Integer, Cached>> CACHE = new WeakHashMap<>();
+
+    private TableColumnSizer() {
+    }
+
+    /**
+     * Size all columns of {@code table} using the default minimum and
+     * maximum widths.
+     */
+    public static void packAll(JTable table, int margin) {
+        packAll(table, margin, DEFAULT_MIN_WIDTH, DEFAULT_MAX_WIDTH);
+    }
+
+    /**
+     * Size all columns of {@code table} from the header and a sample of rows.
+     *
+     * @param margin   extra space added on each side of the content
+     * @param minWidth lower bound for the preferred width
+     * @param maxWidth upper bound for the preferred width
+     */
+    public static void packAll(JTable table, int margin, int minWidth, int maxWidth) {
+        if (table == null)
+            return;
+        int[] rows = sampleRows(table.getModel().getRowCount());
+        Map<Integer, Cached> cache = CACHE.computeIfAbsent(table.getColumnModel(), k -> new HashMap<>());
+        for (int c = 0; c < table.getColumnCount(); c++)
+            pack(table, c, rows, margin, minWidth, maxWidth, cache);
+    }
+
+    /**
+     * @return ascending model row indices measured for a table of
+     *         {@code rowCount} rows. The middle rows come from a generator
+     *         seeded with the row count, so the same table always yields the
+     *         same sample.
+     */
+    static int[] sampleRows(int rowCount) {
+        int limit = SAMPLE_HEAD + SAMPLE_TAIL + SAMPLE_SPREAD;
+        if (rowCount <= limit) {
+            int[] all = new int[rowCount];
+            for (int i = 0; i < rowCount; i++)
+                all[i] = i;
+            return all;
+        }
+        int[] rows = new int[limit];
+        int n = 0;
+        for (int i = 0; i < SAMPLE_HEAD; i++)
+            rows[n++] = i;
+        for (int i = rowCount - SAMPLE_TAIL; i < rowCount; i++)
+            rows[n++] = i;
+        Random random = new Random(rowCount);
+        int middle = rowCount - SAMPLE_HEAD - SAMPLE_TAIL;
+        for (int i = 0; i < SAMPLE_SPREAD; i++) {
+            // One row per stripe keeps the sample spread over the whole table
+            int stripeStart = SAMPLE_HEAD + (int) ((long) middle * i / SAMPLE_SPREAD);
+            int stripeEnd = SAMPLE_HEAD + (int) ((long) middle * (i + 1) / SAMPLE_SPREAD);
+            rows[n++] = stripeStart + random.nextInt(Math.max(1, stripeEnd - stripeStart));
+        }
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    private static void pack(JTable table, int viewColumn, int[] rows, int margin, int minWidth, int maxWidth,
+            Map<Integer, Cached> cache) {
+        TableColumn col = table.getColumnModel().getColumn(viewColumn);
+        TableModel model = table.getModel();
+        int modelColumn = table.convertColumnIndexToModel(viewColumn);
+
+        String[] values = new String[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            Object v = model.getValueAt(rows[i], modelColumn);
+            values[i] = v == null ? "" : String.valueOf(v);
+        }
+        Object header = col.getHeaderValue();
+        int fingerprint = 31 * Arrays.hashCode(values) + (header == null ? 0 : header.hashCode());
+        fingerprint = 31 * fingerprint + margin;
+
+        Cached cached = cache.get(viewColumn);
+        if (cached == null || cached.fingerprint != fingerprint) {
+            cached = new Cached(fingerprint, measure(table, col, values) + 2 * margin);
+            cache.put(viewColumn, cached);
+        }
+        int width = Math.max(cached.width, minWidth);
+        width = Math.min(width, maxWidth);
+        col.setPreferredWidth(width);
+    }
+
+    private static int measure(JTable table, TableColumn col, String[] values) {
+        int width = 0;
+        TableCellRenderer renderer = col.getHeaderRenderer();
+        if (renderer == null && table.getTableHeader() != null)
+            renderer = table.getTableHeader().getDefaultRenderer();
+        if (renderer != null) {
+            Component comp = renderer.getTableCellRendererComponent(table, col.getHeaderValue(), false, false, -1,
+                    0);
+            width = comp.getPreferredSize().width;
+        }
+        FontMetrics fm = table.getFontMetrics(table.getFont());
+        int padding = RENDERER_PADDING + table.getIntercellSpacing().width;
+        for (String v : values)
+            width = Math.max(width, fm.stringWidth(v) + padding);
+        return width;
+    }
+
+    private static final class Cached {
+        final int fingerprint;
+        final int width;
+
+        Cached(int fingerprint, int width) {
+            this.fingerprint = fingerprint;
+            this.width = width;
+        }
+    }
+}
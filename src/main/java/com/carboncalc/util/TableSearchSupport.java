@@ -0,0 +1,208 @@
+package com.carboncalc.util;
+
+import javax.swing.BorderFactory;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.KeyStroke;
+import javax.swing.RowFilter;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.TableModel;
+import javax.swing.table.TableRowSorter;
+import java.awt.FlowLayout;
+import java.util.BitSet;
+import java.util.ResourceBundle;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Incremental search box for a {@link JTable}.
+ *
+ * <p>
+ * Installs a {@link TableRowSorter} on the table and filters it from a text
+ * field. Keystrokes are debounced; the text of the searched columns is
+ * captured on the EDT, while building the {@link SearchIndex} and running
+ * the query happen on a {@link SwingWorker}. The index is rebuilt lazily the
+ * first time a query runs after the model changed, and a query that extends
+ * the previous one only re-checks the rows that matched before.
+ * </p>
+ *
+ * <h3>Contract and notes</h3>
+ * <ul>
+ * <li>Must be installed and used on the EDT. Sorting stays disabled; the
+ * sorter is only used for filtering, so rows keep the model order.</li>
+ * <li>Once installed, view and model indices differ: controllers must
+ * convert selections (see {@link UIUtils#selectedModelRow(JTable)}).</li>
+ * <li>Results of superseded queries are dropped. Model changes while a
+ * filter is active re-run the current query.</li>
+ * <li>Escape in the search field clears it.</li>
+ * </ul>
+ */
+public final class TableSearchSupport {
+
+    /** Delay between the last keystroke and the search, in milliseconds. */
+    public static final int DEBOUNCE_MS = 150;
+
+    private static final int FIELD_WIDTH = 200;
+    private static final int FIELD_HEIGHT = 25;
+    // Separates columns so a term cannot match across two cells
+    private static final char FIELD_SEPARATOR = '\u0001';
+
+    private final JTable table;
+    private final int[] columns;
+    private final TableRowSorter<TableModel> sorter;
+    private final JTextField field;
+    private final Timer debounce;
+
+    private SearchIndex index;
+    private int modelVersion;
+    private int indexVersion = -1;
+    private int generation;
+    private String lastQuery;
+    private int[] lastResult;
+
+    private TableSearchSupport(JTable table, int[] columns) {
+        this.table = table;
+        this.columns = columns.clone();
+        this.sorter = new TableRowSorter<>(table.getModel());
+        for (int c = 0; c < table.getModel().getColumnCount(); c++)
+            sorter.setSortable(c, false);
+        table.setRowSorter(sorter);
+        table.getModel().addTableModelListener(e -> modelChanged());
+
+        this.field = UIUtils.createCompactTextField(FIELD_WIDTH, FIELD_HEIGHT);
+        this.debounce = new Timer(DEBOUNCE_MS, e -> runQuery());
+        this.debounce.setRepeats(false);
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+        });
+        field.registerKeyboardAction(e -> field.setText(""), KeyStroke.getKeyStroke("ESCAPE"),
+                JComponent.WHEN_FOCUSED);
+    }
+
+    /**
+     * Make {@code table} searchable over the given model columns.
+     *
+     * @param table    table to filter; its model must not be replaced later
+     * @param messages bundle with the {@code label.search} key
+     * @param columns  model column indices whose text is searched
+     * @return a small panel with the search label and field, meant to be
+     *         placed above the table
+     */
+    public static JPanel install(JTable table, ResourceBundle messages, int... columns) {
+        TableSearchSupport support = new TableSearchSupport(table, columns);
+        JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        panel.setBackground(UIUtils.CONTENT_BACKGROUND);
+        panel.setBorder(BorderFactory.createEmptyBorder(0, 0, 4, 0));
+        JLabel label = new JLabel(messages.getString("label.search"));
+        label.setLabelFor(support.field);
+        panel.add(label);
+        panel.add(support.field);
+        return panel;
+    }
+
+    private void modelChanged() {
+        modelVersion++;
+        lastQuery = null;
+        lastResult = null;
+        if (!field.getText().trim().isEmpty())
+            debounce.restart();
+    }
+
+    private void runQuery() {
+        final String query = field.getText();
+        final int gen = ++generation;
+        if (query.trim().isEmpty()) {
+            lastQuery = null;
+            lastResult = null;
+            sorter.setRowFilter(null);
+            return;
+        }
+
+        final int version = modelVersion;
+        final SearchIndex current = indexVersion == version ? index : null;
+        final String[] snapshot = current == null ? snapshotRows() : null;
+        final String previousQuery = lastQuery;
+        final int[] previousResult = lastResult;
+
+        new SwingWorker<int[], Void>() {
+            private SearchIndex used;
+
+            @Override
+            protected int[] doInBackground() {
+                used = current != null ? current : SearchIndex.build(snapshot.length, r -> snapshot[r]);
+                if (current != null && previousResult != null && SearchIndex.narrows(previousQuery, query))
+                    return used.refine(previousResult, query);
+                return used.search(query);
+            }
+
+            @Override
+            protected void done() {
+                int[] rows;
+                try {
+                    rows = get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    return;
+                }
+                if (version != modelVersion)
+                    return; // modelChanged() already scheduled a fresh query
+                index = used;
+                indexVersion = version;
+                if (gen != generation)
+                    return;
+                lastQuery = query;
+                lastResult = rows;
+                applyFilter(rows);
+            }
+        }.execute();
+    }
+
+    private String[] snapshotRows() {
+        TableModel model = table.getModel();
+        String[] rows = new String[model.getRowCount()];
+        StringBuilder sb = new StringBuilder();
+        for (int r = 0; r < rows.length; r++) {
+            sb.setLength(0);
+            for (int c : columns) {
+                Object v = model.getValueAt(r, c);
+                if (v != null)
+                    sb.append(v);
+                sb.append(FIELD_SEPARATOR);
+            }
+            rows[r] = sb.toString();
+        }
+        return rows;
+    }
+
+    private void applyFilter(int[] rows) {
+        final BitSet visible = new BitSet(table.getModel().getRowCount());
+        for (int r : rows)
+            visible.set(r);
+        sorter.setRowFilter(new RowFilter<TableModel, Integer>() {
+            @Override
+            public boolean include(Entry<? extends TableModel, ? extends Integer> entry) {
+                return visible.get(entry.getIdentifier());
+            }
+        });
+    }
+}
@@ -11,6 +11,7 @@ import java.awt.Font;
 import java.awt.Rectangle;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.List;
 import java.util.ResourceBundle;
 import java.awt.Dimension;
 
@@ -436,6 +437,36 @@ public class UIUtils {
         return columnName.toString();
     }
 
+    /**
+     * Replace the items of a sheet selector. The current selection is kept
+     * when it is still among the new items (useful when the names were shown
+     * early while the workbook was loading); otherwise the first item is
+     * selected.
+     */
+    public static void replaceComboItems(JComboBox<String> comboBox, List<String> items) {
+        Object previous = comboBox.getSelectedItem();
+        comboBox.removeAllItems();
+        for (String item : items)
+            comboBox.addItem(item);
+        if (comboBox.getItemCount() == 0)
+            return;
+        if (previous != null && items.contains(previous))
+            comboBox.setSelectedItem(previous);
+        else
+            comboBox.setSelectedIndex(0);
+    }
+
+    /**
+     * @return the model index of the selected row of {@code table}, or -1
+     *         when nothing is selected. Use this instead of
+     *         {@link JTable#getSelectedRow()} for tables that may be filtered
+     *         (see {@link TableSearchSupport}).
+     */
+    public static int selectedModelRow(JTable table) {
+        int viewRow = table.getSelectedRow();
+        return viewRow < 0 ? -1 : table.convertRowIndexToModel(viewRow);
+    }
+
     public static void showErrorDialog(Component parent, String title, String message) {
         JOptionPane.showMessageDialog(parent,
                 message,
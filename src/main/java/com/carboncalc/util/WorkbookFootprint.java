@@ -0,0 +1,331 @@
+package com.carboncalc.util;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.util.ZipSecureFile;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Pre-flight memory estimate of a spreadsheet file.
+ *
+ * <p>
+ * An {@code .xlsx} file is a zip archive whose central directory lists the
+ * compressed and uncompressed size of every part. Reading that directory
+ * costs a few KB of I/O and no XML parsing, yet it tells how large the sheet
+ * XML and the shared-strings table are once inflated, which is what a
+ * {@link XSSFWorkbook} DOM grows with. From that estimate and the heap still
+ * available, callers pick a DOM or streaming reader and an
+ * {@link XSSFWorkbook} or {@link SXSSFWorkbook} writer before parsing
+ * anything, so a file is never parsed twice.
+ * </p>
+ *
+ * <h3>Contract and notes</h3>
+ * <ul>
+ * <li>{@link #inspect(File)} never throws. Files that are not readable zip
+ * archives ({@code .xls}, {@code .csv}, damaged {@code .xlsx}) are estimated
+ * from their size times a per-format expansion factor.</li>
+ * <li>The DOM is chosen when the estimate fits in {@value #HEAP_SHARE} of
+ * the heap not in use; a writer stays in memory when an output of the same
+ * size fits next to its input.</li>
+ * <li>POI rejects entries that inflate more than its minimum ratio allows
+ * ("zip bomb"). Spreadsheets of repeated values legitimately compress that
+ * well, so {@link #open()} lowers the limit for the duration of the parse
+ * to half the lowest ratio the central directory declares, never below
+ * {@value #MIN_RELAXED_RATIO}, and restores it afterwards. An entry that
+ * inflates beyond what it declares still fails, and files declaring ratios
+ * below the floor are rejected without being parsed.</li>
+ * <li>That limit is global to the process, so every {@code .xlsx} parse
+ * runs through {@link #guarded(Parse)}: parses at the configured limit run
+ * concurrently, one that lowers it runs alone, so no other parse ever sees
+ * the lowered value.</li>
+ * <li>The estimates are heuristics for choosing a mode, not limits.</li>
+ * </ul>
+ */
+public final class WorkbookFootprint {
+
+    /** How a workbook is read. */
+    public enum ReadMode {
+        /** Whole workbook in memory ({@link XSSFWorkbook}, {@link HSSFWorkbook}). */
+        DOM,
+        /** Sheet XML parsed event by event; only {@code .xlsx} files. */
+        STREAMING
+    }
+
+    /** How an {@code .xlsx} workbook is written. */
+    public enum WriteMode {
+        /** Every row in memory until the workbook is written. */
+        XSSF,
+        /** Rows flushed to a temporary file past {@value #STREAMING_WINDOW}. */
+        SXSSF
+    }
+
+    /** Share of the heap not in use one workbook DOM may take. */
+    public static final double HEAP_SHARE = 0.5;
+    /** Rows of each sheet an {@link SXSSFWorkbook} keeps in memory. */
+    public static final int STREAMING_WINDOW = 500;
+    /**
+     * Lowest compressed-to-uncompressed ratio a parse will accept. Deflate
+     * cannot compress below about 1/1032, so lower declared ratios mean
+     * forged sizes.
+     */
+    public static final double MIN_RELAXED_RATIO = 0.001;
+
+    // Heap bytes per inflated XML byte, measured on provider files of 60k to
+    // 200k rows: every cell becomes an XmlBeans object plus an XSSFCell and
+    // every shared string an XmlBeans rich-text entry. Other parts (styles,
+    // relationships) are small and mostly kept as parsed.
+    private static final int CELL_XML_EXPANSION = 14;
+    private static final int OTHER_XML_EXPANSION = 2;
+    // Heap bytes per file byte when the content cannot be inspected: XSSF
+    // inflates the zipped XML and builds a DOM per sheet, HSSF keeps records
+    // close to their file size and CSV is loaded into an in-memory workbook
+    // of strings.
+    private static final int EXPANSION_XLSX = 40;
+    private static final int EXPANSION_XLS = 6;
+    private static final int EXPANSION_CSV = 12;
+    // POI does not check the ratio of entries inflating to less than this
+    private static final long GRACE_ENTRY_BYTES = 100 * 1024;
+
+    // ZipSecureFile's limit is global: parses at the configured limit share
+    // the read lock, a parse that lowers it holds the write lock
+    private static final ReentrantReadWriteLock RATIO_LOCK = new ReentrantReadWriteLock();
+
+    private final File file;
+    private final long fileBytes;
+    private final boolean indexed;
+    private final long sheetXmlBytes;
+    private final long sharedStringsBytes;
+    private final long otherXmlBytes;
+    private final double inflateRatio;
+
+    private WorkbookFootprint(File file, long fileBytes, boolean indexed, long sheetXmlBytes,
+            long sharedStringsBytes, long otherXmlBytes, double inflateRatio) {
+        this.file = file;
+        this.fileBytes = fileBytes;
+        this.indexed = indexed;
+        this.sheetXmlBytes = sheetXmlBytes;
+        this.sharedStringsBytes = sharedStringsBytes;
+        this.otherXmlBytes = otherXmlBytes;
+        this.inflateRatio = inflateRatio;
+    }
+
+    /**
+     * Inspect {@code file} without parsing it. Missing files have a zero
+     * footprint.
+     */
+    public static WorkbookFootprint inspect(File file) {
+        long size = file != null && file.isFile() ? file.length() : 0L;
+        if (size > 0 && isXlsx(file)) {
+            // java.util.zip.ZipFile only reads the central directory here
+            try (ZipFile zip = new ZipFile(file)) {
+                long sheets = 0;
+                long strings = 0;
+                long other = 0;
+                double ratio = 1.0;
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry e = entries.nextElement();
+                    long raw = Math.max(0L, e.getSize());
+                    String name = e.getName();
+                    if (name.startsWith("xl/worksheets/") && name.endsWith(".xml"))
+                        sheets += raw;
+                    else if (name.equals("xl/sharedStrings.xml"))
+                        strings += raw;
+                    else
+                        other += raw;
+                    if (raw > GRACE_ENTRY_BYTES && e.getCompressedSize() >= 0)
+                        ratio = Math.min(ratio, (double) e.getCompressedSize() / raw);
+                }
+                return new WorkbookFootprint(file, size, true, sheets, strings, other, ratio);
+            } catch (IOException | RuntimeException notAZip) {
+                // estimated from the file size below
+            }
+        }
+        return new WorkbookFootprint(file, size, false, 0L, 0L, 0L, 1.0);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getFileBytes() {
+        return fileBytes;
+    }
+
+    /** @return true when the sizes come from the zip central directory */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    /** @return inflated size of all worksheet parts, 0 when not indexed */
+    public long getSheetXmlBytes() {
+        return sheetXmlBytes;
+    }
+
+    /** @return inflated size of the shared-strings part, 0 when not indexed */
+    public long getSharedStringsBytes() {
+        return sharedStringsBytes;
+    }
+
+    /**
+     * @return lowest compressed-to-uncompressed ratio of the parts POI
+     *         checks; 1.0 when not indexed
+     */
+    public double getInflateRatio() {
+        return inflateRatio;
+    }
+
+    /** @return estimated heap taken by the workbook loaded as a DOM */
+    public long estimatedDomBytes() {
+        if (indexed)
+            return (sheetXmlBytes + sharedStringsBytes) * CELL_XML_EXPANSION + otherXmlBytes * OTHER_XML_EXPANSION;
+        String name = file != null ? file.getName().toLowerCase(Locale.ROOT) : "";
+        if (name.endsWith(".csv"))
+            return fileBytes * EXPANSION_CSV;
+        if (name.endsWith(".xls"))
+            return fileBytes * EXPANSION_XLS;
+        return fileBytes * EXPANSION_XLSX;
+    }
+
+    /** @return the reader for this file given the heap available now */
+    public ReadMode readMode() {
+        return readMode(heapBudget());
+    }
+
+    /**
+     * @param budgetBytes heap the workbook may take
+     * @return {@link ReadMode#STREAMING} for {@code .xlsx} files whose DOM
+     *         would exceed {@code budgetBytes}, otherwise {@link ReadMode#DOM}
+     */
+    public ReadMode readMode(long budgetBytes) {
+        return isXlsx(file) && estimatedDomBytes() > budgetBytes ? ReadMode.STREAMING : ReadMode.DOM;
+    }
+
+    /**
+     * @param inputDomBytes estimated DOM size of the inputs, which stay
+     *                      loaded while the output is written
+     * @return the writer for an output about as large as its inputs given
+     *         the heap available now
+     */
+    public static WriteMode writeMode(long inputDomBytes) {
+        return writeMode(inputDomBytes, heapBudget());
+    }
+
+    /** @see #writeMode(long) */
+    public static WriteMode writeMode(long inputDomBytes, long budgetBytes) {
+        return inputDomBytes > budgetBytes / 2 ? WriteMode.SXSSF : WriteMode.XSSF;
+    }
+
+    /** @return {@value #HEAP_SHARE} of the heap not in use */
+    public static long heapBudget() {
+        Runtime rt = Runtime.getRuntime();
+        long used = rt.totalMemory() - rt.freeMemory();
+        return (long) ((rt.maxMemory() - used) * HEAP_SHARE);
+    }
+
+    /**
+     * New empty {@code .xlsx} workbook for {@code mode}. Sheets of a
+     * streaming workbook track all columns for auto-sizing, and closing it
+     * also deletes its temporary files.
+     */
+    public static Workbook newWorkbook(WriteMode mode) {
+        if (mode != WriteMode.SXSSF)
+            return new XSSFWorkbook();
+        return new SXSSFWorkbook(STREAMING_WINDOW) {
+            @Override
+            public SXSSFSheet createSheet(String sheetname) {
+                SXSSFSheet sheet = super.createSheet(sheetname);
+                sheet.trackAllColumnsForAutoSizing();
+                return sheet;
+            }
+
+            @Override
+            public void close() throws IOException {
+                dispose();
+                super.close();
+            }
+        };
+    }
+
+    /**
+     * Parse the file once as a DOM, with the inflate-ratio limit described
+     * in the class notes.
+     *
+     * @throws IllegalArgumentException for formats other than {@code .xlsx}
+     *                                  and {@code .xls}
+     */
+    public Workbook open() throws IOException {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".xls")) {
+            try (InputStream in = new FileInputStream(file)) {
+                return new HSSFWorkbook(in);
+            }
+        }
+        if (!name.endsWith(".xlsx"))
+            throw new IllegalArgumentException("Unsupported Excel format");
+        return guarded(() -> {
+            try (InputStream in = new FileInputStream(file)) {
+                return new XSSFWorkbook(in);
+            }
+        });
+    }
+
+    /** A parse of the zip package. */
+    @FunctionalInterface
+    public interface Parse<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * Run {@code parse}, a read of this file's zip package, with POI's
+     * inflate-ratio limit lowered when the central directory declares
+     * legitimately higher compression. Code that opens an {@code .xlsx}
+     * package itself must do so inside this call.
+     */
+    public <T> T guarded(Parse<T> parse) throws IOException {
+        Lock shared = RATIO_LOCK.readLock();
+        shared.lock();
+        try {
+            // nobody lowers the limit while the read lock is held
+            if (!indexed || inflateRatio >= ZipSecureFile.getMinInflateRatio())
+                return parse.run();
+        } finally {
+            shared.unlock();
+        }
+        if (inflateRatio < MIN_RELAXED_RATIO)
+            throw new IOException("Refusing " + file.getName() + ": its parts declare a compression ratio of "
+                    + inflateRatio + ", below " + MIN_RELAXED_RATIO + " (zip bomb?)");
+        Lock exclusive = RATIO_LOCK.writeLock();
+        exclusive.lock();
+        try {
+            double limit = ZipSecureFile.getMinInflateRatio();
+            if (inflateRatio >= limit)
+                return parse.run();
+            ZipSecureFile.setMinInflateRatio(Math.max(MIN_RELAXED_RATIO, inflateRatio / 2));
+            try {
+                return parse.run();
+            } finally {
+                ZipSecureFile.setMinInflateRatio(limit);
+            }
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    private static boolean isXlsx(File file) {
+        return file != null && file.getName().toLowerCase(Locale.ROOT).endsWith(".xlsx");
+    }
+}
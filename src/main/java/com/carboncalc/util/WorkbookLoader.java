@@ -0,0 +1,436 @@
+package com.carboncalc.util;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.xml.parsers.ParserConfigurationException;
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.FlowLayout;
+import java.awt.GraphicsEnvironment;
+import java.awt.Window;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Background workbook loader for the module controllers.
+ *
+ * <p>
+ * Parsing a large provider or ERP workbook can take several seconds, which
+ * used to freeze the UI because controllers opened the file on the Event
+ * Dispatch Thread. This helper parses the file on a {@link SwingWorker} and
+ * reports back on the EDT. For {@code .xlsx} files the sheet index is read
+ * first from {@code xl/workbook.xml} (a few KB, no cell data), so the sheet
+ * selector can be filled while the sheets themselves are still loading.
+ * </p>
+ *
+ * <h3>Contract and notes</h3>
+ * <ul>
+ * <li>One instance per file slot (provider, ERP, ...). Starting a new load
+ * supersedes the running one: the old listener is never called again and the
+ * workbook it eventually produces is closed.</li>
+ * <li>All {@link Listener} callbacks run on the EDT.</li>
+ * <li>An indeterminate progress dialog with a Cancel button appears when a
+ * load takes longer than {@value #INDICATOR_DELAY_MS} ms. The dialog is not
+ * modal so the user can pick another file meanwhile. No dialog is shown in
+ * headless environments.</li>
+ * <li>Input streams are always closed, also when parsing fails.</li>
+ * <li>{@link #open(File)} parses a file once; see {@link WorkbookFootprint}
+ * for how highly compressed {@code .xlsx} files are accepted.</li>
+ * </ul>
+ */
+public final class WorkbookLoader {
+
+    /** Delay before the progress dialog is shown, in milliseconds. */
+    public static final int INDICATOR_DELAY_MS = 300;
+
+    /** Receives the outcome of a load on the EDT. */
+    public interface Listener {
+        /**
+         * Called when the sheet names are known, before the workbook is fully
+         * parsed. Only {@code .xlsx} files report names early.
+         */
+        default void sheetNamesRead(List<String> names) {
+        }
+
+        /** Called with the parsed workbook; the listener owns it from now on. */
+        void loaded(Workbook workbook);
+
+        /** Called when the file could not be read. */
+        void failed(Exception error);
+
+        /** Called when the user pressed Cancel in the progress dialog. */
+        default void cancelled() {
+        }
+    }
+
+    /** Parses a file into a workbook; runs off the EDT. */
+    @FunctionalInterface
+    public interface Opener {
+        Workbook open(File file) throws Exception;
+    }
+
+    private final Component owner;
+    private final ResourceBundle messages;
+    private LoadTask current;
+
+    /**
+     * @param owner    component the progress dialog is centered on (may be null)
+     * @param messages bundle with the {@code dialog.file.loading*} keys
+     */
+    public WorkbookLoader(Component owner, ResourceBundle messages) {
+        this.owner = owner;
+        this.messages = messages;
+    }
+
+    /** Load an {@code .xlsx} or {@code .xls} file with {@link #open(File)}. */
+    public void load(File file, Listener listener) {
+        load(file, WorkbookLoader::open, listener);
+    }
+
+    /**
+     * Load {@code file} in the background with a custom opener (for example
+     * one that also accepts CSV). Must be called on the EDT.
+     */
+    public void load(File file, Opener opener, Listener listener) {
+        cancel(false);
+        current = new LoadTask(file, opener, listener);
+        current.start();
+    }
+
+    /** Abandon the running load, if any, without notifying its listener. */
+    public void cancel() {
+        cancel(false);
+    }
+
+    /** @return true while a load started by this instance is running */
+    public boolean isLoading() {
+        return current != null && !current.isDone();
+    }
+
+    private void cancel(boolean notify) {
+        LoadTask task = current;
+        current = null;
+        if (task != null)
+            task.abandon(notify);
+    }
+
+    /**
+     * Parse an Excel file synchronously. The format is chosen by extension.
+     *
+     * @throws IllegalArgumentException for unsupported extensions
+     */
+    public static Workbook open(File file) throws IOException {
+        return WorkbookFootprint.inspect(file).open();
+    }
+
+    /**
+     * Open {@code file} to preview the start of its first sheet. Workbooks
+     * that fit in the heap are parsed whole as by {@link #open(File)}; larger
+     * {@code .xlsx} files ({@link WorkbookFootprint#readMode()}) are streamed
+     * and only the first non-empty row and the {@code rows} rows after it are
+     * copied, as text cells at their original row numbers, into a new
+     * one-sheet workbook.
+     *
+     * @throws IllegalArgumentException for unsupported extensions
+     */
+    public static Workbook openHead(File file, int rows) throws IOException {
+        return openHead(file, rows, WorkbookFootprint.heapBudget());
+    }
+
+    static Workbook openHead(File file, int rows, long budgetBytes) throws IOException {
+        WorkbookFootprint footprint = WorkbookFootprint.inspect(file);
+        if (footprint.readMode(budgetBytes) == WorkbookFootprint.ReadMode.DOM)
+            return footprint.open();
+        return footprint.guarded(() -> streamHead(file, rows));
+    }
+
+    private static Workbook streamHead(File file, int rows) throws IOException {
+        XSSFWorkbook head = new XSSFWorkbook();
+        OPCPackage pkg = null;
+        boolean ok = false;
+        try {
+            pkg = OPCPackage.open(file, PackageAccess.READ);
+            XSSFReader reader = new XSSFReader(pkg);
+            Iterator<InputStream> it = reader.getSheetsData();
+            if (it instanceof XSSFReader.SheetIterator && it.hasNext()) {
+                XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) it;
+                try (InputStream in = sheets.next()) {
+                    HeadCollector collector = new HeadCollector(head.createSheet(sheets.getSheetName()), rows);
+                    XMLReader xml = XMLHelper.newXMLReader();
+                    xml.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(), null,
+                            new ReadOnlySharedStringsTable(pkg, false), collector, new DataFormatter(), false));
+                    try {
+                        xml.parse(new InputSource(in));
+                    } catch (HeadComplete done) {
+                        // the rest of the sheet is not needed
+                    }
+                }
+            }
+            ok = true;
+            return head;
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Cannot read " + file + ": " + e.getMessage(), e);
+        } finally {
+            // revert() releases a read-only package without trying to save it
+            if (pkg != null)
+                pkg.revert();
+            if (!ok)
+                closeQuietly(head);
+        }
+    }
+
+    /**
+     * Read the sheet names of an {@code .xlsx} file without parsing any sheet.
+     *
+     * @return sheet names in workbook order; empty for other formats or when
+     *         the index cannot be read
+     */
+    public static List<String> readSheetNames(File file) {
+        if (file == null || !file.getName().toLowerCase().endsWith(".xlsx"))
+            return Collections.emptyList();
+        try {
+            return WorkbookFootprint.inspect(file).guarded(() -> sheetNames(file));
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private static List<String> sheetNames(File file) {
+        List<String> names = new ArrayList<>();
+        OPCPackage pkg = null;
+        try {
+            pkg = OPCPackage.open(file, PackageAccess.READ);
+            XSSFReader reader = new XSSFReader(pkg);
+            Iterator<InputStream> it = reader.getSheetsData();
+            if (!(it instanceof XSSFReader.SheetIterator))
+                return Collections.emptyList();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) it;
+            while (sheets.hasNext()) {
+                // next() only opens the part; close it straight away
+                InputStream part = sheets.next();
+                try {
+                    names.add(sheets.getSheetName());
+                } finally {
+                    part.close();
+                }
+            }
+        } catch (Exception e) {
+            return Collections.emptyList();
+        } finally {
+            // revert() releases a read-only package without trying to save it
+            if (pkg != null)
+                pkg.revert();
+        }
+        return names;
+    }
+
+    private static void closeQuietly(Workbook wb) {
+        if (wb == null)
+            return;
+        try {
+            wb.close();
+        } catch (Exception ignored) {
+        }
+    }
+
+    // Thrown by HeadCollector to stop parsing once the head rows are copied
+    private static final class HeadComplete extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        HeadComplete() {
+            super(null, null, false, false);
+        }
+    }
+
+    // Copies the first non-empty row and the rows after it as text cells
+    private static final class HeadCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final Sheet sheet;
+        private final int rows;
+        private int first = -1;
+        private Row row;
+        private int lastCol;
+
+        HeadCollector(Sheet sheet, int rows) {
+            this.sheet = sheet;
+            this.rows = rows;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            if (first >= 0 && rowNum > first + rows)
+                throw new HeadComplete();
+            row = sheet.createRow(rowNum);
+            lastCol = -1;
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int col = cellReference != null ? new CellReference(cellReference).getCol() : lastCol + 1;
+            lastCol = col;
+            if (formattedValue != null && !formattedValue.isEmpty())
+                row.createCell(col).setCellValue(formattedValue);
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (first < 0 && row.getPhysicalNumberOfCells() > 0)
+                first = rowNum;
+        }
+    }
+
+    private final class LoadTask extends SwingWorker<Workbook, List<String>> {
+        private final File file;
+        private final Opener opener;
+        private final Listener listener;
+        private final Timer indicatorTimer;
+        private volatile boolean abandoned;
+        // parsed workbook not yet handed to the listener; whoever sees the
+        // task abandoned takes and closes it
+        private final AtomicReference<Workbook> opened = new AtomicReference<>();
+        private JDialog dialog;
+
+        LoadTask(File file, Opener opener, Listener listener) {
+            this.file = file;
+            this.opener = opener;
+            this.listener = listener;
+            this.indicatorTimer = new Timer(INDICATOR_DELAY_MS, e -> showIndicator());
+            this.indicatorTimer.setRepeats(false);
+        }
+
+        void start() {
+            if (!GraphicsEnvironment.isHeadless())
+                indicatorTimer.start();
+            execute();
+        }
+
+        void abandon(boolean notify) {
+            abandoned = true;
+            hideIndicator();
+            // Not interrupting: POI does not react to interrupts and NIO
+            // channels would be closed under its feet. The parsed workbook is
+            // closed by doInBackground or done(), whichever sees it last.
+            cancel(false);
+            if (notify)
+                listener.cancelled();
+        }
+
+        @Override
+        protected Workbook doInBackground() throws Exception {
+            List<String> names = readSheetNames(file);
+            if (!names.isEmpty() && !abandoned)
+                publish(names);
+            if (abandoned)
+                return null;
+            Workbook wb = opener.open(file);
+            opened.set(wb);
+            if (abandoned) {
+                closeQuietly(opened.getAndSet(null));
+                return null;
+            }
+            return wb;
+        }
+
+        @Override
+        protected void process(List<List<String>> chunks) {
+            if (!abandoned && !chunks.isEmpty())
+                listener.sheetNamesRead(chunks.get(chunks.size() - 1));
+        }
+
+        @Override
+        protected void done() {
+            hideIndicator();
+            if (current == this)
+                current = null;
+            if (abandoned || isCancelled()) {
+                // abandoned after doInBackground's last check: the result
+                // would otherwise never be closed
+                closeQuietly(opened.getAndSet(null));
+                return;
+            }
+            try {
+                opened.set(null);
+                listener.loaded(get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                listener.failed(cause instanceof Exception ? (Exception) cause : new Exception(cause));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                listener.failed(e);
+            }
+        }
+
+        private void showIndicator() {
+            if (abandoned || isDone() || messages == null)
+                return;
+            Window window = owner == null ? null : SwingUtilities.getWindowAncestor(owner);
+            dialog = new JDialog(window, messages.getString("dialog.file.loading.title"));
+            dialog.setModal(false);
+            dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+
+            JPanel content = new JPanel(new BorderLayout(0, 8));
+            content.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
+            content.add(new JLabel(MessageFormat.format(messages.getString("dialog.file.loading"), file.getName())),
+                    BorderLayout.NORTH);
+            JProgressBar bar = new JProgressBar();
+            bar.setIndeterminate(true);
+            content.add(bar, BorderLayout.CENTER);
+            JButton cancelButton = new JButton(messages.getString("button.cancel"));
+            cancelButton.addActionListener(e -> {
+                if (current == this)
+                    cancel(true);
+                else
+                    abandon(true);
+            });
+            JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+            buttons.add(cancelButton);
+            content.add(buttons, BorderLayout.SOUTH);
+
+            dialog.setContentPane(content);
+            dialog.pack();
+            dialog.setLocationRelativeTo(window);
+            dialog.setVisible(true);
+        }
+
+        private void hideIndicator() {
+            indicatorTimer.stop();
+            if (dialog != null) {
+                dialog.dispose();
+                dialog = null;
+            }
+        }
+    }
+}
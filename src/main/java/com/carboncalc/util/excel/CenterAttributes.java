@@ -0,0 +1,154 @@
+package com.carboncalc.util.excel;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.carboncalc.model.CupsCenterMapping;
+import com.carboncalc.util.AggregateCube;
+import com.carboncalc.util.CellUtils;
+
+/**
+ * CenterAttributes
+ *
+ * <p>
+ * Resolves the descriptive attributes of a center (campus, city, province,
+ * marketer) from the CUPS/center mapping file so exporters can label the
+ * facts they feed into an {@link AggregateCube}. The mapping file is read
+ * once per export.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>Lookup prefers an exact (CUPS, center) pair, then the center name or
+ * acronym alone, then the CUPS alone.</li>
+ * <li>Unknown centers resolve to empty attributes; loading errors leave the
+ * lookup empty rather than failing the export.</li>
+ * </ul>
+ * </p>
+ */
+final class CenterAttributes {
+
+    static final int CAMPUS = 0;
+    static final int CITY = 1;
+    static final int PROVINCE = 2;
+    static final int MARKETER = 3;
+
+    private static final String[] EMPTY = new String[] { "", "", "", "" };
+
+    private final Map<String, String[]> byCupsAndCenter = new HashMap<>();
+    private final Map<String, String[]> byCenter = new HashMap<>();
+    private final Map<String, String[]> byCups = new HashMap<>();
+
+    private CenterAttributes(List<CupsCenterMapping> mappings) {
+        for (CupsCenterMapping m : mappings) {
+            String[] attrs = new String[] { trim(m.getCampus()), trim(m.getCity()), trim(m.getProvince()),
+                    trim(m.getMarketer()) };
+            String cups = trim(m.getCups());
+            String center = CellUtils.normalizeKey(m.getCenterName());
+            String acronym = CellUtils.normalizeKey(m.getAcronym());
+            if (!cups.isEmpty()) {
+                byCups.putIfAbsent(cups, attrs);
+                if (!center.isEmpty())
+                    byCupsAndCenter.putIfAbsent(cups + "|" + center, attrs);
+            }
+            if (!center.isEmpty())
+                byCenter.putIfAbsent(center, attrs);
+            if (!acronym.isEmpty())
+                byCenter.putIfAbsent(acronym, attrs);
+        }
+    }
+
+    /**
+     * Load the attributes from the CUPS mapping file of {@code data}.
+     *
+     * @return lookup instance (never null)
+     */
+    static CenterAttributes load(DataRoot data) {
+        try {
+            return new CenterAttributes(data.cups().loadCupsData());
+        } catch (Exception e) {
+            return new CenterAttributes(Collections.emptyList());
+        }
+    }
+
+    /**
+     * Resolve attributes for a row.
+     *
+     * @param cups   CUPS code of the row (may be null for fuel/refrigerant)
+     * @param center center name of the row
+     * @return array indexed by {@link #CAMPUS}, {@link #CITY},
+     *         {@link #PROVINCE} and {@link #MARKETER}; never null
+     */
+    String[] resolve(String cups, String center) {
+        String c = trim(cups);
+        String n = CellUtils.normalizeKey(center);
+        String[] attrs = null;
+        if (!c.isEmpty() && !n.isEmpty())
+            attrs = byCupsAndCenter.get(c + "|" + n);
+        if (attrs == null && !n.isEmpty())
+            attrs = byCenter.get(n);
+        if (attrs == null && !c.isEmpty())
+            attrs = byCups.get(c);
+        return attrs != null ? attrs : EMPTY;
+    }
+
+    /**
+     * Build the cube member tuple for one fact.
+     *
+     * @param module   module id (see {@code EnergyType#id()})
+     * @param scope    GHG scope ("1" or "2")
+     * @param center   center name written to the detailed sheet
+     * @param date     date used for the month member (may be null)
+     * @param cups     CUPS code (may be null)
+     * @param marketer marketer resolved by the exporter; falls back to the
+     *                 mapping file when empty
+     * @return members indexed by {@link AggregateCube.Dimension#ordinal()}
+     */
+    String[] members(String module, String scope, String center, LocalDate date, String cups, String marketer) {
+        String[] attrs = resolve(cups, center);
+        String[] m = new String[AggregateCube.Dimension.values().length];
+        m[AggregateCube.Dimension.CENTER.ordinal()] = center;
+        m[AggregateCube.Dimension.MONTH.ordinal()] = date == null ? "" : YearMonth.from(date).toString();
+        m[AggregateCube.Dimension.MODULE.ordinal()] = module;
+        m[AggregateCube.Dimension.SCOPE.ordinal()] = scope;
+        m[AggregateCube.Dimension.CAMPUS.ordinal()] = attrs[CAMPUS];
+        m[AggregateCube.Dimension.CITY.ordinal()] = attrs[CITY];
+        m[AggregateCube.Dimension.PROVINCE.ordinal()] = attrs[PROVINCE];
+        m[AggregateCube.Dimension.MARKETER.ordinal()] = (marketer != null && !marketer.trim().isEmpty())
+                ? marketer.trim()
+                : attrs[MARKETER];
+        return m;
+    }
+
+    /**
+     * Add one fact per month with a non-zero share, so the cube's month
+     * dimension follows the day-based proration of the billing period.
+     *
+     * @param cube            destination cube
+     * @param members         member tuple from {@link #members}; its month
+     *                        entry is overwritten
+     * @param year            reporting year
+     * @param months          monthly consumption vector (12 entries)
+     * @param marketPerUnit   market-based tCO2e per consumption unit
+     * @param locationPerUnit location-based tCO2e per consumption unit
+     */
+    static void addMonthly(AggregateCube cube, String[] members, int year, double[] months, double marketPerUnit,
+            double locationPerUnit) {
+        int monthDim = AggregateCube.Dimension.MONTH.ordinal();
+        for (int m = 0; m < months.length; m++) {
+            if (months[m] == 0.0)
+                continue;
+            members[monthDim] = YearMonth.of(year, m + 1).toString();
+            cube.add(members, months[m], months[m] * marketPerUnit, months[m] * locationPerUnit);
+        }
+    }
+
+    private static String trim(String s) {
+        return s == null ? "" : s.trim();
+    }
+}
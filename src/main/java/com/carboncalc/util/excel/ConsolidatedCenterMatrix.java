@@ -0,0 +1,210 @@
+package com.carboncalc.util.excel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.CellValue;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+
+import com.carboncalc.util.CellUtils;
+
+/**
+ * ConsolidatedCenterMatrix
+ *
+ * <p>
+ * In-memory center x metric matrix backing the consolidated "Resultados"
+ * report. Each module's per-center sheet is scanned exactly once and
+ * hash-joined on the center name, so building the matrix is linear in the
+ * number of per-center rows instead of one full-column VLOOKUP per center and
+ * metric when the workbook is opened.
+ * </p>
+ *
+ * <h3>Contract and notes</h3>
+ * <ul>
+ * <li>Center order follows first appearance across the joined sheets, so
+ * joining electricity first keeps the historical row order of the
+ * report.</li>
+ * <li>Duplicate center rows inside one per-center sheet are summed.</li>
+ * <li>For every joined value the matrix remembers the source cell
+ * reference(s) (for example {@code 'Gas - Por centro'!C7}) so the report can
+ * keep short, auditable formulas next to the cached values.</li>
+ * <li>Values are read from cached formula results when present; formulas
+ * without a cached result are evaluated once as a fallback.</li>
+ * </ul>
+ */
+public final class ConsolidatedCenterMatrix {
+
+    /** Electricity market-based emissions (tCO2e). */
+    public static final int EL_MARKET = 0;
+    /** Electricity location-based emissions (tCO2e). */
+    public static final int EL_LOCATION = 1;
+    /** Natural gas emissions (tCO2e). */
+    public static final int GAS = 2;
+    /** Fuel emissions (tCO2e). */
+    public static final int FUEL = 3;
+    /** Refrigerant emissions (tCO2e). */
+    public static final int REFRIGERANT = 4;
+    /** Number of source metrics joined from the module sheets. */
+    public static final int SOURCE_METRICS = 5;
+
+    private final Map<String, Integer> index = new HashMap<>();
+    private final List<String> centers = new ArrayList<>();
+    private final List<double[]> values = new ArrayList<>();
+    private final List<String[]> refs = new ArrayList<>();
+
+    /**
+     * Join one metric column of a per-center sheet into the matrix.
+     *
+     * <p>
+     * Column A is the join key (center name); rows with an empty key are
+     * ignored. When {@code refSheetName} is non-null the source cell
+     * references are recorded so callers can emit direct cell formulas; pass
+     * {@code null} when the sheet will not be present in the output workbook.
+     * </p>
+     *
+     * @param metric       one of the metric constants of this class
+     * @param sheet        per-center sheet (header on its first row); may be
+     *                     null
+     * @param valueColumn  zero-based column holding the metric
+     * @param refSheetName sheet name to use in recorded references, or null
+     * @return number of data rows joined
+     */
+    public int join(int metric, Sheet sheet, int valueColumn, String refSheetName) {
+        if (sheet == null || metric < 0 || metric >= SOURCE_METRICS || valueColumn < 0)
+            return 0;
+        DataFormatter df = new DataFormatter();
+        FormulaEvaluator eval = null;
+        int joined = 0;
+        for (int r = Math.max(1, sheet.getFirstRowNum() + 1); r <= sheet.getLastRowNum(); r++) {
+            Row row = sheet.getRow(r);
+            if (row == null)
+                continue;
+            Cell keyCell = row.getCell(0);
+            if (keyCell == null)
+                continue;
+            String center = df.formatCellValue(keyCell).trim();
+            if (center.isEmpty())
+                continue;
+            int i = indexOf(center);
+            Cell valueCell = row.getCell(valueColumn);
+            if (eval == null && valueCell != null && valueCell.getCellType() == CellType.FORMULA
+                    && !hasCachedValue(valueCell))
+                eval = sheet.getWorkbook().getCreationHelper().createFormulaEvaluator();
+            values.get(i)[metric] += readNumeric(valueCell, eval);
+            if (refSheetName != null) {
+                String ref = new CellReference(refSheetName, r, valueColumn, false, false).formatAsString();
+                String[] rowRefs = refs.get(i);
+                rowRefs[metric] = rowRefs[metric] == null ? ref : rowRefs[metric] + "+" + ref;
+            }
+            joined++;
+        }
+        return joined;
+    }
+
+    /** @return number of centers in the matrix */
+    public int size() {
+        return centers.size();
+    }
+
+    /** @return centers in first-appearance order (read-only view) */
+    public List<String> getCenters() {
+        return Collections.unmodifiableList(centers);
+    }
+
+    /**
+     * @param row    center row (see {@link #getCenters()})
+     * @param metric metric constant
+     * @return joined value, 0 when the module had no row for the center
+     */
+    public double get(int row, int metric) {
+        return values.get(row)[metric];
+    }
+
+    /**
+     * @param row    center row
+     * @param metric metric constant
+     * @return formula text referencing the source cell(s), or null when the
+     *         value has no referenceable source
+     */
+    public String getSourceRef(int row, int metric) {
+        return refs.get(row)[metric];
+    }
+
+    /** Scope 1 = gas + fuel + refrigerants. */
+    public double scope1(int row) {
+        double[] v = values.get(row);
+        return v[GAS] + v[FUEL] + v[REFRIGERANT];
+    }
+
+    /** Scope 2 (market-based) = electricity market-based emissions. */
+    public double scope2Market(int row) {
+        return values.get(row)[EL_MARKET];
+    }
+
+    /** Scope 2 (location-based) = electricity location-based emissions. */
+    public double scope2Location(int row) {
+        return values.get(row)[EL_LOCATION];
+    }
+
+    /** Total (market-based) = scope 1 + scope 2 market-based. */
+    public double totalMarket(int row) {
+        return scope1(row) + scope2Market(row);
+    }
+
+    /** Total (location-based) = scope 1 + scope 2 location-based. */
+    public double totalLocation(int row) {
+        return scope1(row) + scope2Location(row);
+    }
+
+    private int indexOf(String center) {
+        Integer i = index.get(center);
+        if (i != null)
+            return i;
+        int next = centers.size();
+        index.put(center, next);
+        centers.add(center);
+        values.add(new double[SOURCE_METRICS]);
+        refs.add(new String[SOURCE_METRICS]);
+        return next;
+    }
+
+    private static boolean hasCachedValue(Cell cell) {
+        if (cell instanceof XSSFCell)
+            return ((XSSFCell) cell).getRawValue() != null;
+        // HSSF formula records always carry a cached result
+        return true;
+    }
+
+    private static double readNumeric(Cell cell, FormulaEvaluator eval) {
+        if (cell == null)
+            return 0.0;
+        try {
+            switch (cell.getCellType()) {
+                case NUMERIC:
+                    return cell.getNumericCellValue();
+                case STRING:
+                    return CellUtils.parseDoubleSafe(cell.getStringCellValue());
+                case FORMULA:
+                    if (!hasCachedValue(cell) && eval != null) {
+                        CellValue cv = eval.evaluate(cell);
+                        return (cv != null && cv.getCellType() == CellType.NUMERIC) ? cv.getNumberValue() : 0.0;
+                    }
+                    return cell.getCachedFormulaResultType() == CellType.NUMERIC ? cell.getNumericCellValue() : 0.0;
+                default:
+                    return 0.0;
+            }
+        } catch (Exception e) {
+            return 0.0;
+        }
+    }
+}
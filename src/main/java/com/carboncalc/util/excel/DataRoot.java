@@ -0,0 +1,158 @@
+package com.carboncalc.util.excel;
+
+import com.carboncalc.service.CupsService;
+import com.carboncalc.service.CupsServiceCsv;
+import com.carboncalc.service.CupsServiceStore;
+import com.carboncalc.service.ElectricityFactorService;
+import com.carboncalc.service.ElectricityFactorServiceCsv;
+import com.carboncalc.service.ElectricityFactorServiceStore;
+import com.carboncalc.service.EmissionFactorService;
+import com.carboncalc.service.EmissionFactorServiceCsv;
+import com.carboncalc.service.EmissionFactorServiceStore;
+import com.carboncalc.service.FuelFactorService;
+import com.carboncalc.service.FuelFactorServiceCsv;
+import com.carboncalc.service.FuelFactorServiceStore;
+import com.carboncalc.service.GasFactorService;
+import com.carboncalc.service.GasFactorServiceCsv;
+import com.carboncalc.service.GasFactorServiceStore;
+import com.carboncalc.service.RefrigerantFactorService;
+import com.carboncalc.service.RefrigerantFactorServiceCsv;
+import com.carboncalc.service.RefrigerantFactorServiceStore;
+import com.carboncalc.service.ReferenceStore;
+import com.carboncalc.service.ReferenceStoreMigrator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * DataRoot
+ *
+ * <p>
+ * Directory holding the reference data an export reads: the CUPS inventory
+ * ({@code cups_center}), the per-year factor folders
+ * ({@code emission_factors/<year>}) and the persisted reporting year
+ * ({@code year/current_year.txt}). The UI always uses {@link #DEFAULT}
+ * ({@code data} under the working directory); batch runs can point each
+ * export at the data of a different organization.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>Immutable and thread-safe; exports running concurrently on different
+ * roots never share a file.</li>
+ * <li>The service factories create a new service per call, matching how the
+ * exporters used the default constructors.</li>
+ * <li>Once {@link ReferenceStoreMigrator} has imported the CSV files into
+ * {@code store}, the factories return services backed by that
+ * {@link ReferenceStore} and the CSV files are no longer read.</li>
+ * <li>{@link #currentYear()} falls back to the calendar year when the year
+ * file is missing or unreadable.</li>
+ * </ul>
+ * </p>
+ */
+public final class DataRoot {
+
+    /** The {@code data} directory under the working directory. */
+    public static final DataRoot DEFAULT = new DataRoot(Paths.get("data"));
+
+    private final Path dir;
+
+    public DataRoot(Path dir) {
+        this.dir = dir;
+    }
+
+    /** @return the root of {@code options}, or {@link #DEFAULT} when unset */
+    public static DataRoot of(ExportOptions options) {
+        return options != null && options.getDataRoot() != null ? options.getDataRoot() : DEFAULT;
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    /** @return the folder holding one factor directory per year */
+    public Path factorsDir() {
+        return dir.resolve("emission_factors");
+    }
+
+    /** @return the folder of the embedded reference store */
+    public Path storeDir() {
+        return dir.resolve(ReferenceStoreMigrator.STORE_DIR);
+    }
+
+    /** @return the log of the reference store */
+    public Path storeLog() {
+        return storeDir().resolve(ReferenceStore.LOG_FILE);
+    }
+
+    /** @return true once the CSV data has been imported into {@link #storeDir()} */
+    public boolean usesStore() {
+        return ReferenceStore.exists(storeDir());
+    }
+
+    public CupsService cups() {
+        return usesStore() ? new CupsServiceStore(store()) : new CupsServiceCsv(dir.toString());
+    }
+
+    public ElectricityFactorService electricityFactors() {
+        return usesStore() ? new ElectricityFactorServiceStore(store())
+                : new ElectricityFactorServiceCsv(factorsDir().toString());
+    }
+
+    public EmissionFactorService emissionFactors() {
+        return usesStore() ? new EmissionFactorServiceStore(store(), factorsDir())
+                : new EmissionFactorServiceCsv(factorsDir().toString());
+    }
+
+    public GasFactorService gasFactors() {
+        return usesStore() ? new GasFactorServiceStore(store()) : new GasFactorServiceCsv(factorsDir().toString());
+    }
+
+    public FuelFactorService fuelFactors() {
+        return usesStore() ? new FuelFactorServiceStore(store()) : new FuelFactorServiceCsv(factorsDir().toString());
+    }
+
+    public RefrigerantFactorService refrigerantFactors() {
+        return usesStore() ? new RefrigerantFactorServiceStore(store())
+                : new RefrigerantFactorServiceCsv(factorsDir().toString());
+    }
+
+    private ReferenceStore store() {
+        try {
+            return ReferenceStore.open(storeDir());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open reference store " + storeDir(), e);
+        }
+    }
+
+    /**
+     * @return the year persisted in {@code year/current_year.txt}, or the
+     *         calendar year when it is missing or not a number
+     */
+    public int currentYear() {
+        try {
+            Path p = dir.resolve("year").resolve("current_year.txt");
+            if (Files.exists(p)) {
+                List<String> lines = Files.readAllLines(p);
+                if (!lines.isEmpty()) {
+                    String s = lines.get(0).trim();
+                    if (!s.isEmpty())
+                        return Integer.parseInt(s);
+                }
+            }
+        } catch (Exception ignored) {
+        }
+        return LocalDate.now().getYear();
+    }
+
+    @Override
+    public String toString() {
+        return dir.toString();
+    }
+}
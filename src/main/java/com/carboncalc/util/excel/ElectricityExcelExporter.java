@@ -1,28 +1,30 @@
 package com.carboncalc.util.excel;
 
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 
 import java.io.FileOutputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.sql.Date;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.Collections;
 
-import com.carboncalc.service.ElectricityFactorServiceCsv;
 import com.carboncalc.model.factors.ElectricityGeneralFactors;
-import com.carboncalc.service.CupsServiceCsv;
+import com.carboncalc.service.CupsService;
 import com.carboncalc.model.CupsCenterMapping;
-import com.carboncalc.service.EmissionFactorServiceCsv;
+import com.carboncalc.service.EmissionFactorService;
 import com.carboncalc.model.factors.EmissionFactor;
 import com.carboncalc.model.ElectricityMapping;
+import com.carboncalc.model.enums.EnergyType;
+import com.carboncalc.util.AggregateCube;
+import com.carboncalc.util.WorkbookFootprint;
+import com.carboncalc.util.PeriodProration;
 import com.carboncalc.util.enums.DetailedHeader;
 import com.carboncalc.util.enums.TotalHeader;
 
@@ -30,9 +32,6 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.text.Normalizer;
-import java.nio.file.Path;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
@@ -57,11 +56,16 @@ import java.util.regex.Matcher;
  * exported sheets; diagnostics may be appended into a "Diagnostics" sheet.</li>
  * <li>Error handling: the exporter is resilient and returns empty aggregates
  * on read errors; diagnostics are written when possible to aid debugging.</li>
+ * <li>Append mode ({@link ExportOptions#isAppend()}) adds the rows of new
+ * invoices to an existing report (see {@link ReportAppender}).</li>
  * </ul>
  * </p>
  */
 public class ElectricityExcelExporter {
 
+    // Factura column of the detailed sheet
+    private static final int DETAILED_INVOICE_COLUMN = 4;
+
     public static void exportElectricityData(String filePath) throws IOException {
         // Backward-compatible call: no data provided -> create empty template
         exportElectricityData(filePath, null, null, null, null, new ElectricityMapping(), LocalDate.now().getYear(),
@@ -71,8 +75,58 @@ public class ElectricityExcelExporter {
     public static void exportElectricityData(String filePath, String providerPath, String providerSheet,
             String erpPath, String erpSheet, ElectricityMapping mapping, int year,
             String sheetMode, Set<String> validInvoices) throws IOException {
+        exportElectricityData(filePath, providerPath, providerSheet, erpPath, erpSheet, mapping, year, sheetMode,
+                validInvoices, new ExportOptions());
+    }
+
+    /**
+     * Export electricity data with optional extras (see {@link ExportOptions}).
+     * With default options the output is identical to the overload without
+     * options.
+     */
+    public static void exportElectricityData(String filePath, String providerPath, String providerSheet,
+            String erpPath, String erpSheet, ElectricityMapping mapping, int year,
+            String sheetMode, Set<String> validInvoices, ExportOptions options) throws IOException {
+        exportElectricityData(filePath, ProviderSource.single(providerPath, providerSheet), erpPath, erpSheet,
+                mapping, year, sheetMode, validInvoices, options);
+    }
+
+    /**
+     * Export the rows of several provider sheets into one workbook. Sources
+     * are parsed concurrently and merged in list order; every source uses the
+     * same column mapping. An invoice number already exported from an earlier
+     * source is skipped (counted as {@link ExportMetrics#SKIP_DUPLICATE}).
+     */
+    public static void exportElectricityData(String filePath, List<ProviderSource> sources, String erpPath,
+            String erpSheet, ElectricityMapping mapping, int year, String sheetMode, Set<String> validInvoices,
+            ExportOptions options) throws IOException {
+        ExportMetrics metrics = new ExportMetrics(EnergyType.ELECTRICITY.id());
+        DataRoot data = DataRoot.of(options);
+        if ("extended".equalsIgnoreCase(sheetMode) && ReportAppender.applies(options, filePath)) {
+            appendElectricityData(filePath, sources, mapping, year, validInvoices, options, data, metrics);
+            return;
+        }
+        ExportResultCache cache = options != null ? options.getResultCache() : null;
+        String cacheKey = null;
+        if (cache != null && mapping != null) {
+            metrics.begin(ExportMetrics.PHASE_CACHE);
+            cacheKey = ExportResultCache.key(EnergyType.ELECTRICITY.id()).sources(sources)
+                    .ints(mapping.getCupsIndex(), mapping.getInvoiceNumberIndex(), mapping.getStartDateIndex(),
+                            mapping.getEndDateIndex(), mapping.getConsumptionIndex(), mapping.getCenterIndex(),
+                            mapping.getEmissionEntityIndex())
+                    .text(sheetMode).strings(validInvoices).options(options).dataFiles(data, year).build();
+            boolean hit = cache.restore(cacheKey, filePath);
+            metrics.lookup(ExportMetrics.LOOKUP_RESULT_CACHE, hit);
+            metrics.end();
+            if (hit) {
+                metrics.publish(options, filePath);
+                return;
+            }
+        }
         boolean isXlsx = filePath.toLowerCase().endsWith(".xlsx");
-        try (Workbook workbook = isXlsx ? new XSSFWorkbook() : new HSSFWorkbook()) {
+        // Large provider files get a streaming writer (see ProviderSource.writeMode)
+        try (Workbook workbook = isXlsx ? WorkbookFootprint.newWorkbook(ProviderSource.writeMode(sources, options))
+                : new HSSFWorkbook()) {
             // Prepare localization and module label used to prefix sheet names
             ResourceBundle spanish = ResourceBundle.getBundle("Messages", new Locale("es"));
             String moduleLabel = spanish.containsKey("module.electricity")
@@ -87,34 +141,33 @@ public class ElectricityExcelExporter {
                 Sheet detailedSheet = workbook.createSheet(sheetExtended);
                 CellStyle headerStyle = createHeaderStyle(workbook);
                 createDetailedSheet(detailedSheet, headerStyle, spanish);
+                // Resolved now: a streaming workbook flushes the header row
+                String[] perCenterColumns = perCenterColumns(detailedSheet, spanish);
 
                 // If provider data is available, try to open and read rows
-                if (providerPath != null && providerSheet != null) {
-                    try (FileInputStream fis = new FileInputStream(providerPath)) {
-                        Workbook src = providerPath.toLowerCase().endsWith(".xlsx")
-                                ? new XSSFWorkbook(fis)
-                                : new HSSFWorkbook(fis);
-                        Sheet sheet = src.getSheet(providerSheet);
-                        if (sheet != null) {
-                            // Load per-year general factors to compute location-based emissions
-                            double locationFactor = 0.0;
-                            try {
-                                ElectricityFactorServiceCsv gfsvc = new ElectricityFactorServiceCsv();
-                                ElectricityGeneralFactors gf = gfsvc.loadFactors(year);
-                                if (gf != null)
-                                    locationFactor = gf.getLocationBasedFactor();
-                            } catch (Exception ex) {
-                                // ignore and use 0.0
-                            }
-                            Map<String, double[]> aggregates = writeExtendedRows(detailedSheet, sheet, mapping, year,
-                                    validInvoices, locationFactor);
+                if (sources != null && !sources.isEmpty()) {
+                    metrics.begin(ExportMetrics.PHASE_READ);
+                    List<Sheet> sheets = ProviderSource.openAll(sources);
+                    metrics.end();
+                    try {
+                        if (!sheets.isEmpty()) {
+                            AggregateCube cube = options != null && options.isSummarySheets() ? new AggregateCube()
+                                    : null;
+                            PeriodSeries monthly = options != null && options.isMonthlySheet()
+                                    ? new PeriodSeries(3, PeriodProration.MONTHS)
+                                    : null;
+                            Map<String, double[]> aggregates = writeExtendedRows(detailedSheet, sheets, mapping, year,
+                                    validInvoices, cube, monthly, data, metrics, 1,
+                                    Collections.emptySet());
+                            metrics.begin(ExportMetrics.PHASE_SHEETS);
                             // create per-center sheet from aggregates (prefixed)
                             String perCenterName = moduleLabel + " - "
                                     + (spanish.containsKey("result.sheet.per_center")
                                             ? spanish.getString("result.sheet.per_center")
                                             : "Por centro");
                             Sheet perCenter = workbook.createSheet(perCenterName);
-                            createPerCenterSheet(perCenter, headerStyle, aggregates, spanish, sheetExtended);
+                            createPerCenterSheet(perCenter, headerStyle, aggregates, spanish, sheetExtended,
+                                    perCenterColumns);
                             // create total sheet summarizing per-center aggregates (prefixed)
                             String totalName = moduleLabel + " - "
                                     + (spanish.containsKey("result.sheet.total")
@@ -122,10 +175,29 @@ public class ElectricityExcelExporter {
                                             : "Total");
                             Sheet total = workbook.createSheet(totalName);
                             createTotalSheetFromAggregates(total, headerStyle, aggregates, spanish, perCenterName);
+                            if (cube != null) {
+                                Sheet summary = workbook.createSheet(moduleLabel + " - "
+                                        + (spanish.containsKey("result.sheet.summary")
+                                                ? spanish.getString("result.sheet.summary")
+                                                : "Resumen"));
+                                SummarySheetWriter.writeSummarySheet(summary, cube, spanish, headerStyle, true);
+                            }
+                            if (monthly != null) {
+                                Sheet monthlySheet = workbook.createSheet(moduleLabel + " - "
+                                        + (spanish.containsKey("result.sheet.monthly")
+                                                ? spanish.getString("result.sheet.monthly")
+                                                : "Mensual"));
+                                SummarySheetWriter.writeMonthlySheet(monthlySheet, monthly, year, spanish,
+                                        headerStyle, new String[] { "summary.header.consumption",
+                                                "summary.header.emissions.market",
+                                                "summary.header.emissions.location" });
+                            }
+                            metrics.end();
                         }
-                        src.close();
                     } catch (Exception e) {
                         // Continue writing template even if reading fails
+                    } finally {
+                        ProviderSource.closeAll(sheets);
                     }
                 }
             } else {
@@ -143,11 +215,246 @@ public class ElectricityExcelExporter {
                 createTotalSheet(totalSheet, headerStyle, spanish);
             }
 
+            metrics.writeSheetIfRequested(workbook, options, spanish, moduleLabel);
             // Write the workbook to file
+            metrics.begin(ExportMetrics.PHASE_WRITE);
             try (FileOutputStream fos = new FileOutputStream(filePath)) {
                 workbook.write(fos);
             }
+            metrics.end();
+        }
+        if (cacheKey != null)
+            cache.store(cacheKey, filePath);
+        metrics.publish(options, filePath);
+    }
+
+    /**
+     * Append the rows of invoices missing from the report at {@code filePath}
+     * and update its per-center and total sheets; see
+     * {@link ExportOptions#isAppend()}.
+     */
+    private static void appendElectricityData(String filePath, List<ProviderSource> sources,
+            ElectricityMapping mapping, int year, Set<String> validInvoices, ExportOptions options, DataRoot data,
+            ExportMetrics metrics) throws IOException {
+        if (options.isSummarySheets() || options.isMonthlySheet())
+            throw new IllegalArgumentException("Append mode cannot rebuild the summary or monthly sheets");
+        ResourceBundle spanish = ResourceBundle.getBundle("Messages", new Locale("es"));
+        String moduleLabel = spanish.containsKey("module.electricity") ? spanish.getString("module.electricity")
+                : "Electricidad";
+        String sheetExtended = moduleLabel + " - "
+                + (spanish.containsKey("result.sheet.extended") ? spanish.getString("result.sheet.extended")
+                        : "Extendido");
+        String perCenterName = moduleLabel + " - "
+                + (spanish.containsKey("result.sheet.per_center") ? spanish.getString("result.sheet.per_center")
+                        : "Por centro");
+        String totalName = moduleLabel + " - "
+                + (spanish.containsKey("result.sheet.total") ? spanish.getString("result.sheet.total") : "Total");
+        metrics.begin(ExportMetrics.PHASE_READ);
+        try (ReportAppender report = ReportAppender.open(filePath, sheetExtended, DETAILED_INVOICE_COLUMN)) {
+            report.dropSheets(ResourceBundle.getBundle("Messages", Locale.getDefault())
+                    .getString("export.sheet.diagnostics"), moduleLabel + " - "
+                            + spanish.getString("result.sheet.metrics"));
+            List<Sheet> sheets = ProviderSource.openAll(sources);
+            metrics.end();
+            try {
+                if (!sheets.isEmpty()) {
+                    Map<String, double[]> delta = writeExtendedRows(report.detailed(), sheets, mapping, year,
+                            validInvoices, null, null, data, metrics, report.nextId(),
+                            report.invoices());
+                    metrics.begin(ExportMetrics.PHASE_SHEETS);
+                    report.mergePerCenter(perCenterName, delta, perCenterColumns(report.detailed(), spanish));
+                    report.refreshTotal(totalName, perCenterName);
+                    metrics.end();
+                }
+            } finally {
+                ProviderSource.closeAll(sheets);
+            }
+            metrics.writeSheetIfRequested(report.workbook(), options, spanish, moduleLabel);
+            metrics.begin(ExportMetrics.PHASE_WRITE);
+            report.save();
+            metrics.end();
+        }
+        metrics.publish(options, filePath);
+    }
+
+    /**
+     * Run the electricity calculation on up to {@code maxRows} rows sampled
+     * from {@code source} without writing a workbook. Rows go through the
+     * same {@link RowCalculator} as the export; there is no ERP invoice set
+     * and no earlier file, so only the invoice rules of a single file apply.
+     * Marketers without a factor for the year are reported as unmatched.
+     */
+    public static MappingPreview preview(Sheet source, ElectricityMapping mapping, int year, int maxRows) {
+        DataFormatter df = new DataFormatter();
+        FormulaEvaluator eval = source.getWorkbook().getCreationHelper().createFormulaEvaluator();
+        int headerRowIndex = MappingPreview.findHeaderRow(source, df, eval);
+        if (headerRowIndex == -1)
+            return new MappingPreview(0);
+        MappingPreview preview = new MappingPreview(source.getLastRowNum() - headerRowIndex);
+        RowCalculator calc = new RowCalculator(DataRoot.DEFAULT, mapping, year, Collections.emptySet(),
+                Collections.emptySet());
+
+        for (int i : MappingPreview.sampleRows(headerRowIndex + 1, source.getLastRowNum(), maxRows)) {
+            Row srcRow = source.getRow(i);
+            if (srcRow == null)
+                continue;
+            preview.sampled();
+            CalculatedRow r = calc.calculate(srcRow, df, eval);
+            if (Boolean.FALSE.equals(r.factorMatched))
+                preview.unmatched(r.marketer);
+            if (r.skip != null) {
+                preview.skip(r.skip);
+                continue;
+            }
+            preview.include(r.centerName, r.consumoPorCentro, r.emisionesMarketT);
         }
+        return preview;
+    }
+
+    /**
+     * Per-row electricity rules shared by the export and
+     * {@link #preview(Sheet, ElectricityMapping, int, int)}: year filter,
+     * proration, CUPS split, marketer factor lookup, ERP invoice filter and
+     * invoices repeated across provider files. Lookups and factors are loaded
+     * once, for the resolved reporting year.
+     */
+    private static final class RowCalculator {
+        final int reportingYear;
+        final double locationFactor;
+        private final ElectricityMapping mapping;
+        private final Map<String, Integer> centersPerCups;
+        private final Map<String, String> cupsToMarketer;
+        private final Map<String, Double> marketerToFactor;
+        private final Set<String> validInvoices;
+        // Invoices already in the report (append mode)
+        private final Set<String> exportedInvoices;
+        // Invoice numbers exported from earlier sources; a repeat in a later
+        // file is the same invoice delivered twice
+        private final Set<String> earlierInvoices = new HashSet<>();
+        private final Set<String> sourceInvoices = new HashSet<>();
+
+        RowCalculator(DataRoot data, ElectricityMapping mapping, int year, Set<String> validInvoices,
+                Set<String> exportedInvoices) {
+            this.mapping = mapping;
+            // Prefer the 'year' passed by the caller (UI selection), otherwise the
+            // persisted current_year file
+            this.reportingYear = (year > 0) ? year : data.currentYear();
+            this.centersPerCups = loadCentersPerCups(data);
+            this.cupsToMarketer = loadCupsToMarketer(data);
+            this.marketerToFactor = loadMarketerToFactor(data, reportingYear);
+            double location = 0.0;
+            try {
+                ElectricityGeneralFactors gf = data.electricityFactors().loadFactors(reportingYear);
+                if (gf != null)
+                    location = gf.getLocationBasedFactor();
+            } catch (Exception ex) {
+                // ignore and use 0.0
+            }
+            this.locationFactor = location;
+            this.validInvoices = validInvoices;
+            this.exportedInvoices = exportedInvoices;
+        }
+
+        /** Start the next provider file; invoices of the previous one count as exported. */
+        void nextSource() {
+            earlierInvoices.addAll(sourceInvoices);
+            sourceInvoices.clear();
+        }
+
+        CalculatedRow calculate(Row srcRow, DataFormatter df, FormulaEvaluator eval) {
+            CalculatedRow r = new CalculatedRow();
+            r.cups = getCellStringByIndex(srcRow, mapping.getCupsIndex(), df, eval);
+            r.factura = getCellStringByIndex(srcRow, mapping.getInvoiceNumberIndex(), df, eval);
+            r.fechaInicio = getCellStringByIndex(srcRow, mapping.getStartDateIndex(), df, eval);
+            r.fechaFin = getCellStringByIndex(srcRow, mapping.getEndDateIndex(), df, eval);
+            r.consumo = parseDoubleSafe(getCellStringByIndex(srcRow, mapping.getConsumptionIndex(), df, eval));
+            // Parse start and end dates (may be missing). Include row if its period
+            // touches the reporting year (same rule as the multi-year export)
+            r.parsedStart = parseDateLenient(r.fechaInicio);
+            r.parsedEnd = parseDateLenient(r.fechaFin);
+            if (!PeriodProration.touchesYear(r.parsedStart, r.parsedEnd, reportingYear)) {
+                r.skip = ExportMetrics.SKIP_YEAR;
+                return r;
+            }
+
+            // Compute consumoAplicable: if both dates present use prorating, otherwise
+            // conservatively use the whole consumption
+            r.consumoAplicable = (r.parsedStart == null || r.parsedEnd == null) ? r.consumo
+                    : computeApplicableKwh(r.fechaInicio, r.fechaFin, r.consumo, reportingYear);
+
+            // Determine how many centers share this CUPS
+            String cupsKey = r.cups != null ? r.cups.trim() : "";
+            if (!cupsKey.isEmpty()) {
+                r.centersCount = centersPerCups.getOrDefault(cupsKey, 1);
+                r.cupsMatched = centersPerCups.containsKey(cupsKey);
+            }
+            r.consumoPorCentro = r.centersCount > 0 ? r.consumoAplicable / (double) r.centersCount
+                    : r.consumoAplicable;
+
+            // Market-based emissions: determine marketer from CUPS mapping or
+            // emission-entity column, then compute tonnes
+            String marketerFromCups = cupsToMarketer.getOrDefault(cupsKey, "");
+            r.marketer = !marketerFromCups.isEmpty() ? marketerFromCups
+                    : getCellStringByIndex(srcRow, mapping.getEmissionEntityIndex(), df, eval);
+            if (r.marketer != null && !r.marketer.isEmpty()) {
+                Double f = marketerToFactor.get(normalizeKey(r.marketer));
+                r.factorMatched = f != null;
+                r.factor = f != null ? f : 0.0;
+            }
+            // tCO2 = consumoPorCentro * factor(kgCO2e/kWh) / 1000
+            r.emisionesMarketT = (r.consumoPorCentro * r.factor) / 1000.0;
+            r.emisionesLocationT = (r.consumoPorCentro * locationFactor) / 1000.0;
+
+            String invoiceNumber = r.factura != null ? r.factura.trim() : "";
+            if (validInvoices != null && !validInvoices.isEmpty()
+                    && (invoiceNumber.isEmpty() || !validInvoices.contains(invoiceNumber))) {
+                r.skip = ExportMetrics.SKIP_INVOICE;
+                return r;
+            }
+            // Cross-file duplicates: the same invoice in an earlier source
+            // or, when appending, already in the report
+            if (!invoiceNumber.isEmpty()) {
+                if (earlierInvoices.contains(invoiceNumber) || exportedInvoices.contains(invoiceNumber)) {
+                    r.skip = ExportMetrics.SKIP_DUPLICATE;
+                    return r;
+                }
+                sourceInvoices.add(invoiceNumber);
+            }
+
+            r.centerName = getCellStringByIndex(srcRow, mapping.getCenterIndex(), df, eval);
+            if (r.centerName == null || r.centerName.trim().isEmpty()) {
+                r.centerName = !cupsKey.isEmpty() ? cupsKey : (r.factura != null ? r.factura : "SIN_CENTRO");
+            }
+            return r;
+        }
+    }
+
+    /**
+     * Outcome of {@link RowCalculator#calculate}: the values read and derived
+     * from one provider row, and the skip reason when it is left out.
+     */
+    private static final class CalculatedRow {
+        /** Skip reason (an {@link ExportMetrics} SKIP constant) or null. */
+        String skip;
+        String cups;
+        String factura;
+        String fechaInicio;
+        String fechaFin;
+        LocalDate parsedStart;
+        LocalDate parsedEnd;
+        double consumo;
+        double consumoAplicable;
+        int centersCount = 1;
+        double consumoPorCentro;
+        String marketer;
+        double factor;
+        /** Whether the CUPS is in the CUPS file; null when the row has none. */
+        Boolean cupsMatched;
+        /** Whether the marketer has a factor; null when the row has none. */
+        Boolean factorMatched;
+        String centerName;
+        double emisionesMarketT;
+        double emisionesLocationT;
     }
 
     private static void createDetailedSheet(Sheet sheet, CellStyle headerStyle, ResourceBundle spanish) {
@@ -196,10 +503,10 @@ public class ElectricityExcelExporter {
      * Load map CUPS -> number of centers that reference each CUPS.
      * Returns an empty map on any error.
      */
-    private static Map<String, Integer> loadCentersPerCups() {
+    static Map<String, Integer> loadCentersPerCups(DataRoot data) {
         Map<String, Integer> centersPerCups = new HashMap<>();
         try {
-            CupsServiceCsv cupsSvc = new CupsServiceCsv();
+            CupsService cupsSvc = data.cups();
             List<CupsCenterMapping> all = cupsSvc.loadCupsData();
             for (CupsCenterMapping m : all) {
                 String key = m.getCups() != null ? m.getCups().trim() : "";
@@ -216,10 +523,10 @@ public class ElectricityExcelExporter {
     /**
      * Load map CUPS -> marketer (if present). Returns empty map on error.
      */
-    private static Map<String, String> loadCupsToMarketer() {
+    static Map<String, String> loadCupsToMarketer(DataRoot data) {
         Map<String, String> cupsToMarketer = new HashMap<>();
         try {
-            CupsServiceCsv cupsSvc = new CupsServiceCsv();
+            CupsService cupsSvc = data.cups();
             List<CupsCenterMapping> all = cupsSvc.loadCupsData();
             for (CupsCenterMapping m : all) {
                 String key = m.getCups() != null ? m.getCups().trim() : "";
@@ -234,13 +541,23 @@ public class ElectricityExcelExporter {
     }
 
     /**
-     * Load marketer -> base factor for electricity for a specific year.
-     * Returns empty map on error to keep exporter resilient.
+     * Load marketer -> base factor for electricity for a specific year: the
+     * trading companies the electricity factor service saves (and the
+     * factors panel edits), falling back to generic emission-factor rows when
+     * the year lists no company. Returns empty map on error to keep exporter
+     * resilient.
      */
-    private static Map<String, Double> loadMarketerToFactor(int year) {
+    static Map<String, Double> loadMarketerToFactor(DataRoot data, int year) {
         Map<String, Double> marketerToFactor = new HashMap<>();
         try {
-            EmissionFactorServiceCsv efsvc = new EmissionFactorServiceCsv();
+            ElectricityGeneralFactors general = data.electricityFactors().loadFactors(year);
+            if (general != null) {
+                for (ElectricityGeneralFactors.TradingCompany c : general.getTradingCompanies())
+                    marketerToFactor.put(normalizeKey(c.getName() == null ? "" : c.getName()), c.getEmissionFactor());
+            }
+            if (!marketerToFactor.isEmpty())
+                return marketerToFactor;
+            EmissionFactorService efsvc = data.emissionFactors();
             List<? extends EmissionFactor> efs = efsvc.loadEmissionFactors("electricity", year);
             for (EmissionFactor ef : efs) {
                 String entity = ef.getEntity() == null ? "" : ef.getEntity();
@@ -274,45 +591,25 @@ public class ElectricityExcelExporter {
         return emissionsStyle;
     }
 
-    private static Map<String, double[]> writeExtendedRows(Sheet target, Sheet source, ElectricityMapping mapping,
-            int year, Set<String> validInvoices, double locationFactorKgPerKwh) {
+    private static Map<String, double[]> writeExtendedRows(Sheet target, List<Sheet> sources, ElectricityMapping mapping,
+            int year, Set<String> validInvoices, AggregateCube cube, PeriodSeries monthly, DataRoot data,
+            ExportMetrics metrics, int firstId, Set<String> exportedInvoices) {
         DataFormatter df = new DataFormatter();
-        FormulaEvaluator eval = source.getWorkbook().getCreationHelper().createFormulaEvaluator();
         Map<String, double[]> perCenterAgg = new HashMap<>();
         List<String> diagnostics = new ArrayList<>();
-        int headerRowIndex = -1;
-        for (int i = source.getFirstRowNum(); i <= source.getLastRowNum(); i++) {
-            Row r = source.getRow(i);
-            if (r == null)
-                continue;
-            boolean nonEmpty = false;
-            for (Cell c : r) {
-                if (!getCellStringStatic(c, df, eval).isEmpty()) {
-                    nonEmpty = true;
-                    break;
-                }
-            }
-            if (nonEmpty) {
-                headerRowIndex = i;
-                break;
-            }
-        }
-        if (headerRowIndex == -1) {
-            diagnostics.add("No header row found in provider sheet; no rows will be processed.");
-            writeDiagnosticsSheet(target.getWorkbook(), diagnostics);
-            return perCenterAgg;
-        }
         int outRow = target.getLastRowNum() + 1;
-        int idCounter = 1;
-        // Build a map CUPS -> count of centers that reference it (from
-        // data/cups_center/cups.csv)
-        Map<String, Integer> centersPerCups = loadCentersPerCups();
-
-        // Build a CUPS -> marketer map to resolve marketer from cups (if present)
-        Map<String, String> cupsToMarketer = loadCupsToMarketer();
-
-        // Load per-year emission factors for electricity into a marketer->factor map
-        Map<String, Double> marketerToFactor = loadMarketerToFactor(year);
+        int idCounter = firstId;
+        metrics.begin(ExportMetrics.PHASE_FACTORS);
+        // CUPS split, marketer and location factors for the reporting year
+        RowCalculator calc = new RowCalculator(data, mapping, year, validInvoices, exportedInvoices);
+        int reportingYear = calc.reportingYear;
+        double locationFactorKgPerKwh = calc.locationFactor;
+
+        // Center attributes (campus, city, ...) are only needed to label cube facts
+        CenterAttributes attributes = cube != null ? CenterAttributes.load(data) : null;
+        metrics.end();
+        // Monthly split of each row, reused across rows
+        double[] months = new double[PeriodProration.MONTHS];
 
         // Prepare some cell styles (date, percentage, emissions number formats)
         Workbook wb = target.getWorkbook();
@@ -320,187 +617,182 @@ public class ElectricityExcelExporter {
         CellStyle percentStyle = createPercentStyle(wb);
         CellStyle emissionsStyle = createEmissionsStyle(wb);
 
-        // Determine the reporting year: prefer the 'year' parameter passed by caller
-        // (UI selection),
-        // otherwise fallback to the persisted current_year file.
-        int reportingYear = (year > 0) ? year : readCurrentYearFromFile();
-
-        // Diagnostics removed: no Diagnostics sheet will be created in the output
-        // workbook
-
-        for (int i = headerRowIndex + 1; i <= source.getLastRowNum(); i++) {
-            Row srcRow = source.getRow(i);
-            if (srcRow == null)
-                continue;
-            String cups = getCellStringByIndex(srcRow, mapping.getCupsIndex(), df, eval);
-            String factura = getCellStringByIndex(srcRow, mapping.getInvoiceNumberIndex(), df, eval);
-            String fechaInicio = getCellStringByIndex(srcRow, mapping.getStartDateIndex(), df, eval);
-            String fechaFin = getCellStringByIndex(srcRow, mapping.getEndDateIndex(), df, eval);
-            String consumoStr = getCellStringByIndex(srcRow, mapping.getConsumptionIndex(), df, eval);
-            double consumo = parseDoubleSafe(consumoStr);
-            // Parse start and end dates (may be missing). Include row if either date is in
-            // reporting year
-            LocalDate parsedStart = parseDateLenient(fechaInicio);
-            LocalDate parsedEnd = parseDateLenient(fechaFin);
-            // diagnostic reason removed - no diagnostics sheet in final output
-
-            boolean startInYear = parsedStart != null && parsedStart.getYear() == reportingYear;
-            boolean endInYear = parsedEnd != null && parsedEnd.getYear() == reportingYear;
-
-            if (!startInYear && !endInYear) {
-                // skipped: neither date is in reporting year
-                continue;
-            }
-
-            // Compute consumoAplicable: if both dates present use prorating, otherwise
-            // conservatively use the whole consumption. We'll still write an Excel
-            // formula for the cell (H*(I/100)) so the sheet shows the computation.
-            double consumoAplicable;
-            if (parsedStart == null || parsedEnd == null) {
-                consumoAplicable = consumo;
-            } else {
-                consumoAplicable = computeApplicableKwh(fechaInicio, fechaFin, consumo, reportingYear);
+        for (Sheet source : sources) {
+            FormulaEvaluator eval = source.getWorkbook().getCreationHelper().createFormulaEvaluator();
+            metrics.begin(ExportMetrics.PHASE_HEADER);
+            int headerRowIndex = -1;
+            for (int i = source.getFirstRowNum(); i <= source.getLastRowNum(); i++) {
+                Row r = source.getRow(i);
+                if (r == null)
+                    continue;
+                boolean nonEmpty = false;
+                for (Cell c : r) {
+                    if (!getCellStringStatic(c, df, eval).isEmpty()) {
+                        nonEmpty = true;
+                        break;
+                    }
+                }
+                if (nonEmpty) {
+                    headerRowIndex = i;
+                    break;
+                }
             }
-
-            // Determine how many centers share this CUPS
-            int centersCount = 1;
-            if (cups != null && !cups.trim().isEmpty())
-                centersCount = centersPerCups.getOrDefault(cups.trim(), 1);
-            double consumoPorCentro = centersCount > 0 ? consumoAplicable / (double) centersCount : consumoAplicable;
-            // Percentage of applicable consumption assigned to this center (equally divided
-            // among centers sharing the same CUPS)
-            double porcentajePorCentro = (centersCount > 0) ? (100.0 / (double) centersCount) : 100.0;
-
-            // Emissions placeholders (market-based and location-based)
-            // Market-based emissions: determine marketer from CUPS mapping or
-            // emission-entity column, then compute tonnes
-            String marketerFromCups = cups != null ? cupsToMarketer.getOrDefault(cups.trim(), "") : "";
-            String marketerToUse = (marketerFromCups != null && !marketerFromCups.isEmpty()) ? marketerFromCups
-                    : getCellStringByIndex(srcRow, mapping.getEmissionEntityIndex(), df, eval);
-            double factorEmision = marketerToUse != null
-                    ? marketerToFactor.getOrDefault(normalizeKey(marketerToUse), 0.0)
-                    : 0.0;
-            if (marketerToUse != null && !marketerToUse.isEmpty() && factorEmision == 0.0
-                    && !marketerToFactor.containsKey(normalizeKey(marketerToUse))) {
-                diagnostics.add(String.format("Row %d: marketer '%s' not found for year %d; using factor=0.0", i,
-                        marketerToUse, reportingYear));
+            metrics.end();
+            if (headerRowIndex == -1) {
+                diagnostics.add("No header row found in provider sheet '" + source.getSheetName()
+                        + "'; no rows will be processed.");
+                continue;
             }
-            // Emissions (market-based): compute tCO2 = consumoPorCentro *
-            // factor(kgCO2e/kWh) / 1000
-            // Excel formula will mirror this and produce tCO2 values.
-            double emisionesMarketT = (consumoPorCentro * factorEmision) / 1000.0;
-
-            // Location-based emissions: use consumoPorCentro (kWh applicable per year
-            // assigned to this center)
-            double emisionesLocationT = (consumoPorCentro * locationFactorKgPerKwh) / 1000.0;
-
-            // Filter by validInvoices if provided
-            if (validInvoices != null && !validInvoices.isEmpty()) {
-                String invoiceKey = factura != null ? factura.trim() : "";
-                if (invoiceKey.isEmpty() || !validInvoices.contains(invoiceKey)) {
-                    diagnostics.add(
-                            String.format("Row %d skipped: invoice '%s' is not in valid invoices set", i, invoiceKey));
+            metrics.begin(ExportMetrics.PHASE_ROWS);
+            calc.nextSource();
+            for (int i = headerRowIndex + 1; i <= source.getLastRowNum(); i++) {
+                Row srcRow = source.getRow(i);
+                if (srcRow == null)
                     continue;
+                metrics.rowRead();
+                CalculatedRow r = calc.calculate(srcRow, df, eval);
+                if (r.cupsMatched != null)
+                    metrics.lookup(ExportMetrics.LOOKUP_CUPS, r.cupsMatched);
+                if (r.factorMatched != null) {
+                    metrics.lookup(ExportMetrics.LOOKUP_FACTOR, r.factorMatched);
+                    if (!r.factorMatched)
+                        diagnostics.add(String.format("Row %d: marketer '%s' not found for year %d; using factor=0.0",
+                                i, r.marketer, reportingYear));
+                }
+                if (r.skip != null) {
+                    metrics.skip(r.skip);
+                    if (ExportMetrics.SKIP_INVOICE.equals(r.skip))
+                        diagnostics.add(String.format("Row %d skipped: invoice '%s' is not in valid invoices set", i,
+                                r.factura != null ? r.factura.trim() : ""));
+                    else if (ExportMetrics.SKIP_DUPLICATE.equals(r.skip))
+                        diagnostics.add(String.format("Row %d of '%s' skipped: invoice '%s' already exported from an "
+                                + "earlier file", i, source.getSheetName(), r.factura.trim()));
+                    continue;
+                }
+                String cups = r.cups;
+                String factura = r.factura;
+                String fechaInicio = r.fechaInicio;
+                String fechaFin = r.fechaFin;
+                LocalDate parsedStart = r.parsedStart;
+                LocalDate parsedEnd = r.parsedEnd;
+                double consumo = r.consumo;
+                double consumoAplicable = r.consumoAplicable;
+                int centersCount = r.centersCount;
+                String centerName = r.centerName;
+                String marketerToUse = r.marketer;
+                double factorEmision = r.factor;
+                // Percentage of applicable consumption assigned to this center (equally divided
+                // among centers sharing the same CUPS)
+                double porcentajePorCentro = (centersCount > 0) ? (100.0 / (double) centersCount) : 100.0;
+
+                // Update per-center aggregates
+                double[] agg = perCenterAgg.get(centerName);
+                if (agg == null) {
+                    agg = new double[3];
+                    perCenterAgg.put(centerName, agg);
+                }
+                agg[0] += r.consumoPorCentro; // consumo
+                agg[1] += r.emisionesMarketT;
+                agg[2] += r.emisionesLocationT;
+
+                if (cube != null || monthly != null) {
+                    // Same day-overlap proration as consumoAplicable, split per month
+                    PeriodProration.splitInto(parsedStart, parsedEnd,
+                            centersCount > 0 ? consumo / (double) centersCount : consumo, reportingYear, months);
+                    if (monthly != null)
+                        monthly.add(centerName, months, 1.0, factorEmision / 1000.0, locationFactorKgPerKwh / 1000.0);
+                    if (cube != null)
+                        CenterAttributes.addMonthly(cube,
+                                attributes.members(EnergyType.ELECTRICITY.id(), "2", centerName, null, cups,
+                                        marketerToUse),
+                                reportingYear, months, factorEmision / 1000.0, locationFactorKgPerKwh / 1000.0);
                 }
-            }
 
-            // Update per-center aggregates
-            String centerName = getCellStringByIndex(srcRow, mapping.getCenterIndex(), df, eval);
-            if (centerName == null || centerName.trim().isEmpty()) {
-                centerName = (cups != null && !cups.trim().isEmpty()) ? cups.trim()
-                        : (factura != null ? factura : "SIN_CENTRO");
-            }
-            double[] agg = perCenterAgg.get(centerName);
-            if (agg == null) {
-                agg = new double[3];
-                perCenterAgg.put(centerName, agg);
-            }
-            agg[0] += consumoPorCentro; // consumo
-            agg[1] += emisionesMarketT;
-            agg[2] += emisionesLocationT;
-
-            // included (no diagnostics written)
-
-            Row out = target.createRow(outRow++);
-            int col = 0;
-            out.createCell(col++).setCellValue(idCounter++); // id: simple increment starting at 1
-            out.createCell(col++).setCellValue(getCellStringStatic(srcRow.getCell(mapping.getCenterIndex()), df, eval)); // centro
-            // Write the resolved 'sociedad emisora' value (prefer CUPS->marketer mapping,
-            // fallback to emission-entity column)
-            String sociedadEmisora = marketerToUse != null && !marketerToUse.isEmpty() ? marketerToUse
-                    : getCellStringByIndex(srcRow, mapping.getEmissionEntityIndex(), df, eval);
-            out.createCell(col++).setCellValue(sociedadEmisora);
-            out.createCell(col++).setCellValue(cups);
-            out.createCell(col++).setCellValue(factura);
+                // included (no diagnostics written)
+
+                Row out = target.createRow(outRow++);
+                metrics.rowWritten();
+                int col = 0;
+                out.createCell(col++).setCellValue(idCounter++); // id: simple increment starting at 1
+                out.createCell(col++).setCellValue(getCellStringStatic(srcRow.getCell(mapping.getCenterIndex()), df, eval)); // centro
+                // Write the resolved 'sociedad emisora' value (prefer CUPS->marketer mapping,
+                // fallback to emission-entity column)
+                String sociedadEmisora = marketerToUse != null && !marketerToUse.isEmpty() ? marketerToUse
+                        : getCellStringByIndex(srcRow, mapping.getEmissionEntityIndex(), df, eval);
+                out.createCell(col++).setCellValue(sociedadEmisora);
+                out.createCell(col++).setCellValue(cups);
+                out.createCell(col++).setCellValue(factura);
+
+                // Fecha inicio (as date cell)
+                Cell startCell = out.createCell(col++);
+                try {
+                    startCell.setCellValue(Date.valueOf(parsedStart));
+                    startCell.setCellStyle(dateStyle);
+                } catch (Exception ex) {
+                    startCell.setCellValue(fechaInicio != null ? fechaInicio : "");
+                }
 
-            // Fecha inicio (as date cell)
-            Cell startCell = out.createCell(col++);
-            try {
-                startCell.setCellValue(Date.valueOf(parsedStart));
-                startCell.setCellStyle(dateStyle);
-            } catch (Exception ex) {
-                startCell.setCellValue(fechaInicio != null ? fechaInicio : "");
-            }
+                // Fecha fin (as date cell)
+                Cell endCell = out.createCell(col++);
+                try {
+                    endCell.setCellValue(Date.valueOf(parsedEnd));
+                    endCell.setCellStyle(dateStyle);
+                } catch (Exception ex) {
+                    endCell.setCellValue(fechaFin != null ? fechaFin : "");
+                }
 
-            // Fecha fin (as date cell)
-            Cell endCell = out.createCell(col++);
-            try {
-                endCell.setCellValue(Date.valueOf(parsedEnd));
-                endCell.setCellStyle(dateStyle);
-            } catch (Exception ex) {
-                endCell.setCellValue(fechaFin != null ? fechaFin : "");
+                // Numeric values
+                out.createCell(col++).setCellValue(consumo);
+                // Percentage of consumo applicable to the reporting year
+                // Allow negative consumption (rectified invoices). Only avoid division by
+                // zero; preserve sign when computing percentages.
+                double porcentajeAplicableAno = consumo != 0 ? ((consumoAplicable / consumo) * 100.0) : 0.0;
+                Cell pctYearCell = out.createCell(col++);
+                pctYearCell.setCellValue(porcentajeAplicableAno);
+                pctYearCell.setCellStyle(percentStyle);
+
+                // Write consumo aplicable as a formula: =Hrow*(Irow/100)
+                int excelRow = out.getRowNum() + 1;
+                String consumoRef = colIndexToName(7) + excelRow; // H
+                String pctYearRef = colIndexToName(8) + excelRow; // I
+                Cell consumoAplicCell = out.createCell(col++);
+                consumoAplicCell.setCellFormula(consumoRef + "*(" + pctYearRef + "/100)");
+
+                Cell pctCell = out.createCell(col++);
+                pctCell.setCellValue(porcentajePorCentro);
+                pctCell.setCellStyle(percentStyle);
+
+                // consumo por centro as formula: =Jrow*(Krow/100) where J is consumo aplicable
+                // and K is pct centro
+                String consumoAplicRef = colIndexToName(9) + excelRow; // J
+                String pctCentroRef = colIndexToName(10) + excelRow; // K
+                Cell consumoPorCentroCell = out.createCell(col++);
+                consumoPorCentroCell.setCellFormula(consumoAplicRef + "*(" + pctCentroRef + "/100)");
+
+                // Emissions written as formulas referencing consumo por centro (L) and factor
+                // columns O/P
+                String consumoPorCentroRef = colIndexToName(11) + excelRow; // L
+                String factorMarketRef = colIndexToName(14) + excelRow; // O
+                String factorLocationRef = colIndexToName(15) + excelRow; // P
+
+                Cell marketCell = out.createCell(col++);
+                // Formula in Excel: (consumoPorCentro * factor) / 1000 to produce tCO2
+                marketCell.setCellFormula("(" + consumoPorCentroRef + "*" + factorMarketRef + ")/1000");
+                marketCell.setCellStyle(emissionsStyle);
+
+                Cell locationCell = out.createCell(col++);
+                locationCell.setCellFormula("(" + consumoPorCentroRef + "*" + factorLocationRef + ")/1000");
+                locationCell.setCellStyle(emissionsStyle);
+
+                // Finally append the numeric factor cells (market then location) so formulas
+                // can reference them
+                Cell factorMarketCell = out.createCell(col++);
+                factorMarketCell.setCellValue(factorEmision);
+
+                Cell factorLocationCell = out.createCell(col++);
+                factorLocationCell.setCellValue(locationFactorKgPerKwh);
             }
-
-            // Numeric values
-            out.createCell(col++).setCellValue(consumo);
-            // Percentage of consumo applicable to the reporting year
-            // Allow negative consumption (rectified invoices). Only avoid division by
-            // zero; preserve sign when computing percentages.
-            double porcentajeAplicableAno = consumo != 0 ? ((consumoAplicable / consumo) * 100.0) : 0.0;
-            Cell pctYearCell = out.createCell(col++);
-            pctYearCell.setCellValue(porcentajeAplicableAno);
-            pctYearCell.setCellStyle(percentStyle);
-
-            // Write consumo aplicable as a formula: =Hrow*(Irow/100)
-            int excelRow = out.getRowNum() + 1;
-            String consumoRef = colIndexToName(7) + excelRow; // H
-            String pctYearRef = colIndexToName(8) + excelRow; // I
-            Cell consumoAplicCell = out.createCell(col++);
-            consumoAplicCell.setCellFormula(consumoRef + "*(" + pctYearRef + "/100)");
-
-            Cell pctCell = out.createCell(col++);
-            pctCell.setCellValue(porcentajePorCentro);
-            pctCell.setCellStyle(percentStyle);
-
-            // consumo por centro as formula: =Jrow*(Krow/100) where J is consumo aplicable
-            // and K is pct centro
-            String consumoAplicRef = colIndexToName(9) + excelRow; // J
-            String pctCentroRef = colIndexToName(10) + excelRow; // K
-            Cell consumoPorCentroCell = out.createCell(col++);
-            consumoPorCentroCell.setCellFormula(consumoAplicRef + "*(" + pctCentroRef + "/100)");
-
-            // Emissions written as formulas referencing consumo por centro (L) and factor
-            // columns O/P
-            String consumoPorCentroRef = colIndexToName(11) + excelRow; // L
-            String factorMarketRef = colIndexToName(14) + excelRow; // O
-            String factorLocationRef = colIndexToName(15) + excelRow; // P
-
-            Cell marketCell = out.createCell(col++);
-            // Formula in Excel: (consumoPorCentro * factor) / 1000 to produce tCO2
-            marketCell.setCellFormula("(" + consumoPorCentroRef + "*" + factorMarketRef + ")/1000");
-            marketCell.setCellStyle(emissionsStyle);
-
-            Cell locationCell = out.createCell(col++);
-            locationCell.setCellFormula("(" + consumoPorCentroRef + "*" + factorLocationRef + ")/1000");
-            locationCell.setCellStyle(emissionsStyle);
-
-            // Finally append the numeric factor cells (market then location) so formulas
-            // can reference them
-            Cell factorMarketCell = out.createCell(col++);
-            factorMarketCell.setCellValue(factorEmision);
-
-            Cell factorLocationCell = out.createCell(col++);
-            factorLocationCell.setCellValue(locationFactorKgPerKwh);
+            metrics.end();
         }
         // summary diagnostics
         diagnostics.add(String.format("Processed %d centers in aggregates", perCenterAgg.size()));
@@ -516,7 +808,7 @@ public class ElectricityExcelExporter {
     }
 
     private static void createPerCenterSheet(Sheet sheet, CellStyle headerStyle, Map<String, double[]> aggregates,
-            ResourceBundle spanish, String detailedName) {
+            ResourceBundle spanish, String detailedName, String[] columns) {
         // Header
         Row header = sheet.createRow(0);
         header.createCell(0).setCellValue(spanish.getString("electricity.percenter.centro"));
@@ -529,22 +821,9 @@ public class ElectricityExcelExporter {
         }
 
         int r = 1;
-        // Attempt to resolve the column letters by matching the localized header
-        // labels in the detailed sheet header row. Fallback to previous
-        // hard-coded letters for backward compatibility.
-        Sheet detailedSheet = sheet.getWorkbook().getSheet(detailedName);
-        String detailedConsumoCol = ExporterUtils.findColumnLetterByLabel(detailedSheet,
-                spanish.getString(DetailedHeader.CONSUMO_APLICABLE_CENTRO.key()));
-        String detailedMarketCol = ExporterUtils.findColumnLetterByLabel(detailedSheet,
-                spanish.getString(DetailedHeader.EMISIONES_MARKET.key()));
-        String detailedLocationCol = ExporterUtils.findColumnLetterByLabel(detailedSheet,
-                spanish.getString(DetailedHeader.EMISIONES_LOCATION.key()));
-        if (detailedConsumoCol == null)
-            detailedConsumoCol = "L";
-        if (detailedMarketCol == null)
-            detailedMarketCol = "M";
-        if (detailedLocationCol == null)
-            detailedLocationCol = "N";
+        String detailedConsumoCol = columns[0];
+        String detailedMarketCol = columns[1];
+        String detailedLocationCol = columns[2];
 
         for (Map.Entry<String, double[]> e : aggregates.entrySet()) {
             Row row = sheet.createRow(r++);
@@ -556,24 +835,45 @@ public class ElectricityExcelExporter {
             String consumoFormula = String.format("IFERROR(SUMIF('%s'!$B:$B,$A%d,'%s'!$%s:$%s),0)",
                     detailedName, excelRow, detailedName, detailedConsumoCol, detailedConsumoCol);
             consumoCell.setCellFormula(consumoFormula);
+            consumoCell.setCellValue(e.getValue()[0]);
 
             // C: Emisiones Market-based as SUMIF over detailed sheet (column M)
             Cell marketCell = row.createCell(2);
             String marketFormula = String.format("IFERROR(SUMIF('%s'!$B:$B,$A%d,'%s'!$%s:$%s),0)",
                     detailedName, excelRow, detailedName, detailedMarketCol, detailedMarketCol);
             marketCell.setCellFormula(marketFormula);
+            marketCell.setCellValue(e.getValue()[1]);
 
             // D: Emisiones Location-based as SUMIF over detailed sheet (column N)
             Cell locationCell = row.createCell(3);
             String locationFormula = String.format("IFERROR(SUMIF('%s'!$B:$B,$A%d,'%s'!$%s:$%s),0)",
                     detailedName, excelRow, detailedName, detailedLocationCol, detailedLocationCol);
             locationCell.setCellFormula(locationFormula);
+            locationCell.setCellValue(e.getValue()[2]);
         }
         // Autosize
         for (int i = 0; i < 4; i++)
             sheet.autoSizeColumn(i);
     }
 
+    /**
+     * Detailed-sheet column letters summed by the per-center sheet
+     * (consumption, market and location emissions). They are resolved by
+     * matching the localized header labels of the detailed sheet, falling back
+     * to the historical letters.
+     */
+    private static String[] perCenterColumns(Sheet detailedSheet, ResourceBundle spanish) {
+        String detailedConsumoCol = ExporterUtils.findColumnLetterByLabel(detailedSheet,
+                spanish.getString(DetailedHeader.CONSUMO_APLICABLE_CENTRO.key()));
+        String detailedMarketCol = ExporterUtils.findColumnLetterByLabel(detailedSheet,
+                spanish.getString(DetailedHeader.EMISIONES_MARKET.key()));
+        String detailedLocationCol = ExporterUtils.findColumnLetterByLabel(detailedSheet,
+                spanish.getString(DetailedHeader.EMISIONES_LOCATION.key()));
+        return new String[] { detailedConsumoCol != null ? detailedConsumoCol : "L",
+                detailedMarketCol != null ? detailedMarketCol : "M",
+                detailedLocationCol != null ? detailedLocationCol : "N" };
+    }
+
     private static void createTotalSheetFromAggregates(Sheet sheet, CellStyle headerStyle,
             Map<String, double[]> aggregates, ResourceBundle spanish, String perCenterName) {
         // Header
@@ -767,26 +1067,6 @@ public class ElectricityExcelExporter {
         return cleaned.toLowerCase(Locale.ROOT);
     }
 
-    private static int readCurrentYearFromFile() {
-        try {
-            Path p = Paths.get("data/year/current_year.txt");
-            if (Files.exists(p)) {
-                List<String> lines = Files.readAllLines(p);
-                if (lines != null && !lines.isEmpty()) {
-                    String s = lines.get(0).trim();
-                    if (!s.isEmpty()) {
-                        try {
-                            return Integer.parseInt(s);
-                        } catch (NumberFormatException ignored) {
-                        }
-                    }
-                }
-            }
-        } catch (Exception ignored) {
-        }
-        return LocalDate.now().getYear();
-    }
-
     private static void createTotalSheet(Sheet sheet, CellStyle headerStyle, ResourceBundle spanish) {
         Row headerRow = sheet.createRow(0);
         TotalHeader[] values = TotalHeader.values();
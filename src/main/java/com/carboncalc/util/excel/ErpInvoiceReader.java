@@ -0,0 +1,295 @@
+package com.carboncalc.util.excel;
+
+import com.carboncalc.util.CellUtils;
+import com.carboncalc.util.ExcelCsvLoader;
+import com.carboncalc.util.InvoiceKeySet;
+import com.carboncalc.util.WorkbookFootprint;
+import com.carboncalc.util.WorkbookLoader;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ErpInvoiceReader
+ *
+ * <p>
+ * Reads the invoice numbers accepted by an ERP conformity export. The ERP
+ * workbook usually lists every invoice line of every cost center, so
+ * {@code .xlsx} files are streamed sheet XML event by event instead of being
+ * loaded into a workbook: only the header row and, for each data row, the
+ * invoice and conformity cells are kept, and accepted invoice numbers go
+ * into an {@link InvoiceKeySet}.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>The header is the first row with a non-empty cell; {@link Columns}
+ * picks the two columns from it. When a column is not found the result is
+ * empty, which the exporters treat as "no filter".</li>
+ * <li>Cell values are formatted as the workbook shows them, except date
+ * cells, which are read as ISO dates ({@code yyyy-MM-dd}) so the conformity
+ * year is never a two-digit year.</li>
+ * <li>Formula cells use the result cached in the file when streamed.</li>
+ * <li>{@code .xls} and {@code .csv} files have no streaming format and are
+ * loaded as a workbook.</li>
+ * <li>Invoice numbers are trimmed; empty ones are skipped.</li>
+ * </ul>
+ * </p>
+ */
+public final class ErpInvoiceReader {
+
+    private static final Pattern YEAR = Pattern.compile("(19|20)\\d{2}");
+
+    /** Chooses the invoice and conformity columns from the header row. */
+    public interface Columns {
+        /**
+         * @param header formatted header cells by column index (gaps are
+         *               empty strings)
+         * @return zero-based {@code {invoice, conformity}} columns, -1 when
+         *         not found
+         */
+        int[] select(List<String> header);
+    }
+
+    private ErpInvoiceReader() {
+    }
+
+    /**
+     * Columns whose header text equals the given labels, as picked from the
+     * header selectors of the module views.
+     */
+    public static Columns byHeader(String invoiceHeader, String conformityHeader) {
+        return header -> new int[] { header.lastIndexOf(invoiceHeader), header.lastIndexOf(conformityHeader) };
+    }
+
+    /**
+     * Columns given as a zero-based index or a header name compared with
+     * {@link CellUtils#normalizeKey(String)}.
+     *
+     * @throws IllegalArgumentException from {@link #read} when a named
+     *                                  column is not in the header
+     */
+    public static Columns byKey(String invoice, String conformity) {
+        return header -> new int[] { column(invoice, header), column(conformity, header) };
+    }
+
+    /** Accepts invoices with any conformity value (electricity rule). */
+    public static Predicate<String> conformed() {
+        return conformity -> !conformity.trim().isEmpty();
+    }
+
+    /** Accepts invoices conformed in {@code year} or later (gas rule). */
+    public static Predicate<String> conformedSince(int year) {
+        return conformity -> conformityYear(conformity) >= year;
+    }
+
+    /**
+     * Read the accepted invoice numbers of {@code sheetName}.
+     *
+     * @param accept tested with the formatted conformity cell of each row
+     * @throws IllegalArgumentException when the sheet does not exist
+     * @throws IOException              when the file cannot be read
+     */
+    public static InvoiceKeySet read(String path, String sheetName, Columns columns, Predicate<String> accept)
+            throws IOException {
+        RowCollector rows = new RowCollector(columns, accept);
+        String lower = path.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".xlsx"))
+            WorkbookFootprint.inspect(new File(path)).guarded(() -> stream(path, sheetName, rows));
+        else
+            load(path, lower, sheetName, rows);
+        return rows.valid;
+    }
+
+    static int conformityYear(String value) {
+        Matcher m = YEAR.matcher(value);
+        return m.find() ? Integer.parseInt(m.group()) : -1;
+    }
+
+    private static int column(String key, List<String> header) {
+        try {
+            return Integer.parseInt(key.trim());
+        } catch (NumberFormatException notAnIndex) {
+            // header name
+        }
+        String wanted = CellUtils.normalizeKey(key);
+        for (int i = 0; i < header.size(); i++) {
+            if (wanted.equals(CellUtils.normalizeKey(header.get(i))))
+                return i;
+        }
+        throw new IllegalArgumentException("ERP column '" + key + "' not found");
+    }
+
+    private static Void stream(String path, String sheetName, RowCollector rows) throws IOException {
+        OPCPackage pkg = null;
+        try {
+            pkg = OPCPackage.open(new File(path), PackageAccess.READ);
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            StylesTable styles = reader.getStylesTable();
+            Iterator<InputStream> it = reader.getSheetsData();
+            if (it instanceof XSSFReader.SheetIterator) {
+                XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) it;
+                while (sheets.hasNext()) {
+                    try (InputStream in = sheets.next()) {
+                        if (!sheets.getSheetName().equals(sheetName))
+                            continue;
+                        XMLReader xml = XMLHelper.newXMLReader();
+                        xml.setContentHandler(
+                                new XSSFSheetXMLHandler(styles, null, strings, rows, new IsoDateFormatter(), false));
+                        xml.parse(new InputSource(in));
+                        return null;
+                    }
+                }
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Cannot read " + path + ": " + e.getMessage(), e);
+        } finally {
+            // revert() releases a read-only package without trying to save it
+            if (pkg != null)
+                pkg.revert();
+        }
+        throw new IllegalArgumentException("Sheet '" + sheetName + "' not found in " + path);
+    }
+
+    private static void load(String path, String lower, String sheetName, RowCollector rows) throws IOException {
+        try (Workbook wb = lower.endsWith(".csv") ? ExcelCsvLoader.loadCsvAsWorkbookFromPath(path)
+                : WorkbookLoader.open(new File(path))) {
+            Sheet sheet = sheetName != null ? wb.getSheet(sheetName) : null;
+            if (sheet == null)
+                throw new IllegalArgumentException("Sheet '" + sheetName + "' not found in " + path);
+            DataFormatter df = new DataFormatter();
+            FormulaEvaluator eval = wb.getCreationHelper().createFormulaEvaluator();
+            for (Row row : sheet) {
+                rows.startRow(row.getRowNum());
+                for (Cell c : row)
+                    rows.cell(c.getColumnIndex(), text(c, df, eval));
+                rows.endRow(row.getRowNum());
+            }
+        }
+    }
+
+    private static String text(Cell cell, DataFormatter df, FormulaEvaluator eval) {
+        try {
+            CellType type = cell.getCellType() == CellType.FORMULA ? cell.getCachedFormulaResultType()
+                    : cell.getCellType();
+            if (type == CellType.NUMERIC && DateUtil.isCellDateFormatted(cell))
+                return cell.getLocalDateTimeCellValue().toLocalDate().toString();
+        } catch (Exception ignored) {
+        }
+        return CellUtils.getCellString(cell, df, eval);
+    }
+
+    // Formats date cells as ISO dates so the conformity year has four digits
+    private static final class IsoDateFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString,
+                boolean use1904Windowing) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value))
+                return DateUtil.getLocalDateTime(value, use1904Windowing).toLocalDate().toString();
+            return super.formatRawCellContents(value, formatIndex, formatString, use1904Windowing);
+        }
+    }
+
+    // Keeps the header row until it is found, then only the two mapped cells
+    private static final class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final Columns columns;
+        private final Predicate<String> accept;
+        private final InvoiceKeySet valid = new InvoiceKeySet();
+        private List<String> header = new ArrayList<>();
+        private boolean headerHasText;
+        private int invoiceCol = -1;
+        private int conformityCol = -1;
+        private int lastCol;
+        private String invoice;
+        private String conformity;
+
+        RowCollector(Columns columns, Predicate<String> accept) {
+            this.columns = columns;
+            this.accept = accept;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            if (header != null) {
+                header.clear();
+                headerHasText = false;
+            }
+            lastCol = -1;
+            invoice = "";
+            conformity = "";
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int col = cellReference != null ? new CellReference(cellReference).getCol() : lastCol + 1;
+            cell(col, formattedValue);
+        }
+
+        void cell(int col, String value) {
+            lastCol = col;
+            String v = value != null ? value : "";
+            if (header != null) {
+                while (header.size() < col)
+                    header.add("");
+                if (header.size() == col)
+                    header.add(v);
+                headerHasText |= !v.isEmpty();
+                return;
+            }
+            if (col == invoiceCol)
+                invoice = v;
+            if (col == conformityCol)
+                conformity = v;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (header != null) {
+                if (headerHasText) {
+                    int[] c = columns.select(header);
+                    invoiceCol = c[0];
+                    conformityCol = c[1];
+                    header = null;
+                }
+                return;
+            }
+            if (invoiceCol < 0 || conformityCol < 0)
+                return;
+            String key = invoice.trim();
+            if (!key.isEmpty() && accept.test(conformity))
+                valid.add(key);
+        }
+    }
+}
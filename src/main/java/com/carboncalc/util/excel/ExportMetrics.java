@@ -0,0 +1,409 @@
+package com.carboncalc.util.excel;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+/**
+ * ExportMetrics
+ *
+ * <p>
+ * Telemetry for one module export: wall time per phase, rows read, written
+ * and skipped by reason, hit rates of the lookups done per row, peak heap and
+ * the bytes allocated by the exporting thread. The exporters record into an
+ * instance while they run; {@link #publish(ExportOptions, String)} then hands
+ * it to whatever the {@link ExportOptions} ask for: a metrics sheet in the
+ * output workbook, a JSON sidecar next to it and/or a {@link Listener}.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>Phases nest: {@link #begin(String)} pauses the enclosing phase and
+ * {@link #end()} resumes it, so each phase reports its own (exclusive) time
+ * and the phase times add up to the total.</li>
+ * <li>Heap is sampled at phase boundaries and every
+ * {@value #HEAP_SAMPLE_ROWS} rows read, so the peak is approximate.
+ * Allocated bytes come from the HotSpot thread MX bean and are -1 where it
+ * is not available.</li>
+ * <li>The metrics sheet is written before the workbook is serialized, so
+ * it cannot include the {@value #PHASE_WRITE} phase; the sidecar and the
+ * listener see the final values.</li>
+ * <li>Not thread-safe; one instance per export. Publishing never fails the
+ * export.</li>
+ * </ul>
+ * </p>
+ */
+public class ExportMetrics {
+
+    /** Receives the metrics of every finished export. */
+    public interface Listener {
+        void exportFinished(ExportMetrics metrics);
+    }
+
+    /** Result cache lookup before the export. */
+    public static final String PHASE_CACHE = "cache";
+    /** Opening and parsing the source workbook. */
+    public static final String PHASE_READ = "read";
+    /** Locating the header row. */
+    public static final String PHASE_HEADER = "header";
+    /** Loading CUPS mappings and factor files. */
+    public static final String PHASE_FACTORS = "factors";
+    /** Per-row computation and detailed row writing (values and formulas). */
+    public static final String PHASE_ROWS = "rows";
+    /** Column autosizing of row-sized sheets. */
+    public static final String PHASE_AUTOSIZE = "autosize";
+    /** Per-center, total, summary and monthly sheets. */
+    public static final String PHASE_SHEETS = "sheets";
+    /** Serializing the workbook to disk. */
+    public static final String PHASE_WRITE = "write";
+
+    /** Row dates do not touch the reporting year. */
+    public static final String SKIP_YEAR = MappingPreview.SKIP_YEAR;
+    /** Amount or quantity is zero. */
+    public static final String SKIP_ZERO = MappingPreview.SKIP_ZERO;
+    /** Last Modified is after the date limit. */
+    public static final String SKIP_LAST_MODIFIED = MappingPreview.SKIP_LAST_MODIFIED;
+    /** Invoice not in the ERP valid invoice set. */
+    public static final String SKIP_INVOICE = "invoice";
+    /** Invoice already exported from an earlier provider file. */
+    public static final String SKIP_DUPLICATE = "duplicate";
+
+    /** Export result cache. */
+    public static final String LOOKUP_RESULT_CACHE = "resultCache";
+    /** CUPS found in the CUPS/center inventory. */
+    public static final String LOOKUP_CUPS = "cups";
+    /** Factor found for the row's marketer, gas, fuel or refrigerant type. */
+    public static final String LOOKUP_FACTOR = "factor";
+
+    /** Suffix appended to the output path for the JSON sidecar. */
+    public static final String SIDECAR_SUFFIX = ".metrics.json";
+    /** Rows between heap samples. */
+    public static final int HEAP_SAMPLE_ROWS = 4096;
+
+    private final String module;
+    private final long startNanos = System.nanoTime();
+    private long totalNanos = -1;
+    private final long startAllocated;
+    private long allocatedBytes = -1;
+    private long peakHeapBytes;
+
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    private final Deque<String> phases = new ArrayDeque<>();
+    private long phaseStart;
+
+    private long rowsRead;
+    private long rowsWritten;
+    private final Map<String, Long> skipped = new LinkedHashMap<>();
+    // name -> [hits, misses]
+    private final Map<String, long[]> lookups = new LinkedHashMap<>();
+
+    /**
+     * @param module module id (see {@code EnergyType#id()})
+     */
+    public ExportMetrics(String module) {
+        this.module = module;
+        this.startAllocated = threadAllocatedBytes();
+        sampleHeap();
+    }
+
+    public String getModule() {
+        return module;
+    }
+
+    /** Start {@code phase}, pausing the current one until {@link #end()}. */
+    public void begin(String phase) {
+        long now = System.nanoTime();
+        if (!phases.isEmpty())
+            phaseNanos.merge(phases.peek(), now - phaseStart, Long::sum);
+        else
+            phaseNanos.putIfAbsent(phase, 0L);
+        phases.push(phase);
+        phaseStart = now;
+        sampleHeap();
+    }
+
+    /** End the innermost phase and resume the enclosing one. */
+    public void end() {
+        if (phases.isEmpty())
+            return;
+        long now = System.nanoTime();
+        phaseNanos.merge(phases.pop(), now - phaseStart, Long::sum);
+        phaseStart = now;
+        sampleHeap();
+    }
+
+    /** End the current phase and start {@code phase} at the same level. */
+    public void next(String phase) {
+        end();
+        begin(phase);
+    }
+
+    /** Count one source row read (whether later written or skipped). */
+    public void rowRead() {
+        rowsRead++;
+        if (rowsRead % HEAP_SAMPLE_ROWS == 0)
+            sampleHeap();
+    }
+
+    /** Count one detailed row written to the output. */
+    public void rowWritten() {
+        rowsWritten++;
+    }
+
+    /** Count one skipped source row under {@code reason}. */
+    public void skip(String reason) {
+        skipped.merge(reason, 1L, Long::sum);
+    }
+
+    /** Record a hit or miss of the lookup called {@code name}. */
+    public void lookup(String name, boolean hit) {
+        long[] c = lookups.computeIfAbsent(name, k -> new long[2]);
+        c[hit ? 0 : 1]++;
+    }
+
+    /**
+     * Close any open phase and freeze the totals. Called by
+     * {@link #publish(ExportOptions, String)}; further calls are no-ops.
+     */
+    public void finish() {
+        if (totalNanos >= 0)
+            return;
+        while (!phases.isEmpty())
+            end();
+        totalNanos = System.nanoTime() - startNanos;
+        long allocated = threadAllocatedBytes();
+        allocatedBytes = startAllocated >= 0 && allocated >= 0 ? allocated - startAllocated : -1;
+    }
+
+    /** @return wall time in ms per phase, in first-seen order */
+    public Map<String, Double> getPhaseMillis() {
+        Map<String, Double> out = new LinkedHashMap<>();
+        long now = System.nanoTime();
+        for (Map.Entry<String, Long> e : phaseNanos.entrySet()) {
+            long nanos = e.getValue();
+            if (totalNanos < 0 && e.getKey().equals(phases.peek()))
+                nanos += now - phaseStart;
+            out.put(e.getKey(), nanos / 1_000_000.0);
+        }
+        return out;
+    }
+
+    /** @return total wall time in ms (up to now while the export runs) */
+    public double getTotalMillis() {
+        return (totalNanos >= 0 ? totalNanos : System.nanoTime() - startNanos) / 1_000_000.0;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /** @return skipped rows per reason, in first-seen order */
+    public Map<String, Long> getSkipped() {
+        return Collections.unmodifiableMap(skipped);
+    }
+
+    public long getSkippedTotal() {
+        long n = 0;
+        for (long v : skipped.values())
+            n += v;
+        return n;
+    }
+
+    /** @return rows read per second over the whole export */
+    public double getRowsPerSecond() {
+        double ms = getTotalMillis();
+        return ms > 0 ? rowsRead * 1000.0 / ms : 0.0;
+    }
+
+    /** @return hits of lookup {@code name} divided by all its lookups, or -1 */
+    public double getHitRate(String name) {
+        long[] c = lookups.get(name);
+        if (c == null || c[0] + c[1] == 0)
+            return -1.0;
+        return (double) c[0] / (double) (c[0] + c[1]);
+    }
+
+    /** @return lookup names with {@code [hits, misses]} */
+    public Map<String, long[]> getLookups() {
+        Map<String, long[]> out = new LinkedHashMap<>();
+        for (Map.Entry<String, long[]> e : lookups.entrySet())
+            out.put(e.getKey(), e.getValue().clone());
+        return out;
+    }
+
+    public long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    /** @return bytes allocated by the exporting thread, or -1 if unknown */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Append a metrics sheet to {@code workbook} when {@code options} ask for
+     * it. Call right before the workbook is written.
+     */
+    public void writeSheetIfRequested(Workbook workbook, ExportOptions options, ResourceBundle spanish,
+            String moduleLabel) {
+        if (options == null || !options.isMetricsSheet())
+            return;
+        try {
+            String sheetName = moduleLabel + " - "
+                    + (spanish.containsKey("result.sheet.metrics") ? spanish.getString("result.sheet.metrics")
+                            : "Metricas");
+            Sheet sheet = workbook.createSheet(sheetName);
+            int r = 0;
+            r = sheetRow(sheet, r, "module", module);
+            for (Map.Entry<String, Double> e : getPhaseMillis().entrySet())
+                r = sheetRow(sheet, r, "phase." + e.getKey() + ".ms", e.getValue());
+            r = sheetRow(sheet, r, "total.ms", getTotalMillis());
+            r = sheetRow(sheet, r, "rows.read", rowsRead);
+            r = sheetRow(sheet, r, "rows.written", rowsWritten);
+            for (Map.Entry<String, Long> e : skipped.entrySet())
+                r = sheetRow(sheet, r, "rows.skipped." + e.getKey(), e.getValue());
+            r = sheetRow(sheet, r, "rows.per.second", getRowsPerSecond());
+            for (String name : lookups.keySet())
+                r = sheetRow(sheet, r, "lookup." + name + ".hitRate", getHitRate(name));
+            sampleHeap();
+            r = sheetRow(sheet, r, "heap.peak.bytes", peakHeapBytes);
+            long allocated = threadAllocatedBytes();
+            sheetRow(sheet, r, "allocated.bytes",
+                    startAllocated >= 0 && allocated >= 0 ? allocated - startAllocated : -1);
+            sheet.setColumnWidth(0, 30 * 256);
+        } catch (Exception ignored) {
+            // metrics must never fail the export
+        }
+    }
+
+    /**
+     * Finish the metrics and deliver them as requested by {@code options}:
+     * the JSON sidecar at {@code outputPath + }{@value #SIDECAR_SUFFIX} and the
+     * listener. Safe to call with null options.
+     */
+    public void publish(ExportOptions options, String outputPath) {
+        finish();
+        if (options == null)
+            return;
+        if (options.isMetricsSidecar() && outputPath != null) {
+            try {
+                Files.write(Paths.get(outputPath + SIDECAR_SUFFIX), toJson().getBytes(StandardCharsets.UTF_8));
+            } catch (IOException | RuntimeException ignored) {
+            }
+        }
+        Listener listener = options.getMetricsListener();
+        if (listener != null) {
+            try {
+                listener.exportFinished(this);
+            } catch (RuntimeException ignored) {
+            }
+        }
+    }
+
+    /** @return the sidecar path for an export written to {@code outputPath} */
+    public static Path sidecarPath(String outputPath) {
+        return Paths.get(outputPath + SIDECAR_SUFFIX);
+    }
+
+    /** @return the metrics as a JSON object */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("{\n  \"module\": ").append(quote(module));
+        sb.append(",\n  \"totalMs\": ").append(number(getTotalMillis()));
+        sb.append(",\n  \"phasesMs\": {");
+        appendEntries(sb, getPhaseMillis());
+        sb.append("},\n  \"rows\": {\"read\": ").append(rowsRead).append(", \"written\": ").append(rowsWritten)
+                .append(", \"perSecond\": ").append(number(getRowsPerSecond())).append(", \"skipped\": {");
+        appendEntries(sb, skipped);
+        sb.append("}},\n  \"lookups\": {");
+        boolean first = true;
+        for (Map.Entry<String, long[]> e : lookups.entrySet()) {
+            if (!first)
+                sb.append(", ");
+            first = false;
+            sb.append(quote(e.getKey())).append(": {\"hits\": ").append(e.getValue()[0]).append(", \"misses\": ")
+                    .append(e.getValue()[1]).append(", \"hitRate\": ").append(number(getHitRate(e.getKey())))
+                    .append('}');
+        }
+        sb.append("},\n  \"memory\": {\"peakHeapBytes\": ").append(peakHeapBytes).append(", \"allocatedBytes\": ")
+                .append(allocatedBytes).append("}\n}\n");
+        return sb.toString();
+    }
+
+    private static void appendEntries(StringBuilder sb, Map<String, ? extends Number> entries) {
+        boolean first = true;
+        for (Map.Entry<String, ? extends Number> e : entries.entrySet()) {
+            if (!first)
+                sb.append(", ");
+            first = false;
+            Number v = e.getValue();
+            sb.append(quote(e.getKey())).append(": ")
+                    .append(v instanceof Double ? number(v.doubleValue()) : String.valueOf(v));
+        }
+    }
+
+    private static String number(double v) {
+        return Double.isFinite(v) ? String.format(Locale.ROOT, "%.3f", v) : "null";
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : (s == null ? "" : s).toCharArray()) {
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < 0x20)
+                sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    private static int sheetRow(Sheet sheet, int r, String key, Object value) {
+        Row row = sheet.createRow(r);
+        row.createCell(0).setCellValue(key);
+        if (value instanceof Number)
+            row.createCell(1).setCellValue(((Number) value).doubleValue());
+        else
+            row.createCell(1).setCellValue(String.valueOf(value));
+        return r + 1;
+    }
+
+    private void sampleHeap() {
+        Runtime rt = Runtime.getRuntime();
+        peakHeapBytes = Math.max(peakHeapBytes, rt.totalMemory() - rt.freeMemory());
+    }
+
+    private static long threadAllocatedBytes() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+                if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled())
+                    return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        } catch (Throwable ignored) {
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,158 @@
+package com.carboncalc.util.excel;
+
+import com.carboncalc.util.WorkbookFootprint;
+
+/**
+ * ExportOptions
+ *
+ * <p>
+ * Optional switches for the module exporters. The long positional
+ * {@code export*Data} signatures describe <em>what</em> to export; this
+ * object carries the opt-in extras so new features do not keep widening
+ * those signatures. A default instance reproduces the historical output
+ * exactly.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>Plain mutable bean; callers create one per export.</li>
+ * <li>Every option defaults to "off" (no cache, no metrics) and the data
+ * root to {@link DataRoot#DEFAULT}.</li>
+ * <li>A cached result restores the metrics sheet of the run that produced
+ * it; the sidecar and listener always describe the current call.</li>
+ * <li>Append mode never uses the result cache: its output depends on the
+ * report already on disk.</li>
+ * <li>The write mode only changes how the workbook is built, never its
+ * content, so it is not part of cache keys.</li>
+ * </ul>
+ * </p>
+ */
+public class ExportOptions {
+
+    private boolean summarySheets;
+    private boolean monthlySheet;
+    private ExportResultCache resultCache;
+    private boolean metricsSheet;
+    private boolean metricsSidecar;
+    private ExportMetrics.Listener metricsListener;
+    private DataRoot dataRoot;
+    private boolean append;
+    private WorkbookFootprint.WriteMode writeMode;
+
+    public ExportOptions() {
+    }
+
+    /**
+     * @return true when the exporter should build an aggregate cube during
+     *         the calculation pass and write it as a "Resumen" sheet
+     */
+    public boolean isSummarySheets() {
+        return summarySheets;
+    }
+
+    public void setSummarySheets(boolean summarySheets) {
+        this.summarySheets = summarySheets;
+    }
+
+    /**
+     * @return true when the exporter should keep the per-center monthly split
+     *         of the proration pass and write it as a "Mensual" sheet
+     */
+    public boolean isMonthlySheet() {
+        return monthlySheet;
+    }
+
+    public void setMonthlySheet(boolean monthlySheet) {
+        this.monthlySheet = monthlySheet;
+    }
+
+    /**
+     * @return cache consulted before and filled after the export, or null to
+     *         always recompute
+     */
+    public ExportResultCache getResultCache() {
+        return resultCache;
+    }
+
+    public void setResultCache(ExportResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * @return true when the exporter should append a "Métricas" sheet with
+     *         phase timings, row counts and memory figures
+     */
+    public boolean isMetricsSheet() {
+        return metricsSheet;
+    }
+
+    public void setMetricsSheet(boolean metricsSheet) {
+        this.metricsSheet = metricsSheet;
+    }
+
+    /**
+     * @return true when the exporter should write the metrics as JSON next to
+     *         the output ({@code <output>.metrics.json})
+     */
+    public boolean isMetricsSidecar() {
+        return metricsSidecar;
+    }
+
+    public void setMetricsSidecar(boolean metricsSidecar) {
+        this.metricsSidecar = metricsSidecar;
+    }
+
+    /**
+     * @return listener notified with the metrics of each finished export, or
+     *         null
+     */
+    public ExportMetrics.Listener getMetricsListener() {
+        return metricsListener;
+    }
+
+    public void setMetricsListener(ExportMetrics.Listener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * @return directory with the CUPS, factor and year files the export reads,
+     *         or null for {@link DataRoot#DEFAULT}
+     */
+    public DataRoot getDataRoot() {
+        return dataRoot;
+    }
+
+    public void setDataRoot(DataRoot dataRoot) {
+        this.dataRoot = dataRoot;
+    }
+
+    /**
+     * @return true when an electricity or gas export into an existing report
+     *         should append only the rows of invoices the report does not
+     *         contain yet and update its per-center and total sheets, instead
+     *         of rebuilding it. Ignored when the output does not exist yet.
+     *         Cannot be combined with the summary or monthly sheets, which
+     *         are rebuilt from every row.
+     */
+    public boolean isAppend() {
+        return append;
+    }
+
+    public void setAppend(boolean append) {
+        this.append = append;
+    }
+
+    /**
+     * @return writer forced for electricity and gas {@code .xlsx} exports,
+     *         or null to choose it from the size of the provider files and
+     *         the available heap ({@link WorkbookFootprint#writeMode(long)})
+     */
+    public WorkbookFootprint.WriteMode getWriteMode() {
+        return writeMode;
+    }
+
+    public void setWriteMode(WorkbookFootprint.WriteMode writeMode) {
+        this.writeMode = writeMode;
+    }
+}
@@ -0,0 +1,407 @@
+package com.carboncalc.util.excel;
+
+import com.carboncalc.util.InvoiceKeySet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ExportResultCache
+ *
+ * <p>
+ * Content-addressed on-disk cache for module exports. The cache key is a
+ * SHA-256 digest of everything an export depends on: the bytes of the
+ * provider file, the mapping indices, the reporting year, the invoice filter,
+ * the export options and the contents of the factor and CUPS mapping files.
+ * The cached value is the written workbook, which already carries the
+ * per-row results and the per-center aggregates (formulas with cached
+ * values), so a hit skips parsing, computing and rendering.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>Entries live in {@code data/cache/exports} by default, one file per
+ * key. Least-recently-used entries (by file modification time, refreshed on
+ * every hit) are evicted once {@code maxEntries} or {@code maxBytes} is
+ * exceeded; an output larger than {@code maxBytes} is not cached.</li>
+ * <li>Sets of strings (the invoice filter) are mixed as sorted 64-bit
+ * fingerprints whatever their implementation, so equal sets give equal
+ * keys.</li>
+ * <li>When the destination already holds exactly the cached bytes the
+ * export is skipped without copying.</li>
+ * <li>The cache never fails an export: I/O errors make {@link #restore}
+ * report a miss and {@link #store} a no-op.</li>
+ * <li>{@link #FORMAT_VERSION} is part of every key; bump it when exporter
+ * output changes so older entries stop matching.</li>
+ * </ul>
+ * </p>
+ */
+public final class ExportResultCache {
+
+    /** Default cache directory. */
+    public static final Path DEFAULT_DIR = Paths.get("data", "cache", "exports");
+    /** Default number of cached exports kept on disk. */
+    public static final int DEFAULT_MAX_ENTRIES = 32;
+    /** Default total size of the cached exports: 1 GiB. */
+    public static final long DEFAULT_MAX_BYTES = 1L << 30;
+    /** Exporter output version mixed into every key. */
+    static final String FORMAT_VERSION = "4";
+
+    private final Path dir;
+    private final int maxEntries;
+    private final long maxBytes;
+
+    public ExportResultCache() {
+        this(DEFAULT_DIR, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param dir        cache directory (created on first store)
+     * @param maxEntries maximum number of entries kept (at least 1)
+     */
+    public ExportResultCache(Path dir, int maxEntries) {
+        this(dir, maxEntries, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param dir        cache directory (created on first store)
+     * @param maxEntries maximum number of entries kept (at least 1)
+     * @param maxBytes   maximum total size of the entries kept
+     */
+    public ExportResultCache(Path dir, int maxEntries, long maxBytes) {
+        this.dir = dir;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxBytes = Math.max(0L, maxBytes);
+    }
+
+    /**
+     * Start a key for one module export.
+     *
+     * @param module module id (see {@code EnergyType#id()})
+     */
+    public static KeyBuilder key(String module) {
+        return new KeyBuilder().text(FORMAT_VERSION).text(module);
+    }
+
+    /**
+     * Serve a cached export into {@code outputPath}.
+     *
+     * @return true when the output now holds the cached result (the caller
+     *         should skip the export); false on a miss or any error
+     */
+    public boolean restore(String key, String outputPath) {
+        if (key == null || outputPath == null)
+            return false;
+        Path entry = entryPath(key, outputPath);
+        if (!Files.isRegularFile(entry))
+            return false;
+        try {
+            Path out = Paths.get(outputPath);
+            if (!sameContent(entry, out))
+                Files.copy(entry, out, StandardCopyOption.REPLACE_EXISTING);
+            touch(entry);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Remember the export written at {@code outputPath} under {@code key} and
+     * evict least-recently-used entries beyond the limit.
+     */
+    public void store(String key, String outputPath) {
+        if (key == null || outputPath == null)
+            return;
+        try {
+            Path out = Paths.get(outputPath);
+            if (!Files.isRegularFile(out) || Files.size(out) > maxBytes)
+                return;
+            Files.createDirectories(dir);
+            Path entry = entryPath(key, outputPath);
+            // Copy then move so a concurrent reader never sees a partial entry
+            Path tmp = Files.createTempFile(dir, key, ".tmp");
+            Files.copy(out, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            touch(entry);
+            evict();
+        } catch (Exception e) {
+            // caching is best-effort
+        }
+    }
+
+    /** @return number of entries currently on disk */
+    public int size() {
+        return entries().size();
+    }
+
+    private Path entryPath(String key, String outputPath) {
+        String lower = outputPath.toLowerCase();
+        int dot = lower.lastIndexOf('.');
+        String ext = dot >= 0 && dot > lower.lastIndexOf('/') && dot > lower.lastIndexOf('\\') ? lower.substring(dot)
+                : "";
+        return dir.resolve(key + ext);
+    }
+
+    private List<Path> entries() {
+        List<Path> out = new ArrayList<>();
+        if (!Files.isDirectory(dir))
+            return out;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                if (Files.isRegularFile(p) && !p.getFileName().toString().endsWith(".tmp"))
+                    out.add(p);
+            }
+        } catch (IOException e) {
+            // treat as empty
+        }
+        return out;
+    }
+
+    /** @return total size of the entries currently on disk */
+    public long bytes() {
+        long total = 0;
+        for (Path p : entries())
+            total += sizeOf(p);
+        return total;
+    }
+
+    private void evict() {
+        List<Path> all = entries();
+        // Most recently used first
+        all.sort((a, b) -> Long.compare(lastUsed(b), lastUsed(a)));
+        long kept = 0;
+        for (int i = 0; i < all.size(); i++) {
+            kept += sizeOf(all.get(i));
+            if (i < maxEntries && kept <= maxBytes)
+                continue;
+            try {
+                Files.deleteIfExists(all.get(i));
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static long sizeOf(Path p) {
+        try {
+            return Files.size(p);
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private static long lastUsed(Path p) {
+        try {
+            return Files.getLastModifiedTime(p).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private static void touch(Path p) throws IOException {
+        Files.setLastModifiedTime(p, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+
+    private static boolean sameContent(Path a, Path b) throws IOException {
+        if (!Files.isRegularFile(b) || Files.size(a) != Files.size(b))
+            return false;
+        try (InputStream ia = Files.newInputStream(a); InputStream ib = Files.newInputStream(b)) {
+            byte[] ba = new byte[64 * 1024];
+            byte[] bb = new byte[64 * 1024];
+            int n;
+            while ((n = ia.readNBytes(ba, 0, ba.length)) > 0) {
+                if (ib.readNBytes(bb, 0, n) != n || !Arrays.equals(ba, 0, n, bb, 0, n))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Incremental SHA-256 key. Every part is length-prefixed so adjacent
+     * parts cannot run into each other.
+     */
+    public static final class KeyBuilder {
+        private final MessageDigest digest;
+
+        private KeyBuilder() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                // every JRE ships SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /** Mix a string (null and empty are distinguished). */
+        public KeyBuilder text(String s) {
+            if (s == null) {
+                update("-1:");
+                return this;
+            }
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            update(b.length + ":");
+            digest.update(b);
+            return this;
+        }
+
+        /** Mix mapping indices or any other integers. */
+        public KeyBuilder ints(int... values) {
+            update("i" + values.length + ":");
+            for (int v : values)
+                update(v + ",");
+            return this;
+        }
+
+        /**
+         * Mix a set of strings independently of its iteration order and of
+         * its implementation. ERP invoice sets ({@link InvoiceKeySet}) can
+         * hold millions of keys, so every set is mixed as sorted 64-bit
+         * fingerprints rather than the strings themselves.
+         */
+        public KeyBuilder strings(Collection<String> values) {
+            long[] prints = new long[values != null ? values.size() : 0];
+            int n = 0;
+            if (values != null) {
+                for (String v : values)
+                    prints[n++] = fingerprint(v == null ? "" : v);
+            }
+            Arrays.sort(prints);
+            update("h" + n + ":");
+            byte[] buf = new byte[8];
+            for (long p : prints) {
+                for (int i = 0; i < 8; i++)
+                    buf[i] = (byte) (p >>> (56 - 8 * i));
+                digest.update(buf);
+            }
+            return this;
+        }
+
+        // 64-bit FNV-1a over the UTF-16 code units
+        private static long fingerprint(String s) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                h = (h ^ (c & 0xFF)) * 0x100000001b3L;
+                h = (h ^ (c >>> 8)) * 0x100000001b3L;
+            }
+            return h;
+        }
+
+        /** Mix the options that change the exported workbook. */
+        public KeyBuilder options(ExportOptions options) {
+            ExportOptions o = options != null ? options : new ExportOptions();
+            text("summary=" + o.isSummarySheets()).text("monthly=" + o.isMonthlySheet());
+            // Only mixed in when set so keys of existing entries stay valid
+            return o.isMetricsSheet() ? text("metrics=true") : this;
+        }
+
+        /**
+         * Mix the bytes and sheet name of every provider source, in order. A
+         * single source yields the same key as {@code file(path).text(sheet)}.
+         */
+        public KeyBuilder sources(List<ProviderSource> sources) {
+            if (sources == null || sources.isEmpty())
+                return text(null).text(null);
+            for (ProviderSource s : sources)
+                file(s.getPath()).text(s.getSheet());
+            return this;
+        }
+
+        /** Mix the bytes of a file; a missing file is a distinct value. */
+        public KeyBuilder file(String path) {
+            if (path == null)
+                return text(null);
+            return file(Paths.get(path));
+        }
+
+        /** Mix the bytes of a file; a missing file is a distinct value. */
+        public KeyBuilder file(Path path) {
+            if (path == null || !Files.isRegularFile(path)) {
+                update("missing:");
+                return this;
+            }
+            try (InputStream in = Files.newInputStream(path)) {
+                update("f:");
+                byte[] buf = new byte[64 * 1024];
+                int n;
+                while ((n = in.read(buf)) > 0)
+                    digest.update(buf, 0, n);
+            } catch (IOException e) {
+                // an unreadable file must never match a previous key
+                update("unreadable:" + System.nanoTime());
+            }
+            return this;
+        }
+
+        /**
+         * Mix every regular file of a directory (names and bytes, sorted by
+         * name). Used for the per-year factor folder and the CUPS mapping.
+         */
+        public KeyBuilder directory(Path path) {
+            List<Path> files = new ArrayList<>();
+            if (path != null && Files.isDirectory(path)) {
+                try (DirectoryStream<Path> ds = Files.newDirectoryStream(path)) {
+                    for (Path p : ds) {
+                        if (Files.isRegularFile(p))
+                            files.add(p);
+                    }
+                } catch (IOException e) {
+                    update("unreadable:" + System.nanoTime());
+                }
+            }
+            Collections.sort(files);
+            update("d" + files.size() + ":");
+            for (Path p : files)
+                text(p.getFileName().toString()).file(p);
+            return this;
+        }
+
+        /**
+         * Mix the shared inputs every exporter reads besides the provider
+         * file: the factor folder of {@code year}, the CUPS mapping, the
+         * persisted current year (used when {@code year <= 0}) and the
+         * reference store log once the data has been imported into it.
+         */
+        public KeyBuilder dataFiles(int year) {
+            return dataFiles(DataRoot.DEFAULT, year);
+        }
+
+        /** Same as {@link #dataFiles(int)} for the files under {@code root}. */
+        public KeyBuilder dataFiles(DataRoot root, int year) {
+            Path data = root.getDir();
+            ints(year).directory(root.factorsDir().resolve(String.valueOf(year)))
+                    .directory(data.resolve("cups_center")).file(data.resolve("year").resolve("current_year.txt"));
+            // Only mixed in when present so keys of CSV-only roots stay valid
+            return root.usesStore() ? file(root.storeLog()) : this;
+        }
+
+        /** @return hex digest */
+        public String build() {
+            byte[] h = digest.digest();
+            StringBuilder sb = new StringBuilder(h.length * 2);
+            for (byte b : h)
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return sb.toString();
+        }
+
+        private void update(String s) {
+            digest.update(s.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -5,18 +5,23 @@ import org.apache.poi.ss.util.CellReference;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 
+import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.*;
 
 import com.carboncalc.model.FuelMapping;
-import com.carboncalc.service.FuelFactorServiceCsv;
+import com.carboncalc.model.enums.EnergyType;
+import com.carboncalc.util.AggregateCube;
+import com.carboncalc.util.PeriodProration;
+import com.carboncalc.service.FuelFactorService;
 import com.carboncalc.model.factors.FuelEmissionFactor;
 import com.carboncalc.util.ExcelCsvLoader;
 import com.carboncalc.util.CellUtils;
 import com.carboncalc.util.DateUtils;
+import com.carboncalc.util.WorkbookLoader;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.sql.Date;
 
@@ -62,6 +67,39 @@ public class FuelExcelExporter {
     public static void exportFuelData(String filePath, String providerPath, String providerSheet,
             FuelMapping mapping, int year, String sheetMode, String dateLimit, String lastModifiedHeader)
             throws IOException {
+        exportFuelData(filePath, providerPath, providerSheet, mapping, year, sheetMode, dateLimit, lastModifiedHeader,
+                new ExportOptions());
+    }
+
+    /**
+     * Export fuel data with optional extras (see {@link ExportOptions}).
+     * With default options the output is identical to the overload without
+     * options.
+     */
+    public static void exportFuelData(String filePath, String providerPath, String providerSheet,
+            FuelMapping mapping, int year, String sheetMode, String dateLimit, String lastModifiedHeader,
+            ExportOptions options) throws IOException {
+        ExportMetrics metrics = new ExportMetrics(EnergyType.FUEL.id());
+        DataRoot data = DataRoot.of(options);
+        ExportResultCache cache = options != null ? options.getResultCache() : null;
+        String cacheKey = null;
+        if (cache != null && mapping != null) {
+            metrics.begin(ExportMetrics.PHASE_CACHE);
+            cacheKey = ExportResultCache.key(EnergyType.FUEL.id()).file(providerPath).text(providerSheet)
+                    .ints(mapping.getCentroIndex(), mapping.getResponsableIndex(), mapping.getInvoiceIndex(),
+                            mapping.getProviderIndex(), mapping.getInvoiceDateIndex(), mapping.getFuelTypeIndex(),
+                            mapping.getVehicleTypeIndex(), mapping.getAmountIndex(),
+                            mapping.getCompletionTimeIndex())
+                    .text(sheetMode).text(dateLimit).text(lastModifiedHeader).options(options).dataFiles(data, year)
+                    .build();
+            boolean hit = cache.restore(cacheKey, filePath);
+            metrics.lookup(ExportMetrics.LOOKUP_RESULT_CACHE, hit);
+            metrics.end();
+            if (hit) {
+                metrics.publish(options, filePath);
+                return;
+            }
+        }
         boolean isXlsx = filePath.toLowerCase().endsWith(".xlsx");
         try (Workbook workbook = isXlsx ? new XSSFWorkbook() : new HSSFWorkbook()) {
             ResourceBundle spanish = ResourceBundle.getBundle("Messages", new Locale("es"));
@@ -116,20 +154,25 @@ public class FuelExcelExporter {
             Workbook src = null;
             if (providerPath != null && providerSheet != null) {
                 try {
+                    metrics.begin(ExportMetrics.PHASE_READ);
                     if (providerPath.toLowerCase().endsWith(".csv")) {
                         src = ExcelCsvLoader.loadCsvAsWorkbookFromPath(providerPath);
                     } else {
-                        try (FileInputStream fis = new FileInputStream(providerPath)) {
-                            src = providerPath.toLowerCase().endsWith(".xlsx") ? new XSSFWorkbook(fis)
-                                    : new HSSFWorkbook(fis);
-                        }
+                        src = WorkbookLoader.open(new File(providerPath));
                     }
 
+                    metrics.end();
                     if (src != null) {
                         Sheet srcSheet = src.getSheet(providerSheet);
                         if (srcSheet != null) {
+                            AggregateCube cube = options != null && options.isSummarySheets() ? new AggregateCube()
+                                    : null;
+                            PeriodSeries monthly = options != null && options.isMonthlySheet()
+                                    ? new PeriodSeries(2, PeriodProration.MONTHS)
+                                    : null;
                             Map<String, double[]> aggregates = writeDetailedRows(detailed, srcSheet, mapping, year,
-                                    dateLimit, lastModifiedHeader);
+                                    dateLimit, lastModifiedHeader, cube, monthly, data, metrics);
+                            metrics.begin(ExportMetrics.PHASE_SHEETS);
                             FormulaEvaluator wbEval = workbook.getCreationHelper().createFormulaEvaluator();
                             if (aggregates == null || aggregates.isEmpty()) {
                                 aggregates = computeAggregatesFromDetailed(detailed, wbEval);
@@ -146,6 +189,22 @@ public class FuelExcelExporter {
                                             : "Total");
                             Sheet total = workbook.createSheet(totalName);
                             createTotalSheetFromAggregates(total, header, aggregates, spanish, perCenterName);
+                            if (cube != null) {
+                                Sheet summary = workbook.createSheet(moduleLabel + " - "
+                                        + (spanish.containsKey("result.sheet.summary")
+                                                ? spanish.getString("result.sheet.summary")
+                                                : "Resumen"));
+                                SummarySheetWriter.writeSummarySheet(summary, cube, spanish, header, false);
+                            }
+                            if (monthly != null) {
+                                Sheet monthlySheet = workbook.createSheet(moduleLabel + " - "
+                                        + (spanish.containsKey("result.sheet.monthly")
+                                                ? spanish.getString("result.sheet.monthly")
+                                                : "Mensual"));
+                                SummarySheetWriter.writeMonthlySheet(monthlySheet, monthly, year, spanish, header,
+                                        new String[] { "summary.header.consumption", "summary.header.emissions" });
+                            }
+                            metrics.end();
                         } else {
                             // provider sheet not found -> write diagnostics
                             if (diagSheet == null)
@@ -194,10 +253,16 @@ public class FuelExcelExporter {
             } catch (Exception ignored) {
             }
 
+            metrics.writeSheetIfRequested(workbook, options, spanish, moduleLabel);
+            metrics.begin(ExportMetrics.PHASE_WRITE);
             try (FileOutputStream fos = new FileOutputStream(filePath)) {
                 workbook.write(fos);
             }
+            metrics.end();
         }
+        if (cacheKey != null)
+            cache.store(cacheKey, filePath);
+        metrics.publish(options, filePath);
     }
 
     /**
@@ -237,16 +302,15 @@ public class FuelExcelExporter {
      * Write detailed rows from the source sheet into the target sheet and
      * return per-center aggregates (amount litres, emissions tCO2).
      */
-    private static Map<String, double[]> writeDetailedRows(Sheet target, Sheet source, FuelMapping mapping,
-            int year, String dateLimit, String lastModifiedHeader) {
-        DataFormatter df = new DataFormatter();
-        FormulaEvaluator eval = source.getWorkbook().getCreationHelper().createFormulaEvaluator();
-        Map<String, double[]> perCenter = new HashMap<>();
-
-        // Load fuel emission factors
+    /**
+     * Load fuel factors for {@code year} keyed by normalized fuel type and by
+     * {@code fuel|vehicle} when the factor is vehicle specific. Returns an
+     * empty map on error.
+     */
+    static Map<String, Double> loadFuelFactors(DataRoot data, int year) {
         Map<String, Double> fuelToFactor = new HashMap<>();
         try {
-            FuelFactorServiceCsv svc = new FuelFactorServiceCsv();
+            FuelFactorService svc = data.fuelFactors();
             List<FuelEmissionFactor> factors = svc.loadFuelFactors(year);
             for (FuelEmissionFactor f : factors) {
                 String key = CellUtils.normalizeKey(f.getFuelType());
@@ -258,8 +322,161 @@ public class FuelExcelExporter {
             }
         } catch (Exception ignored) {
         }
+        return fuelToFactor;
+    }
+
+    /**
+     * Run the fuel calculation on up to {@code maxRows} rows sampled from
+     * {@code source} without writing a workbook. Rows go through the same
+     * {@link RowCalculator} as the export. Fuel types without a factor for
+     * the year are reported as unmatched.
+     */
+    public static MappingPreview preview(Sheet source, FuelMapping mapping, int year, String dateLimit,
+            String lastModifiedHeader, int maxRows) {
+        DataFormatter df = new DataFormatter();
+        FormulaEvaluator eval = source.getWorkbook().getCreationHelper().createFormulaEvaluator();
+        int headerRowIndex = MappingPreview.findHeaderRow(source, df, eval);
+        if (headerRowIndex == -1)
+            return new MappingPreview(0);
+        MappingPreview preview = new MappingPreview(source.getLastRowNum() - headerRowIndex);
+        RowCalculator calc = new RowCalculator(DataRoot.DEFAULT, mapping, year, dateLimit, lastModifiedHeader,
+                source.getRow(headerRowIndex), df, eval);
+
+        for (int i : MappingPreview.sampleRows(headerRowIndex + 1, source.getLastRowNum(), maxRows)) {
+            Row src = source.getRow(i);
+            if (src == null)
+                continue;
+            preview.sampled();
+            CalculatedRow r = calc.calculate(src);
+            if (r.skip != null) {
+                preview.skip(r.skip);
+                continue;
+            }
+            if (Boolean.FALSE.equals(r.factorMatched))
+                preview.unmatched(r.fuelType);
+            preview.include(r.centerKey, r.amount, r.emissionsT);
+        }
+        return preview;
+    }
+
+    /**
+     * Per-row fuel rules shared by the export and
+     * {@link #preview(Sheet, FuelMapping, int, String, String, int)}: zero
+     * amounts, invoice year, Last Modified limit and the fuel (and vehicle)
+     * factor lookup. Factors are loaded once, for the resolved reporting year.
+     */
+    private static final class RowCalculator {
+        final int reportingYear;
+        /** Resolved Last Modified column, or -1. */
+        final int lastModifiedIndex;
+        private final FuelMapping mapping;
+        private final Map<String, Double> fuelToFactor;
+        private final Instant dateLimitInstant;
+        private final DataFormatter df;
+        private final FormulaEvaluator eval;
+
+        RowCalculator(DataRoot data, FuelMapping mapping, int year, String dateLimit, String lastModifiedHeader,
+                Row header, DataFormatter df, FormulaEvaluator eval) {
+            this.mapping = mapping;
+            this.df = df;
+            this.eval = eval;
+            this.reportingYear = year > 0 ? year : LocalDate.now().getYear();
+            this.fuelToFactor = loadFuelFactors(data, reportingYear);
+            this.lastModifiedIndex = MappingPreview.findLastModifiedColumn(header, mapping.getCompletionTimeIndex(),
+                    lastModifiedHeader, df, eval);
+            // dateLimit is an upper bound on Last Modified
+            this.dateLimitInstant = dateLimit != null && !dateLimit.trim().isEmpty()
+                    ? DateUtils.parseInstantLenient(dateLimit.trim())
+                    : null;
+        }
+
+        CalculatedRow calculate(Row src) {
+            CalculatedRow r = new CalculatedRow();
+            r.invoice = CellUtils.getCellStringByIndex(src, mapping.getInvoiceIndex(), df, eval);
+            r.invoiceDate = CellUtils.getCellStringByIndex(src, mapping.getInvoiceDateIndex(), df, eval);
+            r.amount = CellUtils.parseDoubleSafe(CellUtils.getCellStringByIndex(src, mapping.getAmountIndex(), df,
+                    eval));
+            // Allow negative amounts (rectified invoices). Only skip rows with
+            // a literal zero amount.
+            if (r.amount == 0) {
+                r.skip = ExportMetrics.SKIP_ZERO;
+                return r;
+            }
+            r.parsedDate = DateUtils.parseDateLenient(r.invoiceDate);
+            if (r.parsedDate == null || r.parsedDate.getYear() != reportingYear) {
+                r.skip = ExportMetrics.SKIP_YEAR;
+                return r;
+            }
+            // Rows last modified AFTER the date limit are skipped
+            if (lastModifiedIndex >= 0 && dateLimitInstant != null) {
+                r.lmRaw = CellUtils.getCellStringByIndex(src, lastModifiedIndex, df, eval);
+                if (r.lmRaw != null && !r.lmRaw.trim().isEmpty()) {
+                    Instant lm = DateUtils.parseInstantLenient(r.lmRaw.trim());
+                    if (lm != null) {
+                        r.parsedLmText = lm.toString();
+                        if (lm.isAfter(dateLimitInstant)) {
+                            r.skip = ExportMetrics.SKIP_LAST_MODIFIED;
+                            return r;
+                        }
+                    }
+                }
+            }
+
+            // Emission factor: prefer combined key fuel|vehicle, otherwise fuel key
+            r.fuelType = CellUtils.getCellStringByIndex(src, mapping.getFuelTypeIndex(), df, eval);
+            r.vehicleType = CellUtils.getCellStringByIndex(src, mapping.getVehicleTypeIndex(), df, eval);
+            if (r.fuelType != null && !r.fuelType.trim().isEmpty()) {
+                String key = CellUtils.normalizeKey(r.fuelType);
+                String vt = r.vehicleType != null ? CellUtils.normalizeKey(r.vehicleType) : "";
+                Double f = !vt.isEmpty() && fuelToFactor.containsKey(key + "|" + vt) ? fuelToFactor.get(key + "|" + vt)
+                        : fuelToFactor.get(key);
+                r.factorMatched = f != null;
+                r.factor = f != null ? f : 0.0;
+            }
+            String center = CellUtils.getCellStringByIndex(src, mapping.getCentroIndex(), df, eval);
+            r.centerKey = (center == null || center.trim().isEmpty()) ? (r.invoice != null ? r.invoice : "SIN_CENTRO")
+                    : center;
+            // amount is in litres
+            r.emissionsT = (r.amount * r.factor) / 1000.0;
+            return r;
+        }
+    }
+
+    /**
+     * Outcome of {@link RowCalculator#calculate}: the values read and derived
+     * from one source row, and the skip reason when it is left out.
+     */
+    private static final class CalculatedRow {
+        /** Skip reason (an {@link ExportMetrics} SKIP constant) or null. */
+        String skip;
+        String invoice;
+        String invoiceDate;
+        double amount;
+        LocalDate parsedDate;
+        /** Last Modified cell, read only when a date limit applies. */
+        String lmRaw;
+        String parsedLmText = "";
+        String fuelType;
+        String vehicleType;
+        double factor;
+        /** Whether the fuel type has a factor; null when the row has none. */
+        Boolean factorMatched;
+        String centerKey;
+        double emissionsT;
+    }
+
+    private static Map<String, double[]> writeDetailedRows(Sheet target, Sheet source, FuelMapping mapping,
+            int year, String dateLimit, String lastModifiedHeader, AggregateCube cube,
+            PeriodSeries monthly, DataRoot data, ExportMetrics metrics) {
+        DataFormatter df = new DataFormatter();
+        FormulaEvaluator eval = source.getWorkbook().getCreationHelper().createFormulaEvaluator();
+        Map<String, double[]> perCenter = new HashMap<>();
+        metrics.begin(ExportMetrics.PHASE_FACTORS);
+        // Center attributes (campus, city, ...) are only needed to label cube facts
+        CenterAttributes attributes = cube != null ? CenterAttributes.load(data) : null;
 
         // detect header row
+        metrics.next(ExportMetrics.PHASE_HEADER);
         int headerRowIndex = -1;
         for (int i = source.getFirstRowNum(); i <= source.getLastRowNum(); i++) {
             Row r = source.getRow(i);
@@ -277,8 +494,15 @@ public class FuelExcelExporter {
                 break;
             }
         }
+        metrics.end();
         if (headerRowIndex == -1)
             return perCenter;
+        metrics.begin(ExportMetrics.PHASE_FACTORS);
+        // Factors for the reporting year and the Last Modified column of this sheet
+        RowCalculator calc = new RowCalculator(data, mapping, year, dateLimit, lastModifiedHeader,
+                source.getRow(headerRowIndex), df, eval);
+        int reportingYear = calc.reportingYear;
+        metrics.end();
 
         int outRow = target.getLastRowNum() + 1;
         int idCounter = 1;
@@ -295,28 +519,19 @@ public class FuelExcelExporter {
         int processed = 0;
         int skippedByLastModified = 0;
 
-        // parse dateLimit into Instant (upper bound)
-        java.time.Instant dateLimitInstant = null;
-        if (dateLimit != null && !dateLimit.trim().isEmpty()) {
-            dateLimitInstant = DateUtils.parseInstantLenient(dateLimit.trim());
-        }
-
+        metrics.begin(ExportMetrics.PHASE_ROWS);
         for (int i = headerRowIndex + 1; i <= source.getLastRowNum(); i++) {
             Row src = source.getRow(i);
             if (src == null)
                 continue;
-            String center = CellUtils.getCellStringByIndex(src, mapping.getCentroIndex(), df, eval);
-            String person = CellUtils.getCellStringByIndex(src, mapping.getResponsableIndex(), df, eval);
-            String invoice = CellUtils.getCellStringByIndex(src, mapping.getInvoiceIndex(), df, eval);
-            String provider = CellUtils.getCellStringByIndex(src, mapping.getProviderIndex(), df, eval);
-            String invoiceDate = CellUtils.getCellStringByIndex(src, mapping.getInvoiceDateIndex(), df, eval);
-            String fuelType = CellUtils.getCellStringByIndex(src, mapping.getFuelTypeIndex(), df, eval);
-            String vehicleType = CellUtils.getCellStringByIndex(src, mapping.getVehicleTypeIndex(), df, eval);
-            String amtStr = CellUtils.getCellStringByIndex(src, mapping.getAmountIndex(), df, eval);
-            double amount = CellUtils.parseDoubleSafe(amtStr);
-            // Allow negative amounts (rectified invoices). Only skip rows with
-            // a literal zero amount.
-            if (amount == 0) {
+            metrics.rowRead();
+            CalculatedRow r = calc.calculate(src);
+            String invoice = r.invoice;
+            String invoiceDate = r.invoiceDate;
+            double amount = r.amount;
+            LocalDate parsedDate = r.parsedDate;
+            String lmRaw = r.lmRaw;
+            if (ExportMetrics.SKIP_ZERO.equals(r.skip)) {
                 // diagnostics: zero amount
                 Row dr = diag.createRow(diagRow++);
                 dr.createCell(0).setCellValue(i);
@@ -324,83 +539,22 @@ public class FuelExcelExporter {
                 dr.createCell(2).setCellValue(invoiceDate != null ? invoiceDate : "");
                 dr.createCell(3).setCellValue(amount);
                 dr.createCell(4).setCellValue("SKIPPED_ZERO_AMOUNT");
+                metrics.skip(ExportMetrics.SKIP_ZERO);
                 continue;
             }
-
-            LocalDate parsedDate = DateUtils.parseDateLenient(invoiceDate);
-            int reportingYear = year > 0 ? year : LocalDate.now().getYear();
-            if (parsedDate == null || parsedDate.getYear() != reportingYear) {
+            if (ExportMetrics.SKIP_YEAR.equals(r.skip)) {
                 Row dr = diag.createRow(diagRow++);
                 dr.createCell(0).setCellValue(i);
                 dr.createCell(1).setCellValue(invoice != null ? invoice : "");
                 dr.createCell(2).setCellValue(invoiceDate != null ? invoiceDate : "");
                 dr.createCell(3).setCellValue(parsedDate != null ? parsedDate.toString() : "");
                 dr.createCell(4).setCellValue("SKIPPED_YEAR");
+                metrics.skip(ExportMetrics.SKIP_YEAR);
                 continue;
             }
-
-            // Determine lastModified index: prefer mapping.completionTimeIndex, otherwise
-            // try to match header by name or heuristics
-            int lastModifiedIndexLocal = -1;
-            try {
-                int mapped = mapping.getCompletionTimeIndex();
-                if (mapped >= 0)
-                    lastModifiedIndexLocal = mapped;
-            } catch (Exception ignored) {
-            }
-            Row hdrRow = source.getRow(headerRowIndex);
-            if (hdrRow != null) {
-                for (int ci = 0; ci < hdrRow.getLastCellNum(); ci++) {
-                    Cell srcCell = hdrRow.getCell(ci);
-                    String val = CellUtils.getCellString(srcCell, df, eval);
-                    if (lastModifiedHeader != null && !lastModifiedHeader.trim().isEmpty()) {
-                        if (CellUtils.normalizeKey(val).equals(CellUtils.normalizeKey(lastModifiedHeader))) {
-                            lastModifiedIndexLocal = ci;
-                            break;
-                        }
-                    }
-                    String n = CellUtils.normalizeKey(val);
-                    if (n.contains("last") && n.contains("modif")) {
-                        lastModifiedIndexLocal = ci;
-                        break;
-                    }
-                    if (n.contains("last") && n.contains("modified")) {
-                        lastModifiedIndexLocal = ci;
-                        break;
-                    }
-                    if (n.contains("lastmodified") || n.contains("last_modified")) {
-                        lastModifiedIndexLocal = ci;
-                        break;
-                    }
-                }
-            }
-
-            // Apply Last Modified upper-bound filtering: if the row has a last-modified and
-            // it's AFTER the dateLimit -> skip. If not skipped, write the detailed output
-            // row.
-            boolean skipDueToLastModified = false;
-            String lmRaw = null;
-            String parsedLmText = "";
-            if (lastModifiedIndexLocal >= 0 && dateLimitInstant != null) {
-                try {
-                    lmRaw = CellUtils.getCellStringByIndex(src, lastModifiedIndexLocal, df, eval);
-                } catch (Exception ignored) {
-                }
-                if (lmRaw != null && !lmRaw.trim().isEmpty()) {
-                    try {
-                        java.time.Instant lmInstant = DateUtils.parseInstantLenient(lmRaw.trim());
-                        if (lmInstant != null) {
-                            parsedLmText = lmInstant.toString();
-                            if (lmInstant.isAfter(dateLimitInstant))
-                                skipDueToLastModified = true;
-                        }
-                    } catch (Exception ignored) {
-                    }
-                }
-            }
-
-            if (skipDueToLastModified) {
+            if (ExportMetrics.SKIP_LAST_MODIFIED.equals(r.skip)) {
                 skippedByLastModified++;
+                metrics.skip(ExportMetrics.SKIP_LAST_MODIFIED);
                 // diagnostics: skipped by last-modified
                 if (diag != null) {
                     try {
@@ -410,7 +564,7 @@ public class FuelExcelExporter {
                         dr.createCell(2).setCellValue(invoiceDate != null ? invoiceDate : "");
                         dr.createCell(3).setCellValue(parsedDate != null ? parsedDate.toString() : "");
                         dr.createCell(4).setCellValue(lmRaw != null ? lmRaw : "");
-                        dr.createCell(5).setCellValue(parsedLmText);
+                        dr.createCell(5).setCellValue(r.parsedLmText);
                         dr.createCell(6).setCellValue(amount);
                         dr.createCell(7).setCellValue("SKIPPED_LAST_MODIFIED_AFTER_LIMIT");
                     } catch (Exception ignored) {
@@ -418,23 +572,14 @@ public class FuelExcelExporter {
                 }
                 continue;
             }
-
-            // Determine emission factor: prefer combined key fuel|vehicle, otherwise fuel
-            // key
-            double factor = 0.0;
-            if (fuelType != null && !fuelType.trim().isEmpty()) {
-                String key = CellUtils.normalizeKey(fuelType);
-                String vt = vehicleType != null ? CellUtils.normalizeKey(vehicleType) : "";
-                if (!vt.isEmpty() && fuelToFactor.containsKey(key + "|" + vt)) {
-                    factor = fuelToFactor.getOrDefault(key + "|" + vt, 0.0);
-                } else {
-                    factor = fuelToFactor.getOrDefault(key, 0.0);
-                }
-            }
-
-            // Build a per-center key and update aggregates
-            String centerKey = (center == null || center.trim().isEmpty()) ? (invoice != null ? invoice : "SIN_CENTRO")
-                    : center;
+            String person = CellUtils.getCellStringByIndex(src, mapping.getResponsableIndex(), df, eval);
+            String provider = CellUtils.getCellStringByIndex(src, mapping.getProviderIndex(), df, eval);
+            String fuelType = r.fuelType;
+            String vehicleType = r.vehicleType;
+            double factor = r.factor;
+            if (r.factorMatched != null)
+                metrics.lookup(ExportMetrics.LOOKUP_FACTOR, r.factorMatched);
+            String centerKey = r.centerKey;
             double[] agg = perCenter.get(centerKey);
             if (agg == null) {
                 agg = new double[2];
@@ -442,14 +587,24 @@ public class FuelExcelExporter {
             }
             // amount is in litres
             agg[0] += amount;
-            double emissionsT = (amount * factor) / 1000.0;
+            double emissionsT = r.emissionsT;
             agg[1] += emissionsT;
+            if (cube != null) {
+                cube.add(attributes.members(EnergyType.FUEL.id(), "1", centerKey, parsedDate, null, null), amount,
+                        emissionsT, emissionsT);
+            }
+            if (monthly != null) {
+                // Invoices are dated, so the whole amount falls in the invoice month
+                double[] months = PeriodProration.monthlyShares(parsedDate, parsedDate, amount, reportingYear);
+                monthly.add(centerKey, months, 1.0, factor / 1000.0);
+            }
 
             // Write detailed output row following header layout: Centro, Responsable, Nº
             // Factura,
             // Proveedor, Fecha, Tipo Combustible, Tipo Vehículo, Importe (€), Factor,
             // Emisiones (tCO2e), Tiempo de Finalizacion
             Row out = target.createRow(outRow++);
+            metrics.rowWritten();
             int col = 0;
             out.createCell(col++).setCellValue(idCounter++);
             out.createCell(col++).setCellValue(centerKey);
@@ -513,7 +668,7 @@ public class FuelExcelExporter {
                     dr.createCell(2).setCellValue(invoiceDate != null ? invoiceDate : "");
                     dr.createCell(3).setCellValue(parsedDate != null ? parsedDate.toString() : "");
                     dr.createCell(4).setCellValue(lmRaw != null ? lmRaw : "");
-                    dr.createCell(5).setCellValue(parsedLmText);
+                    dr.createCell(5).setCellValue(r.parsedLmText);
                     dr.createCell(6).setCellValue(amount);
                     dr.createCell(7).setCellValue("ACCEPTED");
                 } catch (Exception ignored) {
@@ -522,6 +677,7 @@ public class FuelExcelExporter {
 
             processed++;
         }
+        metrics.end();
 
         // summary diagnostics
         Row s1 = diag.createRow(diagRow++);
@@ -594,12 +750,14 @@ public class FuelExcelExporter {
                 String consumoFormula = String.format("IFERROR(SUMIF('%s'!$B:$B,$A%d,'%s'!$%s:$%s),0)",
                         detailedName, excelRow, detailedName, detailedAmountCol, detailedAmountCol);
                 cCons.setCellFormula(consumoFormula);
+                cCons.setCellValue(e.getValue()[0]);
                 cCons.setCellStyle(numberStyle);
 
                 Cell cEm = row.createCell(2);
                 String emisFormula = String.format("IFERROR(SUMIF('%s'!$B:$B,$A%d,'%s'!$%s:$%s),0)",
                         detailedName, excelRow, detailedName, detailedEmissionsCol, detailedEmissionsCol);
                 cEm.setCellFormula(emisFormula);
+                cEm.setCellValue(e.getValue()[1]);
                 cEm.setCellStyle(emissionsStyle);
             }
         }
@@ -1,31 +1,29 @@
 package com.carboncalc.util.excel;
 
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 
 import java.io.FileOutputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.sql.Date;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.Collections;
 
 import com.carboncalc.util.enums.DetailedHeader;
-import com.carboncalc.service.GasFactorServiceCsv;
-import com.carboncalc.service.CupsServiceCsv;
-import com.carboncalc.model.CupsCenterMapping;
+import com.carboncalc.service.GasFactorService;
 import com.carboncalc.model.factors.GasFactorEntry;
 import com.carboncalc.model.GasMapping;
+import com.carboncalc.model.enums.EnergyType;
+import com.carboncalc.util.AggregateCube;
+import com.carboncalc.util.WorkbookFootprint;
+import com.carboncalc.util.PeriodProration;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.Files;
 import java.util.regex.Pattern;
 import java.util.ArrayList;
 import java.util.Locale;
@@ -50,10 +48,15 @@ import java.util.ResourceBundle;
  * "Diagnostics" sheet with parsing/validation details.</li>
  * <li>Behavior: the exporter is tolerant of missing data and writes empty
  * templates or diagnostic messages instead of failing hard.</li>
+ * <li>Append mode ({@link ExportOptions#isAppend()}) adds the rows of new
+ * invoices to an existing report (see {@link ReportAppender}).</li>
  * </ul>
  * </p>
  */
 public class GasExcelExporter {
+    // Factura column of the detailed sheet
+    private static final int DETAILED_INVOICE_COLUMN = 4;
+
     /**
      * Utility exporter for Gas-related Excel reports.
      *
@@ -103,8 +106,58 @@ public class GasExcelExporter {
     public static void exportGasData(String filePath, String providerPath, String providerSheet,
             String erpPath, String erpSheet, GasMapping mapping, int year,
             String sheetMode, Set<String> validInvoices) throws IOException {
+        exportGasData(filePath, providerPath, providerSheet, erpPath, erpSheet, mapping, year, sheetMode,
+                validInvoices, new ExportOptions());
+    }
+
+    /**
+     * Export gas data with optional extras (see {@link ExportOptions}). With
+     * default options the output is identical to the overload without options.
+     */
+    public static void exportGasData(String filePath, String providerPath, String providerSheet,
+            String erpPath, String erpSheet, GasMapping mapping, int year,
+            String sheetMode, Set<String> validInvoices, ExportOptions options) throws IOException {
+        exportGasData(filePath, ProviderSource.single(providerPath, providerSheet), erpPath, erpSheet, mapping,
+                year, sheetMode, validInvoices, options);
+    }
+
+    /**
+     * Export the rows of several provider sheets into one workbook. Sources
+     * are parsed concurrently and merged in list order with the same column
+     * mapping; an invoice already exported from an earlier source is skipped
+     * (see {@link ElectricityExcelExporter}).
+     */
+    public static void exportGasData(String filePath, List<ProviderSource> sources, String erpPath,
+            String erpSheet, GasMapping mapping, int year, String sheetMode, Set<String> validInvoices,
+            ExportOptions options) throws IOException {
+        ExportMetrics metrics = new ExportMetrics(EnergyType.GAS.id());
+        DataRoot data = DataRoot.of(options);
+        if ("extended".equalsIgnoreCase(sheetMode) && ReportAppender.applies(options, filePath)) {
+            appendGasData(filePath, sources, mapping, year, validInvoices, options, data, metrics);
+            return;
+        }
+        ExportResultCache cache = options != null ? options.getResultCache() : null;
+        String cacheKey = null;
+        if (cache != null && mapping != null) {
+            metrics.begin(ExportMetrics.PHASE_CACHE);
+            cacheKey = ExportResultCache.key(EnergyType.GAS.id()).sources(sources)
+                    .ints(mapping.getCupsIndex(), mapping.getInvoiceNumberIndex(), mapping.getStartDateIndex(),
+                            mapping.getEndDateIndex(), mapping.getConsumptionIndex(), mapping.getCenterIndex(),
+                            mapping.getEmissionEntityIndex())
+                    .text(mapping.getGasType()).text(sheetMode).strings(validInvoices).options(options)
+                    .dataFiles(data, year).build();
+            boolean hit = cache.restore(cacheKey, filePath);
+            metrics.lookup(ExportMetrics.LOOKUP_RESULT_CACHE, hit);
+            metrics.end();
+            if (hit) {
+                metrics.publish(options, filePath);
+                return;
+            }
+        }
         boolean isXlsx = filePath.toLowerCase().endsWith(".xlsx");
-        try (Workbook workbook = isXlsx ? new XSSFWorkbook() : new HSSFWorkbook()) {
+        // Large provider files get a streaming writer (see ProviderSource.writeMode)
+        try (Workbook workbook = isXlsx ? WorkbookFootprint.newWorkbook(ProviderSource.writeMode(sources, options))
+                : new HSSFWorkbook()) {
             ResourceBundle spanish = ResourceBundle.getBundle("Messages", new Locale("es"));
             String moduleLabel = spanish.containsKey("module.gas") ? spanish.getString("module.gas") : "Gas";
             if ("extended".equalsIgnoreCase(sheetMode)) {
@@ -114,26 +167,32 @@ public class GasExcelExporter {
                 Sheet detailedSheet = workbook.createSheet(sheetExtended);
                 CellStyle headerStyle = createHeaderStyle(workbook);
                 createDetailedSheet(detailedSheet, headerStyle, spanish);
-
-                if (providerPath != null && providerSheet != null) {
-                    try (FileInputStream fis = new FileInputStream(providerPath)) {
-                        Workbook src = providerPath.toLowerCase().endsWith(".xlsx")
-                                ? new XSSFWorkbook(fis)
-                                : new HSSFWorkbook(fis);
-                        Sheet sheet = src.getSheet(providerSheet);
-                        if (sheet != null) {
-                            // Load per-year gas-type emission factors (map gasType -> GasFactorEntry)
-                            Map<String, GasFactorEntry> gasTypeToFactor = loadGasFactorsForYear(year);
-
-                            Map<String, double[]> aggregates = writeExtendedRows(detailedSheet, sheet, mapping, year,
-                                    validInvoices, gasTypeToFactor);
+                // Resolved now: a streaming workbook flushes the header row
+                String[] perCenterColumns = perCenterColumns(detailedSheet, spanish);
+
+                if (sources != null && !sources.isEmpty()) {
+                    metrics.begin(ExportMetrics.PHASE_READ);
+                    List<Sheet> sheets = ProviderSource.openAll(sources);
+                    metrics.end();
+                    try {
+                        if (!sheets.isEmpty()) {
+                            AggregateCube cube = options != null && options.isSummarySheets() ? new AggregateCube()
+                                    : null;
+                            PeriodSeries monthly = options != null && options.isMonthlySheet()
+                                    ? new PeriodSeries(2, PeriodProration.MONTHS)
+                                    : null;
+                            Map<String, double[]> aggregates = writeExtendedRows(detailedSheet, sheets, mapping, year,
+                                    validInvoices, cube, monthly, data, metrics, 1,
+                                    Collections.emptySet());
+                            metrics.begin(ExportMetrics.PHASE_SHEETS);
 
                             String perCenterName = moduleLabel + " - "
                                     + (spanish.containsKey("result.sheet.per_center")
                                             ? spanish.getString("result.sheet.per_center")
                                             : "Por centro");
                             Sheet perCenter = workbook.createSheet(perCenterName);
-                            createPerCenterSheet(perCenter, headerStyle, aggregates, spanish, sheetExtended);
+                            createPerCenterSheet(perCenter, headerStyle, aggregates, spanish, sheetExtended,
+                                    perCenterColumns);
 
                             String totalName = moduleLabel + " - "
                                     + (spanish.containsKey("result.sheet.total")
@@ -141,10 +200,28 @@ public class GasExcelExporter {
                                             : "Total");
                             Sheet total = workbook.createSheet(totalName);
                             createTotalSheetFromAggregates(total, headerStyle, aggregates, spanish, perCenterName);
+                            if (cube != null) {
+                                Sheet summary = workbook.createSheet(moduleLabel + " - "
+                                        + (spanish.containsKey("result.sheet.summary")
+                                                ? spanish.getString("result.sheet.summary")
+                                                : "Resumen"));
+                                SummarySheetWriter.writeSummarySheet(summary, cube, spanish, headerStyle, false);
+                            }
+                            if (monthly != null) {
+                                Sheet monthlySheet = workbook.createSheet(moduleLabel + " - "
+                                        + (spanish.containsKey("result.sheet.monthly")
+                                                ? spanish.getString("result.sheet.monthly")
+                                                : "Mensual"));
+                                SummarySheetWriter.writeMonthlySheet(monthlySheet, monthly, year, spanish,
+                                        headerStyle,
+                                        new String[] { "summary.header.consumption", "summary.header.emissions" });
+                            }
+                            metrics.end();
                         }
-                        src.close();
                     } catch (Exception e) {
                         // Continue writing template even if reading fails
+                    } finally {
+                        ProviderSource.closeAll(sheets);
                     }
                 }
             } else {
@@ -164,10 +241,219 @@ public class GasExcelExporter {
                                 : "Por centro"));
             }
 
+            metrics.writeSheetIfRequested(workbook, options, spanish, moduleLabel);
+            metrics.begin(ExportMetrics.PHASE_WRITE);
             try (FileOutputStream fos = new FileOutputStream(filePath)) {
                 workbook.write(fos);
             }
+            metrics.end();
         }
+        if (cacheKey != null)
+            cache.store(cacheKey, filePath);
+        metrics.publish(options, filePath);
+    }
+
+    /**
+     * Run the gas calculation on up to {@code maxRows} rows sampled from
+     * {@code source} without writing a workbook. Rows go through the same
+     * {@link RowCalculator} as the export; there is no ERP invoice set and no
+     * earlier file, so only the invoice rules of a single file apply. A gas
+     * type without a factor for the year is reported as unmatched.
+     */
+    public static MappingPreview preview(Sheet source, GasMapping mapping, int year, int maxRows) {
+        DataFormatter df = new DataFormatter();
+        FormulaEvaluator eval = source.getWorkbook().getCreationHelper().createFormulaEvaluator();
+        int headerRowIndex = MappingPreview.findHeaderRow(source, df, eval);
+        if (headerRowIndex == -1)
+            return new MappingPreview(0);
+        MappingPreview preview = new MappingPreview(source.getLastRowNum() - headerRowIndex);
+        RowCalculator calc = new RowCalculator(DataRoot.DEFAULT, mapping, year, Collections.emptySet(),
+                Collections.emptySet());
+
+        for (int i : MappingPreview.sampleRows(headerRowIndex + 1, source.getLastRowNum(), maxRows)) {
+            Row srcRow = source.getRow(i);
+            if (srcRow == null)
+                continue;
+            preview.sampled();
+            CalculatedRow r = calc.calculate(srcRow, df, eval);
+            if (r.skip != null) {
+                preview.skip(r.skip);
+                continue;
+            }
+            if (!calc.gasTypeMatched())
+                preview.unmatched(calc.gasType);
+            preview.include(r.centerName, r.consumoPorCentro, r.emisionesT);
+        }
+        return preview;
+    }
+
+    /**
+     * Per-row gas rules shared by the export and
+     * {@link #preview(Sheet, GasMapping, int, int)}: year filter, proration,
+     * CUPS split, gas-type factor, ERP invoice filter and invoices repeated
+     * across provider files. Lookups and the factor are loaded once, for the
+     * resolved reporting year.
+     */
+    private static final class RowCalculator {
+        final int reportingYear;
+        /** Mapped gas type, trimmed and upper-cased; may be empty. */
+        final String gasType;
+        /** Factor entry of {@link #gasType}; null when empty or unknown. */
+        final GasFactorEntry factorEntry;
+        private final GasMapping mapping;
+        private final Map<String, Integer> centersPerCups;
+        private final Set<String> validInvoices;
+        // Invoices already in the report (append mode)
+        private final Set<String> exportedInvoices;
+        // Invoice numbers exported from earlier sources; a repeat in a later
+        // file is the same invoice delivered twice
+        private final Set<String> earlierInvoices = new HashSet<>();
+        private final Set<String> sourceInvoices = new HashSet<>();
+
+        RowCalculator(DataRoot data, GasMapping mapping, int year, Set<String> validInvoices,
+                Set<String> exportedInvoices) {
+            this.mapping = mapping;
+            // Prefer the 'year' passed by the caller, otherwise the persisted year
+            this.reportingYear = (year > 0) ? year : data.currentYear();
+            // The gas type is a fixed mapping value, so the factor is resolved once
+            this.gasType = mapping.getGasType() == null ? ""
+                    : mapping.getGasType().trim().toUpperCase(Locale.ROOT);
+            this.factorEntry = gasType.isEmpty() ? null : loadGasFactorsForYear(data, reportingYear).get(gasType);
+            this.centersPerCups = ElectricityExcelExporter.loadCentersPerCups(data);
+            this.validInvoices = validInvoices;
+            this.exportedInvoices = exportedInvoices;
+        }
+
+        /** @return false when a gas type is mapped but has no factor for the year */
+        boolean gasTypeMatched() {
+            return gasType.isEmpty() || factorEntry != null;
+        }
+
+        /** Start the next provider file; invoices of the previous one count as exported. */
+        void nextSource() {
+            earlierInvoices.addAll(sourceInvoices);
+            sourceInvoices.clear();
+        }
+
+        CalculatedRow calculate(Row srcRow, DataFormatter df, FormulaEvaluator eval) {
+            CalculatedRow r = new CalculatedRow();
+            r.factura = getCellStringByIndex(srcRow, mapping.getInvoiceNumberIndex(), df, eval);
+            r.fechaInicio = getCellStringByIndex(srcRow, mapping.getStartDateIndex(), df, eval);
+            r.fechaFin = getCellStringByIndex(srcRow, mapping.getEndDateIndex(), df, eval);
+            r.cups = getCellStringByIndex(srcRow, mapping.getCupsIndex(), df, eval);
+            r.consumo = parseDoubleSafe(getCellStringByIndex(srcRow, mapping.getConsumptionIndex(), df, eval));
+            r.parsedStart = parseDateLenient(r.fechaInicio);
+            r.parsedEnd = parseDateLenient(r.fechaFin);
+            // Skip rows whose dates do not touch the reporting year
+            if (!PeriodProration.touchesYear(r.parsedStart, r.parsedEnd, reportingYear)) {
+                r.skip = ExportMetrics.SKIP_YEAR;
+                return r;
+            }
+            // Compute consumoAplicable: conservative if one date missing
+            r.consumoAplicable = (r.parsedStart == null || r.parsedEnd == null) ? r.consumo
+                    : computeApplicableKwh(r.fechaInicio, r.fechaFin, r.consumo, reportingYear);
+
+            String invoiceNumber = r.factura != null ? r.factura.trim() : "";
+            if (validInvoices != null && !validInvoices.isEmpty()
+                    && (invoiceNumber.isEmpty() || !validInvoices.contains(invoiceNumber))) {
+                r.skip = ExportMetrics.SKIP_INVOICE;
+                return r;
+            }
+            // Cross-file duplicates: the same invoice in an earlier source
+            // or, when appending, already in the report
+            if (!invoiceNumber.isEmpty()) {
+                if (earlierInvoices.contains(invoiceNumber) || exportedInvoices.contains(invoiceNumber)) {
+                    r.skip = ExportMetrics.SKIP_DUPLICATE;
+                    return r;
+                }
+                sourceInvoices.add(invoiceNumber);
+            }
+
+            String cupsKey = r.cups != null ? r.cups.trim() : "";
+            r.centerName = getCellStringByIndex(srcRow, mapping.getCenterIndex(), df, eval);
+            if (r.centerName == null || r.centerName.trim().isEmpty()) {
+                r.centerName = !cupsKey.isEmpty() ? cupsKey : (r.factura != null ? r.factura : "SIN_CENTRO");
+            }
+            // Split consumption among centers sharing the same CUPS (if applicable)
+            if (!cupsKey.isEmpty()) {
+                r.centersCount = centersPerCups.getOrDefault(cupsKey, 1);
+                r.cupsMatched = centersPerCups.containsKey(cupsKey);
+            }
+            r.consumoPorCentro = r.centersCount > 0 ? r.consumoAplicable / (double) r.centersCount
+                    : r.consumoAplicable;
+            double factor = factorEntry != null ? factorEntry.getMarketFactor() : 0.0;
+            r.emisionesT = (r.consumoPorCentro * factor) / 1000.0;
+            return r;
+        }
+    }
+
+    /**
+     * Outcome of {@link RowCalculator#calculate}: the values read and derived
+     * from one provider row, and the skip reason when it is left out.
+     */
+    private static final class CalculatedRow {
+        /** Skip reason (an {@link ExportMetrics} SKIP constant) or null. */
+        String skip;
+        String cups;
+        String factura;
+        String fechaInicio;
+        String fechaFin;
+        LocalDate parsedStart;
+        LocalDate parsedEnd;
+        double consumo;
+        double consumoAplicable;
+        int centersCount = 1;
+        double consumoPorCentro;
+        /** Whether the CUPS is in the CUPS file; null when the row has none. */
+        Boolean cupsMatched;
+        String centerName;
+        double emisionesT;
+    }
+
+    /**
+     * Append the rows of invoices missing from the report at {@code filePath}
+     * and update its per-center and total sheets; see
+     * {@link ExportOptions#isAppend()}.
+     */
+    private static void appendGasData(String filePath, List<ProviderSource> sources, GasMapping mapping, int year,
+            Set<String> validInvoices, ExportOptions options, DataRoot data, ExportMetrics metrics)
+            throws IOException {
+        if (options.isSummarySheets() || options.isMonthlySheet())
+            throw new IllegalArgumentException("Append mode cannot rebuild the summary or monthly sheets");
+        ResourceBundle spanish = ResourceBundle.getBundle("Messages", new Locale("es"));
+        String moduleLabel = spanish.containsKey("module.gas") ? spanish.getString("module.gas") : "Gas";
+        String sheetExtended = moduleLabel + " - "
+                + (spanish.containsKey("result.sheet.extended") ? spanish.getString("result.sheet.extended")
+                        : "Extendido");
+        String perCenterName = moduleLabel + " - "
+                + (spanish.containsKey("result.sheet.per_center") ? spanish.getString("result.sheet.per_center")
+                        : "Por centro");
+        String totalName = moduleLabel + " - "
+                + (spanish.containsKey("result.sheet.total") ? spanish.getString("result.sheet.total") : "Total");
+        metrics.begin(ExportMetrics.PHASE_READ);
+        try (ReportAppender report = ReportAppender.open(filePath, sheetExtended, DETAILED_INVOICE_COLUMN)) {
+            report.dropSheets("Diagnostics", moduleLabel + " - " + spanish.getString("result.sheet.metrics"));
+            List<Sheet> sheets = ProviderSource.openAll(sources);
+            metrics.end();
+            try {
+                if (!sheets.isEmpty()) {
+                    Map<String, double[]> delta = writeExtendedRows(report.detailed(), sheets, mapping, year,
+                            validInvoices, null, null, data, metrics, report.nextId(),
+                            report.invoices());
+                    metrics.begin(ExportMetrics.PHASE_SHEETS);
+                    report.mergePerCenter(perCenterName, delta, perCenterColumns(report.detailed(), spanish));
+                    report.refreshTotal(totalName, perCenterName);
+                    metrics.end();
+                }
+            } finally {
+                ProviderSource.closeAll(sheets);
+            }
+            metrics.writeSheetIfRequested(report.workbook(), options, spanish, moduleLabel);
+            metrics.begin(ExportMetrics.PHASE_WRITE);
+            report.save();
+            metrics.end();
+        }
+        metrics.publish(options, filePath);
     }
 
     private static void createDetailedSheet(Sheet sheet, CellStyle headerStyle, ResourceBundle spanish) {
@@ -191,264 +477,242 @@ public class GasExcelExporter {
         }
     }
 
-    private static Map<String, double[]> writeExtendedRows(Sheet target, Sheet source, GasMapping mapping, int year,
-            Set<String> validInvoices, Map<String, GasFactorEntry> gasTypeToFactor) {
+    private static Map<String, double[]> writeExtendedRows(Sheet target, List<Sheet> sources, GasMapping mapping,
+            int year, Set<String> validInvoices, AggregateCube cube, PeriodSeries monthly, DataRoot data,
+            ExportMetrics metrics, int firstId, Set<String> exportedInvoices) {
         DataFormatter df = new DataFormatter();
-        FormulaEvaluator eval = source.getWorkbook().getCreationHelper().createFormulaEvaluator();
         Map<String, double[]> perCenterAgg = new HashMap<>();
         List<String> diagnostics = new ArrayList<>();
-        int headerRowIndex = -1;
-        for (int i = source.getFirstRowNum(); i <= source.getLastRowNum(); i++) {
-            Row r = source.getRow(i);
-            if (r == null)
-                continue;
-            boolean nonEmpty = false;
-            for (Cell c : r) {
-                if (!getCellStringStatic(c, df, eval).isEmpty()) {
-                    nonEmpty = true;
-                    break;
-                }
-            }
-            if (nonEmpty) {
-                headerRowIndex = i;
-                break;
-            }
-        }
-        if (headerRowIndex == -1) {
-            diagnostics.add("No header row found in provider sheet; no rows will be processed.");
-            writeDiagnosticsSheet(target.getWorkbook(), diagnostics);
-            return perCenterAgg;
-        }
-
         int outRow = target.getLastRowNum() + 1;
-        int idCounter = 1;
-        // Build centersPerCups map to split consumption among centers sharing the same
-        // CUPS
-        Map<String, Integer> centersPerCups = new HashMap<>();
-        try {
-            CupsServiceCsv cupsSvc = new CupsServiceCsv();
-            List<CupsCenterMapping> all = cupsSvc.loadCupsData();
-            for (CupsCenterMapping m : all) {
-                String key = m.getCups() != null ? m.getCups().trim() : "";
-                if (key.isEmpty())
+        int idCounter = firstId;
+        metrics.begin(ExportMetrics.PHASE_FACTORS);
+        // CUPS split and gas-type factor for the reporting year
+        RowCalculator calc = new RowCalculator(data, mapping, year, validInvoices, exportedInvoices);
+        int reportingYear = calc.reportingYear;
+        String gasTypeNormalized = calc.gasType;
+        double factor = calc.factorEntry != null ? calc.factorEntry.getMarketFactor() : 0.0;
+
+        // Center attributes (campus, city, ...) are only needed to label cube facts
+        CenterAttributes attributes = cube != null ? CenterAttributes.load(data) : null;
+        metrics.end();
+        // Monthly split of each row, reused across rows
+        double[] months = new double[PeriodProration.MONTHS];
+        for (Sheet source : sources) {
+            FormulaEvaluator eval = source.getWorkbook().getCreationHelper().createFormulaEvaluator();
+            metrics.begin(ExportMetrics.PHASE_HEADER);
+            int headerRowIndex = -1;
+            for (int i = source.getFirstRowNum(); i <= source.getLastRowNum(); i++) {
+                Row r = source.getRow(i);
+                if (r == null)
                     continue;
-                centersPerCups.put(key, centersPerCups.getOrDefault(key, 0) + 1);
+                boolean nonEmpty = false;
+                for (Cell c : r) {
+                    if (!getCellStringStatic(c, df, eval).isEmpty()) {
+                        nonEmpty = true;
+                        break;
+                    }
+                }
+                if (nonEmpty) {
+                    headerRowIndex = i;
+                    break;
+                }
             }
-        } catch (Exception ex) {
-            // ignore and assume 1 per cups
-        }
-
-        for (int i = headerRowIndex + 1; i <= source.getLastRowNum(); i++) {
-            Row srcRow = source.getRow(i);
-            if (srcRow == null)
+            metrics.end();
+            if (headerRowIndex == -1) {
+                diagnostics.add("No header row found in provider sheet '" + source.getSheetName()
+                        + "'; no rows will be processed.");
                 continue;
-            String factura = getCellStringByIndex(srcRow, mapping.getInvoiceNumberIndex(), df, eval);
-            String fechaInicio = getCellStringByIndex(srcRow, mapping.getStartDateIndex(), df, eval);
-            String fechaFin = getCellStringByIndex(srcRow, mapping.getEndDateIndex(), df, eval);
-            String consumoStr = getCellStringByIndex(srcRow, mapping.getConsumptionIndex(), df, eval);
-            String cups = getCellStringByIndex(srcRow, mapping.getCupsIndex(), df, eval);
-            // Mapping now supplies a fixed gas type string (not a column index)
-            String gasTypeRaw = mapping.getGasType();
-            // Normalize once per row for lookup and for writing to sheet
-            String gasType = gasTypeRaw == null ? "" : gasTypeRaw.trim();
-            String gasTypeNormalized = gasType.isEmpty() ? "" : gasType.toUpperCase(Locale.ROOT);
-            double consumo = parseDoubleSafe(consumoStr);
-            // Parse start and end dates
-            LocalDate parsedStart = parseDateLenient(fechaInicio);
-            LocalDate parsedEnd = parseDateLenient(fechaFin);
-            // Determine reporting year (prefer parameter 'year' > 0, otherwise read file)
-            int reportingYear = (year > 0) ? year : readCurrentYearFromFile();
-            boolean startInYear = parsedStart != null && parsedStart.getYear() == reportingYear;
-            boolean endInYear = parsedEnd != null && parsedEnd.getYear() == reportingYear;
-            // Skip rows whose dates do not touch the reporting year
-            if (!startInYear && !endInYear) {
-                diagnostics.add(String.format(
-                        "Row %d skipped: dates do not overlap reporting year %d (start='%s', end='%s', factura='%s')",
-                        i, reportingYear, fechaInicio, fechaFin, factura));
-                continue;
-            }
-            // Compute consumoAplicable: conservative if one date missing
-            double consumoAplicable;
-            if (parsedStart == null || parsedEnd == null) {
-                consumoAplicable = consumo;
-            } else {
-                consumoAplicable = computeApplicableKwh(fechaInicio, fechaFin, consumo, reportingYear);
             }
 
-            if (validInvoices != null && !validInvoices.isEmpty()) {
-                String invoiceKey = factura != null ? factura.trim() : "";
-                if (invoiceKey.isEmpty() || !validInvoices.contains(invoiceKey)) {
-                    diagnostics.add(
-                            String.format("Row %d skipped: invoice '%s' is not in valid invoices set", i, invoiceKey));
+            metrics.begin(ExportMetrics.PHASE_ROWS);
+            calc.nextSource();
+            for (int i = headerRowIndex + 1; i <= source.getLastRowNum(); i++) {
+                Row srcRow = source.getRow(i);
+                if (srcRow == null)
+                    continue;
+                metrics.rowRead();
+                CalculatedRow r = calc.calculate(srcRow, df, eval);
+                if (r.skip != null) {
+                    metrics.skip(r.skip);
+                    if (ExportMetrics.SKIP_YEAR.equals(r.skip))
+                        diagnostics.add(String.format("Row %d skipped: dates do not overlap reporting year %d "
+                                + "(start='%s', end='%s', factura='%s')", i, reportingYear, r.fechaInicio,
+                                r.fechaFin, r.factura));
+                    else if (ExportMetrics.SKIP_INVOICE.equals(r.skip))
+                        diagnostics.add(String.format("Row %d skipped: invoice '%s' is not in valid invoices set", i,
+                                r.factura != null ? r.factura.trim() : ""));
+                    else if (ExportMetrics.SKIP_DUPLICATE.equals(r.skip))
+                        diagnostics.add(String.format("Row %d of '%s' skipped: invoice '%s' already exported from an "
+                                + "earlier file", i, source.getSheetName(), r.factura.trim()));
                     continue;
                 }
-            }
-
-            String centerName = getCellStringByIndex(srcRow, mapping.getCenterIndex(), df, eval);
-            if (centerName == null || centerName.trim().isEmpty()) {
-                centerName = (cups != null && !cups.trim().isEmpty()) ? cups.trim()
-                        : (factura != null ? factura : "SIN_CENTRO");
-            }
-
-            // emissions computation: market-based uses entityToFactor map by emission
-            // entity field
-            // emission entity not used for gas-type based calculation
-            // Lookup factor using the normalized gas type; default to 0.0 when not found
-            double factor = 0.0;
-            if (!gasTypeNormalized.isEmpty()) {
-                if (gasTypeToFactor.containsKey(gasTypeNormalized)) {
-                    GasFactorEntry gfe = gasTypeToFactor.get(gasTypeNormalized);
-                    factor = gfe.getMarketFactor();
-                } else {
-                    diagnostics.add(String.format("Row %d: gas type '%s' not found for year %d; using factor=0.0", i,
-                            gasTypeNormalized, reportingYear));
-                    factor = 0.0;
+                String factura = r.factura;
+                String fechaInicio = r.fechaInicio;
+                String fechaFin = r.fechaFin;
+                String cups = r.cups;
+                double consumo = r.consumo;
+                LocalDate parsedStart = r.parsedStart;
+                LocalDate parsedEnd = r.parsedEnd;
+                double consumoAplicable = r.consumoAplicable;
+                String centerName = r.centerName;
+
+                if (!gasTypeNormalized.isEmpty()) {
+                    metrics.lookup(ExportMetrics.LOOKUP_FACTOR, calc.gasTypeMatched());
+                    if (!calc.gasTypeMatched())
+                        diagnostics.add(String.format("Row %d: gas type '%s' not found for year %d; using factor=0.0",
+                                i, gasTypeNormalized, reportingYear));
                 }
-            }
-            // Split consumption among centers sharing the same CUPS (if applicable)
-            int centersCount = 1;
-            if (cups != null && !cups.trim().isEmpty())
-                centersCount = centersPerCups.getOrDefault(cups.trim(), 1);
-            double consumoPorCentro = centersCount > 0 ? consumoAplicable / (double) centersCount : consumoAplicable;
-            double porcentajePorCentro = centersCount > 0 ? (100.0 / (double) centersCount) : 100.0;
-            // Allow negative consumption (rectified invoices). Only avoid division by
-            // zero when computing the percentage for the reporting year.
-            double porcentajeAplicableAno = consumo != 0 ? ((consumoAplicable / consumo) * 100.0) : 0.0;
-
-            // Compute emissions per center (market and location) using consumoPorCentro
-            double emisionesT = (consumoPorCentro * factor) / 1000.0;
-
-            double[] agg = perCenterAgg.get(centerName);
-            if (agg == null) {
-                // now only store consumo and single emisiones (market/scope1)
-                agg = new double[2];
-                perCenterAgg.put(centerName, agg);
-            }
-            agg[0] += consumoPorCentro;
-            agg[1] += emisionesT;
-
-            // Prepare some cell styles (date, percentage, emissions number formats)
-            Workbook wb = target.getWorkbook();
-            CellStyle dateStyle = wb.createCellStyle();
-            short dateFmt = wb.createDataFormat().getFormat("dd/MM/yyyy");
-            dateStyle.setDataFormat(dateFmt);
-
-            CellStyle percentStyle = wb.createCellStyle();
-            short percentFmt = wb.createDataFormat().getFormat("0.00");
-            percentStyle.setDataFormat(percentFmt);
-
-            CellStyle emissionsStyle = wb.createCellStyle();
-            short emissionsFmt = wb.createDataFormat().getFormat("0.000000");
-            emissionsStyle.setDataFormat(emissionsFmt);
-
-            Row out = target.createRow(outRow++);
-            int col = 0;
-            out.createCell(col++).setCellValue(idCounter++);
-            out.createCell(col++).setCellValue(centerName);
-            // sociedad emisora: use emission entity column (no marketer resolution for gas)
-            String sociedadEmisora = getCellStringByIndex(srcRow, mapping.getEmissionEntityIndex(), df, eval);
-            out.createCell(col++).setCellValue(sociedadEmisora);
-            out.createCell(col++).setCellValue(cups);
-            out.createCell(col++).setCellValue(factura);
-
-            // Fecha inicio (as date cell)
-            Cell startCell = out.createCell(col++);
-            try {
-                if (parsedStart != null) {
-                    startCell.setCellValue(Date.valueOf(parsedStart));
-                    startCell.setCellStyle(dateStyle);
-                } else {
+                if (r.cupsMatched != null)
+                    metrics.lookup(ExportMetrics.LOOKUP_CUPS, r.cupsMatched);
+                int centersCount = r.centersCount;
+                double consumoPorCentro = r.consumoPorCentro;
+                double porcentajePorCentro = centersCount > 0 ? (100.0 / (double) centersCount) : 100.0;
+                // Allow negative consumption (rectified invoices). Only avoid division by
+                // zero when computing the percentage for the reporting year.
+                double porcentajeAplicableAno = consumo != 0 ? ((consumoAplicable / consumo) * 100.0) : 0.0;
+                double emisionesT = r.emisionesT;
+
+                double[] agg = perCenterAgg.get(centerName);
+                if (agg == null) {
+                    // now only store consumo and single emisiones (market/scope1)
+                    agg = new double[2];
+                    perCenterAgg.put(centerName, agg);
+                }
+                agg[0] += consumoPorCentro;
+                agg[1] += emisionesT;
+
+                if (cube != null || monthly != null) {
+                    // Same day-overlap proration as consumoAplicable, split per month
+                    PeriodProration.splitInto(parsedStart, parsedEnd,
+                            centersCount > 0 ? consumo / (double) centersCount : consumo, reportingYear, months);
+                    if (monthly != null)
+                        monthly.add(centerName, months, 1.0, factor / 1000.0);
+                    if (cube != null)
+                        CenterAttributes.addMonthly(cube,
+                                attributes.members(EnergyType.GAS.id(), "1", centerName, null, cups, null),
+                                reportingYear, months, factor / 1000.0, factor / 1000.0);
+                }
+
+                // Prepare some cell styles (date, percentage, emissions number formats)
+                Workbook wb = target.getWorkbook();
+                CellStyle dateStyle = wb.createCellStyle();
+                short dateFmt = wb.createDataFormat().getFormat("dd/MM/yyyy");
+                dateStyle.setDataFormat(dateFmt);
+
+                CellStyle percentStyle = wb.createCellStyle();
+                short percentFmt = wb.createDataFormat().getFormat("0.00");
+                percentStyle.setDataFormat(percentFmt);
+
+                CellStyle emissionsStyle = wb.createCellStyle();
+                short emissionsFmt = wb.createDataFormat().getFormat("0.000000");
+                emissionsStyle.setDataFormat(emissionsFmt);
+
+                Row out = target.createRow(outRow++);
+                metrics.rowWritten();
+                int col = 0;
+                out.createCell(col++).setCellValue(idCounter++);
+                out.createCell(col++).setCellValue(centerName);
+                // sociedad emisora: use emission entity column (no marketer resolution for gas)
+                String sociedadEmisora = getCellStringByIndex(srcRow, mapping.getEmissionEntityIndex(), df, eval);
+                out.createCell(col++).setCellValue(sociedadEmisora);
+                out.createCell(col++).setCellValue(cups);
+                out.createCell(col++).setCellValue(factura);
+
+                // Fecha inicio (as date cell)
+                Cell startCell = out.createCell(col++);
+                try {
+                    if (parsedStart != null) {
+                        startCell.setCellValue(Date.valueOf(parsedStart));
+                        startCell.setCellStyle(dateStyle);
+                    } else {
+                        startCell.setCellValue(fechaInicio != null ? fechaInicio : "");
+                    }
+                } catch (Exception ex) {
                     startCell.setCellValue(fechaInicio != null ? fechaInicio : "");
                 }
-            } catch (Exception ex) {
-                startCell.setCellValue(fechaInicio != null ? fechaInicio : "");
-            }
 
-            // Fecha fin (as date cell)
-            Cell endCell = out.createCell(col++);
-            try {
-                if (parsedEnd != null) {
-                    endCell.setCellValue(Date.valueOf(parsedEnd));
-                    endCell.setCellStyle(dateStyle);
-                } else {
+                // Fecha fin (as date cell)
+                Cell endCell = out.createCell(col++);
+                try {
+                    if (parsedEnd != null) {
+                        endCell.setCellValue(Date.valueOf(parsedEnd));
+                        endCell.setCellStyle(dateStyle);
+                    } else {
+                        endCell.setCellValue(fechaFin != null ? fechaFin : "");
+                    }
+                } catch (Exception ex) {
                     endCell.setCellValue(fechaFin != null ? fechaFin : "");
                 }
-            } catch (Exception ex) {
-                endCell.setCellValue(fechaFin != null ? fechaFin : "");
-            }
-
-            // Numeric values: consumo, pct aplicable ano, consumo aplicable, pct por
-            // centro, consumo por centro
-
-            // Numeric values: consumo
-            Cell consumoCell = out.createCell(col++);
-            consumoCell.setCellValue(consumo);
-
-            // Porcentaje consumo aplicable al año (formatted)
-            Cell pctYearCell = out.createCell(col++);
-            pctYearCell.setCellValue(porcentajeAplicableAno);
-            pctYearCell.setCellStyle(percentStyle);
-
-            // Consumo kWh aplicable por año
-            int consumoKwhColIndex = 7; // CONSUMO_KWH
-            int pctAnoColIndex = 8; // PCT_CONSUMO_APLICABLE_ANO
-            int consumoAplicColIndex = 9; // CONSUMO_APLICABLE_ANO
-            Cell consumoAplicCell = out.createCell(col++);
-            // Formula: =ConsumoKwh * (PctAplicableAno / 100)
-            try {
-                int excelRow = out.getRowNum() + 1;
-                String formula = colIndexToName(consumoKwhColIndex) + excelRow + "*(" + colIndexToName(pctAnoColIndex)
-                        + excelRow + "/100)";
-                consumoAplicCell.setCellFormula(formula);
-            } catch (Exception e) {
-                // fallback to numeric value
-                consumoAplicCell.setCellValue(consumoAplicable);
-            }
-
-            // Porcentaje consumo aplicable al centro
-            Cell pctCentroCell = out.createCell(col++);
-            pctCentroCell.setCellValue(porcentajePorCentro);
-            pctCentroCell.setCellStyle(percentStyle);
 
-            // Consumo kWh aplicable por año al centro
-            int consumoAplicCentroColIndex = 11; // CONSUMO_APLICABLE_CENTRO
-            int pctCentroColIndex = 10; // PCT_POR_CENTRO
-            Cell consumoPorCentroCell = out.createCell(col++);
-            try {
-                int excelRow = out.getRowNum() + 1;
-                // Formula: =ConsumoAplicableAno * (PctPorCentro / 100)
-                String formulaCentro = colIndexToName(consumoAplicColIndex) + excelRow + "*("
-                        + colIndexToName(pctCentroColIndex) + excelRow + "/100)";
-                consumoPorCentroCell.setCellFormula(formulaCentro);
-            } catch (Exception e) {
-                consumoPorCentroCell.setCellValue(consumoPorCentro);
-            }
+                // Numeric values: consumo, pct aplicable ano, consumo aplicable, pct por
+                // centro, consumo por centro
+
+                // Numeric values: consumo
+                Cell consumoCell = out.createCell(col++);
+                consumoCell.setCellValue(consumo);
+
+                // Porcentaje consumo aplicable al año (formatted)
+                Cell pctYearCell = out.createCell(col++);
+                pctYearCell.setCellValue(porcentajeAplicableAno);
+                pctYearCell.setCellStyle(percentStyle);
+
+                // Consumo kWh aplicable por año
+                int consumoKwhColIndex = 7; // CONSUMO_KWH
+                int pctAnoColIndex = 8; // PCT_CONSUMO_APLICABLE_ANO
+                int consumoAplicColIndex = 9; // CONSUMO_APLICABLE_ANO
+                Cell consumoAplicCell = out.createCell(col++);
+                // Formula: =ConsumoKwh * (PctAplicableAno / 100)
+                try {
+                    int excelRow = out.getRowNum() + 1;
+                    String formula = colIndexToName(consumoKwhColIndex) + excelRow + "*(" + colIndexToName(pctAnoColIndex)
+                            + excelRow + "/100)";
+                    consumoAplicCell.setCellFormula(formula);
+                } catch (Exception e) {
+                    // fallback to numeric value
+                    consumoAplicCell.setCellValue(consumoAplicable);
+                }
 
-            // emissions (single, scope 1) with formatting
-            // We'll write one formula column that references the corresponding factor
-            // column. The factor column is the last column in the detailed headers.
-            int factorColIndex = DETAILED_HEADERS.length - 1;
+                // Porcentaje consumo aplicable al centro
+                Cell pctCentroCell = out.createCell(col++);
+                pctCentroCell.setCellValue(porcentajePorCentro);
+                pctCentroCell.setCellStyle(percentStyle);
+
+                // Consumo kWh aplicable por año al centro
+                int consumoAplicCentroColIndex = 11; // CONSUMO_APLICABLE_CENTRO
+                int pctCentroColIndex = 10; // PCT_POR_CENTRO
+                Cell consumoPorCentroCell = out.createCell(col++);
+                try {
+                    int excelRow = out.getRowNum() + 1;
+                    // Formula: =ConsumoAplicableAno * (PctPorCentro / 100)
+                    String formulaCentro = colIndexToName(consumoAplicColIndex) + excelRow + "*("
+                            + colIndexToName(pctCentroColIndex) + excelRow + "/100)";
+                    consumoPorCentroCell.setCellFormula(formulaCentro);
+                } catch (Exception e) {
+                    consumoPorCentroCell.setCellValue(consumoPorCentro);
+                }
 
-            Cell emissionsCell = out.createCell(col++);
-            try {
-                int excelRow = out.getRowNum() + 1;
-                String emissionsFormula = buildMultiplyFormula(consumoAplicCentroColIndex, factorColIndex,
-                        excelRow);
-                emissionsCell.setCellFormula(emissionsFormula);
-                emissionsCell.setCellStyle(emissionsStyle);
-            } catch (Exception e) {
-                emissionsCell.setCellValue(emisionesT);
-                emissionsCell.setCellStyle(emissionsStyle);
-            }
+                // emissions (single, scope 1) with formatting
+                // We'll write one formula column that references the corresponding factor
+                // column. The factor column is the last column in the detailed headers.
+                int factorColIndex = DETAILED_HEADERS.length - 1;
+
+                Cell emissionsCell = out.createCell(col++);
+                try {
+                    int excelRow = out.getRowNum() + 1;
+                    String emissionsFormula = buildMultiplyFormula(consumoAplicCentroColIndex, factorColIndex,
+                            excelRow);
+                    emissionsCell.setCellFormula(emissionsFormula);
+                    emissionsCell.setCellStyle(emissionsStyle);
+                } catch (Exception e) {
+                    emissionsCell.setCellValue(emisionesT);
+                    emissionsCell.setCellStyle(emissionsStyle);
+                }
 
-            // Append the normalized gas type and the single factor value
-            out.createCell(col++).setCellValue(gasTypeNormalized == null ? "" : gasTypeNormalized);
-            double marketFactorValue = 0.0;
-            if (gasTypeToFactor != null && gasTypeToFactor.containsKey(gasTypeNormalized)) {
-                GasFactorEntry gfe = gasTypeToFactor.get(gasTypeNormalized);
-                marketFactorValue = gfe.getMarketFactor();
+                // Append the normalized gas type and the single factor value
+                out.createCell(col++).setCellValue(gasTypeNormalized == null ? "" : gasTypeNormalized);
+                out.createCell(col++).setCellValue(factor);
             }
-            out.createCell(col++).setCellValue(marketFactorValue);
+            metrics.end();
         }
         diagnostics.add(String.format("Processed %d centers in aggregates", perCenterAgg.size()));
         // write diagnostics sheet
@@ -459,7 +723,9 @@ public class GasExcelExporter {
                 Row r = diag.createRow(rr++);
                 r.createCell(0).setCellValue(msg);
             }
+            metrics.begin(ExportMetrics.PHASE_AUTOSIZE);
             diag.autoSizeColumn(0);
+            metrics.end();
         } catch (Exception e) {
             // ignore diagnostics write errors
         }
@@ -473,9 +739,11 @@ public class GasExcelExporter {
      * @param headerStyle optional header style to apply
      * @param aggregates  map keyed by center name -> [consumption, emissions]
      * @param spanish     resource bundle to localize column headers
+     * @param columns     detailed-sheet columns summed per center, from
+     *                    {@link #perCenterColumns(Sheet, ResourceBundle)}
      */
     private static void createPerCenterSheet(Sheet sheet, CellStyle headerStyle, Map<String, double[]> aggregates,
-            ResourceBundle spanish, String detailedName) {
+            ResourceBundle spanish, String detailedName, String[] columns) {
         // Header
         Row header = sheet.createRow(0);
         header.createCell(0).setCellValue(
@@ -501,20 +769,8 @@ public class GasExcelExporter {
         emissionsStyle.setDataFormat(wb.createDataFormat().getFormat("0.000000"));
 
         int r = 1;
-        // Attempt to resolve the detailed sheet column letters by matching localized
-        // header labels; fall back to hard-coded letters when resolution fails.
-        Sheet detailedSheet = sheet.getWorkbook().getSheet(detailedName);
-        String detailedConsumoCol = ExporterUtils.findColumnLetterByLabel(detailedSheet,
-                spanish.getString(DetailedHeader.CONSUMO_APLICABLE_CENTRO.key()));
-        // emissions label: prefer a gas-specific override if present in messages
-        String emissionsLabel = spanish.containsKey("gas.detailed.emissions")
-                ? spanish.getString("gas.detailed.emissions")
-                : spanish.getString(DetailedHeader.EMISIONES_MARKET.key());
-        String detailedEmissionsCol = ExporterUtils.findColumnLetterByLabel(detailedSheet, emissionsLabel);
-        if (detailedConsumoCol == null)
-            detailedConsumoCol = "L";
-        if (detailedEmissionsCol == null)
-            detailedEmissionsCol = "M";
+        String detailedConsumoCol = columns[0];
+        String detailedEmissionsCol = columns[1];
 
         if (aggregates == null || aggregates.isEmpty()) {
             // Produce an empty row to make it clear the sheet contains no aggregates
@@ -539,6 +795,7 @@ public class GasExcelExporter {
                         "IFERROR(SUMIF('%s'!$B:$B,$A%d,'%s'!$%s:$%s),0)",
                         detailedName, excelRow, detailedName, detailedConsumoCol, detailedConsumoCol);
                 cCons.setCellFormula(consumoFormula);
+                cCons.setCellValue(e.getValue()[0]);
                 cCons.setCellStyle(numberStyle);
 
                 // C: Emisiones (tCO2e) as SUMIF over detailed sheet (emissions column)
@@ -547,6 +804,7 @@ public class GasExcelExporter {
                         "IFERROR(SUMIF('%s'!$B:$B,$A%d,'%s'!$%s:$%s),0)",
                         detailedName, excelRow, detailedName, detailedEmissionsCol, detailedEmissionsCol);
                 cEm.setCellFormula(emisFormula);
+                cEm.setCellValue(e.getValue()[1]);
                 cEm.setCellStyle(emissionsStyle);
             }
         }
@@ -556,6 +814,24 @@ public class GasExcelExporter {
             sheet.autoSizeColumn(i);
     }
 
+    /**
+     * Detailed-sheet column letters summed by the per-center sheet
+     * (consumption, emissions). They are resolved by matching the localized
+     * header labels of the detailed sheet; hard-coded letters are used when
+     * resolution fails.
+     */
+    private static String[] perCenterColumns(Sheet detailedSheet, ResourceBundle spanish) {
+        String detailedConsumoCol = ExporterUtils.findColumnLetterByLabel(detailedSheet,
+                spanish.getString(DetailedHeader.CONSUMO_APLICABLE_CENTRO.key()));
+        // emissions label: prefer a gas-specific override if present in messages
+        String emissionsLabel = spanish.containsKey("gas.detailed.emissions")
+                ? spanish.getString("gas.detailed.emissions")
+                : spanish.getString(DetailedHeader.EMISIONES_MARKET.key());
+        String detailedEmissionsCol = ExporterUtils.findColumnLetterByLabel(detailedSheet, emissionsLabel);
+        return new String[] { detailedConsumoCol != null ? detailedConsumoCol : "L",
+                detailedEmissionsCol != null ? detailedEmissionsCol : "M" };
+    }
+
     private static void createTotalSheet(Sheet sheet, CellStyle headerStyle, ResourceBundle spanish) {
         Row headerRow = sheet.createRow(0);
         for (int i = 0; i < TOTAL_HEADERS.length; i++) {
@@ -739,26 +1015,6 @@ public class GasExcelExporter {
         return null;
     }
 
-    private static int readCurrentYearFromFile() {
-        try {
-            Path p = Paths.get("data/year/current_year.txt");
-            if (Files.exists(p)) {
-                List<String> lines = Files.readAllLines(p);
-                if (lines != null && !lines.isEmpty()) {
-                    String s = lines.get(0).trim();
-                    if (!s.isEmpty()) {
-                        try {
-                            return Integer.parseInt(s);
-                        } catch (NumberFormatException ignored) {
-                        }
-                    }
-                }
-            }
-        } catch (Exception ignored) {
-        }
-        return LocalDate.now().getYear();
-    }
-
     // normalizeKey removed - not needed for gas-type based calculations
 
     private static CellStyle createHeaderStyle(Workbook workbook) {
@@ -795,10 +1051,10 @@ public class GasExcelExporter {
      * -> entry).
      * Returns an empty map on any error to keep exporter resilient.
      */
-    private static Map<String, GasFactorEntry> loadGasFactorsForYear(int year) {
+    static Map<String, GasFactorEntry> loadGasFactorsForYear(DataRoot data, int year) {
         Map<String, GasFactorEntry> out = new HashMap<>();
         try {
-            GasFactorServiceCsv svc = new GasFactorServiceCsv();
+            GasFactorService svc = data.gasFactors();
             List<GasFactorEntry> entries = svc.loadGasFactors(year);
             for (GasFactorEntry e : entries) {
                 if (e == null)
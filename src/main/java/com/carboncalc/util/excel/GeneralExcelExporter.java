@@ -1,15 +1,15 @@
 package com.carboncalc.util.excel;
 
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellReference;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.util.Locale;
 import java.util.ResourceBundle;
 import com.carboncalc.util.ExcelCsvLoader;
+import com.carboncalc.util.WorkbookLoader;
 
 /**
  * GeneralExcelExporter
@@ -352,18 +352,21 @@ public class GeneralExcelExporter {
      * This method builds the two primary Spanish-labelled sheets used by
      * the application UI: "Resultados generales" (per-center summary with
      * formulas) and "Resultados por alcance" (scope view that references the
-     * summary). Optionally, original module sheets are copied into the
-     * workbook (the caller toggles this with {@code includeModuleSheets}).
-     * The method writes a diagnostics sheet to aid debugging column detection
-     * and sheet-name mismatches.
+     * summary). Module sheets are copied into the workbook and each module's
+     * per-center sheet is hash-joined on the center name once (see
+     * {@link ConsolidatedCenterMatrix}); summary cells then hold a direct
+     * reference to the joined source cell together with its cached value
+     * instead of a full-column VLOOKUP. The method writes a diagnostics sheet
+     * to aid debugging column detection and sheet-name mismatches.
      *
      * @param outPath             output XLSX path
      * @param electricityFile     electricity module file (optional)
      * @param gasFile             gas module file (optional)
      * @param fuelFile            fuel module file (optional)
      * @param refrigerantFile     refrigerants module file (optional)
-     * @param includeModuleSheets when true, copy the original module sheets
-     *                            into the resulting workbook (recommended)
+     * @param includeModuleSheets recorded in the diagnostics sheet; module
+     *                            sheets are always copied so the summary can
+     *                            reference them
      * @throws Exception on IO or POI errors
      */
     public static void exportResultsReport(String outPath, File electricityFile, File gasFile, File fuelFile,
@@ -411,68 +414,34 @@ public class GeneralExcelExporter {
             Sheet diagnostics = outWb.createSheet(diagnosticsName);
             // We'll populate its header/data after we build the summary data below.
 
-            // Copy module sheets (optionally) using " - " separator as requested.
-            // Copying them now ensures their per-center sheets exist in the workbook
-            // so the summary formulas can reference them directly.
-            if (includeModuleSheets) {
-                copyModuleSheetsWithDash(outWb, electricityFile, spanish.getString("module.electricity"));
-                copyModuleSheetsWithDash(outWb, gasFile, spanish.getString("module.gas"));
-                copyModuleSheetsWithDash(outWb, fuelFile, spanish.getString("module.fuel"));
-                copyModuleSheetsWithDash(outWb, refrigerantFile, spanish.getString("module.refrigerants"));
-            }
+            // Copy module sheets using the " - " separator before building the
+            // summary so the consolidated values can reference the copied
+            // per-center cells directly. The copied sheets are appended after the
+            // three report sheets created above, so the resulting sheet order is
+            // the same whether or not the caller asked for them up front.
+            copyModuleSheetsWithDash(outWb, electricityFile, spanish.getString("module.electricity"));
+            copyModuleSheetsWithDash(outWb, gasFile, spanish.getString("module.gas"));
+            copyModuleSheetsWithDash(outWb, fuelFile, spanish.getString("module.fuel"));
+            copyModuleSheetsWithDash(outWb, refrigerantFile, spanish.getString("module.refrigerants"));
 
-            // Determine per-center sheet names (using dash separator)
             String perCenterSuffix = spanish.containsKey("result.sheet.per_center")
                     ? spanish.getString("result.sheet.per_center")
                     : "Por centro";
-            String elPorCentro = spanish.getString("module.electricity") + " - " + perCenterSuffix;
-            String gasPorCentro = spanish.getString("module.gas") + " - " + perCenterSuffix;
-            String fuelPorCentro = spanish.getString("module.fuel") + " - " + perCenterSuffix;
-            String refPorCentro = spanish.getString("module.refrigerants") + " - " + perCenterSuffix;
-
-            // Build set of centers by scanning module files (prefer electricity order)
-            java.util.LinkedHashSet<String> centers = new java.util.LinkedHashSet<>();
-            DataFormatter df = new DataFormatter();
-
-            // Helper to add centers from a workbook sheet if available
-            java.util.function.Consumer<Sheet> addCentersFrom = sh -> {
-                if (sh == null)
-                    return;
-                for (int r = Math.max(1, sh.getFirstRowNum()); r <= sh.getLastRowNum(); r++) {
-                    Row rr = sh.getRow(r);
-                    if (rr == null)
-                        continue;
-                    Cell cc = rr.getCell(0);
-                    if (cc == null)
-                        continue;
-                    String name = df.formatCellValue(cc).trim();
-                    if (!name.isEmpty())
-                        centers.add(name);
-                }
-            };
 
             // Load per-center sheets, resolving naming variations between module
             // exporters (which often name the sheet simply "Por centro") and the
             // combined exporter (which copies sheets as "<Module> - Por centro").
             Sheet elSheet = resolvePerCenterSheet(outWb, electricityFile, spanish.getString("module.electricity"),
                     perCenterSuffix, includeModuleSheets);
-            if (elSheet != null)
-                addCentersFrom.accept(elSheet);
-            addCentersFrom.accept(resolvePerCenterSheet(outWb, gasFile, spanish.getString("module.gas"),
-                    perCenterSuffix, includeModuleSheets));
-            addCentersFrom.accept(resolvePerCenterSheet(outWb, fuelFile, spanish.getString("module.fuel"),
-                    perCenterSuffix, includeModuleSheets));
-            addCentersFrom.accept(resolvePerCenterSheet(outWb, refrigerantFile,
-                    spanish.getString("module.refrigerants"), perCenterSuffix, includeModuleSheets));
-
-            // Build summary rows with formulas referencing per-center sheets
-            int rowIndex = 1;
-            CellStyle numStyle = outWb.createCellStyle();
-            DataFormat dataFmt = outWb.createDataFormat();
-            numStyle.setDataFormat(dataFmt.getFormat("#,##0.00"));
+            Sheet gasSheet = resolvePerCenterSheet(outWb, gasFile, spanish.getString("module.gas"), perCenterSuffix,
+                    includeModuleSheets);
+            Sheet fuelSheet = resolvePerCenterSheet(outWb, fuelFile, spanish.getString("module.fuel"), perCenterSuffix,
+                    includeModuleSheets);
+            Sheet refSheet = resolvePerCenterSheet(outWb, refrigerantFile, spanish.getString("module.refrigerants"),
+                    perCenterSuffix, includeModuleSheets);
 
             // Determine column indices for each metric by inspecting per-center sheet
-            // headers
+            // headers (1-based, as recorded in the diagnostics sheet)
             int elMarketCol = findColumnIndexByKeywords(elSheet, new String[] { "market" });
             if (elMarketCol <= 0)
                 elMarketCol = 3; // fallback
@@ -480,14 +449,6 @@ public class GeneralExcelExporter {
             if (elLocationCol <= 0)
                 elLocationCol = 4;
 
-            // For other modules prefer to inspect the resolved sheet we loaded above
-            Sheet gasSheet = resolvePerCenterSheet(outWb, gasFile, spanish.getString("module.gas"), perCenterSuffix,
-                    includeModuleSheets);
-            Sheet fuelSheet = resolvePerCenterSheet(outWb, fuelFile, spanish.getString("module.fuel"), perCenterSuffix,
-                    includeModuleSheets);
-            Sheet refSheet = resolvePerCenterSheet(outWb, refrigerantFile, spanish.getString("module.refrigerants"),
-                    perCenterSuffix, includeModuleSheets);
-
             int gasCol = findColumnIndexByKeywords(gasSheet, new String[] { "emisiones", "gas" });
             if (gasCol <= 0)
                 gasCol = 3;
@@ -500,75 +461,72 @@ public class GeneralExcelExporter {
             if (refCol <= 0)
                 refCol = 3;
 
-            for (String center : centers) {
-                Row r = generales.createRow(rowIndex);
-                r.createCell(0).setCellValue(center);
+            // Hash-join every per-center sheet on the center name in a single pass
+            // each. Electricity is joined first so its center order is preserved.
+            ConsolidatedCenterMatrix matrix = new ConsolidatedCenterMatrix();
+            int elRows = matrix.join(ConsolidatedCenterMatrix.EL_MARKET, elSheet, elMarketCol - 1,
+                    referenceableName(outWb, elSheet));
+            matrix.join(ConsolidatedCenterMatrix.EL_LOCATION, elSheet, elLocationCol - 1,
+                    referenceableName(outWb, elSheet));
+            int gasRows = matrix.join(ConsolidatedCenterMatrix.GAS, gasSheet, gasCol - 1,
+                    referenceableName(outWb, gasSheet));
+            int fuelRows = matrix.join(ConsolidatedCenterMatrix.FUEL, fuelSheet, fuelCol - 1,
+                    referenceableName(outWb, fuelSheet));
+            int refRows = matrix.join(ConsolidatedCenterMatrix.REFRIGERANT, refSheet, refCol - 1,
+                    referenceableName(outWb, refSheet));
+            java.util.List<String> centers = matrix.getCenters();
 
-                String elRef = "'" + elPorCentro + "'";
-                String gasRef = "'" + gasPorCentro + "'";
-                String fuelRef = "'" + fuelPorCentro + "'";
-                String refRef = "'" + refPorCentro + "'";
+            CellStyle numStyle = outWb.createCellStyle();
+            DataFormat dataFmt = outWb.createDataFormat();
+            numStyle.setDataFormat(dataFmt.getFormat("#,##0.00"));
 
+            // Build summary rows. Module columns (B..F) hold a direct reference to
+            // the joined per-center cell plus its cached value; derived columns
+            // (G..K) are same-row arithmetic. Nothing scans a full column.
+            int rowIndex = 1;
+            for (int ci = 0; ci < matrix.size(); ci++) {
+                Row r = generales.createRow(rowIndex);
+                r.createCell(0).setCellValue(centers.get(ci));
                 int excelRow = rowIndex + 1;
 
-                // B: Electricity Market-based (detected column)
-                // If the vlookup returns an empty string, coerce to 0; also wrap in
-                // IFERROR to handle missing sheets or other errors.
-                Cell b = r.createCell(1);
-                String vB = String.format("VLOOKUP($A%d,%s!$A:$Z,%d,FALSE)", excelRow, elRef, elMarketCol);
-                String vb = String.format("IFERROR(IF(%s=\"\",0,%s),0)", vB, vB);
-                b.setCellFormula(vb);
-                b.setCellStyle(numStyle);
-
-                // C: Electricity Location-based (detected column)
-                Cell c = r.createCell(2);
-                String vC = String.format("VLOOKUP($A%d,%s!$A:$Z,%d,FALSE)", excelRow, elRef, elLocationCol);
-                String vc = String.format("IFERROR(IF(%s=\"\",0,%s),0)", vC, vC);
-                c.setCellFormula(vc);
-                c.setCellStyle(numStyle);
-
-                // D: Gas (detected column)
-                Cell d = r.createCell(3);
-                String vd = String.format("IFERROR(VLOOKUP($A%d,%s!$A:$Z,%d,FALSE),0)", excelRow, gasRef, gasCol);
-                d.setCellFormula(vd);
-                d.setCellStyle(numStyle);
-
-                // E: Combustibles (detected column)
-                Cell e = r.createCell(4);
-                String ve = String.format("IFERROR(VLOOKUP($A%d,%s!$A:$Z,%d,FALSE),0)", excelRow, fuelRef, fuelCol);
-                e.setCellFormula(ve);
-                e.setCellStyle(numStyle);
-
-                // F: Refrigerantes (detected column)
-                Cell f = r.createCell(5);
-                String vf = String.format("IFERROR(VLOOKUP($A%d,%s!$A:$Z,%d,FALSE),0)", excelRow, refRef, refCol);
-                f.setCellFormula(vf);
-                f.setCellStyle(numStyle);
+                // B..F: Electricity market/location, Gas, Combustibles, Refrigerantes
+                for (int metric = 0; metric < ConsolidatedCenterMatrix.SOURCE_METRICS; metric++) {
+                    Cell mc = r.createCell(1 + metric);
+                    String ref = matrix.getSourceRef(ci, metric);
+                    if (ref != null)
+                        mc.setCellFormula(ref);
+                    mc.setCellValue(matrix.get(ci, metric));
+                    mc.setCellStyle(numStyle);
+                }
 
                 // G: Alcance 1 = sum of D, E and F (columns Gas, Combustibles, Refrigerantes)
                 Cell g = r.createCell(6);
-                // use SUM to add columns D..F for this excel row
                 g.setCellFormula(String.format("SUM(D%d:F%d)", excelRow, excelRow));
+                g.setCellValue(matrix.scope1(ci));
                 g.setCellStyle(numStyle);
 
                 // H: Alcance 2 (Market) = value from column B (Electricity Market-based)
                 Cell h = r.createCell(7);
                 h.setCellFormula(String.format("B%d", excelRow));
+                h.setCellValue(matrix.scope2Market(ci));
                 h.setCellStyle(numStyle);
 
                 // I: Alcance 2 (Location) = Cn
                 Cell i = r.createCell(8);
                 i.setCellFormula(String.format("C%d", excelRow));
+                i.setCellValue(matrix.scope2Location(ci));
                 i.setCellStyle(numStyle);
 
                 // J: Total (Market) = Gn + Hn
                 Cell j = r.createCell(9);
                 j.setCellFormula(String.format("G%d+H%d", excelRow, excelRow));
+                j.setCellValue(matrix.totalMarket(ci));
                 j.setCellStyle(numStyle);
 
                 // K: Total (Location) = Gn + In
                 Cell k = r.createCell(10);
                 k.setCellFormula(String.format("G%d+I%d", excelRow, excelRow));
+                k.setCellValue(matrix.totalLocation(ci));
                 k.setCellStyle(numStyle);
 
                 rowIndex++;
@@ -594,22 +552,18 @@ public class GeneralExcelExporter {
                 }
                 totalLabelCell.setCellStyle(boldTextStyle);
 
-                java.util.function.IntFunction<String> colLetter = idx -> String.valueOf((char) ('A' + idx));
                 int firstDataExcelRow = 2;
                 int lastDataExcelRow = rowIndex;
                 for (int col = 1; col < headers.length; col++) {
-                    String letter = colLetter.apply(col);
+                    String letter = getExcelColumnLetter(col);
                     String range = String.format("%s%d:%s%d", letter, firstDataExcelRow, letter, lastDataExcelRow);
                     Cell tc = totalRow.createCell(col);
                     tc.setCellFormula(String.format("SUM(%s)", range));
+                    tc.setCellValue(sumCachedColumn(generales, col, 1, rowIndex - 1));
                     tc.setCellStyle(boldNumStyle);
                 }
             }
 
-            // We'll apply a consistent bold+gray header style to both the summary
-            // and the "Resultados por alcance" sheets after their header rows are
-            // created below so the 'Centro' column is included reliably.
-
             // Populate the "Resultados por alcance" with per-center rows using
             // values from the previously-built "Resultados generales" sheet.
             Row ach = alcance.createRow(0);
@@ -647,35 +601,23 @@ public class GeneralExcelExporter {
             } catch (Exception ignored) {
             }
 
-            // For each center, lookup the corresponding values from the generales
-            // sheet using VLOOKUP on the center name. The columns in 'generales'
-            // are: A=1 Centro, G=7 Alcance1, H=8 Alcance2.market, I=9 Alcance2.location,
-            // J=10 Total (Market).
+            // Both sheets list the centers in the same order, so each scope cell
+            // is a same-row reference into 'generales': G=Alcance1,
+            // H=Alcance2.market, I=Alcance2.location, J=Total market,
+            // K=Total location.
+            int[] generalesCols = new int[] { 6, 7, 8, 9, 10 };
             int alcRow = 1;
-            for (String center : centers) {
+            for (int ci = 0; ci < matrix.size(); ci++) {
                 Row rr = alcance.createRow(alcRow);
-                rr.createCell(0).setCellValue(center);
-                // int excelRowForLookup = alcRow + 1; // not used directly by VLOOKUP here
-                // Alcance1 from generales column G (index 7)
-                rr.createCell(1).setCellFormula(
-                        String.format("IFERROR(VLOOKUP($A%d,'%s'!$A:$K,7,FALSE),0)", alcRow + 1, generalesName));
-                rr.getCell(1).setCellStyle(numStyle);
-                // Alcance2 market from generales column H (8)
-                rr.createCell(2).setCellFormula(
-                        String.format("IFERROR(VLOOKUP($A%d,'%s'!$A:$K,8,FALSE),0)", alcRow + 1, generalesName));
-                rr.getCell(2).setCellStyle(numStyle);
-                // Alcance2 location from generales column I (9)
-                rr.createCell(3).setCellFormula(
-                        String.format("IFERROR(VLOOKUP($A%d,'%s'!$A:$K,9,FALSE),0)", alcRow + 1, generalesName));
-                rr.getCell(3).setCellStyle(numStyle);
-                // Total Market-based from generales column J (10)
-                rr.createCell(4).setCellFormula(
-                        String.format("IFERROR(VLOOKUP($A%d,'%s'!$A:$K,10,FALSE),0)", alcRow + 1, generalesName));
-                rr.getCell(4).setCellStyle(numStyle);
-                // Total Location-based from generales column K (11)
-                rr.createCell(5).setCellFormula(
-                        String.format("IFERROR(VLOOKUP($A%d,'%s'!$A:$K,11,FALSE),0)", alcRow + 1, generalesName));
-                rr.getCell(5).setCellStyle(numStyle);
+                rr.createCell(0).setCellValue(centers.get(ci));
+                Row src = generales.getRow(alcRow);
+                for (int k = 0; k < generalesCols.length; k++) {
+                    Cell ac = rr.createCell(k + 1);
+                    ac.setCellFormula(
+                            new CellReference(generalesName, alcRow, generalesCols[k], false, false).formatAsString());
+                    ac.setCellValue(src.getCell(generalesCols[k]).getNumericCellValue());
+                    ac.setCellStyle(numStyle);
+                }
                 alcRow++;
             }
 
@@ -702,13 +644,14 @@ public class GeneralExcelExporter {
                     Cell tc = totalAlc.createCell(ci);
                     String col = getExcelColumnLetter(ci);
                     tc.setCellFormula(String.format("SUM(%s2:%s%d)", col, col, alcRow));
+                    tc.setCellValue(sumCachedColumn(alcance, ci, 1, alcRow - 1));
                     tc.setCellStyle(boldNumStyle);
                 }
             }
 
             // Populate diagnostics sheet with useful info: timestamp, which
             // module files were provided, centers count, and detected column
-            // indices for each module so debugging column-detection is easier.
+            // indices for each module so debugging column detection is easier.
             try {
                 int drow = 0;
                 Row r0 = diagnostics.createRow(drow++);
@@ -747,6 +690,13 @@ public class GeneralExcelExporter {
                 r8.createCell(1).setCellValue("Refrigerant col");
                 r8.createCell(2).setCellValue(refCol);
 
+                Row r9 = diagnostics.createRow(drow++);
+                r9.createCell(0).setCellValue("Per-center rows joined (electricity, gas, fuel, refrigerant)");
+                r9.createCell(1).setCellValue(elRows);
+                r9.createCell(2).setCellValue(gasRows);
+                r9.createCell(3).setCellValue(fuelRows);
+                r9.createCell(4).setCellValue(refRows);
+
                 // List sheet names present in the output workbook to aid debugging
                 drow++;
                 Row rSheetsHead = diagnostics.createRow(drow++);
@@ -756,26 +706,21 @@ public class GeneralExcelExporter {
                     rs.createCell(0).setCellValue(outWb.getSheetName(si));
                 }
 
-                // Provide sample formulas that were written for the first data row
+                // Provide the formulas that were written for the first data row
                 // (if any centers exist) so we can inspect them in diagnostics.
                 drow++;
                 Row rFormHead = diagnostics.createRow(drow++);
                 rFormHead.createCell(0).setCellValue("Sample formulas for first center row (excel row 2)");
-                int sampleRow = 2;
-                try {
-                    String elRefDiag = "'" + spanish.getString("module.electricity") + " - " + perCenterSuffix + "'";
-                    diagnostics.createRow(drow++).createCell(0).setCellValue("B (Electricity Market): VLOOKUP($A"
-                            + sampleRow + "," + elRefDiag + "!$A:$Z," + elMarketCol + ",FALSE)");
-                    diagnostics.createRow(drow++).createCell(0).setCellValue("C (Electricity Location): VLOOKUP($A"
-                            + sampleRow + "," + elRefDiag + "!$A:$Z," + elLocationCol + ",FALSE)");
-                    diagnostics.createRow(drow++).createCell(0)
-                            .setCellValue("D (Gas): VLOOKUP($A" + sampleRow + ",'" + spanish.getString("module.gas")
-                                    + " - " + perCenterSuffix + "'!$A:$Z," + gasCol + ",FALSE)");
-                    diagnostics.createRow(drow++).createCell(0)
-                            .setCellValue("F (Refrigerant): VLOOKUP($A" + sampleRow + ",'"
-                                    + spanish.getString("module.refrigerants") + " - " + perCenterSuffix + "'!$A:$Z,"
-                                    + refCol + ",FALSE)");
-                } catch (Exception ignored) {
+                Row first = generales.getRow(1);
+                if (first != null && matrix.size() > 0) {
+                    String[] labels = new String[] { "B (Electricity Market)", "C (Electricity Location)", "D (Gas)",
+                            "E (Fuel)", "F (Refrigerant)" };
+                    for (int k = 0; k < labels.length; k++) {
+                        Cell fc = first.getCell(1 + k);
+                        String text = (fc != null && fc.getCellType() == CellType.FORMULA) ? fc.getCellFormula()
+                                : "(no source row)";
+                        diagnostics.createRow(drow++).createCell(0).setCellValue(labels[k] + ": " + text);
+                    }
                 }
 
                 // Dump the list of centers (one per row) so you can inspect
@@ -799,21 +744,44 @@ public class GeneralExcelExporter {
             } catch (Exception ignored) {
             }
 
-            // If module sheets were not included earlier, copy them now (so they appear
-            // after)
-            if (!includeModuleSheets) {
-                copyModuleSheetsWithDash(outWb, electricityFile, spanish.getString("module.electricity"));
-                copyModuleSheetsWithDash(outWb, gasFile, spanish.getString("module.gas"));
-                copyModuleSheetsWithDash(outWb, fuelFile, spanish.getString("module.fuel"));
-                copyModuleSheetsWithDash(outWb, refrigerantFile, spanish.getString("module.refrigerants"));
-            }
-
+            // Cached values are written next to every formula; ask Excel to
+            // recalculate on open anyway so edited module sheets stay in sync.
+            outWb.setForceFormulaRecalculation(true);
             try (FileOutputStream fos = new FileOutputStream(outPath)) {
                 outWb.write(fos);
             }
         }
     }
 
+    /**
+     * Return the name to use in cell references for a resolved per-center
+     * sheet, or {@code null} when the sheet was loaded from a source file and
+     * therefore cannot be referenced from the output workbook.
+     */
+    private static String referenceableName(Workbook outWb, Sheet sheet) {
+        if (sheet == null || sheet.getWorkbook() != outWb)
+            return null;
+        return sheet.getSheetName();
+    }
+
+    /**
+     * Sum the cached numeric values of one column over an inclusive row range.
+     * Used to write cached results next to the SUM formulas of total rows.
+     */
+    private static double sumCachedColumn(Sheet sheet, int col, int firstRow, int lastRow) {
+        double total = 0.0;
+        for (int r = firstRow; r <= lastRow; r++) {
+            Row row = sheet.getRow(r);
+            Cell c = row == null ? null : row.getCell(col);
+            if (c == null)
+                continue;
+            CellType type = c.getCellType() == CellType.FORMULA ? c.getCachedFormulaResultType() : c.getCellType();
+            if (type == CellType.NUMERIC)
+                total += c.getNumericCellValue();
+        }
+        return total;
+    }
+
     /**
      * Convert a zero-based column index into an Excel column letter (A..Z).
      *
@@ -931,13 +899,11 @@ public class GeneralExcelExporter {
     private static Sheet loadSheetFromFile(File f, String sheetName) {
         if (f == null)
             return null;
-        try (FileInputStream fis = new FileInputStream(f)) {
+        try {
             Workbook wb = null;
             String name = f.getName().toLowerCase();
-            if (name.endsWith(".xlsx"))
-                wb = new XSSFWorkbook(fis);
-            else if (name.endsWith(".xls"))
-                wb = new HSSFWorkbook(fis);
+            if (name.endsWith(".xlsx") || name.endsWith(".xls"))
+                wb = WorkbookLoader.open(f);
             else
                 wb = ExcelCsvLoader.loadCsvAsWorkbookFromPath(f.getAbsolutePath());
             if (wb == null)
@@ -971,13 +937,11 @@ public class GeneralExcelExporter {
     private static void copyModuleSheetsWithDash(Workbook outWb, File srcFile, String moduleLabel) {
         if (srcFile == null)
             return;
-        try (FileInputStream fis = new FileInputStream(srcFile)) {
+        try {
             Workbook srcWb = null;
             String name = srcFile.getName().toLowerCase();
-            if (name.endsWith(".xlsx"))
-                srcWb = new XSSFWorkbook(fis);
-            else if (name.endsWith(".xls"))
-                srcWb = new HSSFWorkbook(fis);
+            if (name.endsWith(".xlsx") || name.endsWith(".xls"))
+                srcWb = WorkbookLoader.open(srcFile);
             else {
                 srcWb = ExcelCsvLoader.loadCsvAsWorkbookFromPath(srcFile.getAbsolutePath());
             }
@@ -1050,13 +1014,11 @@ public class GeneralExcelExporter {
     private static void copyModuleSheets(Workbook outWb, File srcFile, String moduleLabel) {
         if (srcFile == null)
             return;
-        try (FileInputStream fis = new FileInputStream(srcFile)) {
+        try {
             Workbook srcWb = null;
             String name = srcFile.getName().toLowerCase();
-            if (name.endsWith(".xlsx"))
-                srcWb = new XSSFWorkbook(fis);
-            else if (name.endsWith(".xls"))
-                srcWb = new HSSFWorkbook(fis);
+            if (name.endsWith(".xlsx") || name.endsWith(".xls"))
+                srcWb = WorkbookLoader.open(srcFile);
             else {
                 // csv: attempt to load as workbook via CSV loader
                 srcWb = ExcelCsvLoader.loadCsvAsWorkbookFromPath(srcFile.getAbsolutePath());
@@ -1281,6 +1243,10 @@ public class GeneralExcelExporter {
                             break;
                         case FORMULA:
                             dc.setCellFormula(sc.getCellFormula());
+                            // keep the cached result so consumers of the copy
+                            // (e.g. the consolidated summary) need not re-evaluate
+                            if (sc.getCachedFormulaResultType() == CellType.NUMERIC)
+                                dc.setCellValue(sc.getNumericCellValue());
                             break;
                         case BLANK:
                             // leave blank
@@ -0,0 +1,241 @@
+package com.carboncalc.util.excel;
+
+import com.carboncalc.util.CellUtils;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * MappingPreview
+ *
+ * <p>
+ * Result of running a module calculation on a bounded sample of source rows,
+ * used to give live feedback while the user edits column mappings. The
+ * exporters' {@code preview(...)} methods run the sampled rows through the
+ * same per-row calculation as the export (year filter, zero amounts, factor
+ * lookup, CUPS split, invoice rules) and record per-center totals, skipped
+ * rows by reason and the keys (marketers, fuel or refrigerant types, ...)
+ * that had no factor.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>Sampled rows are spread evenly over the data rows of the sheet, so
+ * {@link #getScale()} projects the sample totals to the whole sheet.</li>
+ * <li>Per-center values are {@code [quantity, emissions tCO2e]}; quantity
+ * is kWh, litres or kg depending on the module.</li>
+ * <li>At most {@value #MAX_UNMATCHED} unmatched keys are kept.</li>
+ * <li>POI workbooks are not thread-safe, so previews computed off the EDT
+ * run on a {@link #snapshot(Sheet, int)} taken on the EDT rather than on
+ * the sheet the panel shows.</li>
+ * <li>Mutable while the preview is being computed; treat as read-only
+ * afterwards.</li>
+ * </ul>
+ * </p>
+ */
+public class MappingPreview {
+
+    /** Default number of rows sampled per preview. */
+    public static final int DEFAULT_SAMPLE_ROWS = 400;
+    /** Maximum number of distinct unmatched keys reported. */
+    public static final int MAX_UNMATCHED = 20;
+
+    /** Row dates do not touch the reporting year. */
+    public static final String SKIP_YEAR = "year";
+    /** Amount or quantity is zero. */
+    public static final String SKIP_ZERO = "zero";
+    /** Last Modified is after the date limit. */
+    public static final String SKIP_LAST_MODIFIED = "lastmodified";
+
+    private final int dataRows;
+    private int sampledRows;
+    private final Map<String, double[]> perCenter = new LinkedHashMap<>();
+    private final Map<String, Integer> skipped = new LinkedHashMap<>();
+    private final Set<String> unmatched = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    /**
+     * @param dataRows number of data rows (below the header) in the sheet
+     */
+    public MappingPreview(int dataRows) {
+        this.dataRows = Math.max(0, dataRows);
+    }
+
+    /** Count one sampled row, whether it is later included or skipped. */
+    public void sampled() {
+        sampledRows++;
+    }
+
+    /** Add an included row to the totals of {@code center}. */
+    public void include(String center, double quantity, double emissionsT) {
+        double[] agg = perCenter.get(center);
+        if (agg == null) {
+            agg = new double[2];
+            perCenter.put(center, agg);
+        }
+        agg[0] += quantity;
+        agg[1] += emissionsT;
+    }
+
+    /** Record a skipped row under {@code reason} (one of the SKIP constants). */
+    public void skip(String reason) {
+        skipped.merge(reason, 1, Integer::sum);
+    }
+
+    /** Record a key that has no factor for the reporting year. */
+    public void unmatched(String key) {
+        if (key == null || key.trim().isEmpty())
+            return;
+        if (unmatched.size() < MAX_UNMATCHED)
+            unmatched.add(key.trim());
+    }
+
+    public int getDataRows() {
+        return dataRows;
+    }
+
+    public int getSampledRows() {
+        return sampledRows;
+    }
+
+    /** @return factor projecting sampled totals to the whole sheet */
+    public double getScale() {
+        return sampledRows == 0 ? 0.0 : (double) dataRows / (double) sampledRows;
+    }
+
+    /** @return sample totals per center, {@code [quantity, emissions]} */
+    public Map<String, double[]> getPerCenter() {
+        return Collections.unmodifiableMap(perCenter);
+    }
+
+    /**
+     * @return projected per-center totals (sample totals times
+     *         {@link #getScale()}), largest emissions first
+     */
+    public List<Map.Entry<String, double[]>> getProjectedTotals() {
+        double scale = getScale();
+        List<Map.Entry<String, double[]>> out = new ArrayList<>();
+        for (Map.Entry<String, double[]> e : perCenter.entrySet()) {
+            double[] v = e.getValue();
+            out.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(),
+                    new double[] { v[0] * scale, v[1] * scale }));
+        }
+        out.sort((a, b) -> Double.compare(b.getValue()[1], a.getValue()[1]));
+        return out;
+    }
+
+    /** @return skipped sampled rows per reason, in first-seen order */
+    public Map<String, Integer> getSkipped() {
+        return Collections.unmodifiableMap(skipped);
+    }
+
+    /** @return keys without a factor, sorted case-insensitively */
+    public Set<String> getUnmatched() {
+        return Collections.unmodifiableSet(unmatched);
+    }
+
+    /**
+     * Pick up to {@code maxRows} row indices spread evenly over
+     * {@code first..last} (inclusive).
+     */
+    public static int[] sampleRows(int first, int last, int maxRows) {
+        int count = last - first + 1;
+        if (count <= 0 || maxRows <= 0)
+            return new int[0];
+        int n = Math.min(count, maxRows);
+        int[] rows = new int[n];
+        for (int k = 0; k < n; k++)
+            rows[k] = first + (int) ((long) k * count / n);
+        return rows;
+    }
+
+    /**
+     * Copy the rows a preview of {@code source} reads into a sheet of a new
+     * workbook: the header row, the rows {@link #sampleRows} picks for
+     * {@code maxRows} and the last row, so the copy has the same header
+     * index, row count and sample. Cells are copied as the strings
+     * {@link CellUtils#getCellString} reads from the source, which the
+     * exporters read back unchanged.
+     *
+     * @return the copy, or an empty sheet when {@code source} is empty
+     */
+    public static Sheet snapshot(Sheet source, int maxRows) {
+        Sheet copy = new XSSFWorkbook().createSheet();
+        DataFormatter df = new DataFormatter();
+        FormulaEvaluator eval = source.getWorkbook().getCreationHelper().createFormulaEvaluator();
+        int headerRowIndex = findHeaderRow(source, df, eval);
+        if (headerRowIndex == -1)
+            return copy;
+        int last = source.getLastRowNum();
+        copyRow(source.getRow(headerRowIndex), copy, headerRowIndex, df, eval);
+        for (int i : sampleRows(headerRowIndex + 1, last, maxRows))
+            copyRow(source.getRow(i), copy, i, df, eval);
+        if (copy.getRow(last) == null)
+            copy.createRow(last);
+        return copy;
+    }
+
+    private static void copyRow(Row src, Sheet copy, int index, DataFormatter df, FormulaEvaluator eval) {
+        if (src == null)
+            return;
+        Row dst = copy.createRow(index);
+        for (Cell c : src) {
+            String value = CellUtils.getCellString(c, df, eval);
+            if (!value.isEmpty())
+                dst.createCell(c.getColumnIndex()).setCellValue(value);
+        }
+    }
+
+    /**
+     * @return index of the first row with a non-empty cell (the header row
+     *         the exporters use), or -1 when the sheet is empty
+     */
+    public static int findHeaderRow(Sheet sheet, DataFormatter df, FormulaEvaluator eval) {
+        for (int i = sheet.getFirstRowNum(); i <= sheet.getLastRowNum(); i++) {
+            Row r = sheet.getRow(i);
+            if (r == null)
+                continue;
+            for (Cell c : r) {
+                if (!CellUtils.getCellString(c, df, eval).isEmpty())
+                    return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Resolve the Last Modified column the same way the Teams-form exporters
+     * do: a header equal to {@code preferredHeader} or one that looks like
+     * "last modified" wins; otherwise the mapped index is used.
+     *
+     * @return the column index or -1
+     */
+    public static int findLastModifiedColumn(Row header, int mappedIndex, String preferredHeader, DataFormatter df,
+            FormulaEvaluator eval) {
+        int found = mappedIndex >= 0 ? mappedIndex : -1;
+        if (header == null)
+            return found;
+        String preferred = preferredHeader != null && !preferredHeader.trim().isEmpty()
+                ? CellUtils.normalizeKey(preferredHeader)
+                : null;
+        for (int ci = 0; ci < header.getLastCellNum(); ci++) {
+            String n = CellUtils.normalizeKey(CellUtils.getCellString(header.getCell(ci), df, eval));
+            if ((preferred != null && n.equals(preferred)) || (n.contains("last") && n.contains("modif"))
+                    || n.contains("lastmodified") || n.contains("last_modified"))
+                return ci;
+        }
+        return found;
+    }
+}
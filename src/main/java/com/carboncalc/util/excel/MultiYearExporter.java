@@ -0,0 +1,339 @@
+package com.carboncalc.util.excel;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import com.carboncalc.model.ElectricityMapping;
+import com.carboncalc.model.GasMapping;
+import com.carboncalc.model.enums.EnergyType;
+import com.carboncalc.model.factors.ElectricityGeneralFactors;
+import com.carboncalc.model.factors.GasFactorEntry;
+import com.carboncalc.service.ElectricityFactorService;
+import com.carboncalc.util.AggregateCube;
+import com.carboncalc.util.CellUtils;
+import com.carboncalc.util.DateUtils;
+import com.carboncalc.util.PeriodProration;
+import com.carboncalc.util.WorkbookLoader;
+
+/**
+ * MultiYearExporter
+ *
+ * <p>
+ * Multi-year trend export for the period-based modules (electricity and
+ * gas). The provider sheet is opened and parsed once; every row is prorated
+ * by day overlap onto each reporting year its billing period touches and the
+ * factors of that year (loaded from {@code data/emission_factors/<year>/})
+ * are applied. The result is a year-partitioned set of per-center
+ * aggregates plus a "Por año" sheet, instead of one full export per year.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>Per-year figures use the same year rule
+ * ({@link PeriodProration#touchesYear}), proration, CUPS split and factor
+ * lookup as the single-year exporters, so each year matches a single-year
+ * export of it. A billing period spanning a whole calendar year contributes
+ * to that middle year in both.</li>
+ * <li>Rows with a single known date count entirely towards that date's
+ * year; rows without dates are ignored.</li>
+ * <li>Factors are loaded once per year before the pass. Missing factor files
+ * yield 0.0 factors, as in the single-year exporters.</li>
+ * <li>With {@link ExportOptions#isSummarySheets()} the aggregate cube spans
+ * all years (its month members carry the year).</li>
+ * </ul>
+ * </p>
+ */
+public final class MultiYearExporter {
+
+    private MultiYearExporter() {
+    }
+
+    /**
+     * Export an electricity trend for {@code [firstYear, lastYear]}.
+     *
+     * @return year -> center -> [consumo, emisionesMarket, emisionesLocation];
+     *         every year of the range is present (possibly empty)
+     * @throws IllegalArgumentException when the range is empty
+     */
+    public static Map<Integer, Map<String, double[]>> exportElectricityYears(String filePath, String providerPath,
+            String providerSheet, ElectricityMapping mapping, int firstYear, int lastYear, Set<String> validInvoices,
+            ExportOptions options) throws IOException {
+        int years = checkRange(firstYear, lastYear);
+        Map<Integer, Map<String, double[]>> perYear = newPerYear(firstYear, lastYear);
+        PeriodSeries series = new PeriodSeries(3, years);
+        AggregateCube cube = options != null && options.isSummarySheets() ? new AggregateCube() : null;
+
+        try (Workbook src = openProvider(providerPath)) {
+            Sheet sheet = src != null && providerSheet != null ? src.getSheet(providerSheet) : null;
+            if (sheet != null) {
+                // Per-year factors, indexed by (year - firstYear)
+                List<Map<String, Double>> marketFactors = new ArrayList<>();
+                double[] locationFactors = new double[years];
+                DataRoot data = DataRoot.of(options);
+                ElectricityFactorService gfsvc = data.electricityFactors();
+                for (int b = 0; b < years; b++) {
+                    marketFactors.add(ElectricityExcelExporter.loadMarketerToFactor(data, firstYear + b));
+                    try {
+                        ElectricityGeneralFactors gf = gfsvc.loadFactors(firstYear + b);
+                        if (gf != null)
+                            locationFactors[b] = gf.getLocationBasedFactor();
+                    } catch (Exception ex) {
+                        // ignore and use 0.0
+                    }
+                }
+                Map<String, Integer> centersPerCups = ElectricityExcelExporter.loadCentersPerCups(data);
+                Map<String, String> cupsToMarketer = ElectricityExcelExporter.loadCupsToMarketer(data);
+                CenterAttributes attributes = cube != null ? CenterAttributes.load(data) : null;
+                double[] months = new double[PeriodProration.MONTHS];
+
+                DataFormatter df = new DataFormatter();
+                FormulaEvaluator eval = src.getCreationHelper().createFormulaEvaluator();
+                int headerRowIndex = findHeaderRow(sheet, df, eval);
+                for (int i = headerRowIndex + 1; headerRowIndex >= 0 && i <= sheet.getLastRowNum(); i++) {
+                    Row row = sheet.getRow(i);
+                    if (row == null)
+                        continue;
+                    String cups = CellUtils.getCellStringByIndex(row, mapping.getCupsIndex(), df, eval).trim();
+                    String factura = CellUtils.getCellStringByIndex(row, mapping.getInvoiceNumberIndex(), df, eval);
+                    LocalDate start = DateUtils.parseDateLenient(
+                            CellUtils.getCellStringByIndex(row, mapping.getStartDateIndex(), df, eval));
+                    LocalDate end = DateUtils.parseDateLenient(
+                            CellUtils.getCellStringByIndex(row, mapping.getEndDateIndex(), df, eval));
+                    if ((start == null && end == null) || !isValidInvoice(factura, validInvoices))
+                        continue;
+                    double consumo = CellUtils.parseDoubleSafe(
+                            CellUtils.getCellStringByIndex(row, mapping.getConsumptionIndex(), df, eval));
+                    String centerName = centerName(
+                            CellUtils.getCellStringByIndex(row, mapping.getCenterIndex(), df, eval), cups, factura);
+                    int centersCount = cups.isEmpty() ? 1 : centersPerCups.getOrDefault(cups, 1);
+                    double perCenter = centersCount > 0 ? consumo / (double) centersCount : consumo;
+
+                    String marketer = cupsToMarketer.getOrDefault(cups, "");
+                    if (marketer.isEmpty())
+                        marketer = CellUtils.getCellStringByIndex(row, mapping.getEmissionEntityIndex(), df, eval);
+                    String marketerKey = CellUtils.normalizeKey(marketer);
+
+                    for (int y = firstYear; y <= lastYear; y++) {
+                        if (!PeriodProration.touchesYear(start, end, y))
+                            continue;
+                        double share = PeriodProration.splitInto(start, end, perCenter, y, months);
+                        int b = y - firstYear;
+                        double market = marketFactors.get(b).getOrDefault(marketerKey, 0.0) / 1000.0;
+                        double location = locationFactors[b] / 1000.0;
+                        series.addTo(centerName, b, share, 1.0, market, location);
+                        double[] agg = perYear.get(y).computeIfAbsent(centerName, k -> new double[3]);
+                        agg[0] += share;
+                        agg[1] += share * market;
+                        agg[2] += share * location;
+                        if (cube != null)
+                            CenterAttributes.addMonthly(cube,
+                                    attributes.members(EnergyType.ELECTRICITY.id(), "2", centerName, null, cups,
+                                            marketer),
+                                    y, months, market, location);
+                    }
+                }
+            }
+        }
+
+        writeWorkbook(filePath, "module.electricity", "Electricidad", series, firstYear, cube, true,
+                new String[] { "summary.header.consumption", "summary.header.emissions.market",
+                        "summary.header.emissions.location" });
+        return perYear;
+    }
+
+    /**
+     * Export a gas trend for {@code [firstYear, lastYear]}.
+     *
+     * @return year -> center -> [consumo, emisiones]; every year of the range
+     *         is present (possibly empty)
+     * @throws IllegalArgumentException when the range is empty
+     */
+    public static Map<Integer, Map<String, double[]>> exportGasYears(String filePath, String providerPath,
+            String providerSheet, GasMapping mapping, int firstYear, int lastYear, Set<String> validInvoices,
+            ExportOptions options) throws IOException {
+        int years = checkRange(firstYear, lastYear);
+        Map<Integer, Map<String, double[]>> perYear = newPerYear(firstYear, lastYear);
+        PeriodSeries series = new PeriodSeries(2, years);
+        AggregateCube cube = options != null && options.isSummarySheets() ? new AggregateCube() : null;
+
+        try (Workbook src = openProvider(providerPath)) {
+            Sheet sheet = src != null && providerSheet != null ? src.getSheet(providerSheet) : null;
+            if (sheet != null) {
+                // The mapping carries a fixed gas type; resolve its factor for every year
+                String gasType = mapping.getGasType() == null ? ""
+                        : mapping.getGasType().trim().toUpperCase(Locale.ROOT);
+                DataRoot data = DataRoot.of(options);
+                double[] factors = new double[years];
+                for (int b = 0; b < years; b++) {
+                    GasFactorEntry e = GasExcelExporter.loadGasFactorsForYear(data, firstYear + b).get(gasType);
+                    factors[b] = e != null ? e.getMarketFactor() : 0.0;
+                }
+                Map<String, Integer> centersPerCups = ElectricityExcelExporter.loadCentersPerCups(data);
+                CenterAttributes attributes = cube != null ? CenterAttributes.load(data) : null;
+                double[] months = new double[PeriodProration.MONTHS];
+
+                DataFormatter df = new DataFormatter();
+                FormulaEvaluator eval = src.getCreationHelper().createFormulaEvaluator();
+                int headerRowIndex = findHeaderRow(sheet, df, eval);
+                for (int i = headerRowIndex + 1; headerRowIndex >= 0 && i <= sheet.getLastRowNum(); i++) {
+                    Row row = sheet.getRow(i);
+                    if (row == null)
+                        continue;
+                    String cups = CellUtils.getCellStringByIndex(row, mapping.getCupsIndex(), df, eval).trim();
+                    String factura = CellUtils.getCellStringByIndex(row, mapping.getInvoiceNumberIndex(), df, eval);
+                    LocalDate start = DateUtils.parseDateLenient(
+                            CellUtils.getCellStringByIndex(row, mapping.getStartDateIndex(), df, eval));
+                    LocalDate end = DateUtils.parseDateLenient(
+                            CellUtils.getCellStringByIndex(row, mapping.getEndDateIndex(), df, eval));
+                    if ((start == null && end == null) || !isValidInvoice(factura, validInvoices))
+                        continue;
+                    double consumo = CellUtils.parseDoubleSafe(
+                            CellUtils.getCellStringByIndex(row, mapping.getConsumptionIndex(), df, eval));
+                    String centerName = centerName(
+                            CellUtils.getCellStringByIndex(row, mapping.getCenterIndex(), df, eval), cups, factura);
+                    int centersCount = cups.isEmpty() ? 1 : centersPerCups.getOrDefault(cups, 1);
+                    double perCenter = centersCount > 0 ? consumo / (double) centersCount : consumo;
+
+                    for (int y = firstYear; y <= lastYear; y++) {
+                        if (!PeriodProration.touchesYear(start, end, y))
+                            continue;
+                        double share = PeriodProration.splitInto(start, end, perCenter, y, months);
+                        int b = y - firstYear;
+                        double factor = factors[b] / 1000.0;
+                        series.addTo(centerName, b, share, 1.0, factor);
+                        double[] agg = perYear.get(y).computeIfAbsent(centerName, k -> new double[2]);
+                        agg[0] += share;
+                        agg[1] += share * factor;
+                        if (cube != null)
+                            CenterAttributes.addMonthly(cube,
+                                    attributes.members(EnergyType.GAS.id(), "1", centerName, null, cups, null),
+                                    y, months, factor, factor);
+                    }
+                }
+            }
+        }
+
+        writeWorkbook(filePath, "module.gas", "Gas", series, firstYear, cube, false,
+                new String[] { "summary.header.consumption", "summary.header.emissions" });
+        return perYear;
+    }
+
+    private static int checkRange(int firstYear, int lastYear) {
+        if (firstYear <= 0 || lastYear < firstYear)
+            throw new IllegalArgumentException("Invalid year range: " + firstYear + "-" + lastYear);
+        return lastYear - firstYear + 1;
+    }
+
+    private static Map<Integer, Map<String, double[]>> newPerYear(int firstYear, int lastYear) {
+        Map<Integer, Map<String, double[]>> perYear = new TreeMap<>();
+        for (int y = firstYear; y <= lastYear; y++)
+            perYear.put(y, new HashMap<>());
+        return perYear;
+    }
+
+    /** Open the provider workbook; returns null when it cannot be read. */
+    private static Workbook openProvider(String providerPath) {
+        if (providerPath == null)
+            return null;
+        try {
+            return WorkbookLoader.open(new File(providerPath));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /** First non-empty row is the header, as in the single-year exporters. */
+    private static int findHeaderRow(Sheet sheet, DataFormatter df, FormulaEvaluator eval) {
+        for (int i = sheet.getFirstRowNum(); i <= sheet.getLastRowNum(); i++) {
+            Row r = sheet.getRow(i);
+            if (r == null)
+                continue;
+            for (Cell c : r) {
+                if (!CellUtils.getCellString(c, df, eval).isEmpty())
+                    return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isValidInvoice(String factura, Set<String> validInvoices) {
+        if (validInvoices == null || validInvoices.isEmpty())
+            return true;
+        String key = factura != null ? factura.trim() : "";
+        return !key.isEmpty() && validInvoices.contains(key);
+    }
+
+    private static String centerName(String center, String cups, String factura) {
+        if (center != null && !center.trim().isEmpty())
+            return center;
+        return !cups.isEmpty() ? cups : (factura != null ? factura : "SIN_CENTRO");
+    }
+
+    private static void writeWorkbook(String filePath, String moduleKey, String moduleFallback, PeriodSeries series,
+            int firstYear, AggregateCube cube, boolean dualEmissions, String[] measureKeys) throws IOException {
+        boolean isXlsx = filePath.toLowerCase().endsWith(".xlsx");
+        try (Workbook workbook = isXlsx ? new XSSFWorkbook() : new HSSFWorkbook()) {
+            ResourceBundle spanish = ResourceBundle.getBundle("Messages", new Locale("es"));
+            String moduleLabel = spanish.containsKey(moduleKey) ? spanish.getString(moduleKey) : moduleFallback;
+            CellStyle headerStyle = createHeaderStyle(workbook);
+
+            String[] yearLabels = new String[series.getBuckets()];
+            for (int b = 0; b < yearLabels.length; b++)
+                yearLabels[b] = String.valueOf(firstYear + b);
+            Sheet trend = workbook.createSheet(moduleLabel + " - "
+                    + (spanish.containsKey("result.sheet.by_year") ? spanish.getString("result.sheet.by_year")
+                            : "Por año"));
+            SummarySheetWriter.writeSeriesSheet(trend, series, yearLabels, spanish, headerStyle, measureKeys);
+
+            if (cube != null) {
+                Sheet summary = workbook.createSheet(moduleLabel + " - "
+                        + (spanish.containsKey("result.sheet.summary") ? spanish.getString("result.sheet.summary")
+                                : "Resumen"));
+                SummarySheetWriter.writeSummarySheet(summary, cube, spanish, headerStyle, dualEmissions);
+            }
+
+            try (FileOutputStream fos = new FileOutputStream(filePath)) {
+                workbook.write(fos);
+            }
+        }
+    }
+
+    private static CellStyle createHeaderStyle(Workbook workbook) {
+        CellStyle style = workbook.createCellStyle();
+        style.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+        style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        style.setBorderBottom(BorderStyle.THIN);
+        style.setBorderTop(BorderStyle.THIN);
+        style.setBorderLeft(BorderStyle.THIN);
+        style.setBorderRight(BorderStyle.THIN);
+        Font font = workbook.createFont();
+        font.setBold(true);
+        style.setFont(font);
+        return style;
+    }
+}
@@ -0,0 +1,128 @@
+package com.carboncalc.util.excel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.carboncalc.util.PeriodProration;
+
+/**
+ * PeriodSeries
+ *
+ * <p>
+ * Per-center time series filled during an exporter's calculation pass. The
+ * series has a fixed number of period buckets: the twelve months of the
+ * reporting year for the "Mensual" sheet, or one bucket per reporting year
+ * for multi-year exports. Each row contributes its prorated consumption per
+ * bucket (see {@link PeriodProration}); every measure is that consumption
+ * multiplied by a per-row scale (1 for consumption, {@code factor / 1000}
+ * for emissions in tCO2e), so no second pass over the input is needed.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>Storage is one {@code double[measures * buckets]} per center.</li>
+ * <li>Centers are reported in alphabetical order.</li>
+ * </ul>
+ * </p>
+ */
+final class PeriodSeries {
+
+    private final int measures;
+    private final int buckets;
+    private final Map<String, double[]> perCenter = new HashMap<>();
+
+    /**
+     * @param measures number of measures stored per bucket (for example 3 for
+     *                 electricity: consumption, market and location emissions)
+     * @param buckets  number of period buckets (12 for months)
+     */
+    PeriodSeries(int measures, int buckets) {
+        this.measures = measures;
+        this.buckets = buckets;
+    }
+
+    /**
+     * Accumulate one row spread over all buckets.
+     *
+     * @param center  center name
+     * @param amounts consumption per bucket ({@link #getBuckets()} entries)
+     * @param scales  one multiplier per measure applied to {@code amounts}
+     */
+    void add(String center, double[] amounts, double... scales) {
+        double[] series = seriesOf(center);
+        int n = Math.min(measures, scales.length);
+        for (int k = 0; k < n; k++) {
+            int base = k * buckets;
+            for (int b = 0; b < buckets; b++)
+                series[base + b] += amounts[b] * scales[k];
+        }
+    }
+
+    /**
+     * Accumulate one row into a single bucket.
+     *
+     * @param center center name
+     * @param bucket zero-based bucket index
+     * @param amount consumption for that bucket
+     * @param scales one multiplier per measure applied to {@code amount}
+     */
+    void addTo(String center, int bucket, double amount, double... scales) {
+        double[] series = seriesOf(center);
+        int n = Math.min(measures, scales.length);
+        for (int k = 0; k < n; k++)
+            series[k * buckets + bucket] += amount * scales[k];
+    }
+
+    int getMeasures() {
+        return measures;
+    }
+
+    int getBuckets() {
+        return buckets;
+    }
+
+    /** @return centers sorted alphabetically */
+    List<String> getCenters() {
+        List<String> centers = new ArrayList<>(perCenter.keySet());
+        Collections.sort(centers);
+        return centers;
+    }
+
+    /**
+     * @param bucket zero-based bucket index
+     * @return accumulated value, 0 for unknown centers
+     */
+    double get(String center, int measure, int bucket) {
+        double[] series = perCenter.get(center);
+        return series == null ? 0.0 : series[measure * buckets + bucket];
+    }
+
+    /** @return sum of a measure over all buckets of one center */
+    double centerTotal(String center, int measure) {
+        double t = 0.0;
+        for (int b = 0; b < buckets; b++)
+            t += get(center, measure, b);
+        return t;
+    }
+
+    /** @return sum of a measure over all centers for one bucket */
+    double bucketTotal(int measure, int bucket) {
+        double t = 0.0;
+        for (double[] series : perCenter.values())
+            t += series[measure * buckets + bucket];
+        return t;
+    }
+
+    private double[] seriesOf(String center) {
+        double[] series = perCenter.get(center);
+        if (series == null) {
+            series = new double[measures * buckets];
+            perCenter.put(center, series);
+        }
+        return series;
+    }
+}
@@ -0,0 +1,166 @@
+package com.carboncalc.util.excel;
+
+import com.carboncalc.util.WorkbookFootprint;
+import com.carboncalc.util.WorkbookLoader;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ProviderSource
+ *
+ * <p>
+ * One provider workbook and the sheet to read from it. Electricity and gas
+ * exports accept several sources (for example one file per marketer or per
+ * month) and merge their rows into a single detailed sheet.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>{@link #openAll(List)} parses the workbooks concurrently on up to one
+ * thread per processor and returns their sheets in list order, so the merged
+ * output does not depend on which file finished parsing first.</li>
+ * <li>A source whose file cannot be read or whose sheet does not exist is
+ * dropped; the remaining sources are still exported.</li>
+ * <li>All returned sheets are held in memory until {@link #closeAll(List)}.
+ * </li>
+ * <li>{@link #writeMode(List, ExportOptions)} picks a streaming writer when
+ * an output as large as the sources would not fit next to them.</li>
+ * </ul>
+ * </p>
+ */
+public final class ProviderSource {
+
+    private static final AtomicInteger PARSE_THREADS = new AtomicInteger();
+
+    private final String path;
+    private final String sheet;
+
+    public ProviderSource(String path, String sheet) {
+        this.path = path;
+        this.sheet = sheet;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getSheet() {
+        return sheet;
+    }
+
+    /**
+     * @return a list with the single source, or an empty list when either
+     *         argument is null (no provider data)
+     */
+    public static List<ProviderSource> single(String path, String sheet) {
+        if (path == null || sheet == null)
+            return Collections.emptyList();
+        return Collections.singletonList(new ProviderSource(path, sheet));
+    }
+
+    /**
+     * Open every source concurrently.
+     *
+     * @return the sheets of the readable sources, in list order
+     */
+    static List<Sheet> openAll(List<ProviderSource> sources) {
+        List<Sheet> sheets = new ArrayList<>();
+        if (sources == null || sources.isEmpty())
+            return sheets;
+        if (sources.size() == 1) {
+            addIfPresent(sheets, sources.get(0), open(sources.get(0)));
+            return sheets;
+        }
+        int threads = Math.min(sources.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService parse = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "provider-parse-" + PARSE_THREADS.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<Workbook>> parsed = new ArrayList<>();
+            for (ProviderSource source : sources)
+                parsed.add(parse.submit(() -> open(source)));
+            for (int i = 0; i < sources.size(); i++) {
+                Workbook wb = null;
+                try {
+                    wb = parsed.get(i).get();
+                } catch (ExecutionException e) {
+                    // unreadable source: dropped
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    // Release whatever was already parsed and give up
+                    for (Future<Workbook> f : parsed)
+                        f.cancel(true);
+                    closeAll(sheets);
+                    sheets.clear();
+                    return sheets;
+                }
+                addIfPresent(sheets, sources.get(i), wb);
+            }
+        } finally {
+            parse.shutdown();
+        }
+        return sheets;
+    }
+
+    /** Close the workbooks behind sheets returned by {@link #openAll(List)}. */
+    static void closeAll(List<Sheet> sheets) {
+        for (Sheet sheet : sheets) {
+            try {
+                sheet.getWorkbook().close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Writer for the detailed output of {@code sources}: the one forced by
+     * {@link ExportOptions#getWriteMode()}, otherwise chosen from the
+     * estimated DOM size of the sources and the heap available now.
+     */
+    static WorkbookFootprint.WriteMode writeMode(List<ProviderSource> sources, ExportOptions options) {
+        if (options != null && options.getWriteMode() != null)
+            return options.getWriteMode();
+        long inputBytes = 0L;
+        if (sources != null) {
+            for (ProviderSource s : sources)
+                inputBytes += WorkbookFootprint.inspect(new File(s.path)).estimatedDomBytes();
+        }
+        return WorkbookFootprint.writeMode(inputBytes);
+    }
+
+    private static Workbook open(ProviderSource source) {
+        try {
+            return WorkbookLoader.open(new File(source.path));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static void addIfPresent(List<Sheet> sheets, ProviderSource source, Workbook wb) {
+        if (wb == null)
+            return;
+        Sheet sheet = wb.getSheet(source.sheet);
+        if (sheet != null) {
+            sheets.add(sheet);
+            return;
+        }
+        try {
+            wb.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
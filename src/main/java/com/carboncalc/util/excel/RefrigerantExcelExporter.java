@@ -5,8 +5,8 @@ import org.apache.poi.ss.util.CellReference;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 
+import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Map;
 import java.util.HashMap;
@@ -14,21 +14,20 @@ import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
-import com.carboncalc.service.RefrigerantFactorServiceCsv;
+import com.carboncalc.service.RefrigerantFactorService;
 import com.carboncalc.model.factors.RefrigerantEmissionFactor;
-import com.carboncalc.service.CupsServiceCsv;
-import com.carboncalc.model.CupsCenterMapping;
 import com.carboncalc.model.RefrigerantMapping;
+import com.carboncalc.model.enums.EnergyType;
+import com.carboncalc.util.AggregateCube;
+import com.carboncalc.util.PeriodProration;
 
 import java.time.LocalDate;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.Files;
 import com.carboncalc.util.ExcelCsvLoader;
 import com.carboncalc.util.CellUtils;
 import com.carboncalc.util.DateUtils;
+import com.carboncalc.util.WorkbookLoader;
 import java.sql.Date;
 
 /**
@@ -70,6 +69,39 @@ public class RefrigerantExcelExporter {
     public static void exportRefrigerantData(String filePath, String providerPath, String providerSheet,
             RefrigerantMapping mapping, int year, String sheetMode, String dateLimit, String lastModifiedHeader)
             throws IOException {
+        exportRefrigerantData(filePath, providerPath, providerSheet, mapping, year, sheetMode, dateLimit, lastModifiedHeader,
+                new ExportOptions());
+    }
+
+    /**
+     * Export refrigerant data with optional extras (see {@link ExportOptions}).
+     * With default options the output is identical to the overload without
+     * options.
+     */
+    public static void exportRefrigerantData(String filePath, String providerPath, String providerSheet,
+            RefrigerantMapping mapping, int year, String sheetMode, String dateLimit, String lastModifiedHeader,
+            ExportOptions options) throws IOException {
+        ExportMetrics metrics = new ExportMetrics(EnergyType.REFRIGERANT.id());
+        DataRoot data = DataRoot.of(options);
+        ExportResultCache cache = options != null ? options.getResultCache() : null;
+        String cacheKey = null;
+        if (cache != null && mapping != null) {
+            metrics.begin(ExportMetrics.PHASE_CACHE);
+            cacheKey = ExportResultCache.key(EnergyType.REFRIGERANT.id()).file(providerPath).text(providerSheet)
+                    .ints(mapping.getCentroIndex(), mapping.getPersonIndex(), mapping.getInvoiceIndex(),
+                            mapping.getProviderIndex(), mapping.getInvoiceDateIndex(),
+                            mapping.getRefrigerantTypeIndex(), mapping.getQuantityIndex(),
+                            mapping.getCompletionTimeIndex())
+                    .text(sheetMode).text(dateLimit).text(lastModifiedHeader).options(options).dataFiles(data, year)
+                    .build();
+            boolean hit = cache.restore(cacheKey, filePath);
+            metrics.lookup(ExportMetrics.LOOKUP_RESULT_CACHE, hit);
+            metrics.end();
+            if (hit) {
+                metrics.publish(options, filePath);
+                return;
+            }
+        }
         boolean isXlsx = filePath.toLowerCase().endsWith(".xlsx");
         try (Workbook workbook = isXlsx ? new XSSFWorkbook() : new HSSFWorkbook()) {
             // Always use Spanish messages for exported Excel files regardless of UI locale
@@ -123,20 +155,26 @@ public class RefrigerantExcelExporter {
 
                     org.apache.poi.ss.usermodel.Workbook src = null;
                     try {
+                        metrics.begin(ExportMetrics.PHASE_READ);
                         if (providerPath.toLowerCase().endsWith(".csv")) {
                             src = ExcelCsvLoader.loadCsvAsWorkbookFromPath(providerPath);
                         } else {
-                            try (FileInputStream fis = new FileInputStream(providerPath)) {
-                                src = providerPath.toLowerCase().endsWith(".xlsx") ? new XSSFWorkbook(fis)
-                                        : new HSSFWorkbook(fis);
-                            }
+                            src = WorkbookLoader.open(new File(providerPath));
                         }
 
+                        metrics.end();
                         if (src != null) {
                             Sheet srcSheet = src.getSheet(providerSheet);
                             if (srcSheet != null) {
+                                AggregateCube cube = options != null && options.isSummarySheets()
+                                        ? new AggregateCube()
+                                        : null;
+                                PeriodSeries monthly = options != null && options.isMonthlySheet()
+                                        ? new PeriodSeries(2, PeriodProration.MONTHS)
+                                        : null;
                                 Map<String, double[]> aggregates = writeDetailedRows(detailed, srcSheet, mapping, year,
-                                        dateLimit, lastModifiedHeader);
+                                        dateLimit, lastModifiedHeader, cube, monthly, data, metrics);
+                                metrics.begin(ExportMetrics.PHASE_SHEETS);
                                 // Ensure aggregates are available; if not, compute them from the written
                                 // detailed sheet
                                 FormulaEvaluator wbEval = workbook.getCreationHelper().createFormulaEvaluator();
@@ -155,6 +193,22 @@ public class RefrigerantExcelExporter {
                                                 : "Total");
                                 Sheet total = workbook.createSheet(totalName);
                                 createTotalSheetFromAggregates(total, header, aggregates, spanish, perCenterName);
+                                if (cube != null) {
+                                    Sheet summary = workbook.createSheet(moduleLabel + " - "
+                                            + (spanish.containsKey("result.sheet.summary")
+                                                    ? spanish.getString("result.sheet.summary")
+                                                    : "Resumen"));
+                                    SummarySheetWriter.writeSummarySheet(summary, cube, spanish, header, false);
+                                }
+                                if (monthly != null) {
+                                    Sheet monthlySheet = workbook.createSheet(moduleLabel + " - "
+                                            + (spanish.containsKey("result.sheet.monthly")
+                                                    ? spanish.getString("result.sheet.monthly")
+                                                    : "Mensual"));
+                                    SummarySheetWriter.writeMonthlySheet(monthlySheet, monthly, year, spanish, header,
+                                            new String[] { "summary.header.consumption", "summary.header.emissions" });
+                                }
+                                metrics.end();
                             } else {
                                 // provider sheet not found -> emit diagnostics
                                 try {
@@ -227,9 +281,12 @@ public class RefrigerantExcelExporter {
                     workbook.setActiveSheet(0);
                 } catch (Exception ignored) {
                 }
+                metrics.writeSheetIfRequested(workbook, options, spanish, moduleLabel);
+                metrics.begin(ExportMetrics.PHASE_WRITE);
                 try (FileOutputStream fos = new FileOutputStream(filePath)) {
                     workbook.write(fos);
                 }
+                metrics.end();
             } catch (Throwable tx) {
                 // Attempt to append diagnostics into the workbook and save it so user can
                 // inspect the failure
@@ -260,6 +317,9 @@ public class RefrigerantExcelExporter {
                     throw new RuntimeException(tx);
             }
         }
+        if (cacheKey != null)
+            cache.store(cacheKey, filePath);
+        metrics.publish(options, filePath);
     }
 
     // CSV loading/parsing is handled by ExcelCsvLoader; inline helpers removed.
@@ -299,16 +359,14 @@ public class RefrigerantExcelExporter {
      * detailed rows into the target sheet. Returns a per-center aggregate map
      * with keys -> [totalQuantity, totalEmissions].
      */
-    private static Map<String, double[]> writeDetailedRows(Sheet target, Sheet source, RefrigerantMapping mapping,
-            int year, String dateLimit, String lastModifiedHeader) {
-        DataFormatter df = new DataFormatter();
-        FormulaEvaluator eval = source.getWorkbook().getCreationHelper().createFormulaEvaluator();
-        Map<String, double[]> perCenterAgg = new HashMap<>();
-
-        // Load refrigerant PCA factors into map: normalizedType -> pca
+    /**
+     * Load refrigerant PCA values for {@code year} keyed by normalized
+     * refrigerant type. Returns an empty map on error.
+     */
+    static Map<String, Double> loadRefrigerantPca(DataRoot data, int year) {
         Map<String, Double> typeToPca = new HashMap<>();
         try {
-            RefrigerantFactorServiceCsv rfsvc = new RefrigerantFactorServiceCsv();
+            RefrigerantFactorService rfsvc = data.refrigerantFactors();
             List<RefrigerantEmissionFactor> factors = rfsvc.loadRefrigerantFactors(year);
             for (RefrigerantEmissionFactor f : factors) {
                 String key = CellUtils.normalizeKey(f.getRefrigerantType());
@@ -317,22 +375,156 @@ public class RefrigerantExcelExporter {
         } catch (Exception ex) {
             // ignore and proceed with empty factors (0.0)
         }
+        return typeToPca;
+    }
 
-        // Build CUPS -> centers-per-cups
-        Map<String, Integer> centersPerCups = new HashMap<>();
-        try {
-            CupsServiceCsv cupsSvc = new CupsServiceCsv();
-            List<CupsCenterMapping> all = cupsSvc.loadCupsData();
-            for (CupsCenterMapping m : all) {
-                String key = m.getCups() != null ? m.getCups().trim() : "";
-                if (key.isEmpty())
-                    continue;
-                centersPerCups.put(key, centersPerCups.getOrDefault(key, 0) + 1);
+    /**
+     * Run the refrigerant calculation on up to {@code maxRows} rows sampled
+     * from {@code source} without writing a workbook. Rows go through the
+     * same {@link RowCalculator} as the export. Refrigerant types without a
+     * PCA for the year are reported as unmatched.
+     */
+    public static MappingPreview preview(Sheet source, RefrigerantMapping mapping, int year, String dateLimit,
+            String lastModifiedHeader, int maxRows) {
+        DataFormatter df = new DataFormatter();
+        FormulaEvaluator eval = source.getWorkbook().getCreationHelper().createFormulaEvaluator();
+        int headerRowIndex = MappingPreview.findHeaderRow(source, df, eval);
+        if (headerRowIndex == -1)
+            return new MappingPreview(0);
+        MappingPreview preview = new MappingPreview(source.getLastRowNum() - headerRowIndex);
+        RowCalculator calc = new RowCalculator(DataRoot.DEFAULT, mapping, year, dateLimit, lastModifiedHeader,
+                source.getRow(headerRowIndex), df, eval);
+
+        for (int i : MappingPreview.sampleRows(headerRowIndex + 1, source.getLastRowNum(), maxRows)) {
+            Row src = source.getRow(i);
+            if (src == null)
+                continue;
+            preview.sampled();
+            CalculatedRow r = calc.calculate(src);
+            if (r.skip != null) {
+                preview.skip(r.skip);
+                continue;
             }
-        } catch (Exception ex) {
-            // ignore
+            if (Boolean.FALSE.equals(r.pcaMatched))
+                preview.unmatched(r.refrigerantType);
+            preview.include(r.centerKey, r.qty, r.emissionsT);
+        }
+        return preview;
+    }
+
+    /**
+     * Per-row refrigerant rules shared by the export and
+     * {@link #preview(Sheet, RefrigerantMapping, int, String, String, int)}:
+     * zero quantities, invoice year, Last Modified limit and the PCA lookup.
+     * PCA values are loaded once, for the resolved reporting year.
+     */
+    private static final class RowCalculator {
+        final int reportingYear;
+        /** Resolved Last Modified column, or -1. */
+        final int lastModifiedIndex;
+        private final RefrigerantMapping mapping;
+        private final Map<String, Double> typeToPca;
+        private final Instant dateLimitInstant;
+        private final DataFormatter df;
+        private final FormulaEvaluator eval;
+
+        RowCalculator(DataRoot data, RefrigerantMapping mapping, int year, String dateLimit,
+                String lastModifiedHeader, Row header, DataFormatter df, FormulaEvaluator eval) {
+            this.mapping = mapping;
+            this.df = df;
+            this.eval = eval;
+            // Prefer the 'year' passed by the caller (UI selection), otherwise the
+            // persisted current_year file
+            this.reportingYear = (year > 0) ? year : data.currentYear();
+            this.typeToPca = loadRefrigerantPca(data, reportingYear);
+            this.lastModifiedIndex = MappingPreview.findLastModifiedColumn(header, mapping.getCompletionTimeIndex(),
+                    lastModifiedHeader, df, eval);
+            // dateLimit is an upper bound on Last Modified
+            this.dateLimitInstant = dateLimit != null && !dateLimit.trim().isEmpty()
+                    ? DateUtils.parseInstantLenient(dateLimit.trim())
+                    : null;
+        }
+
+        CalculatedRow calculate(Row src) {
+            CalculatedRow r = new CalculatedRow();
+            r.invoice = CellUtils.getCellStringByIndex(src, mapping.getInvoiceIndex(), df, eval);
+            r.invoiceDate = CellUtils.getCellStringByIndex(src, mapping.getInvoiceDateIndex(), df, eval);
+            r.qty = CellUtils.parseDoubleSafe(CellUtils.getCellStringByIndex(src, mapping.getQuantityIndex(), df,
+                    eval));
+            // Allow negative quantities (rectified returns). Only skip rows that
+            // have a literal zero quantity.
+            if (r.qty == 0) {
+                r.skip = ExportMetrics.SKIP_ZERO;
+                return r;
+            }
+            // Include only rows whose invoice date falls in the reporting year
+            r.parsedInvoice = DateUtils.parseDateLenient(r.invoiceDate);
+            if (r.parsedInvoice == null || r.parsedInvoice.getYear() != reportingYear) {
+                r.skip = ExportMetrics.SKIP_YEAR;
+                return r;
+            }
+            // Rows last modified AFTER the date limit are skipped
+            if (lastModifiedIndex >= 0 && dateLimitInstant != null) {
+                r.lmRaw = CellUtils.getCellStringByIndex(src, lastModifiedIndex, df, eval);
+                if (r.lmRaw != null && !r.lmRaw.trim().isEmpty()) {
+                    Instant lm = DateUtils.parseInstantLenient(r.lmRaw.trim());
+                    if (lm != null) {
+                        r.parsedLmText = lm.toString();
+                        if (lm.isAfter(dateLimitInstant)) {
+                            r.skip = ExportMetrics.SKIP_LAST_MODIFIED;
+                            return r;
+                        }
+                    }
+                }
+            }
+
+            r.refrigerantType = CellUtils.getCellStringByIndex(src, mapping.getRefrigerantTypeIndex(), df, eval);
+            if (r.refrigerantType != null && !r.refrigerantType.trim().isEmpty()) {
+                Double p = typeToPca.get(CellUtils.normalizeKey(r.refrigerantType));
+                r.pcaMatched = p != null;
+                r.pca = p != null ? p : 0.0;
+            }
+            String center = CellUtils.getCellStringByIndex(src, mapping.getCentroIndex(), df, eval);
+            r.centerKey = (center == null || center.trim().isEmpty()) ? (r.invoice != null ? r.invoice : "SIN_CENTRO")
+                    : center;
+            r.emissionsT = (r.qty * r.pca) / 1000.0;
+            return r;
         }
+    }
 
+    /**
+     * Outcome of {@link RowCalculator#calculate}: the values read and derived
+     * from one source row, and the skip reason when it is left out.
+     */
+    private static final class CalculatedRow {
+        /** Skip reason (an {@link ExportMetrics} SKIP constant) or null. */
+        String skip;
+        String invoice;
+        String invoiceDate;
+        double qty;
+        LocalDate parsedInvoice;
+        /** Last Modified cell, read only when a date limit applies. */
+        String lmRaw;
+        String parsedLmText = "";
+        String refrigerantType;
+        double pca;
+        /** Whether the refrigerant type has a PCA; null when the row has none. */
+        Boolean pcaMatched;
+        String centerKey;
+        double emissionsT;
+    }
+
+    private static Map<String, double[]> writeDetailedRows(Sheet target, Sheet source, RefrigerantMapping mapping,
+            int year, String dateLimit, String lastModifiedHeader, AggregateCube cube,
+            PeriodSeries monthly, DataRoot data, ExportMetrics metrics) {
+        DataFormatter df = new DataFormatter();
+        FormulaEvaluator eval = source.getWorkbook().getCreationHelper().createFormulaEvaluator();
+        Map<String, double[]> perCenterAgg = new HashMap<>();
+        metrics.begin(ExportMetrics.PHASE_FACTORS);
+        // Center attributes (campus, city, ...) are only needed to label cube facts
+        CenterAttributes attributes = cube != null ? CenterAttributes.load(data) : null;
+
+        metrics.next(ExportMetrics.PHASE_HEADER);
         int headerRowIndex = -1;
         for (int i = source.getFirstRowNum(); i <= source.getLastRowNum(); i++) {
             Row r = source.getRow(i);
@@ -350,6 +542,7 @@ public class RefrigerantExcelExporter {
                 break;
             }
         }
+        metrics.end();
         if (headerRowIndex == -1) {
             // still create a diagnostics sheet explaining no header found
             try {
@@ -365,9 +558,13 @@ public class RefrigerantExcelExporter {
             }
             return perCenterAgg;
         }
-        // Determine reporting year: prefer the 'year' parameter passed by caller
-        // (UI selection), otherwise fallback to the persisted current_year file.
-        int reportingYear = (year > 0) ? year : readCurrentYearFromFile();
+        metrics.begin(ExportMetrics.PHASE_FACTORS);
+        // PCA values for the reporting year and the Last Modified column of this sheet
+        RowCalculator calc = new RowCalculator(data, mapping, year, dateLimit, lastModifiedHeader,
+                source.getRow(headerRowIndex), df, eval);
+        int reportingYear = calc.reportingYear;
+        int lastModifiedIndexLocal = calc.lastModifiedIndex;
+        metrics.end();
 
         // Track how many rows were skipped due to different reasons for diagnostics
         int skippedByYear = 0;
@@ -375,12 +572,6 @@ public class RefrigerantExcelExporter {
         int skippedByZeroQty = 0;
         int processedRowCount = 0;
 
-        // Parse dateLimit (if provided) into an Instant for comparison
-        java.time.Instant dateLimitInstant = null;
-        if (dateLimit != null && !dateLimit.trim().isEmpty()) {
-            dateLimitInstant = DateUtils.parseInstantLenient(dateLimit.trim());
-        }
-
         int outRow = target.getLastRowNum() + 1;
         int idCounter = 1;
 
@@ -448,67 +639,20 @@ public class RefrigerantExcelExporter {
             }
         }
 
-        // Determine lastModifiedIndex for row-level parsing (repeat detection to have
-        // it in scope)
-        int lastModifiedIndexLocal = -1;
-        // Prefer explicit mapping index when provided by the UI mapping
-        try {
-            int mapped = mapping.getCompletionTimeIndex();
-            if (mapped >= 0) {
-                lastModifiedIndexLocal = mapped;
-            }
-        } catch (Exception ignored) {
-        }
-        // If the caller provided an explicit header name that was detected earlier,
-        // prefer that
-        // when resolving the column index.
-        Row hdrRow = source.getRow(headerRowIndex);
-        if (hdrRow != null) {
-            for (int ci = 0; ci < hdrRow.getLastCellNum(); ci++) {
-                Cell srcCell = hdrRow.getCell(ci);
-                String val = CellUtils.getCellString(srcCell, df, eval);
-                String n = CellUtils.normalizeKey(val);
-                if (lastModifiedHeader != null && !lastModifiedHeader.trim().isEmpty()) {
-                    // If a header name was supplied, match it case-insensitively and with
-                    // normalization
-                    String normWanted = CellUtils.normalizeKey(lastModifiedHeader);
-                    if (CellUtils.normalizeKey(val).equals(normWanted)) {
-                        lastModifiedIndexLocal = ci;
-                        break;
-                    }
-                }
-                if (n.contains("last") && n.contains("modif")) {
-                    lastModifiedIndexLocal = ci;
-                    break;
-                }
-                if (n.contains("last") && n.contains("modified")) {
-                    lastModifiedIndexLocal = ci;
-                    break;
-                }
-                if (n.contains("lastmodified") || n.contains("last_modified")) {
-                    lastModifiedIndexLocal = ci;
-                    break;
-                }
-            }
-        }
-
+        metrics.begin(ExportMetrics.PHASE_ROWS);
         for (int i = headerRowIndex + 1; i <= source.getLastRowNum(); i++) {
             Row src = source.getRow(i);
             if (src == null)
                 continue;
-            String center = CellUtils.getCellStringByIndex(src, mapping.getCentroIndex(), df, eval);
-            String person = CellUtils.getCellStringByIndex(src, mapping.getPersonIndex(), df, eval);
-            String invoice = CellUtils.getCellStringByIndex(src, mapping.getInvoiceIndex(), df, eval);
-            String provider = CellUtils.getCellStringByIndex(src, mapping.getProviderIndex(), df, eval);
-            String invoiceDate = CellUtils.getCellStringByIndex(src, mapping.getInvoiceDateIndex(), df, eval);
-            String rType = CellUtils.getCellStringByIndex(src, mapping.getRefrigerantTypeIndex(), df, eval);
-            String qtyStr = CellUtils.getCellStringByIndex(src, mapping.getQuantityIndex(), df, eval);
-
-            double qty = CellUtils.parseDoubleSafe(qtyStr);
-            // Allow negative quantities (rectified returns). Only skip rows that
-            // have a literal zero quantity.
-            if (qty == 0) {
+            metrics.rowRead();
+            CalculatedRow r = calc.calculate(src);
+            String invoice = r.invoice;
+            String invoiceDate = r.invoiceDate;
+            double qty = r.qty;
+            LocalDate parsedInvoice = r.parsedInvoice;
+            if (ExportMetrics.SKIP_ZERO.equals(r.skip)) {
                 skippedByZeroQty++;
+                metrics.skip(ExportMetrics.SKIP_ZERO);
                 // per-row diagnostics: zero quantity
                 if (diag != null) {
                     try {
@@ -527,11 +671,9 @@ public class RefrigerantExcelExporter {
                 }
                 continue;
             }
-
-            // Parse invoice date and include only rows that fall in the reporting year
-            LocalDate parsedInvoice = DateUtils.parseDateLenient(invoiceDate);
-            if (parsedInvoice == null || parsedInvoice.getYear() != reportingYear) {
+            if (ExportMetrics.SKIP_YEAR.equals(r.skip)) {
                 skippedByYear++;
+                metrics.skip(ExportMetrics.SKIP_YEAR);
                 if (diag != null) {
                     try {
                         Row dr = diag.createRow(diagRow++);
@@ -549,55 +691,33 @@ public class RefrigerantExcelExporter {
                 }
                 continue;
             }
-
-            // Last-Modified filter: if a dateLimitInstant is provided and the row
-            // has a Last Modified value AFTER the limit -> skip it (treat dateLimit as
-            // upper bound)
-            if (lastModifiedIndexLocal >= 0 && dateLimitInstant != null) {
-                String lmStr = CellUtils.getCellStringByIndex(src, lastModifiedIndexLocal, df, eval);
-                if (lmStr != null && !lmStr.trim().isEmpty()) {
-                    boolean parsedAndAfter = false;
-                    String parsedLmText = "";
+            if (ExportMetrics.SKIP_LAST_MODIFIED.equals(r.skip)) {
+                skippedByLastModified++;
+                metrics.skip(ExportMetrics.SKIP_LAST_MODIFIED);
+                if (diag != null) {
                     try {
-                        java.time.Instant lmInstant = DateUtils.parseInstantLenient(lmStr.trim());
-                        if (lmInstant != null) {
-                            parsedLmText = lmInstant.toString();
-                            if (lmInstant.isAfter(dateLimitInstant))
-                                parsedAndAfter = true;
-                        }
+                        Row dr = diag.createRow(diagRow++);
+                        dr.createCell(0).setCellValue(i);
+                        dr.createCell(1).setCellValue(invoice != null ? invoice : "");
+                        dr.createCell(2).setCellValue(invoiceDate != null ? invoiceDate : "");
+                        dr.createCell(3).setCellValue(parsedInvoice != null ? parsedInvoice.toString() : "");
+                        dr.createCell(4).setCellValue(r.lmRaw != null ? r.lmRaw : "");
+                        dr.createCell(5).setCellValue(r.parsedLmText);
+                        dr.createCell(6).setCellValue(qty);
+                        dr.createCell(7).setCellValue("SKIPPED_LAST_MODIFIED_AFTER_LIMIT");
                     } catch (Exception ignored) {
                     }
-                    if (parsedAndAfter) {
-                        skippedByLastModified++;
-                        if (diag != null) {
-                            try {
-                                Row dr = diag.createRow(diagRow++);
-                                dr.createCell(0).setCellValue(i);
-                                dr.createCell(1).setCellValue(invoice != null ? invoice : "");
-                                dr.createCell(2).setCellValue(invoiceDate != null ? invoiceDate : "");
-                                dr.createCell(3).setCellValue(parsedInvoice != null ? parsedInvoice.toString() : "");
-                                dr.createCell(4).setCellValue(lmStr != null ? lmStr : "");
-                                dr.createCell(5).setCellValue(parsedLmText);
-                                dr.createCell(6).setCellValue(qty);
-                                dr.createCell(7).setCellValue("SKIPPED_LAST_MODIFIED_AFTER_LIMIT");
-                            } catch (Exception ignored) {
-                            }
-                        }
-                        continue;
-                    }
                 }
+                continue;
             }
-
-            double pca = 0.0;
-            if (rType != null && !rType.trim().isEmpty()) {
-                pca = typeToPca.getOrDefault(CellUtils.normalizeKey(rType), 0.0);
-            }
-
-            double emissionsT = (qty * pca) / 1000.0;
-
-            // Update per-center aggregates
-            String centerKey = (center == null || center.trim().isEmpty()) ? (invoice != null ? invoice : "SIN_CENTRO")
-                    : center;
+            String person = CellUtils.getCellStringByIndex(src, mapping.getPersonIndex(), df, eval);
+            String provider = CellUtils.getCellStringByIndex(src, mapping.getProviderIndex(), df, eval);
+            String rType = r.refrigerantType;
+            double pca = r.pca;
+            if (r.pcaMatched != null)
+                metrics.lookup(ExportMetrics.LOOKUP_FACTOR, r.pcaMatched);
+            double emissionsT = r.emissionsT;
+            String centerKey = r.centerKey;
             double[] agg = perCenterAgg.get(centerKey);
             if (agg == null) {
                 agg = new double[2];
@@ -605,7 +725,17 @@ public class RefrigerantExcelExporter {
             }
             agg[0] += qty; // total quantity
             agg[1] += emissionsT;
+            if (cube != null) {
+                cube.add(attributes.members(EnergyType.REFRIGERANT.id(), "1", centerKey, parsedInvoice, null, null),
+                        qty, emissionsT, emissionsT);
+            }
+            if (monthly != null) {
+                // Invoices are dated, so the whole amount falls in the invoice month
+                double[] months = PeriodProration.monthlyShares(parsedInvoice, parsedInvoice, qty, reportingYear);
+                monthly.add(centerKey, months, 1.0, pca / 1000.0);
+            }
             Row out = target.createRow(outRow++);
+            metrics.rowWritten();
             int col = 0;
             out.createCell(col++).setCellValue(idCounter++);
             // Columns: Centro, Responsable de Centro, Número de Factura, Proveedor,
@@ -693,6 +823,7 @@ public class RefrigerantExcelExporter {
                 }
             }
         }
+        metrics.end();
 
         // After processing, write summary diagnostics
         if (diag != null) {
@@ -772,12 +903,14 @@ public class RefrigerantExcelExporter {
                 String qtyFormula = String.format("IFERROR(SUMIF('%s'!$B:$B,$A%d,'%s'!$%s:$%s),0)",
                         detailedName, excelRow, detailedName, detailedQtyCol, detailedQtyCol);
                 cQty.setCellFormula(qtyFormula);
+                cQty.setCellValue(e.getValue()[0]);
                 cQty.setCellStyle(numberStyle);
 
                 Cell cEm = row.createCell(2);
                 String emFormula = String.format("IFERROR(SUMIF('%s'!$B:$B,$A%d,'%s'!$%s:$%s),0)",
                         detailedName, excelRow, detailedName, detailedEmissionsCol, detailedEmissionsCol);
                 cEm.setCellFormula(emFormula);
+                cEm.setCellValue(e.getValue()[1]);
                 cEm.setCellStyle(emissionsStyle);
             }
         }
@@ -908,34 +1041,4 @@ public class RefrigerantExcelExporter {
     private static String normalizeKey(String s) {
         return CellUtils.normalizeKey(s);
     }
-
-    /**
-     * Read the current reporting year from the `data/year/current_year.txt` file
-     * when present. Falls back to the system year when the file is missing or
-     * malformed.
-     *
-     * @return reporting year as int
-     */
-    private static int readCurrentYearFromFile() {
-        try {
-            Path p = Paths.get("data", "year", "current_year.txt");
-            if (Files.exists(p)) {
-                java.util.List<String> lines = Files.readAllLines(p);
-                if (lines != null && !lines.isEmpty()) {
-                    String s = lines.get(0).trim();
-                    if (!s.isEmpty()) {
-                        try {
-                            return Integer.parseInt(s);
-                        } catch (NumberFormatException ignored) {
-                        }
-                    }
-                }
-            }
-        } catch (Exception ignored) {
-        }
-        return LocalDate.now().getYear();
-    }
-
-    // readCurrentYearFromFile removed: not used in the simplified exporter
-
 }
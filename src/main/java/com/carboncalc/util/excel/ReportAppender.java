@@ -0,0 +1,239 @@
+package com.carboncalc.util.excel;
+
+import com.carboncalc.util.InvoiceKeySet;
+import com.carboncalc.util.WorkbookLoader;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ReportAppender
+ *
+ * <p>
+ * Opens an existing module report so an export can append the rows of new
+ * invoices instead of rebuilding the whole year. It reads the last id and
+ * the invoice numbers of the detailed sheet, then updates the per-center and
+ * total sheets from the aggregates of the appended rows only.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>Per-center rows keep their {@code SUMIF} formulas; their cached values
+ * are increased by the appended amounts and centers seen for the first time
+ * get a new row (replacing the {@code "-"} placeholder of an empty report).
+ * Total cells get the column sums of the per-center sheet as cached
+ * values.</li>
+ * <li>The saved workbook asks Excel to recalculate on open, so formulas are
+ * exact even if the cached values drifted.</li>
+ * <li>The report is written to a temporary file next to it and moved over
+ * the original, so a failed append leaves the previous report intact.</li>
+ * </ul>
+ * </p>
+ */
+final class ReportAppender implements Closeable {
+
+    private final Path path;
+    private final Workbook workbook;
+    private final Sheet detailed;
+    private final int lastId;
+    private final InvoiceKeySet invoices = new InvoiceKeySet();
+
+    private ReportAppender(Path path, Workbook workbook, Sheet detailed, int invoiceColumn) {
+        this.path = path;
+        this.workbook = workbook;
+        this.detailed = detailed;
+        int last = 0;
+        for (int i = 1; i <= detailed.getLastRowNum(); i++) {
+            Row row = detailed.getRow(i);
+            if (row == null)
+                continue;
+            Cell id = row.getCell(0);
+            if (id != null && id.getCellType() == CellType.NUMERIC)
+                last = Math.max(last, (int) id.getNumericCellValue());
+            Cell invoice = row.getCell(invoiceColumn);
+            String key = invoice != null && invoice.getCellType() == CellType.STRING
+                    ? invoice.getStringCellValue().trim()
+                    : "";
+            if (!key.isEmpty())
+                invoices.add(key);
+        }
+        this.lastId = last;
+    }
+
+    /**
+     * Open the report at {@code filePath}.
+     *
+     * @param detailedName  name of the detailed ("Extendido") sheet
+     * @param invoiceColumn zero-based invoice column of the detailed sheet
+     * @throws IllegalArgumentException when the detailed sheet is missing
+     * @throws IOException              when the report cannot be read
+     */
+    static ReportAppender open(String filePath, String detailedName, int invoiceColumn) throws IOException {
+        Path path = Paths.get(filePath);
+        Workbook wb = WorkbookLoader.open(path.toFile());
+        Sheet detailed = wb.getSheet(detailedName);
+        if (detailed == null) {
+            wb.close();
+            throw new IllegalArgumentException("Sheet '" + detailedName + "' not found in " + filePath);
+        }
+        return new ReportAppender(path, wb, detailed, invoiceColumn);
+    }
+
+    Workbook workbook() {
+        return workbook;
+    }
+
+    Sheet detailed() {
+        return detailed;
+    }
+
+    /** @return id for the first appended row */
+    int nextId() {
+        return lastId + 1;
+    }
+
+    /** @return invoice numbers already in the detailed sheet */
+    InvoiceKeySet invoices() {
+        return invoices;
+    }
+
+    /** Remove sheets the export writes from scratch (diagnostics, metrics). */
+    void dropSheets(String... names) {
+        for (String name : names) {
+            int idx = name != null ? workbook.getSheetIndex(name) : -1;
+            if (idx >= 0)
+                workbook.removeSheetAt(idx);
+        }
+    }
+
+    /**
+     * Add the aggregates of the appended rows to the per-center sheet.
+     *
+     * @param delta        center -> appended amounts, one per value column
+     * @param valueColumns detailed-sheet column letters summed by each value
+     *                     column
+     */
+    void mergePerCenter(String perCenterName, Map<String, double[]> delta, String[] valueColumns) {
+        Sheet sheet = workbook.getSheet(perCenterName);
+        if (sheet == null || delta.isEmpty())
+            return;
+        Map<String, Row> rows = new HashMap<>();
+        Row placeholder = null;
+        Row template = null;
+        for (int i = 1; i <= sheet.getLastRowNum(); i++) {
+            Row row = sheet.getRow(i);
+            Cell name = row != null ? row.getCell(0) : null;
+            if (name == null || name.getCellType() != CellType.STRING)
+                continue;
+            template = row;
+            if ("-".equals(name.getStringCellValue()) && sheet.getLastRowNum() == 1)
+                placeholder = row;
+            else
+                rows.put(name.getStringCellValue(), row);
+        }
+        for (Map.Entry<String, double[]> e : delta.entrySet()) {
+            Row row = rows.get(e.getKey());
+            if (row == null) {
+                row = placeholder != null ? placeholder : sheet.createRow(sheet.getLastRowNum() + 1);
+                placeholder = null;
+                newCenterRow(row, e.getKey(), valueColumns, template);
+                rows.put(e.getKey(), row);
+            }
+            for (int c = 0; c < valueColumns.length; c++) {
+                Cell cell = row.getCell(c + 1);
+                cell.setCellValue(numeric(cell) + e.getValue()[c]);
+            }
+        }
+    }
+
+    /**
+     * Set the cached values of the total row (row 1) to the column sums of
+     * the per-center sheet; total column {@code i} sums per-center column
+     * {@code i + 1}.
+     */
+    void refreshTotal(String totalName, String perCenterName) {
+        Sheet total = workbook.getSheet(totalName);
+        Sheet perCenter = workbook.getSheet(perCenterName);
+        Row row = total != null ? total.getRow(1) : null;
+        if (row == null || perCenter == null)
+            return;
+        for (Cell cell : row) {
+            if (cell.getCellType() != CellType.FORMULA)
+                continue;
+            double sum = 0.0;
+            for (int i = 1; i <= perCenter.getLastRowNum(); i++) {
+                Row r = perCenter.getRow(i);
+                if (r != null)
+                    sum += numeric(r.getCell(cell.getColumnIndex() + 1));
+            }
+            cell.setCellValue(sum);
+        }
+    }
+
+    /** Write the workbook over the original report. */
+    void save() throws IOException {
+        workbook.setForceFormulaRecalculation(true);
+        Path dir = path.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                workbook.write(out);
+            }
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        workbook.close();
+    }
+
+    /** @return true when append mode applies to {@code filePath} */
+    static boolean applies(ExportOptions options, String filePath) {
+        return options != null && options.isAppend() && filePath != null && new File(filePath).isFile();
+    }
+
+    private void newCenterRow(Row row, String center, String[] valueColumns, Row template) {
+        String detailedName = detailed.getSheetName();
+        int excelRow = row.getRowNum() + 1;
+        row.createCell(0).setCellValue(center);
+        for (int c = 0; c < valueColumns.length; c++) {
+            Cell cell = row.getCell(c + 1) != null ? row.getCell(c + 1) : row.createCell(c + 1);
+            cell.setCellFormula(String.format("IFERROR(SUMIF('%s'!$B:$B,$A%d,'%s'!$%s:$%s),0)", detailedName,
+                    excelRow, detailedName, valueColumns[c], valueColumns[c]));
+            cell.setCellValue(0.0);
+            Cell above = template != null && template != row ? template.getCell(c + 1) : null;
+            if (above != null)
+                cell.setCellStyle(above.getCellStyle());
+        }
+    }
+
+    private static double numeric(Cell cell) {
+        if (cell == null)
+            return 0.0;
+        CellType type = cell.getCellType() == CellType.FORMULA ? cell.getCachedFormulaResultType()
+                : cell.getCellType();
+        return type == CellType.NUMERIC ? cell.getNumericCellValue() : 0.0;
+    }
+}
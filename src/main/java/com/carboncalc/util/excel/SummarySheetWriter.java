@@ -0,0 +1,255 @@
+package com.carboncalc.util.excel;
+
+import java.time.YearMonth;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import com.carboncalc.util.AggregateCube;
+import com.carboncalc.util.AggregateCube.Dimension;
+import com.carboncalc.util.AggregateCube.Measure;
+import com.carboncalc.util.PeriodProration;
+
+/**
+ * SummarySheetWriter
+ *
+ * <p>
+ * Renders an {@link AggregateCube} as a single "Resumen" sheet made of
+ * stacked sections, one per breakdown (month, scope, campus, city, province,
+ * marketer). Each section is a roll-up of the cube to one dimension, so the
+ * cost is linear in the number of cube cells and independent of the number
+ * of input rows. It also renders a {@link PeriodSeries} as a center x
+ * period table per measure (the "Mensual" and "Por año" sheets).
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>Values are written as literals: the cube is a snapshot of the
+ * calculation pass, while the detailed sheet keeps the auditable
+ * formulas.</li>
+ * <li>Attribute sections whose members are all unknown (for example campus
+ * when the CUPS mapping has no campus column filled) are omitted.</li>
+ * </ul>
+ * </p>
+ */
+final class SummarySheetWriter {
+
+    private static final Dimension[] SECTIONS = new Dimension[] { Dimension.MONTH, Dimension.SCOPE,
+            Dimension.CAMPUS, Dimension.CITY, Dimension.PROVINCE, Dimension.MARKETER };
+
+    private SummarySheetWriter() {
+    }
+
+    /**
+     * Write all summary sections into {@code sheet}.
+     *
+     * @param sheet         destination sheet (expected empty)
+     * @param cube          cube filled during the calculation pass
+     * @param spanish       bundle used for labels
+     * @param headerStyle   style for header rows (may be null)
+     * @param dualEmissions true to write market- and location-based columns
+     *                      (electricity); false for a single emissions column
+     */
+    static void writeSummarySheet(Sheet sheet, AggregateCube cube, ResourceBundle spanish, CellStyle headerStyle,
+            boolean dualEmissions) {
+        Workbook wb = sheet.getWorkbook();
+        CellStyle numberStyle = wb.createCellStyle();
+        numberStyle.setDataFormat(wb.createDataFormat().getFormat("0.00"));
+        CellStyle emissionsStyle = wb.createCellStyle();
+        emissionsStyle.setDataFormat(wb.createDataFormat().getFormat("0.000000"));
+        Font bold = wb.createFont();
+        bold.setBold(true);
+        CellStyle titleStyle = wb.createCellStyle();
+        titleStyle.setFont(bold);
+
+        String unassigned = label(spanish, "summary.unassigned", "(sin asignar)");
+        int columns = dualEmissions ? 4 : 3;
+        int r = 0;
+        for (Dimension dim : SECTIONS) {
+            AggregateCube section = cube.rollUp(dim);
+            if (dim != Dimension.MONTH && dim != Dimension.SCOPE && allUnassigned(section, dim))
+                continue;
+            String key = dim.name().toLowerCase(Locale.ROOT);
+
+            Cell title = sheet.createRow(r++).createCell(0);
+            title.setCellValue(label(spanish, "summary.section." + key, dim.name()));
+            title.setCellStyle(titleStyle);
+
+            Row h = sheet.createRow(r++);
+            h.createCell(0).setCellValue(label(spanish, "summary.header." + key, dim.name()));
+            h.createCell(1).setCellValue(label(spanish, "summary.header.consumption", "Consumo"));
+            if (dualEmissions) {
+                h.createCell(2).setCellValue(label(spanish, "summary.header.emissions.market", "Market-based"));
+                h.createCell(3).setCellValue(label(spanish, "summary.header.emissions.location", "Location-based"));
+            } else {
+                h.createCell(2).setCellValue(label(spanish, "summary.header.emissions", "Emisiones"));
+            }
+            if (headerStyle != null) {
+                for (int c = 0; c < columns; c++)
+                    h.getCell(c).setCellStyle(headerStyle);
+            }
+
+            for (int cell : section.sortedCells(dim)) {
+                String member = section.member(cell, dim);
+                Row row = sheet.createRow(r++);
+                row.createCell(0).setCellValue(member == null || member.isEmpty() ? unassigned : member);
+                writeMeasures(row, section, cell, dualEmissions, numberStyle, emissionsStyle);
+            }
+
+            Row total = sheet.createRow(r++);
+            Cell totalLabel = total.createCell(0);
+            totalLabel.setCellValue(label(spanish, "result.sheet.total", "Total"));
+            totalLabel.setCellStyle(titleStyle);
+            writeTotals(total, section, dualEmissions, numberStyle, emissionsStyle);
+            r++; // blank row between sections
+        }
+        for (int c = 0; c < columns; c++)
+            sheet.autoSizeColumn(c);
+    }
+
+    /**
+     * Write a center x month table per measure into {@code sheet}.
+     *
+     * @param sheet       destination sheet (expected empty)
+     * @param series      monthly series filled during the calculation pass
+     * @param year        reporting year (used for the month headers)
+     * @param spanish     bundle used for labels
+     * @param headerStyle style for header rows (may be null)
+     * @param measureKeys bundle key of the title of each measure section
+     */
+    static void writeMonthlySheet(Sheet sheet, PeriodSeries series, int year, ResourceBundle spanish,
+            CellStyle headerStyle, String[] measureKeys) {
+        String[] months = new String[PeriodProration.MONTHS];
+        for (int m = 0; m < months.length; m++)
+            months[m] = YearMonth.of(year, m + 1).toString();
+        writeSeriesSheet(sheet, series, months, spanish, headerStyle, measureKeys);
+    }
+
+    /**
+     * Write a center x period table per measure into {@code sheet}.
+     *
+     * @param sheet        destination sheet (expected empty)
+     * @param series       series filled during the calculation pass
+     * @param bucketLabels header label of each period bucket
+     * @param spanish      bundle used for labels
+     * @param headerStyle  style for header rows (may be null)
+     * @param measureKeys  bundle key of the title of each measure section;
+     *                     the first measure is consumption, the others
+     *                     emissions
+     */
+    static void writeSeriesSheet(Sheet sheet, PeriodSeries series, String[] bucketLabels, ResourceBundle spanish,
+            CellStyle headerStyle, String[] measureKeys) {
+        Workbook wb = sheet.getWorkbook();
+        CellStyle numberStyle = wb.createCellStyle();
+        numberStyle.setDataFormat(wb.createDataFormat().getFormat("0.00"));
+        CellStyle emissionsStyle = wb.createCellStyle();
+        emissionsStyle.setDataFormat(wb.createDataFormat().getFormat("0.000000"));
+        Font bold = wb.createFont();
+        bold.setBold(true);
+        CellStyle titleStyle = wb.createCellStyle();
+        titleStyle.setFont(bold);
+
+        String totalLabel = label(spanish, "result.sheet.total", "Total");
+        int buckets = series.getBuckets();
+        int totalCol = buckets + 1;
+        int r = 0;
+        for (int k = 0; k < series.getMeasures() && k < measureKeys.length; k++) {
+            CellStyle valueStyle = k == 0 ? numberStyle : emissionsStyle;
+            Cell title = sheet.createRow(r++).createCell(0);
+            title.setCellValue(label(spanish, measureKeys[k], measureKeys[k]));
+            title.setCellStyle(titleStyle);
+
+            Row h = sheet.createRow(r++);
+            h.createCell(0).setCellValue(label(spanish, "summary.header.center", "Centro"));
+            for (int b = 0; b < buckets; b++)
+                h.createCell(b + 1).setCellValue(b < bucketLabels.length ? bucketLabels[b] : "");
+            h.createCell(totalCol).setCellValue(totalLabel);
+            if (headerStyle != null) {
+                for (int c = 0; c <= totalCol; c++)
+                    h.getCell(c).setCellStyle(headerStyle);
+            }
+
+            for (String center : series.getCenters()) {
+                Row row = sheet.createRow(r++);
+                row.createCell(0).setCellValue(center);
+                for (int b = 0; b < buckets; b++) {
+                    Cell c = row.createCell(b + 1);
+                    c.setCellValue(series.get(center, k, b));
+                    c.setCellStyle(valueStyle);
+                }
+                Cell t = row.createCell(totalCol);
+                t.setCellValue(series.centerTotal(center, k));
+                t.setCellStyle(valueStyle);
+            }
+
+            Row total = sheet.createRow(r++);
+            Cell tl = total.createCell(0);
+            tl.setCellValue(totalLabel);
+            tl.setCellStyle(titleStyle);
+            double grand = 0.0;
+            for (int b = 0; b < buckets; b++) {
+                double v = series.bucketTotal(k, b);
+                grand += v;
+                Cell c = total.createCell(b + 1);
+                c.setCellValue(v);
+                c.setCellStyle(valueStyle);
+            }
+            Cell g = total.createCell(totalCol);
+            g.setCellValue(grand);
+            g.setCellStyle(valueStyle);
+            r++; // blank row between sections
+        }
+        for (int c = 0; c <= totalCol; c++)
+            sheet.autoSizeColumn(c);
+    }
+
+    private static void writeMeasures(Row row, AggregateCube cube, int cell, boolean dualEmissions,
+            CellStyle numberStyle, CellStyle emissionsStyle) {
+        Cell c1 = row.createCell(1);
+        c1.setCellValue(cube.value(cell, Measure.CONSUMPTION));
+        c1.setCellStyle(numberStyle);
+        Cell c2 = row.createCell(2);
+        c2.setCellValue(cube.value(cell, Measure.EMISSIONS_MARKET));
+        c2.setCellStyle(emissionsStyle);
+        if (dualEmissions) {
+            Cell c3 = row.createCell(3);
+            c3.setCellValue(cube.value(cell, Measure.EMISSIONS_LOCATION));
+            c3.setCellStyle(emissionsStyle);
+        }
+    }
+
+    private static void writeTotals(Row row, AggregateCube cube, boolean dualEmissions, CellStyle numberStyle,
+            CellStyle emissionsStyle) {
+        Cell c1 = row.createCell(1);
+        c1.setCellValue(cube.total(Measure.CONSUMPTION));
+        c1.setCellStyle(numberStyle);
+        Cell c2 = row.createCell(2);
+        c2.setCellValue(cube.total(Measure.EMISSIONS_MARKET));
+        c2.setCellStyle(emissionsStyle);
+        if (dualEmissions) {
+            Cell c3 = row.createCell(3);
+            c3.setCellValue(cube.total(Measure.EMISSIONS_LOCATION));
+            c3.setCellStyle(emissionsStyle);
+        }
+    }
+
+    private static boolean allUnassigned(AggregateCube section, Dimension dim) {
+        for (int c = 0; c < section.cellCount(); c++) {
+            String m = section.member(c, dim);
+            if (m != null && !m.isEmpty())
+                return false;
+        }
+        return true;
+    }
+
+    private static String label(ResourceBundle bundle, String key, String fallback) {
+        return bundle != null && bundle.containsKey(key) ? bundle.getString(key) : fallback;
+    }
+}
@@ -0,0 +1,251 @@
+package com.carboncalc.view;
+
+import com.carboncalc.model.CupsCenterMapping;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * CupsCentersTableModel
+ *
+ * <p>
+ * Read-only table model for the CUPS centers table, backed directly by the
+ * list of {@link CupsCenterMapping} rows loaded from {@code cups.csv}. Cell
+ * values are read from the mapping objects on demand, so loading a large
+ * inventory costs one list copy and a single {@code fireTableDataChanged}
+ * instead of one {@code addRow} (and one table event) per mapping.
+ * </p>
+ *
+ * <p>
+ * Contract and notes:
+ * <ul>
+ * <li>Column 0 is the hidden persistence id; the remaining columns follow
+ * the CSV order (cups, marketer, center, acronym, campus, energy, street,
+ * postal code, city, province).</li>
+ * <li>Energy tokens are translated to display labels once per distinct
+ * token when rows enter the model.</li>
+ * <li>{@link #commit(List)} applies the list read back from the service
+ * after a single add, edit or delete as fine-grained row events, so the
+ * table shows what the backend kept (its ordering, numbering and duplicate
+ * rules) without knowing them. It falls back to a full refresh when the
+ * change cannot be expressed as a few inserts and deletes.</li>
+ * <li>Must be used on the EDT like any Swing model.</li>
+ * </ul>
+ * </p>
+ */
+public class CupsCentersTableModel extends AbstractTableModel {
+    public static final int COL_ID = 0;
+    public static final int COL_CUPS = 1;
+    public static final int COL_MARKETER = 2;
+    public static final int COL_CENTER = 3;
+    public static final int COL_ACRONYM = 4;
+    public static final int COL_CAMPUS = 5;
+    public static final int COL_ENERGY = 6;
+    public static final int COL_STREET = 7;
+    public static final int COL_POSTAL = 8;
+    public static final int COL_CITY = 9;
+    public static final int COL_PROVINCE = 10;
+
+    // Above this many changed rows a single refresh is cheaper than row events
+    private static final int MAX_FINE_GRAINED_CHANGES = 64;
+
+    private final String[] columnNames;
+    private Function<String, String> energyLabeler = Function.identity();
+    private final Map<String, String> energyLabelCache = new HashMap<>();
+    private List<CupsCenterMapping> rows = new ArrayList<>();
+    private List<String> energyLabels = new ArrayList<>();
+
+    /**
+     * @param columnNames localized header labels, one per column
+     */
+    public CupsCentersTableModel(String[] columnNames) {
+        this.columnNames = columnNames.clone();
+    }
+
+    /**
+     * Set the function translating stored energy tokens (for example
+     * {@code ELECTRICITY}) to display labels and relabel existing rows.
+     */
+    public void setEnergyLabeler(Function<String, String> energyLabeler) {
+        this.energyLabeler = energyLabeler != null ? energyLabeler : Function.identity();
+        energyLabelCache.clear();
+        energyLabels = labelsFor(rows);
+        if (!rows.isEmpty())
+            fireTableRowsUpdated(0, rows.size() - 1);
+    }
+
+    /**
+     * Replace all rows (bulk reload) with a single table event.
+     */
+    public void setMappings(List<CupsCenterMapping> mappings) {
+        rows = mappings != null ? new ArrayList<>(mappings) : new ArrayList<>();
+        energyLabels = labelsFor(rows);
+        fireTableDataChanged();
+    }
+
+    /**
+     * @return a modifiable copy of the current rows (same mapping instances)
+     */
+    public List<CupsCenterMapping> getMappings() {
+        return new ArrayList<>(rows);
+    }
+
+    /** @return the mapping displayed at model row {@code row} */
+    public CupsCenterMapping getMappingAt(int row) {
+        return rows.get(row);
+    }
+
+    /**
+     * Replace the rows with {@code next}, the list read back from the service
+     * after one add, edit or delete, firing delete/insert events for the rows
+     * whose content changed and an update event for rows whose position (and
+     * therefore id) shifted. Rows are matched by their fields, not by
+     * instance, so {@code next} may be a fresh load.
+     */
+    public void commit(List<CupsCenterMapping> next) {
+        List<CupsCenterMapping> target = next != null ? new ArrayList<>(next) : new ArrayList<>();
+        List<String> current = new ArrayList<>(rows.size());
+        for (CupsCenterMapping m : rows)
+            current.add(content(m));
+        List<String> wanted = new ArrayList<>(target.size());
+        for (CupsCenterMapping m : target)
+            wanted.add(content(m));
+
+        List<Integer> removed = unmatched(current, wanted);
+        List<Integer> added = unmatched(wanted, current);
+        if (removed.size() + added.size() > MAX_FINE_GRAINED_CHANGES) {
+            setMappings(target);
+            return;
+        }
+
+        // Survivors must keep their relative order for row events to be exact
+        List<String> survivors = new ArrayList<>(current);
+        for (int k = removed.size() - 1; k >= 0; k--)
+            survivors.remove((int) removed.get(k));
+        List<String> targetSurvivors = new ArrayList<>(wanted);
+        for (int k = added.size() - 1; k >= 0; k--)
+            targetSurvivors.remove((int) added.get(k));
+        if (!survivors.equals(targetSurvivors)) {
+            setMappings(target);
+            return;
+        }
+
+        int firstChanged = Integer.MAX_VALUE;
+        for (int k = removed.size() - 1; k >= 0; k--) {
+            int row = removed.get(k);
+            rows.remove(row);
+            energyLabels.remove(row);
+            fireTableRowsDeleted(row, row);
+            firstChanged = Math.min(firstChanged, row);
+        }
+        for (int row : added) {
+            CupsCenterMapping m = target.get(row);
+            rows.add(row, m);
+            energyLabels.add(row, labelFor(m.getEnergyType()));
+            fireTableRowsInserted(row, row);
+            firstChanged = Math.min(firstChanged, row);
+        }
+        // Same content row for row now; adopt the loaded instances and ids
+        rows = target;
+        // Ids are positional after a save, so rows below the change shifted
+        if (firstChanged < rows.size())
+            fireTableRowsUpdated(firstChanged, rows.size() - 1);
+    }
+
+    // Indices of the entries of from with no counterpart left in to
+    private static List<Integer> unmatched(List<String> from, List<String> to) {
+        Map<String, Integer> available = new HashMap<>();
+        for (String c : to)
+            available.merge(c, 1, Integer::sum);
+        List<Integer> out = new ArrayList<>();
+        for (int i = 0; i < from.size(); i++) {
+            Integer left = available.get(from.get(i));
+            if (left == null || left == 0)
+                out.add(i);
+            else
+                available.put(from.get(i), left - 1);
+        }
+        return out;
+    }
+
+    // Every displayed field except the positional id
+    private static String content(CupsCenterMapping m) {
+        return String.join("\u001F", String.valueOf(m.getCups()), String.valueOf(m.getMarketer()),
+                String.valueOf(m.getCenterName()), String.valueOf(m.getAcronym()), String.valueOf(m.getCampus()),
+                String.valueOf(m.getEnergyType()), String.valueOf(m.getStreet()), String.valueOf(m.getPostalCode()),
+                String.valueOf(m.getCity()), String.valueOf(m.getProvince()));
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        CupsCenterMapping m = rows.get(row);
+        switch (column) {
+            case COL_ID:
+                return m.getId();
+            case COL_CUPS:
+                return m.getCups();
+            case COL_MARKETER:
+                return m.getMarketer();
+            case COL_CENTER:
+                return m.getCenterName();
+            case COL_ACRONYM:
+                return m.getAcronym();
+            case COL_CAMPUS:
+                return m.getCampus();
+            case COL_ENERGY:
+                return energyLabels.get(row);
+            case COL_STREET:
+                return m.getStreet();
+            case COL_POSTAL:
+                return m.getPostalCode();
+            case COL_CITY:
+                return m.getCity();
+            case COL_PROVINCE:
+                return m.getProvince();
+            default:
+                return null;
+        }
+    }
+
+    private List<String> labelsFor(List<CupsCenterMapping> mappings) {
+        List<String> labels = new ArrayList<>(mappings.size());
+        for (CupsCenterMapping m : mappings)
+            labels.add(labelFor(m.getEnergyType()));
+        return labels;
+    }
+
+    private String labelFor(String token) {
+        // null and "" label differently, so keep them apart in the cache
+        String key = token != null ? token : "\u0000";
+        String label = energyLabelCache.get(key);
+        if (label == null) {
+            label = energyLabeler.apply(token);
+            energyLabelCache.put(key, label);
+        }
+        return label;
+    }
+}
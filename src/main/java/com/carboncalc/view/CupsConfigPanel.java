@@ -4,6 +4,7 @@ import com.carboncalc.controller.CupsConfigController;
 import com.carboncalc.model.CenterData;
 import com.carboncalc.util.UIUtils;
 import com.carboncalc.util.UIComponents;
+import com.carboncalc.util.TableSearchSupport;
 import com.carboncalc.model.enums.EnergyType;
 import javax.swing.*;
 import javax.swing.border.Border;
@@ -525,12 +526,8 @@ public class CupsConfigPanel extends BaseModulePanel {
                 messages.getString("label.province")
         };
 
-        DefaultTableModel model = new DefaultTableModel(tableColumns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        // Backed by the loaded mappings; see CupsCentersTableModel
+        CupsCentersTableModel model = new CupsCentersTableModel(tableColumns);
 
         centersTable = new JTable(model);
         centersTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -552,6 +549,9 @@ public class CupsConfigPanel extends BaseModulePanel {
         centersScrollPane = new JScrollPane(centersTable);
         centersScrollPane.setPreferredSize(new Dimension(0, UIUtils.CENTERS_SCROLL_HEIGHT));
         panel.add(centersScrollPane, BorderLayout.CENTER);
+        panel.add(TableSearchSupport.install(centersTable, messages, CupsCentersTableModel.COL_CUPS,
+                CupsCentersTableModel.COL_CENTER, CupsCentersTableModel.COL_ACRONYM,
+                CupsCentersTableModel.COL_MARKETER, CupsCentersTableModel.COL_CITY), BorderLayout.NORTH);
 
         // Add buttons panel
         JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
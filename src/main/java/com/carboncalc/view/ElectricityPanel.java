@@ -78,6 +78,7 @@ public class ElectricityPanel extends BaseModulePanel {
     private JScrollPane providerTableScrollPane;
     private JScrollPane erpTableScrollPane;
     private JScrollPane resultTableScrollPane;
+    private JLabel resultPreviewSummary;
     private JPanel columnConfigPanel;
     private JSpinner yearSpinner;
     private JComboBox<String> resultSheetSelector;
@@ -440,7 +441,15 @@ public class ElectricityPanel extends BaseModulePanel {
 
         // UIUtils.setupPreviewTable(resultPreviewTable); -- moved to controller after
         // model is set
-        resultPanel.add(resultTableScrollPane, BorderLayout.CENTER);
+        // Live sampled preview summary below the result table (see
+        // MappingPreviewRunner)
+        resultPreviewSummary = new JLabel(" ");
+        resultPreviewSummary.setForeground(UIUtils.MUTED_TEXT);
+        JPanel resultCenter = new JPanel(new BorderLayout(0, 4));
+        resultCenter.setBackground(UIUtils.CONTENT_BACKGROUND);
+        resultCenter.add(resultTableScrollPane, BorderLayout.CENTER);
+        resultCenter.add(resultPreviewSummary, BorderLayout.SOUTH);
+        resultPanel.add(resultCenter, BorderLayout.CENTER);
 
         // Add a small top controls panel for result: year selector
         // Use small vertical gap to keep controls vertically centered with the table
@@ -538,6 +547,14 @@ public class ElectricityPanel extends BaseModulePanel {
     }
 
     // Result sheet selector getter
+    public JTable getResultPreviewTable() {
+        return resultPreviewTable;
+    }
+
+    public JLabel getResultPreviewSummary() {
+        return resultPreviewSummary;
+    }
+
     public JComboBox<String> getResultSheetSelector() {
         return resultSheetSelector;
     }
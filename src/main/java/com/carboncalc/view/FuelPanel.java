@@ -48,6 +48,7 @@ public class FuelPanel extends BaseModulePanel {
 
     private JTable resultPreviewTable;
     private JScrollPane resultTableScrollPane;
+    private JLabel resultPreviewSummary;
 
     public FuelPanel(FuelController controller, ResourceBundle messages) {
         super(messages);
@@ -178,7 +179,15 @@ public class FuelPanel extends BaseModulePanel {
         resultTableScrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
         resultTableScrollPane
                 .setPreferredSize(new Dimension(UIUtils.PREVIEW_SCROLL_WIDTH, UIUtils.PREVIEW_SCROLL_HEIGHT));
-        resultPanel.add(resultTableScrollPane, BorderLayout.CENTER);
+        // Live sampled preview summary below the result table (see
+        // MappingPreviewRunner)
+        resultPreviewSummary = new JLabel(" ");
+        resultPreviewSummary.setForeground(UIUtils.MUTED_TEXT);
+        JPanel resultCenter = new JPanel(new BorderLayout(0, 4));
+        resultCenter.setBackground(UIUtils.CONTENT_BACKGROUND);
+        resultCenter.add(resultTableScrollPane, BorderLayout.CENTER);
+        resultCenter.add(resultPreviewSummary, BorderLayout.SOUTH);
+        resultPanel.add(resultCenter, BorderLayout.CENTER);
 
         JPanel resultTopPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 2));
         resultTopPanel.setPreferredSize(new Dimension(0, UIUtils.TOP_SPACER_HEIGHT));
@@ -420,6 +429,14 @@ public class FuelPanel extends BaseModulePanel {
         return amountSelector;
     }
 
+    public JTable getResultPreviewTable() {
+        return resultPreviewTable;
+    }
+
+    public JLabel getResultPreviewSummary() {
+        return resultPreviewSummary;
+    }
+
     public JComboBox<String> getResultSheetSelector() {
         return resultSheetSelector;
     }
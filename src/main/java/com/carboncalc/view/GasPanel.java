@@ -82,6 +82,7 @@ public class GasPanel extends BaseModulePanel {
     private JScrollPane providerTableScrollPane;
     private JScrollPane erpTableScrollPane;
     private JScrollPane resultTableScrollPane;
+    private JLabel resultPreviewSummary;
     private JPanel columnConfigPanel;
     // Result / Year controls
     private JSpinner yearSpinner;
@@ -445,7 +446,15 @@ public class GasPanel extends BaseModulePanel {
 
         // UIUtils.setupPreviewTable(resultPreviewTable); -- moved to controller after
         // model is set
-        resultPanel.add(resultTableScrollPane, BorderLayout.CENTER);
+        // Live sampled preview summary below the result table (see
+        // MappingPreviewRunner)
+        resultPreviewSummary = new JLabel(" ");
+        resultPreviewSummary.setForeground(UIUtils.MUTED_TEXT);
+        JPanel resultCenter = new JPanel(new BorderLayout(0, 4));
+        resultCenter.setBackground(UIUtils.CONTENT_BACKGROUND);
+        resultCenter.add(resultTableScrollPane, BorderLayout.CENTER);
+        resultCenter.add(resultPreviewSummary, BorderLayout.SOUTH);
+        resultPanel.add(resultCenter, BorderLayout.CENTER);
 
         // Add a small top controls panel for result: year selector
         JPanel resultTopPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 2));
@@ -553,6 +562,14 @@ public class GasPanel extends BaseModulePanel {
     }
 
     // Result sheet selector getter
+    public JTable getResultPreviewTable() {
+        return resultPreviewTable;
+    }
+
+    public JLabel getResultPreviewSummary() {
+        return resultPreviewSummary;
+    }
+
     public JComboBox<String> getResultSheetSelector() {
         return resultSheetSelector;
     }
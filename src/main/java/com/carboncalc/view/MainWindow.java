@@ -7,16 +7,24 @@ import com.carboncalc.controller.GasController;
 import com.carboncalc.controller.MainController;
 import com.carboncalc.controller.OptionsController;
 import javax.swing.*;
+import com.carboncalc.util.StartupTracer;
 import com.carboncalc.util.UIUtils;
+import com.carboncalc.util.excel.DataRoot;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.function.Supplier;
 import com.carboncalc.model.enums.EnergyType;
 import com.carboncalc.service.EmissionFactorService;
-import com.carboncalc.service.EmissionFactorServiceCsv;
 import com.carboncalc.service.ElectricityFactorService;
-import com.carboncalc.service.ElectricityFactorServiceCsv;
 import com.carboncalc.service.GasFactorService;
-import com.carboncalc.service.GasFactorServiceCsv;
 import com.carboncalc.controller.factors.FactorSubController;
 import com.carboncalc.controller.factors.ElectricityFactorController;
 import com.carboncalc.controller.factors.GasFactorController;
@@ -28,9 +36,7 @@ import com.carboncalc.controller.RefrigerantController;
 import com.carboncalc.controller.FuelController;
 import com.carboncalc.view.FuelPanel;
 import com.carboncalc.service.FuelFactorService;
-import com.carboncalc.service.FuelFactorServiceCsv;
 import com.carboncalc.service.RefrigerantFactorService;
-import com.carboncalc.service.RefrigerantFactorServiceCsv;
 
 /**
  * Main application window.
@@ -50,6 +56,12 @@ import com.carboncalc.service.RefrigerantFactorServiceCsv;
  * and show this window from the Event Dispatch Thread (EDT).</li>
  * <li>Styling constants (colors, sizes) are provided by {@link UIUtils} to
  * keep appearance consistent across modules.</li>
+ * <li>Module panels are built lazily: a card (and its controller, which may
+ * read CSV data on construction) is created on first navigation. The
+ * default card is built right after the first frame is shown. With the
+ * system property {@code carboncalc.prewarm} set to {@code true} the
+ * remaining cards are pre-warmed one per idle tick; this is off by default
+ * because panels read their CSV data on the EDT while being built.</li>
  * </ul>
  */
 public class MainWindow extends JFrame {
@@ -58,6 +70,15 @@ public class MainWindow extends JFrame {
     private final JPanel contentPanel;
     private JPanel navigationPanel; // Removed final to allow panel replacement
     private JPanel mainNavContainer; // Container for the navigation panel
+    // Card factories in navigation order; panels are built on first use
+    private final Map<String, Supplier<JPanel>> cardFactories = new LinkedHashMap<>();
+    private final Set<String> builtCards = new HashSet<>();
+    private Timer prewarmTimer;
+
+    private static final String DEFAULT_CARD = EnergyType.ELECTRICITY.id();
+    private static final int PREWARM_DELAY_MS = 500;
+    private static final int PREWARM_INTERVAL_MS = 150;
+    private static final boolean PREWARM_ENABLED = Boolean.getBoolean("carboncalc.prewarm");
 
     public MainWindow(MainController controller, ResourceBundle messages) {
         this.messages = messages;
@@ -165,19 +186,95 @@ public class MainWindow extends JFrame {
     }
 
     private void setupContent() {
-        // Initialize all module panels
-        contentPanel.add(createElectricityPanel(), EnergyType.ELECTRICITY.id());
-        contentPanel.add(createGasPanel(), EnergyType.GAS.id());
-        // Add modules (use real panels when implemented)
-        contentPanel.add(createFuelPanel(), EnergyType.FUEL.id());
-        contentPanel.add(createRefrigerantPanel(), EnergyType.REFRIGERANT.id());
-        contentPanel.add(createGeneralPanel(), "general");
-        contentPanel.add(createCupsConfigPanel(), "cups");
-        contentPanel.add(createEmissionFactorsPanel(), "factors");
-        contentPanel.add(createOptionsPanel(), "options");
-
-        // Show default panel
-        cardLayout.show(contentPanel, EnergyType.ELECTRICITY.id());
+        // Register module panels; nothing is constructed until navigation
+        registerCard(EnergyType.ELECTRICITY.id(), this::createElectricityPanel);
+        registerCard(EnergyType.GAS.id(), this::createGasPanel);
+        registerCard(EnergyType.FUEL.id(), this::createFuelPanel);
+        registerCard(EnergyType.REFRIGERANT.id(), this::createRefrigerantPanel);
+        registerCard("general", this::createGeneralPanel);
+        registerCard("cups", this::createCupsConfigPanel);
+        registerCard("factors", this::createEmissionFactorsPanel);
+        registerCard("options", this::createOptionsPanel);
+
+        // Show the default panel once the first frame is on screen so time
+        // to first window does not depend on module start-up work
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                StartupTracer.global().mark("first.frame");
+                SwingUtilities.invokeLater(() -> {
+                    showCard(DEFAULT_CARD);
+                    StartupTracer.global().mark("first.card");
+                    StartupTracer.global().exportIfRequested();
+                    if (PREWARM_ENABLED)
+                        startPrewarm();
+                });
+            }
+        });
+    }
+
+    private void registerCard(String cardName, Supplier<JPanel> factory) {
+        cardFactories.put(cardName, factory);
+    }
+
+    /**
+     * Build the card on first use and bring it to front.
+     *
+     * @param cardName name of a registered card
+     */
+    private void showCard(String cardName) {
+        if (ensureCard(cardName))
+            cardLayout.show(contentPanel, cardName);
+    }
+
+    /**
+     * Construct the panel of {@code cardName} if not built yet. Must run on
+     * the EDT.
+     *
+     * @return true when the card is available in the content panel
+     */
+    private boolean ensureCard(String cardName) {
+        if (builtCards.contains(cardName))
+            return true;
+        Supplier<JPanel> factory = cardFactories.get(cardName);
+        if (factory == null)
+            return false;
+        try {
+            StartupTracer.global().run("panel." + cardName, () -> contentPanel.add(factory.get(), cardName));
+            builtCards.add(cardName);
+            contentPanel.revalidate();
+            return true;
+        } catch (RuntimeException ex) {
+            // Leave the card unbuilt so the next navigation retries
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Build the remaining cards in navigation order, one per timer tick, so
+     * user input is processed between constructions and later navigation is
+     * instant.
+     */
+    private void startPrewarm() {
+        if (prewarmTimer != null)
+            return;
+        // Each card is attempted once; a failing card is retried on navigation
+        Iterator<String> pending = new ArrayList<>(cardFactories.keySet()).iterator();
+        prewarmTimer = new Timer(PREWARM_INTERVAL_MS, e -> {
+            while (pending.hasNext()) {
+                String cardName = pending.next();
+                if (!builtCards.contains(cardName)) {
+                    ensureCard(cardName);
+                    return;
+                }
+            }
+            prewarmTimer.stop();
+            // Re-export so the report includes every panel construction
+            StartupTracer.global().exportIfRequested();
+        });
+        prewarmTimer.setInitialDelay(PREWARM_DELAY_MS);
+        prewarmTimer.start();
     }
 
     private JPanel createOptionsPanel() {
@@ -246,11 +343,11 @@ public class MainWindow extends JFrame {
 
     private JPanel createEmissionFactorsPanel() {
         // Create concrete implementations here and inject into the controller.
-        EmissionFactorService efService = new EmissionFactorServiceCsv();
-        ElectricityFactorService egfService = new ElectricityFactorServiceCsv();
-        GasFactorService gasFactorService = new GasFactorServiceCsv();
-        FuelFactorService fuelFactorService = new FuelFactorServiceCsv();
-        RefrigerantFactorService refrigerantFactorService = new RefrigerantFactorServiceCsv();
+        EmissionFactorService efService = DataRoot.DEFAULT.emissionFactors();
+        ElectricityFactorService egfService = DataRoot.DEFAULT.electricityFactors();
+        GasFactorService gasFactorService = DataRoot.DEFAULT.gasFactors();
+        FuelFactorService fuelFactorService = DataRoot.DEFAULT.fuelFactors();
+        RefrigerantFactorService refrigerantFactorService = DataRoot.DEFAULT.refrigerantFactors();
 
         // Provide a factory lambda that creates subcontrollers lazily by type
         Function<String, FactorSubController> factory = (type) -> {
@@ -326,7 +423,7 @@ public class MainWindow extends JFrame {
         // Use centralized color constants for navigation buttons
         styleNavigationButton(button);
         button.addActionListener(e -> {
-            cardLayout.show(contentPanel, cardName);
+            showCard(cardName);
         });
         navigationPanel.add(button);
     }
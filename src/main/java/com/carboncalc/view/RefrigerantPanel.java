@@ -61,6 +61,7 @@ public class RefrigerantPanel extends BaseModulePanel {
     // controller
     private JTable resultPreviewTable;
     private JScrollPane resultTableScrollPane;
+    private JLabel resultPreviewSummary;
 
     public RefrigerantPanel(RefrigerantController controller, ResourceBundle messages) {
         super(messages);
@@ -195,7 +196,15 @@ public class RefrigerantPanel extends BaseModulePanel {
         resultTableScrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
         resultTableScrollPane
                 .setPreferredSize(new Dimension(UIUtils.PREVIEW_SCROLL_WIDTH, UIUtils.PREVIEW_SCROLL_HEIGHT));
-        resultPanel.add(resultTableScrollPane, BorderLayout.CENTER);
+        // Live sampled preview summary below the result table (see
+        // MappingPreviewRunner)
+        resultPreviewSummary = new JLabel(" ");
+        resultPreviewSummary.setForeground(UIUtils.MUTED_TEXT);
+        JPanel resultCenter = new JPanel(new BorderLayout(0, 4));
+        resultCenter.setBackground(UIUtils.CONTENT_BACKGROUND);
+        resultCenter.add(resultTableScrollPane, BorderLayout.CENTER);
+        resultCenter.add(resultPreviewSummary, BorderLayout.SOUTH);
+        resultPanel.add(resultCenter, BorderLayout.CENTER);
 
         JPanel resultTopPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 2));
         resultTopPanel.setPreferredSize(new Dimension(0, UIUtils.TOP_SPACER_HEIGHT));
@@ -425,6 +434,14 @@ public class RefrigerantPanel extends BaseModulePanel {
      * Return the combo box used to select the result sheet layout for the
      * exported Excel file (extended / per center / total).
      */
+    public JTable getResultPreviewTable() {
+        return resultPreviewTable;
+    }
+
+    public JLabel getResultPreviewSummary() {
+        return resultPreviewSummary;
+    }
+
     public JComboBox<String> getResultSheetSelector() {
         return resultSheetSelector;
     }
@@ -2,6 +2,7 @@ package com.carboncalc.view.factors;
 
 import com.carboncalc.util.UIUtils;
 import com.carboncalc.util.UIComponents;
+import com.carboncalc.util.TableSearchSupport;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableModel;
@@ -318,6 +319,7 @@ public class ElectricityFactorPanel extends JPanel {
         JPanel tradingPanel = new JPanel(new BorderLayout(10, 10));
         tradingPanel.setBorder(UIUtils.createLightGroupBorder(messages.getString("label.trading.companies")));
         tradingPanel.setBackground(UIUtils.CONTENT_BACKGROUND);
+        tradingPanel.add(TableSearchSupport.install(tradingCompaniesTable, messages, 0, 2), BorderLayout.NORTH);
         tradingPanel.add(scrollPane, BorderLayout.CENTER);
         tradingPanel.add(tradingCompanyButtonPanel, BorderLayout.SOUTH);
 
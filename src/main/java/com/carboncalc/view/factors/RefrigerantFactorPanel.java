@@ -2,6 +2,7 @@ package com.carboncalc.view.factors;
 
 import com.carboncalc.util.UIUtils;
 import com.carboncalc.util.UIComponents;
+import com.carboncalc.util.TableSearchSupport;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
@@ -174,6 +175,7 @@ public class RefrigerantFactorPanel extends JPanel {
         factorsPanel.setBorder(UIUtils.createLightGroupBorder(messages.getString("label.refrigerant.types")));
         factorsPanel.setBackground(UIUtils.CONTENT_BACKGROUND);
         // Add the scroll pane to CENTER so it expands to fill the group's area
+        factorsPanel.add(TableSearchSupport.install(factorsTable, messages, 0), BorderLayout.NORTH);
         factorsPanel.add(scrollPane, BorderLayout.CENTER);
         factorsPanel.add(buttonPanel, BorderLayout.SOUTH);
         return factorsPanel;
@@ -0,0 +1,86 @@
+package com.carboncalc;
+
+import com.carboncalc.util.StartupTracer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AppStartupTest {
+
+    // Each phase waits until all of them have started, so they can only
+    // finish if they really run at the same time
+    private static void rendezvous(CountDownLatch started, AtomicInteger met) {
+        started.countDown();
+        try {
+            if (started.await(30, TimeUnit.SECONDS))
+                met.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void assertOverlap(StartupTracer tracer, StartupTracer.Phase a, StartupTracer.Phase b) {
+        assertTrue(a.startMillis() < b.endMillis() && b.startMillis() < a.endMillis(), tracer.report());
+    }
+
+    @Test
+    public void testStartupPhasesRunConcurrentlyAndAreTraced() throws Exception {
+        StartupTracer tracer = new StartupTracer();
+        String caller = Thread.currentThread().getName();
+        CountDownLatch started = new CountDownLatch(3);
+        AtomicInteger met = new AtomicInteger();
+
+        ResourceBundle messages = App.runStartupPhases(tracer, () -> rendezvous(started, met), () -> {
+            rendezvous(started, met);
+            return ResourceBundle.getBundle("Messages", new Locale("es"));
+        }, null, () -> rendezvous(started, met));
+
+        assertEquals("Cancelar", messages.getString("button.cancel"));
+        StartupTracer.Phase folders = tracer.find("data.folders");
+        StartupTracer.Phase bundle = tracer.find("messages.load");
+        StartupTracer.Phase laf = tracer.find("laf.setup");
+        assertNotNull(folders);
+        assertNotNull(bundle);
+        assertNotNull(laf);
+        assertEquals(caller, laf.getThread());
+        assertNotEquals(caller, folders.getThread());
+        assertNotEquals(folders.getThread(), bundle.getThread());
+
+        // All three phases were running at once
+        assertEquals(3, met.get(), tracer.report());
+        assertOverlap(tracer, folders, bundle);
+        assertOverlap(tracer, folders, laf);
+        assertOverlap(tracer, bundle, laf);
+        assertTrue(tracer.wallMillis() < tracer.totalPhaseMillis(), tracer.report());
+
+        Path out = Files.createTempFile("startup-trace", ".txt");
+        out.toFile().deleteOnExit();
+        tracer.writeReport(out);
+        String report = Files.readString(out);
+        assertTrue(report.startsWith("Startup trace: wall "));
+        assertTrue(report.contains("data.folders") && report.contains("messages.load") && report.contains("laf.setup"));
+    }
+
+    @Test
+    public void testBundleHookRunsBeforeLookAndFeel() {
+        StartupTracer tracer = new StartupTracer();
+        AtomicReference<String> seenByLaf = new AtomicReference<>();
+        AtomicReference<String> title = new AtomicReference<>();
+
+        App.runStartupPhases(tracer, () -> {
+        }, () -> ResourceBundle.getBundle("Messages", new Locale("es")), b -> title.set(b.getString("button.cancel")),
+                () -> seenByLaf.set(title.get()));
+
+        assertEquals("Cancelar", seenByLaf.get());
+        assertTrue(tracer.find("messages.load").endMillis() <= tracer.find("laf.setup").startMillis());
+    }
+}
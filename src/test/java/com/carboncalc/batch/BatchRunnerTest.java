@@ -0,0 +1,229 @@
+package com.carboncalc.batch;
+
+import com.carboncalc.model.enums.EnergyType;
+import com.carboncalc.util.SyntheticDataGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchRunnerTest {
+
+    private static final List<String> ELECTRICITY_KEYS = List.of("cups", "invoice", "start", "end",
+            "consumption", "center", "entity");
+    private static final List<String> FUEL_KEYS = List.of("center", "responsible", "invoice", "provider",
+            "invoiceDate", "fuelType", "vehicleType", "amount", "completionTime");
+    private static final List<String> REFRIGERANT_KEYS = List.of("center", "person", "invoice", "provider",
+            "invoiceDate", "refrigerantType", "quantity", "completionTime");
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    public void runsJobsInParallelAndReportsStatus() throws Exception {
+        SyntheticDataGenerator.Options o = new SyntheticDataGenerator.Options();
+        o.setSeed(5);
+        o.setRows(150);
+        SyntheticDataGenerator gen = new SyntheticDataGenerator(o);
+        Path provider = gen.writeElectricityProvider(tmp.resolve("provider.xlsx"));
+        Path erp = gen.writeErp(tmp.resolve("erp.xlsx"), EnergyType.ELECTRICITY);
+        Path fuel = gen.writeFuelForm(tmp.resolve("fuel.xlsx"));
+        Path refrigerant = gen.writeRefrigerantForm(tmp.resolve("refrigerant.xlsx"));
+
+        Properties p = new Properties();
+        p.setProperty("jobs", "elec, elecErp, fuel, ref, broken, report, brokenReport");
+        String[] headers = { "CUPS", "Factura", "Fecha inicio", "Fecha fin", "Consumo kWh", "Centro",
+                "Comercializadora" };
+        for (String job : new String[] { "elec", "elecErp" }) {
+            p.setProperty(job + ".module", "electricity");
+            p.setProperty(job + ".input", provider.toString());
+            p.setProperty(job + ".sheet", SyntheticDataGenerator.SHEET);
+            p.setProperty(job + ".year", String.valueOf(o.getYear()));
+            p.setProperty(job + ".output", tmp.resolve(job + ".xlsx").toString());
+            for (int i = 0; i < ELECTRICITY_KEYS.size(); i++)
+                p.setProperty(job + ".column." + ELECTRICITY_KEYS.get(i), headers[i]);
+        }
+        p.setProperty("elecErp.erp", erp.toString());
+        p.setProperty("elecErp.erp.sheet", SyntheticDataGenerator.SHEET);
+        p.setProperty("elecErp.erp.invoice", gen.erpInvoiceHeader());
+        p.setProperty("elecErp.erp.conformity", gen.erpConformityHeader());
+
+        module(p, "fuel", "fuel", fuel, o.getYear());
+        for (int i = 0; i < FUEL_KEYS.size(); i++)
+            p.setProperty("fuel.column." + FUEL_KEYS.get(i), String.valueOf(i));
+        module(p, "ref", "refrigerant", refrigerant, o.getYear());
+        for (int i = 0; i < REFRIGERANT_KEYS.size(); i++)
+            p.setProperty("ref.column." + REFRIGERANT_KEYS.get(i), String.valueOf(i));
+        module(p, "broken", "fuel", tmp.resolve("missing.xlsx"), o.getYear());
+
+        p.setProperty("report.module", "general");
+        p.setProperty("report.electricity", "elec");
+        p.setProperty("report.fuel", "fuel");
+        p.setProperty("report.refrigerant", "ref");
+        p.setProperty("report.output", tmp.resolve("report.xlsx").toString());
+        p.setProperty("brokenReport.module", "general");
+        p.setProperty("brokenReport.fuel", "broken");
+        p.setProperty("brokenReport.output", tmp.resolve("broken-report.xlsx").toString());
+
+        Path descriptor = tmp.resolve("jobs.properties");
+        try (Writer w = Files.newBufferedWriter(descriptor)) {
+            p.store(w, null);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int code = BatchRunner.run(new String[] { descriptor.toString(), "--threads", "3" },
+                new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8"));
+        assertEquals(BatchRunner.EXIT_FAILED, code, err.toString("UTF-8"));
+
+        Map<String, String> lines = new HashMap<>();
+        for (String line : out.toString("UTF-8").split("\\R")) {
+            int i = line.indexOf("\"job\": \"");
+            if (i >= 0)
+                lines.put(line.substring(i + 8, line.indexOf('"', i + 8)), line);
+        }
+        assertEquals(7, lines.size(), out.toString("UTF-8"));
+        for (String ok : new String[] { "elec", "elecErp", "fuel", "ref", "report" }) {
+            assertTrue(lines.get(ok).contains("\"status\": \"ok\""), lines.get(ok));
+            assertTrue(Files.size(Path.of(p.getProperty(ok + ".output"))) > 0, ok);
+        }
+        assertTrue(lines.get("broken").contains("\"status\": \"failed\""), lines.get("broken"));
+        assertTrue(lines.get("brokenReport").contains("\"status\": \"skipped\""), lines.get("brokenReport"));
+        assertFalse(Files.exists(tmp.resolve("broken-report.xlsx")));
+        assertTrue(out.toString("UTF-8").contains("\"summary\": true, \"ok\": 5, \"failed\": 1, \"skipped\": 1"));
+
+        // The ERP filter drops the unconformed invoices
+        assertTrue(rowsWritten(lines.get("elecErp")) < rowsWritten(lines.get("elec")));
+        assertEquals(150, rowsRead(lines.get("fuel")));
+    }
+
+    @Test
+    public void badDescriptorIsAUsageError() throws Exception {
+        Path descriptor = tmp.resolve("jobs.properties");
+        Files.write(descriptor, "jobs=a\na.module=steam\na.output=x.xlsx\n".getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int code = BatchRunner.run(new String[] { descriptor.toString() }, new PrintStream(new ByteArrayOutputStream()),
+                new PrintStream(err, true, "UTF-8"));
+        assertEquals(BatchRunner.EXIT_USAGE, code);
+        assertTrue(err.toString("UTF-8").contains("Unknown module: steam"));
+        assertEquals(BatchRunner.EXIT_USAGE, BatchRunner.run(new String[0],
+                new PrintStream(new ByteArrayOutputStream()), new PrintStream(new ByteArrayOutputStream())));
+    }
+
+    @Test
+    public void estimateUsesInputSizeOrMemoryKey() throws Exception {
+        Path input = Files.write(tmp.resolve("in.xlsx"), new byte[2048]);
+        Properties p = new Properties();
+        p.setProperty("jobs", "a, b, c");
+        module(p, "a", "fuel", input, 2025);
+        module(p, "b", "fuel", input, 2025);
+        p.setProperty("b.memory", "5");
+        module(p, "c", "fuel", input, 2025);
+        p.setProperty("c.data", tmp.resolve("missing-data").toString());
+        List<BatchJob> jobs = BatchJob.parse(p);
+        assertEquals(BatchScheduler.BASE_JOB_BYTES + BatchScheduler.estimateBytes(input),
+                BatchRunner.estimateBytes(jobs.get(0), null));
+        assertEquals(5L * 1024 * 1024, BatchRunner.estimateBytes(jobs.get(1), null));
+
+        BatchRunner.JobResult r = BatchRunner.execute(jobs.get(2), null);
+        assertEquals(BatchRunner.STATUS_FAILED, r.getStatus());
+        assertTrue(r.getError().contains("Data directory not found"), r.getError());
+    }
+
+    @Test
+    public void extraInputsAreOrderedAndOnlyForElectricityAndGas() throws Exception {
+        Path input = Files.write(tmp.resolve("in.xlsx"), new byte[2048]);
+        Properties p = new Properties();
+        p.setProperty("jobs", "a");
+        module(p, "a", "gas", input, 2025);
+        p.setProperty("a.input.10", "c.xlsx");
+        p.setProperty("a.input.2", "b.xlsx");
+        p.setProperty("a.input.x", "ignored.xlsx");
+        BatchJob job = BatchJob.parse(p).get(0);
+        assertEquals(List.of(input.toString(), "b.xlsx", "c.xlsx"), job.inputs());
+
+        BatchRunner.JobResult r = BatchRunner.execute(job, null);
+        assertEquals(BatchRunner.STATUS_FAILED, r.getStatus());
+        assertTrue(r.getError().contains("Input not found: b.xlsx"), r.getError());
+
+        p.setProperty("a.module", "fuel");
+        assertThrows(IllegalArgumentException.class, () -> BatchJob.parse(p));
+    }
+
+    @Test
+    public void rerunResumesJobsThatFinishedWithTheSameInputs() throws Exception {
+        SyntheticDataGenerator.Options o = new SyntheticDataGenerator.Options();
+        o.setSeed(3);
+        o.setRows(40);
+        Path fuel = new SyntheticDataGenerator(o).writeFuelForm(tmp.resolve("fuel.xlsx"));
+        Properties p = new Properties();
+        p.setProperty("jobs", "fuel, report");
+        module(p, "fuel", "fuel", fuel, o.getYear());
+        for (int i = 0; i < FUEL_KEYS.size(); i++)
+            p.setProperty("fuel.column." + FUEL_KEYS.get(i), String.valueOf(i));
+        p.setProperty("report.module", "general");
+        p.setProperty("report.fuel", "fuel");
+        // The report cannot be written until its folder exists
+        p.setProperty("report.output", tmp.resolve("out").resolve("report.xlsx").toString());
+        List<BatchJob> jobs = BatchJob.parse(p);
+        RunCheckpoint checkpoint = new RunCheckpoint(tmp.resolve("work"));
+
+        List<BatchRunner.JobResult> first = BatchRunner.runJobs(jobs, 2, Long.MAX_VALUE, checkpoint, null);
+        assertFalse(first.get(0).isResumed());
+        assertEquals(BatchRunner.STATUS_FAILED, first.get(1).getStatus());
+
+        List<BatchRunner.JobResult> second = BatchRunner.runJobs(jobs, 2, Long.MAX_VALUE, checkpoint, null);
+        assertTrue(second.get(0).isResumed());
+        assertEquals(BatchRunner.STATUS_OK, second.get(0).getStatus());
+        assertEquals(first.get(0).getRowsRead(), second.get(0).getRowsRead());
+        assertTrue(second.get(0).toJson().endsWith("\"resumed\": true}"));
+
+        // A changed output is not trusted: the job runs again
+        Path result = Path.of(p.getProperty("fuel.output"));
+        Files.write(result, new byte[] { 1 });
+        Files.createDirectories(tmp.resolve("out"));
+        List<BatchRunner.JobResult> third = BatchRunner.runJobs(jobs, 2, Long.MAX_VALUE, checkpoint, null);
+        assertFalse(third.get(0).isResumed());
+        assertTrue(Files.size(result) > 1);
+        assertEquals(BatchRunner.STATUS_OK, third.get(1).getStatus());
+        // A fully successful run clears the records
+        try (Stream<Path> left = Files.list(tmp.resolve("work"))) {
+            assertEquals(0, left.filter(f -> f.toString().endsWith(".done")).count());
+        }
+    }
+
+    private static void module(Properties p, String job, String module, Path input, int year) {
+        p.setProperty(job + ".module", module);
+        p.setProperty(job + ".input", input.toString());
+        p.setProperty(job + ".sheet", SyntheticDataGenerator.SHEET);
+        p.setProperty(job + ".year", String.valueOf(year));
+        p.setProperty(job + ".output", input.resolveSibling(job + "-result.xlsx").toString());
+    }
+
+    private static long rowsRead(String line) {
+        return number(line, "rowsRead");
+    }
+
+    private static long rowsWritten(String line) {
+        return number(line, "rowsWritten");
+    }
+
+    private static long number(String line, String key) {
+        int i = line.indexOf("\"" + key + "\": ") + key.length() + 4;
+        int j = i;
+        while (j < line.length() && (Character.isDigit(line.charAt(j)) || line.charAt(j) == '-'))
+            j++;
+        return Long.parseLong(line.substring(i, j));
+    }
+}
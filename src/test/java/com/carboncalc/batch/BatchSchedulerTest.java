@@ -0,0 +1,90 @@
+package com.carboncalc.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchSchedulerTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    public void admissionKeepsEstimatesUnderBudget() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        try (BatchScheduler scheduler = new BatchScheduler(4, 100)) {
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 6; i++)
+                futures.add(scheduler.submit(40, () -> busy(running, peak)));
+            for (CompletableFuture<Integer> f : futures)
+                f.join();
+            // Four workers, but only two 40-byte tasks fit in 100 bytes
+            assertEquals(2, peak.get());
+            assertEquals(2, scheduler.getPeakRunning());
+            assertEquals(80, scheduler.getPeakReserved());
+        }
+    }
+
+    @Test
+    public void oversizedTaskRunsAlone() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        try (BatchScheduler scheduler = new BatchScheduler(4, 100)) {
+            CompletableFuture<Integer> small = scheduler.submit(30, () -> busy(running, peak));
+            CompletableFuture<Integer> large = scheduler.submit(250, () -> busy(running, new AtomicInteger()));
+            CompletableFuture<Integer> later = scheduler.submit(30, () -> busy(running, peak));
+            // Recorded inside the large task: the other tasks are not running
+            assertEquals(1, large.join());
+            small.join();
+            later.join();
+        }
+    }
+
+    @Test
+    public void failureReleasesReservation() {
+        try (BatchScheduler scheduler = new BatchScheduler(1, 100)) {
+            CompletableFuture<String> failed = scheduler.submit(100, () -> {
+                throw new IllegalStateException("boom");
+            });
+            CompletionException e = assertThrows(CompletionException.class, failed::join);
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertEquals("ok", scheduler.submit(100, () -> "ok").join());
+        }
+    }
+
+    @Test
+    public void estimateScalesWithFormat() throws Exception {
+        byte[] kb = new byte[1024];
+        Path xlsx = Files.write(tmp.resolve("a.xlsx"), kb);
+        Path xls = Files.write(tmp.resolve("a.xls"), kb);
+        Path csv = Files.write(tmp.resolve("a.csv"), kb);
+        assertTrue(BatchScheduler.estimateBytes(xlsx) > BatchScheduler.estimateBytes(csv));
+        assertTrue(BatchScheduler.estimateBytes(csv) > BatchScheduler.estimateBytes(xls));
+        assertTrue(BatchScheduler.estimateBytes(xls) >= 1024);
+        assertEquals(0, BatchScheduler.estimateBytes(tmp.resolve("missing.xlsx")));
+    }
+
+    /** @return tasks running (including this one) when it started */
+    private static int busy(AtomicInteger running, AtomicInteger peak) {
+        int now = running.incrementAndGet();
+        peak.accumulateAndGet(now, Math::max);
+        try {
+            Thread.sleep(60);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running.decrementAndGet();
+        }
+        return now;
+    }
+}
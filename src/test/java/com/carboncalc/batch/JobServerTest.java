@@ -0,0 +1,152 @@
+package com.carboncalc.batch;
+
+import com.carboncalc.util.SyntheticDataGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JobServerTest {
+
+    private static final Pattern ID = Pattern.compile("\"(?:file|job)\": \"([^\"]+)\"");
+
+    @TempDir
+    Path tmp;
+
+    private JobServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @AfterEach
+    public void stop() {
+        if (server != null)
+            server.stop();
+    }
+
+    @Test
+    public void uploadSubmitPollAndDownload() throws Exception {
+        server = new JobServer(0, tmp.resolve("server"), 1, 4, 8, 1 << 20);
+        server.start();
+        SyntheticDataGenerator.Options o = new SyntheticDataGenerator.Options();
+        o.setRows(40);
+        SyntheticDataGenerator gen = new SyntheticDataGenerator(o);
+        Path form = gen.writeFuelForm(tmp.resolve("fuel.xlsx"));
+
+        HttpResponse<String> upload = post("/files?name=fuel.xlsx", HttpRequest.BodyPublishers.ofFile(form));
+        assertEquals(201, upload.statusCode(), upload.body());
+        String file = id(upload.body());
+
+        HttpResponse<String> submit = post("/jobs", body(fuelJob(file, o.getYear())));
+        assertEquals(202, submit.statusCode(), submit.body());
+        String job = id(submit.body());
+
+        String status = poll(job);
+        assertTrue(status.contains("\"status\": \"ok\""), status);
+        assertTrue(status.contains("\"rowsRead\": 40"), status);
+
+        HttpResponse<byte[]> result = client.send(request("/jobs/" + job + "/result").GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, result.statusCode());
+        // xlsx is a zip archive
+        assertEquals('P', result.body()[0]);
+        assertEquals('K', result.body()[1]);
+    }
+
+    @Test
+    public void overloadIsRefusedWith429() throws Exception {
+        server = new JobServer(0, tmp.resolve("server"), 1, 1, 8, 1 << 20);
+        server.start();
+        SyntheticDataGenerator.Options o = new SyntheticDataGenerator.Options();
+        o.setRows(10);
+        SyntheticDataGenerator gen = new SyntheticDataGenerator(o);
+        String file = id(post("/files?name=fuel.xlsx",
+                HttpRequest.BodyPublishers.ofFile(gen.writeFuelForm(tmp.resolve("fuel.xlsx")))).body());
+
+        // Occupy the only worker so submissions queue up
+        CountDownLatch release = new CountDownLatch(1);
+        server.workers().execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        HttpResponse<String> queued = post("/jobs", body(fuelJob(file, o.getYear())));
+        assertEquals(202, queued.statusCode(), queued.body());
+        String job = id(queued.body());
+        assertTrue(get("/jobs/" + job).body().contains("\"queuePosition\": 0"));
+
+        HttpResponse<String> refused = post("/jobs", body(fuelJob(file, o.getYear())));
+        assertEquals(429, refused.statusCode());
+        assertEquals(String.valueOf(JobServer.RETRY_AFTER_SECONDS),
+                refused.headers().firstValue("Retry-After").orElse(null));
+        assertEquals(409, get("/jobs/" + job + "/result").statusCode());
+
+        release.countDown();
+        assertTrue(poll(job).contains("\"status\": \"ok\""));
+    }
+
+    @Test
+    public void rejectsServerPathsAndUnknownJobs() throws Exception {
+        server = new JobServer(0, tmp.resolve("server"), 1, 1, 8, 16);
+        server.start();
+        assertEquals(400, post("/jobs", body("module=fuel\ninput=/etc/passwd\nsheet=a\nyear=2025\n")).statusCode());
+        assertEquals(400, post("/jobs", body("module=general\noutput=/tmp/x.xlsx\n")).statusCode());
+        assertEquals(404, get("/jobs/00000000-0000-0000-0000-000000000000").statusCode());
+        assertEquals(400, post("/files?name=script.sh", body("echo")).statusCode());
+        assertEquals(413, post("/files?name=big.csv", body("a,b,c\n1,2,3\n4,5,6\n")).statusCode());
+    }
+
+    private static String fuelJob(String file, int year) {
+        String[] keys = { "center", "responsible", "invoice", "provider", "invoiceDate", "fuelType", "vehicleType",
+                "amount", "completionTime" };
+        StringBuilder sb = new StringBuilder("module=fuel\ninput=" + file + "\nsheet=" + SyntheticDataGenerator.SHEET
+                + "\nyear=" + year + "\n");
+        for (int i = 0; i < keys.length; i++)
+            sb.append("column.").append(keys[i]).append('=').append(i).append('\n');
+        return sb.toString();
+    }
+
+    private String poll(String job) throws Exception {
+        for (int i = 0; i < 600; i++) {
+            String body = get("/jobs/" + job).body();
+            if (!body.contains("\"status\": \"queued\"") && !body.contains("\"status\": \"running\""))
+                return body;
+            Thread.sleep(50);
+        }
+        fail("Job did not finish");
+        return null;
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path));
+    }
+
+    private HttpResponse<String> post(String path, HttpRequest.BodyPublisher body) throws Exception {
+        return client.send(request(path).POST(body).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return client.send(request(path).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpRequest.BodyPublisher body(String text) {
+        return HttpRequest.BodyPublishers.ofString(text, StandardCharsets.UTF_8);
+    }
+
+    private static String id(String json) {
+        Matcher m = ID.matcher(json);
+        assertTrue(m.find(), json);
+        return m.group(1);
+    }
+}
@@ -0,0 +1,167 @@
+package com.carboncalc.batch;
+
+import com.carboncalc.util.SyntheticDataGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WatchDaemonTest {
+
+    private static final long DEBOUNCE = 1000;
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    public void reRunsOnlyTheChangedModuleAndTheReport() throws Exception {
+        SyntheticDataGenerator.Options o = new SyntheticDataGenerator.Options();
+        o.setRows(30);
+        SyntheticDataGenerator gen = new SyntheticDataGenerator(o);
+        Path fuelDir = Files.createDirectories(tmp.resolve("fuel"));
+        Path refDir = Files.createDirectories(tmp.resolve("refrigerant"));
+        WatchDaemon daemon = new WatchDaemon(BatchJob.parse(descriptor(fuelDir, refDir, o.getYear())), DEBOUNCE,
+                null);
+        assertTrue(daemon.tick(0).isEmpty());
+
+        // Lock files and temporary copies are never picked up
+        Files.write(fuelDir.resolve("~$fuel.xlsx"), new byte[] { 1 });
+        gen.writeFuelForm(fuelDir.resolve("fuel.xlsx.part"));
+        assertTrue(daemon.tick(0).isEmpty());
+        assertTrue(daemon.tick(DEBOUNCE).isEmpty());
+
+        gen.writeFuelForm(fuelDir.resolve("2025-01.xlsx"));
+        assertTrue(daemon.tick(10_000).isEmpty());
+        assertTrue(daemon.tick(10_500).isEmpty());
+        assertEquals(List.of("fuel:ok", "report:ok"), names(daemon.tick(11_000)));
+        assertTrue(Files.isRegularFile(tmp.resolve("report.xlsx")));
+        assertTrue(daemon.tick(12_000).isEmpty());
+
+        Path ref = gen.writeRefrigerantForm(refDir.resolve("2025-01.xlsx"));
+        daemon.tick(20_000);
+        assertEquals(List.of("ref:ok", "report:ok"), names(daemon.tick(21_000)));
+
+        // A file still being written restarts the quiet period
+        Files.write(ref, new byte[] { 1, 2, 3 });
+        daemon.tick(30_000);
+        gen.writeRefrigerantForm(ref);
+        Files.setLastModifiedTime(ref, FileTime.fromMillis(System.currentTimeMillis() + 5_000));
+        assertTrue(daemon.tick(31_000).isEmpty());
+        assertEquals(List.of("ref:ok", "report:ok"), names(daemon.tick(32_000)));
+    }
+
+    @Test
+    public void upToDateOutputsAreNotRecomputedAtStart() throws Exception {
+        SyntheticDataGenerator.Options o = new SyntheticDataGenerator.Options();
+        o.setRows(10);
+        SyntheticDataGenerator gen = new SyntheticDataGenerator(o);
+        Path fuelDir = Files.createDirectories(tmp.resolve("fuel"));
+        Path refDir = Files.createDirectories(tmp.resolve("refrigerant"));
+        gen.writeFuelForm(fuelDir.resolve("a.xlsx"));
+        List<BatchJob> jobs = BatchJob.parse(descriptor(fuelDir, refDir, o.getYear()));
+
+        WatchDaemon first = new WatchDaemon(jobs, DEBOUNCE, null);
+        first.tick(0);
+        assertEquals(List.of("fuel:ok", "report:ok"), names(first.tick(DEBOUNCE)));
+
+        WatchDaemon restarted = new WatchDaemon(jobs, DEBOUNCE, null);
+        assertTrue(restarted.tick(0).isEmpty());
+        assertTrue(restarted.tick(DEBOUNCE).isEmpty());
+    }
+
+    @Test
+    public void electricityRunsOnEveryFileOfTheFolder() throws Exception {
+        SyntheticDataGenerator.Options o = new SyntheticDataGenerator.Options();
+        o.setRows(20);
+        Path dir = Files.createDirectories(tmp.resolve("elec"));
+        Path jan = new SyntheticDataGenerator(o).writeElectricityProvider(dir.resolve("2025-01.xlsx"));
+        o.setSeed(o.getSeed() + 1);
+        Path feb = new SyntheticDataGenerator(o).writeElectricityProvider(dir.resolve("2025-02.xlsx"));
+        Files.setLastModifiedTime(jan, FileTime.fromMillis(1_000_000));
+        Files.setLastModifiedTime(feb, FileTime.fromMillis(2_000_000));
+        WatchDaemon daemon = new WatchDaemon(BatchJob.parse(electricity(dir, o.getYear(), false)), DEBOUNCE, null);
+
+        BatchJob job = BatchJob.parse(electricity(dir, o.getYear(), false)).get(0);
+        assertEquals(List.of(jan, feb), daemon.sources(job));
+        daemon.tick(0);
+        List<BatchRunner.JobResult> ran = daemon.tick(DEBOUNCE);
+        assertEquals(List.of("elec:ok"), names(ran));
+        assertEquals(40, ran.get(0).getRowsRead());
+    }
+
+    @Test
+    public void appendRunsEachNewFileOnceInOrder() throws Exception {
+        SyntheticDataGenerator.Options o = new SyntheticDataGenerator.Options();
+        o.setRows(20);
+        Path dir = Files.createDirectories(tmp.resolve("elec"));
+        // Two files landing within one debounce window are both appended
+        Path feb = new SyntheticDataGenerator(o).writeElectricityProvider(dir.resolve("2025-02.xlsx"));
+        Path jan = new SyntheticDataGenerator(o).writeElectricityProvider(dir.resolve("2025-01.xlsx"));
+        Files.setLastModifiedTime(jan, FileTime.fromMillis(1_000_000));
+        Files.setLastModifiedTime(feb, FileTime.fromMillis(2_000_000));
+        List<BatchJob> jobs = BatchJob.parse(electricity(dir, o.getYear(), true));
+        WatchDaemon daemon = new WatchDaemon(jobs, DEBOUNCE, null);
+        assertEquals(List.of(jan, feb), daemon.sources(jobs.get(0)));
+        daemon.tick(0);
+        assertEquals(List.of("elec:ok", "elec:ok"), names(daemon.tick(DEBOUNCE)));
+        assertTrue(daemon.sources(jobs.get(0)).isEmpty());
+        assertTrue(Files.isRegularFile(Path.of(jobs.get(0).get("output") + WatchDaemon.LEDGER_SUFFIX)));
+
+        // A file that arrives while the daemon is down is appended on restart
+        Path mar = new SyntheticDataGenerator(o).writeElectricityProvider(dir.resolve("2025-03.xlsx"));
+        WatchDaemon restarted = new WatchDaemon(jobs, DEBOUNCE, null);
+        assertEquals(List.of(mar), restarted.sources(jobs.get(0)));
+        restarted.tick(0);
+        assertEquals(List.of("elec:ok"), names(restarted.tick(DEBOUNCE)));
+        assertTrue(restarted.tick(2 * DEBOUNCE).isEmpty());
+    }
+
+    private Properties electricity(Path dir, int year, boolean append) {
+        Properties p = new Properties();
+        p.setProperty("jobs", "elec");
+        watched(p, "elec", "electricity", dir, year,
+                new String[] { "cups", "invoice", "start", "end", "consumption", "center", "entity" });
+        p.setProperty("elec.append", String.valueOf(append));
+        return p;
+    }
+
+    private Properties descriptor(Path fuelDir, Path refDir, int year) {
+        Properties p = new Properties();
+        p.setProperty("jobs", "fuel, ref, report");
+        String[] fuelKeys = { "center", "responsible", "invoice", "provider", "invoiceDate", "fuelType",
+                "vehicleType", "amount", "completionTime" };
+        String[] refKeys = { "center", "person", "invoice", "provider", "invoiceDate", "refrigerantType", "quantity",
+                "completionTime" };
+        watched(p, "fuel", "fuel", fuelDir, year, fuelKeys);
+        watched(p, "ref", "refrigerant", refDir, year, refKeys);
+        p.setProperty("report.module", "general");
+        p.setProperty("report.fuel", "fuel");
+        p.setProperty("report.refrigerant", "ref");
+        p.setProperty("report.output", tmp.resolve("report.xlsx").toString());
+        return p;
+    }
+
+    private void watched(Properties p, String job, String module, Path dir, int year, String[] keys) {
+        p.setProperty(job + ".module", module);
+        p.setProperty(job + ".watch", dir.toString());
+        p.setProperty(job + ".sheet", SyntheticDataGenerator.SHEET);
+        p.setProperty(job + ".year", String.valueOf(year));
+        p.setProperty(job + ".output", tmp.resolve(job + "-result.xlsx").toString());
+        for (int i = 0; i < keys.length; i++)
+            p.setProperty(job + ".column." + keys[i], String.valueOf(i));
+    }
+
+    private static List<String> names(List<BatchRunner.JobResult> results) {
+        List<String> out = new ArrayList<>();
+        for (BatchRunner.JobResult r : results)
+            out.add(r.getJob() + ":" + r.getStatus());
+        return out;
+    }
+}
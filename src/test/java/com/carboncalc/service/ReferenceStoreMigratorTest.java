@@ -0,0 +1,149 @@
+package com.carboncalc.service;
+
+import com.carboncalc.model.CupsCenterMapping;
+import com.carboncalc.model.factors.ElectricityGeneralFactors;
+import com.carboncalc.model.factors.FuelEmissionFactor;
+import com.carboncalc.model.factors.GasFactorEntry;
+import com.carboncalc.model.factors.RefrigerantEmissionFactor;
+import com.carboncalc.util.SyntheticDataGenerator;
+import com.carboncalc.util.excel.DataRoot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReferenceStoreMigratorTest {
+
+    @TempDir
+    Path tmp;
+
+    @AfterEach
+    public void closeStore() throws IOException {
+        Path dir = tmp.resolve("data").resolve(ReferenceStoreMigrator.STORE_DIR);
+        if (ReferenceStore.exists(dir))
+            ReferenceStore.open(dir).close();
+    }
+
+    private int writeData(Path data) throws IOException {
+        SyntheticDataGenerator.Options o = new SyntheticDataGenerator.Options();
+        o.setSeed(7);
+        o.setCenters(20);
+        o.setCups(30);
+        o.setMarketers(4);
+        new SyntheticDataGenerator(o).writeReferenceData(data);
+        return o.getYear();
+    }
+
+    @Test
+    public void importMatchesCsvServicesAndSwitchesDataRoot() throws Exception {
+        Path data = tmp.resolve("data");
+        int year = writeData(data);
+        DataRoot root = new DataRoot(data);
+        assertFalse(root.usesStore());
+        assertTrue(root.cups() instanceof CupsServiceCsv);
+
+        assertTrue(ReferenceStoreMigrator.importCsv(data) > 0);
+        assertTrue(root.usesStore());
+        assertTrue(root.cups() instanceof CupsServiceStore);
+
+        String factors = root.factorsDir().toString();
+        assertMappingsEqual(new CupsServiceCsv(data.toString()).loadCupsData(), root.cups().loadCupsData());
+        assertFactorsEqual(new ElectricityFactorServiceCsv(factors).loadFactors(year),
+                root.electricityFactors().loadFactors(year));
+        assertGasEqual(new GasFactorServiceCsv(factors).loadGasFactors(year), root.gasFactors().loadGasFactors(year));
+        assertFuelEqual(new FuelFactorServiceCsv(factors).loadFuelFactors(year),
+                root.fuelFactors().loadFuelFactors(year));
+        assertRefrigerantEqual(new RefrigerantFactorServiceCsv(factors).loadRefrigerantFactors(year),
+                root.refrigerantFactors().loadRefrigerantFactors(year));
+        assertEquals(List.of(year), root.emissionFactors().getAvailableYears("ELECTRICITY"));
+    }
+
+    @Test
+    public void exportWritesTheCsvLayoutBack() throws Exception {
+        Path data = tmp.resolve("data");
+        int year = writeData(data);
+        ReferenceStoreMigrator.importCsv(data);
+        ReferenceStore store = ReferenceStore.open(data.resolve(ReferenceStoreMigrator.STORE_DIR));
+        new GasFactorServiceStore(store)
+                .saveGasFactor(new GasFactorEntry("Biogas", "Biogas", year, 0.01, 0.02, "kWh"));
+
+        Path out = tmp.resolve("out");
+        ReferenceStoreMigrator.exportCsv(store, out);
+
+        String factors = out.resolve("emission_factors").toString();
+        assertMappingsEqual(new CupsServiceStore(store).loadCupsData(),
+                new CupsServiceCsv(out.toString()).loadCupsData());
+        assertFactorsEqual(new ElectricityFactorServiceStore(store).loadFactors(year),
+                new ElectricityFactorServiceCsv(factors).loadFactors(year));
+        List<GasFactorEntry> gas = new GasFactorServiceCsv(factors).loadGasFactors(year);
+        assertGasEqual(new GasFactorServiceStore(store).loadGasFactors(year), gas);
+        assertTrue(gas.stream().anyMatch(g -> "BIOGAS".equals(g.getGasType())));
+        assertFuelEqual(new FuelFactorServiceStore(store).loadFuelFactors(year),
+                new FuelFactorServiceCsv(factors).loadFuelFactors(year));
+    }
+
+    @Test
+    public void runReportsUsage() {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream sink = new PrintStream(new ByteArrayOutputStream());
+        assertEquals(ReferenceStoreMigrator.EXIT_USAGE,
+                ReferenceStoreMigrator.run(new String[] { "upgrade" }, sink, new PrintStream(err)));
+        assertFalse(err.toString().isEmpty());
+    }
+
+    private static void assertMappingsEqual(List<CupsCenterMapping> expected, List<CupsCenterMapping> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getCups(), actual.get(i).getCups());
+            assertEquals(expected.get(i).getCenterName(), actual.get(i).getCenterName());
+            assertEquals(expected.get(i).getMarketer(), actual.get(i).getMarketer());
+            assertEquals(expected.get(i).getEnergyType(), actual.get(i).getEnergyType());
+        }
+    }
+
+    private static void assertFactorsEqual(ElectricityGeneralFactors expected, ElectricityGeneralFactors actual) {
+        assertEquals(expected.getMixSinGdo(), actual.getMixSinGdo(), 1e-9);
+        assertEquals(expected.getLocationBasedFactor(), actual.getLocationBasedFactor(), 1e-9);
+        List<ElectricityGeneralFactors.TradingCompany> a = expected.getTradingCompanies();
+        List<ElectricityGeneralFactors.TradingCompany> b = actual.getTradingCompanies();
+        assertEquals(a.size(), b.size());
+        for (int i = 0; i < a.size(); i++) {
+            assertEquals(a.get(i).getName(), b.get(i).getName());
+            assertEquals(a.get(i).getEmissionFactor(), b.get(i).getEmissionFactor(), 1e-9);
+            assertEquals(a.get(i).getGdoType(), b.get(i).getGdoType());
+        }
+    }
+
+    private static void assertGasEqual(List<GasFactorEntry> expected, List<GasFactorEntry> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getGasType(), actual.get(i).getGasType());
+            assertEquals(expected.get(i).getMarketFactor(), actual.get(i).getMarketFactor(), 1e-6);
+            assertEquals(expected.get(i).getLocationFactor(), actual.get(i).getLocationFactor(), 1e-6);
+        }
+    }
+
+    private static void assertFuelEqual(List<FuelEmissionFactor> expected, List<FuelEmissionFactor> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getEntity(), actual.get(i).getEntity());
+            assertEquals(expected.get(i).getBaseFactor(), actual.get(i).getBaseFactor(), 1e-6);
+        }
+    }
+
+    private static void assertRefrigerantEqual(List<RefrigerantEmissionFactor> expected,
+            List<RefrigerantEmissionFactor> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getRefrigerantType(), actual.get(i).getRefrigerantType());
+            assertEquals(expected.get(i).getPca(), actual.get(i).getPca(), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.carboncalc.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReferenceStoreTest {
+
+    @TempDir
+    Path tmp;
+
+    @AfterEach
+    public void closeStore() throws IOException {
+        ReferenceStore.open(tmp).close();
+    }
+
+    @Test
+    public void committedWritesSurviveReopen() throws Exception {
+        ReferenceStore store = ReferenceStore.open(tmp);
+        try (ReferenceStore.Transaction tx = store.begin()) {
+            tx.put(ReferenceStore.FACTORS, ReferenceStore.factorKey(ReferenceStore.GAS, 2024, "propano"), "PROPANO",
+                    "0.2", "0.21", "kWh");
+            tx.put(ReferenceStore.FACTORS, ReferenceStore.factorKey(ReferenceStore.GAS, 2025, "propano"), "PROPANO",
+                    "0.3", "0.31", null);
+            tx.commit();
+        }
+        store.close();
+
+        store = ReferenceStore.open(tmp);
+        List<String[]> rows = store.scan(ReferenceStore.FACTORS, ReferenceStore.prefix(ReferenceStore.GAS, "2024"));
+        assertEquals(1, rows.size());
+        assertArrayEquals(new String[] { "PROPANO", "0.2", "0.21", "kWh" }, rows.get(0));
+        assertNull(store.get(ReferenceStore.FACTORS,
+                ReferenceStore.factorKey(ReferenceStore.GAS, 2025, " Propano "))[3]);
+    }
+
+    @Test
+    public void uncommittedWritesAreDiscarded() throws Exception {
+        ReferenceStore store = ReferenceStore.open(tmp);
+        ReferenceStore.Transaction tx = store.begin();
+        tx.put(ReferenceStore.CUPS_CENTERS, ReferenceStore.key("ES001"), "ES001");
+        tx.close();
+
+        assertEquals(0, store.size(ReferenceStore.CUPS_CENTERS));
+        assertThrows(IllegalStateException.class, () -> tx.put(ReferenceStore.CUPS_CENTERS, "X", "X"));
+    }
+
+    @Test
+    public void tornTailIsCutOffOnOpen() throws Exception {
+        ReferenceStore store = ReferenceStore.open(tmp);
+        try (ReferenceStore.Transaction tx = store.begin()) {
+            tx.put(ReferenceStore.CUPS_CENTERS, ReferenceStore.key("ES001"), "ES001");
+            tx.commit();
+        }
+        long size = store.logBytes();
+        store.close();
+
+        // a record header promising more bytes than were written
+        try (FileChannel ch = FileChannel.open(tmp.resolve(ReferenceStore.LOG_FILE), StandardOpenOption.APPEND)) {
+            ch.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 64, 1, 2, 3, 4, 5 }));
+        }
+
+        store = ReferenceStore.open(tmp);
+        assertEquals(1, store.size(ReferenceStore.CUPS_CENTERS));
+        assertEquals(size, store.logBytes());
+        try (ReferenceStore.Transaction tx = store.begin()) {
+            tx.put(ReferenceStore.CUPS_CENTERS, ReferenceStore.key("ES002"), "ES002");
+            tx.commit();
+        }
+        store.close();
+        assertEquals(2, ReferenceStore.open(tmp).size(ReferenceStore.CUPS_CENTERS));
+    }
+
+    @Test
+    public void indexesFollowUpdatesAndDeletes() throws Exception {
+        ReferenceStore store = ReferenceStore.open(tmp);
+        try (ReferenceStore.Transaction tx = store.begin()) {
+            tx.put(ReferenceStore.CUPS_CENTERS, ReferenceStore.key("ES001", "Centro A"), "ES001", "", "Centro A");
+            tx.put(ReferenceStore.CUPS_CENTERS, ReferenceStore.key("ES001", "Centro B"), "ES001", "", "Centro B");
+            tx.put(ReferenceStore.CUPS_CENTERS, ReferenceStore.key("ES002", "Centro A"), "ES002", "", "Centro A");
+            tx.commit();
+        }
+        assertEquals(2, store.lookup(ReferenceStore.CUPS_CENTERS, ReferenceStore.BY_CUPS, "es001").size());
+        assertEquals(2, store.lookup(ReferenceStore.CUPS_CENTERS, ReferenceStore.BY_CENTER, "centro a").size());
+
+        try (ReferenceStore.Transaction tx = store.begin()) {
+            tx.delete(ReferenceStore.CUPS_CENTERS, ReferenceStore.key("ES001", "Centro A"));
+            tx.put(ReferenceStore.CUPS_CENTERS, ReferenceStore.key("ES002", "Centro A"), "ES002", "", "Centro C");
+            tx.commit();
+        }
+        assertEquals(1, store.lookup(ReferenceStore.CUPS_CENTERS, ReferenceStore.BY_CUPS, "ES001").size());
+        assertTrue(store.lookup(ReferenceStore.CUPS_CENTERS, ReferenceStore.BY_CENTER, "Centro A").isEmpty());
+        List<String[]> ordered = store.ordered(ReferenceStore.CUPS_CENTERS, ReferenceStore.BY_CENTER);
+        assertEquals(Arrays.asList("Centro B", "Centro C"), Arrays.asList(ordered.get(0)[2], ordered.get(1)[2]));
+    }
+
+    @Test
+    public void compactionKeepsLiveRowsAndShrinksLog() throws Exception {
+        ReferenceStore store = ReferenceStore.open(tmp);
+        for (int i = 0; i < 50; i++) {
+            try (ReferenceStore.Transaction tx = store.begin()) {
+                tx.put(ReferenceStore.FACTORS, ReferenceStore.factorKey(ReferenceStore.REFRIGERANT, 2024, "R-32"),
+                        "R-32", String.valueOf(i));
+                tx.commit();
+            }
+        }
+        long before = store.logBytes();
+        store.compact();
+        assertTrue(store.logBytes() < before);
+        store.close();
+
+        store = ReferenceStore.open(tmp);
+        assertArrayEquals(new String[] { "R-32", "49" }, store.get(ReferenceStore.FACTORS,
+                ReferenceStore.factorKey(ReferenceStore.REFRIGERANT, 2024, "r-32")));
+    }
+
+    @Test
+    public void processesSharingTheDirectorySeeEachOthersCommits() throws Exception {
+        ReferenceStore store = ReferenceStore.open(tmp);
+        ReferenceStore other = ReferenceStore.openUnshared(tmp);
+        try {
+            String key = ReferenceStore.factorKey(ReferenceStore.FUEL, 2024, "Gasoil");
+            try (ReferenceStore.Transaction tx = other.begin()) {
+                tx.put(ReferenceStore.FACTORS, key, "GASOIL", "2.5");
+                tx.commit();
+            }
+            assertArrayEquals(new String[] { "GASOIL", "2.5" }, store.get(ReferenceStore.FACTORS, key));
+
+            try (ReferenceStore.Transaction tx = store.begin()) {
+                tx.put(ReferenceStore.FACTORS, key, "GASOIL", "2.6");
+                tx.put(ReferenceStore.CUPS_CENTERS, ReferenceStore.key("ES001", "Centro A"), "ES001", "", "Centro A");
+                tx.commit();
+            }
+            assertEquals("2.6", other.get(ReferenceStore.FACTORS, key)[1]);
+            assertEquals(1, other.lookup(ReferenceStore.CUPS_CENTERS, ReferenceStore.BY_CUPS, "es001").size());
+
+            // A compaction replaces the log under the other instance
+            other.compact();
+            try (ReferenceStore.Transaction tx = other.begin()) {
+                tx.delete(ReferenceStore.CUPS_CENTERS, ReferenceStore.key("ES001", "Centro A"));
+                tx.commit();
+            }
+            assertEquals(0, store.size(ReferenceStore.CUPS_CENTERS));
+            assertEquals("2.6", store.get(ReferenceStore.FACTORS, key)[1]);
+            assertEquals(other.logBytes(), store.logBytes());
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    public void keysIgnoreCaseWidthAndSpacing() {
+        assertEquals(ReferenceStore.key("Gas Natural", "2024"),
+                ReferenceStore.key(" GAS\u00A0NATURAL ", "\uFF12\uFF10\uFF12\uFF14"));
+        assertArrayEquals(new String[] { "GAS", "2024", "PROPANO" },
+                ReferenceStore.parts(ReferenceStore.factorKey(ReferenceStore.GAS, 2024, "propano")));
+    }
+}
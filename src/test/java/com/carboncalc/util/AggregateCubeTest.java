@@ -0,0 +1,71 @@
+package com.carboncalc.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.carboncalc.util.AggregateCube.Dimension;
+import com.carboncalc.util.AggregateCube.Measure;
+
+public class AggregateCubeTest {
+
+    private static String[] members(String center, String month, String module, String scope, String campus) {
+        String[] m = new String[Dimension.values().length];
+        m[Dimension.CENTER.ordinal()] = center;
+        m[Dimension.MONTH.ordinal()] = month;
+        m[Dimension.MODULE.ordinal()] = module;
+        m[Dimension.SCOPE.ordinal()] = scope;
+        m[Dimension.CAMPUS.ordinal()] = campus;
+        return m;
+    }
+
+    @Test
+    public void addMergesIdenticalTuples() {
+        AggregateCube cube = new AggregateCube();
+        cube.add(members("A", "2024-01", "electricity", "2", "Norte"), 100, 1.0, 2.0);
+        cube.add(members("A", "2024-01", "electricity", "2", "Norte"), 50, 0.5, 1.0);
+        cube.add(members("B", "2024-02", "gas", "1", "Sur"), 10, 0.1, 0.1);
+
+        assertEquals(2, cube.cellCount());
+        assertEquals(160, cube.total(Measure.CONSUMPTION), 1e-9);
+        assertEquals(3.1, cube.total(Measure.EMISSIONS_LOCATION), 1e-9);
+    }
+
+    @Test
+    public void rollUpAndSliceAggregateAcrossCells() {
+        AggregateCube cube = new AggregateCube();
+        // 40 facts spread over 4 centers, 2 campuses and 12 months
+        for (int i = 0; i < 40; i++) {
+            String center = "C" + (i % 4);
+            String campus = (i % 4) < 2 ? "Norte" : "Sur";
+            String month = String.format("2024-%02d", (i % 12) + 1);
+            cube.add(members(center, month, "electricity", "2", campus), 1.0, 0.5, 0.25);
+        }
+
+        AggregateCube byCampus = cube.rollUp(Dimension.CAMPUS);
+        assertEquals(2, byCampus.cellCount());
+        int[] sorted = byCampus.sortedCells(Dimension.CAMPUS);
+        assertEquals("Norte", byCampus.member(sorted[0], Dimension.CAMPUS));
+        assertEquals(20, byCampus.value(sorted[0], Measure.CONSUMPTION), 1e-9);
+        assertNull(byCampus.member(sorted[0], Dimension.CENTER), "rolled-up dimension has no member");
+
+        AggregateCube sur = cube.slice(Dimension.CAMPUS, "Sur");
+        assertEquals(10.0, sur.total(Measure.EMISSIONS_MARKET), 1e-9);
+        AggregateCube surByMonth = sur.rollUp(Dimension.MONTH);
+        // i % 4 in {2, 3} only reaches months 3, 4, 7, 8, 11 and 12
+        assertEquals(6, surByMonth.cellCount());
+        assertEquals(20, sur.total(Measure.CONSUMPTION), 1e-9);
+
+        assertEquals(0, cube.slice(Dimension.CAMPUS, "Este").cellCount());
+    }
+
+    @Test
+    public void nullMembersAreStoredAsEmpty() {
+        AggregateCube cube = new AggregateCube();
+        cube.add(null, 1, 1, 1);
+        cube.add(new String[] { "A" }, 1, 1, 1);
+        assertEquals(2, cube.cellCount());
+        assertEquals("", cube.member(0, Dimension.CAMPUS));
+        assertTrue(cube.members(Dimension.CENTER).contains("A"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.carboncalc.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InvoiceKeySetTest {
+
+    @Test
+    public void behavesLikeAHashSet() {
+        InvoiceKeySet set = new InvoiceKeySet();
+        Set<String> reference = new HashSet<>();
+        Random random = new Random(3);
+        List<String> added = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            String key = "FAC-" + random.nextInt(15_000);
+            assertEquals(reference.add(key), set.add(key));
+            if (reference.size() > added.size())
+                added.add(key);
+        }
+        assertEquals(reference.size(), set.size());
+        for (int i = 0; i < 15_000; i++)
+            assertEquals(reference.contains("FAC-" + i), set.contains("FAC-" + i));
+        assertFalse(set.contains("FAC-15000"));
+        assertFalse(set.contains(42));
+        // Iteration follows insertion order
+        assertEquals(added, new ArrayList<>(set));
+        assertEquals(reference, set);
+    }
+
+    @Test
+    public void keepsNonLatinKeysAndCollidingHashes() {
+        InvoiceKeySet set = new InvoiceKeySet();
+        // "Aa" and "BB" share String.hashCode
+        assertTrue(set.add("Aa"));
+        assertTrue(set.add("BB"));
+        assertTrue(set.add("Fактура-7"));
+        assertTrue(set.add(""));
+        assertFalse(set.add("BB"));
+        assertTrue(set.contains("Aa"));
+        assertTrue(set.contains("BB"));
+        assertTrue(set.contains("Fактура-7"));
+        assertFalse(set.contains("Fактура-8"));
+        assertTrue(set.contains(""));
+        assertEquals(List.of("Aa", "BB", "Fактура-7", ""), new ArrayList<>(set));
+        assertThrows(NullPointerException.class, () -> set.add(null));
+    }
+
+    @Test
+    public void footprintIsAFractionOfTheKeys() {
+        InvoiceKeySet set = new InvoiceKeySet();
+        for (int i = 0; i < 100_000; i++)
+            set.add(String.format("2025/FE/%07d", i));
+        // 15 chars per key; a HashSet needs roughly 100 bytes per entry
+        assertTrue(set.footprintBytes() < 100_000L * 48, String.valueOf(set.footprintBytes()));
+    }
+}
@@ -0,0 +1,67 @@
+package com.carboncalc.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+
+public class PeriodProrationTest {
+
+    private static double sum(double[] v) {
+        double t = 0.0;
+        for (double d : v)
+            t += d;
+        return t;
+    }
+
+    @Test
+    public void splitsByDayOverlapAcrossMonths() {
+        // 15 Jan - 14 Feb 2025: 17 days in January, 14 in February
+        double[] m = PeriodProration.monthlyShares(LocalDate.of(2025, 1, 15), LocalDate.of(2025, 2, 14), 310.0,
+                2025);
+        assertEquals(12, m.length);
+        assertEquals(170.0, m[0], 1e-9);
+        assertEquals(140.0, m[1], 1e-9);
+        assertEquals(310.0, sum(m), 1e-9);
+    }
+
+    @Test
+    public void periodCrossingYearKeepsOnlyReportingYearDays() {
+        // 2024-12-22 .. 2025-01-10 = 20 days, 10 of them in January 2025
+        double[] m = PeriodProration.monthlyShares(LocalDate.of(2024, 12, 22), LocalDate.of(2025, 1, 10), -200.0,
+                2025);
+        assertEquals(-100.0, m[0], 1e-9);
+        assertEquals(-100.0, sum(m), 1e-9);
+    }
+
+    @Test
+    public void leapFebruaryHasTwentyNineDays() {
+        double[] m = PeriodProration.monthlyShares(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 3, 31), 60.0, 2024);
+        assertEquals(29.0, m[1], 1e-9);
+        assertEquals(31.0, m[2], 1e-9);
+    }
+
+    @Test
+    public void touchesYearIncludesWholeYearSpans() {
+        LocalDate start = LocalDate.of(2023, 7, 1);
+        LocalDate end = LocalDate.of(2025, 6, 30);
+        assertTrue(PeriodProration.touchesYear(start, end, 2023));
+        assertTrue(PeriodProration.touchesYear(start, end, 2024));
+        assertTrue(PeriodProration.touchesYear(start, end, 2025));
+        assertFalse(PeriodProration.touchesYear(start, end, 2026));
+        assertTrue(PeriodProration.touchesYear(null, end, 2025));
+        assertFalse(PeriodProration.touchesYear(null, end, 2024));
+        assertFalse(PeriodProration.touchesYear(null, null, 2024));
+    }
+
+    @Test
+    public void missingOrInvertedDates() {
+        double[] m = PeriodProration.monthlyShares(null, LocalDate.of(2025, 6, 3), 42.0, 2025);
+        assertEquals(42.0, m[5], 1e-9);
+        assertEquals(0.0, sum(PeriodProration.monthlyShares(null, LocalDate.of(2024, 6, 3), 42.0, 2025)), 0.0);
+        assertEquals(0.0, sum(PeriodProration.monthlyShares(null, null, 42.0, 2025)), 0.0);
+        assertEquals(0.0, sum(PeriodProration.monthlyShares(LocalDate.of(2025, 3, 2), LocalDate.of(2025, 3, 1), 1.0,
+                2025)), 0.0);
+    }
+}
@@ -0,0 +1,68 @@
+package com.carboncalc.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchIndexTest {
+
+    private static final String[] ROWS = {
+            "ES0021000000000001AA\u0001Escuela Técnica Superior de Ingenieros\u0001ETSI\u0001Iberdrola\u0001Madrid",
+            "ES0031000000000002BB\u0001Facultad de Informática\u0001FI\u0001Endesa\u0001Boadilla del Monte",
+            "ES0021000000000003CC\u0001Rectorado\u0001REC\u0001Iberdrola\u0001MADRID",
+            "ES0021000000000004DD\u0001Centro de Cálculo\u0001CC\u0001Naturgy\u0001Ávila"
+    };
+
+    private static SearchIndex index() {
+        return SearchIndex.build(ROWS.length, r -> ROWS[r]);
+    }
+
+    @Test
+    public void testSearch_foldsAccentsAndCase() {
+        SearchIndex idx = index();
+        assertArrayEquals(new int[] { 1 }, idx.search("informatica"));
+        assertArrayEquals(new int[] { 0, 2 }, idx.search("madrid"));
+        assertArrayEquals(new int[] { 3 }, idx.search("AVILA"));
+        assertArrayEquals(new int[] { 3 }, idx.search("cálc"));
+        assertArrayEquals(new int[] { 0, 1, 2, 3 }, idx.search("  "));
+        assertEquals(0, idx.search("gasóleo").length);
+    }
+
+    @Test
+    public void testSearch_allTermsMustMatch_shortTermsAndCodes() {
+        SearchIndex idx = index();
+        assertArrayEquals(new int[] { 0, 2 }, idx.search("iberdrola es0021"));
+        assertArrayEquals(new int[] { 2 }, idx.search("iberdrola rec"));
+        assertArrayEquals(new int[] { 1 }, idx.search("fi"));
+        // Columns are separated, so a term cannot span two cells
+        assertEquals(0, idx.search("etsiiberdrola").length);
+    }
+
+    @Test
+    public void testRefine_matchesFullSearchWhenQueryNarrows() {
+        SearchIndex idx = index();
+        int[] first = idx.search("iber");
+        assertTrue(SearchIndex.narrows("iber", "iberdrola madr"));
+        assertFalse(SearchIndex.narrows("iberdrola", "iber"));
+        assertArrayEquals(idx.search("iberdrola madr"), idx.refine(first, "iberdrola madr"));
+    }
+
+    @Test
+    public void testSearch_largeInventoryIsFast() {
+        int n = 100_000;
+        String[] cities = { "Madrid", "Ávila", "Segovia", "Toledo", "Cuenca" };
+        SearchIndex idx = SearchIndex.build(n, r -> String.format("ES%016dXY\u0001Centro %d\u0001C%d\u0001Comercializadora %d\u0001%s",
+                r, r, r, r % 50, cities[r % cities.length]));
+
+        long best = Long.MAX_VALUE;
+        int[] hits = null;
+        for (int i = 0; i < 5; i++) {
+            long t0 = System.nanoTime();
+            hits = idx.search("centro 4242");
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+        assertTrue(hits.length > 0);
+        assertEquals(4242, hits[0]);
+        assertTrue(best / 1_000_000 < 50, "search took " + best / 1_000_000 + " ms");
+    }
+}
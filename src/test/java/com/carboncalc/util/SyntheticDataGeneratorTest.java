@@ -0,0 +1,138 @@
+package com.carboncalc.util;
+
+import com.carboncalc.model.CupsCenterMapping;
+import com.carboncalc.service.CupsServiceCsv;
+import com.carboncalc.service.ElectricityFactorServiceCsv;
+import com.carboncalc.service.FuelFactorServiceCsv;
+import com.carboncalc.service.GasFactorServiceCsv;
+import com.carboncalc.service.RefrigerantFactorServiceCsv;
+import com.carboncalc.util.excel.DataRoot;
+import com.carboncalc.util.excel.ElectricityExcelExporter;
+import com.carboncalc.util.excel.ExportOptions;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SyntheticDataGeneratorTest {
+
+    @TempDir
+    Path tmp;
+
+    private static SyntheticDataGenerator.Options options(SyntheticDataGenerator.Format format) {
+        SyntheticDataGenerator.Options o = new SyntheticDataGenerator.Options();
+        o.setSeed(7);
+        o.setRows(500);
+        o.setCenters(20);
+        o.setCups(50);
+        o.setSharedCupsRatio(0.5);
+        o.setMarketers(4);
+        o.setFormat(format);
+        return o;
+    }
+
+    @Test
+    public void sameSeedProducesIdenticalFiles() throws Exception {
+        Map<String, Path> a = new SyntheticDataGenerator(options(SyntheticDataGenerator.Format.CSV))
+                .writeAll(tmp.resolve("a"));
+        Map<String, Path> b = new SyntheticDataGenerator(options(SyntheticDataGenerator.Format.CSV))
+                .writeAll(tmp.resolve("b"));
+        for (String key : Arrays.asList("electricity", "gas", "electricityErp", "fuel", "refrigerant"))
+            assertArrayEquals(Files.readAllBytes(a.get(key)), Files.readAllBytes(b.get(key)), key);
+
+        SyntheticDataGenerator.Options other = options(SyntheticDataGenerator.Format.CSV);
+        other.setSeed(8);
+        Path c = new SyntheticDataGenerator(other).writeFuelForm(tmp.resolve("c.csv"));
+        assertFalse(Arrays.equals(Files.readAllBytes(a.get("fuel")), Files.readAllBytes(c)));
+    }
+
+    @Test
+    public void referenceDataLoadsThroughServices() throws Exception {
+        SyntheticDataGenerator gen = new SyntheticDataGenerator(options(SyntheticDataGenerator.Format.XLSX));
+        Path data = tmp.resolve("data");
+        gen.writeReferenceData(data);
+
+        List<CupsCenterMapping> cups = new CupsServiceCsv(data.toString()).loadCupsData();
+        Map<String, Integer> centersPerCups = new HashMap<>();
+        for (CupsCenterMapping m : cups)
+            centersPerCups.merge(m.getCups(), 1, Integer::sum);
+        // 50 electricity and 50 gas CUPS, about half shared by two centers
+        assertEquals(100, centersPerCups.size());
+        long shared = centersPerCups.values().stream().filter(n -> n > 1).count();
+        assertTrue(shared > 30 && shared < 70, "shared=" + shared);
+
+        String factors = data.resolve("emission_factors").toString();
+        assertEquals(4, new ElectricityFactorServiceCsv(factors).loadFactors(2025).getTradingCompanies().size());
+        assertEquals(SyntheticDataGenerator.GAS_TYPES.length, new GasFactorServiceCsv(factors).loadGasFactors(2025).size());
+        assertEquals(9, new FuelFactorServiceCsv(factors).loadFuelFactors(2025).size());
+        assertEquals(5, new RefrigerantFactorServiceCsv(factors).loadRefrigerantFactors(2025).size());
+    }
+
+    @Test
+    public void generatedElectricityHasMarketBasedEmissions() throws Exception {
+        SyntheticDataGenerator.Options o = options(SyntheticDataGenerator.Format.XLSX);
+        SyntheticDataGenerator gen = new SyntheticDataGenerator(o);
+        Path data = tmp.resolve("data");
+        gen.writeReferenceData(data);
+        Path provider = gen.writeElectricityProvider(tmp.resolve("provider.xlsx"));
+        Path out = tmp.resolve("out.xlsx");
+        ExportOptions options = new ExportOptions();
+        options.setDataRoot(new DataRoot(data));
+
+        ElectricityExcelExporter.exportElectricityData(out.toString(), provider.toString(),
+                SyntheticDataGenerator.SHEET, null, null, gen.electricityMapping(), o.getYear(), "extended",
+                Collections.emptySet(), options);
+
+        // Detailed sheet: market factor in column O, one row per center share
+        try (Workbook wb = WorkbookLoader.open(out.toFile())) {
+            Sheet detailed = wb.getSheetAt(0);
+            int rows = 0;
+            int withFactor = 0;
+            for (int r = 1; r <= detailed.getLastRowNum(); r++) {
+                Row row = detailed.getRow(r);
+                if (row == null || row.getCell(14) == null)
+                    continue;
+                rows++;
+                if (row.getCell(14).getNumericCellValue() > 0)
+                    withFactor++;
+            }
+            assertTrue(rows > 0);
+            assertEquals(rows, withFactor);
+        }
+    }
+
+    @Test
+    public void providerSheetMatchesMappingAndReferencesKnownCups() throws Exception {
+        SyntheticDataGenerator gen = new SyntheticDataGenerator(options(SyntheticDataGenerator.Format.XLSX));
+        Path provider = gen.writeElectricityProvider(tmp.resolve("provider.xlsx"));
+        List<CupsCenterMapping> cups = gen.cupsMappings();
+
+        try (FileInputStream in = new FileInputStream(provider.toFile()); Workbook wb = new XSSFWorkbook(in)) {
+            Sheet sheet = wb.getSheet(SyntheticDataGenerator.SHEET);
+            assertEquals(500, sheet.getLastRowNum());
+            DataFormatter df = new DataFormatter();
+            int cupsCol = gen.electricityMapping().getCupsIndex();
+            int startCol = gen.electricityMapping().getStartDateIndex();
+            for (int r = 1; r <= sheet.getLastRowNum(); r++) {
+                Row row = sheet.getRow(r);
+                String code = df.formatCellValue(row.getCell(cupsCol));
+                assertTrue(cups.stream().anyMatch(m -> m.getCups().equals(code)), code);
+                assertNotNull(DateUtils.parseDateLenient(df.formatCellValue(row.getCell(startCol))));
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.carboncalc.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.table.DefaultTableModel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TableColumnSizerTest {
+
+    @Test
+    public void testSampleRows_boundedSortedAndStable() {
+        assertArrayEquals(new int[] { 0, 1, 2 }, TableColumnSizer.sampleRows(3));
+
+        int[] rows = TableColumnSizer.sampleRows(100_000);
+        assertEquals(TableColumnSizer.SAMPLE_HEAD + TableColumnSizer.SAMPLE_TAIL + TableColumnSizer.SAMPLE_SPREAD,
+                rows.length);
+        assertEquals(0, rows[0]);
+        assertEquals(99_999, rows[rows.length - 1]);
+        for (int i = 1; i < rows.length; i++)
+            assertTrue(rows[i] > rows[i - 1]);
+        assertArrayEquals(rows, TableColumnSizer.sampleRows(100_000));
+    }
+
+    @Test
+    public void testPackAll_widthFollowsSampledContentWithinBounds() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            DefaultTableModel model = new DefaultTableModel(new Object[] { "A", "B" }, 0);
+            for (int i = 0; i < 5_000; i++)
+                model.addRow(new Object[] { "x", i == 0 ? "a rather long value in the first row" : "y" });
+            JTable table = new JTable(model);
+
+            TableColumnSizer.packAll(table, 3);
+            int narrow = table.getColumnModel().getColumn(0).getPreferredWidth();
+            int wide = table.getColumnModel().getColumn(1).getPreferredWidth();
+            assertEquals(TableColumnSizer.DEFAULT_MIN_WIDTH, narrow);
+            assertTrue(wide > narrow);
+            assertTrue(wide <= TableColumnSizer.DEFAULT_MAX_WIDTH);
+
+            // A changed sampled value is picked up on the next pack
+            model.setValueAt("y", 0, 1);
+            TableColumnSizer.packAll(table, 3);
+            assertTrue(table.getColumnModel().getColumn(1).getPreferredWidth() < wide);
+        });
+    }
+}
@@ -0,0 +1,201 @@
+package com.carboncalc.util;
+
+import org.apache.poi.openxml4j.util.ZipSecureFile;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorkbookFootprintTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    public void xlsxIsEstimatedFromItsZipDirectory() throws Exception {
+        Path xlsx = writeRows(tmp.resolve("a.xlsx"), 2000);
+        WorkbookFootprint f = WorkbookFootprint.inspect(xlsx.toFile());
+        assertTrue(f.isIndexed());
+        assertEquals(Files.size(xlsx), f.getFileBytes());
+        // Inflated sheet XML is larger than the whole zip
+        assertTrue(f.getSheetXmlBytes() > f.getFileBytes());
+        assertTrue(f.getSharedStringsBytes() > 0);
+        assertTrue(f.estimatedDomBytes() > f.getSheetXmlBytes() + f.getSharedStringsBytes());
+
+        assertEquals(WorkbookFootprint.ReadMode.DOM, f.readMode(Long.MAX_VALUE));
+        assertEquals(WorkbookFootprint.ReadMode.STREAMING, f.readMode(f.estimatedDomBytes() - 1));
+        assertEquals(WorkbookFootprint.WriteMode.XSSF, WorkbookFootprint.writeMode(100, 200));
+        assertEquals(WorkbookFootprint.WriteMode.SXSSF, WorkbookFootprint.writeMode(101, 200));
+    }
+
+    @Test
+    public void otherFilesAreEstimatedFromTheirSize() throws Exception {
+        byte[] kb = new byte[1024];
+        WorkbookFootprint csv = WorkbookFootprint.inspect(Files.write(tmp.resolve("a.csv"), kb).toFile());
+        WorkbookFootprint xls = WorkbookFootprint.inspect(Files.write(tmp.resolve("a.xls"), kb).toFile());
+        WorkbookFootprint broken = WorkbookFootprint.inspect(Files.write(tmp.resolve("b.xlsx"), kb).toFile());
+        assertFalse(csv.isIndexed() || xls.isIndexed() || broken.isIndexed());
+        assertTrue(broken.estimatedDomBytes() > csv.estimatedDomBytes());
+        assertTrue(csv.estimatedDomBytes() > xls.estimatedDomBytes());
+        // Only .xlsx files can be streamed
+        assertEquals(WorkbookFootprint.ReadMode.DOM, csv.readMode(1));
+        assertEquals(0, WorkbookFootprint.inspect(tmp.resolve("missing.xlsx").toFile()).estimatedDomBytes());
+    }
+
+    @Test
+    public void highlyCompressedWorkbookIsParsedOnceAndLimitRestored() throws Exception {
+        double limit = ZipSecureFile.getMinInflateRatio();
+        // ~0.5% compressed: rejected by POI's default limit, above the floor
+        Path dense = pad(writeRows(tmp.resolve("dense.xlsx"), 10), tmp.resolve("dense-padded.xlsx"), 10_000,
+                1_000_000);
+        WorkbookFootprint f = WorkbookFootprint.inspect(dense.toFile());
+        assertTrue(f.getInflateRatio() < limit && f.getInflateRatio() > WorkbookFootprint.MIN_RELAXED_RATIO,
+                String.valueOf(f.getInflateRatio()));
+        assertThrows(IOException.class, () -> {
+            try (InputStream in = Files.newInputStream(dense)) {
+                new XSSFWorkbook(in).close();
+            }
+        });
+        try (Workbook wb = f.open()) {
+            assertEquals(9, wb.getSheetAt(0).getLastRowNum());
+        }
+        assertEquals(limit, ZipSecureFile.getMinInflateRatio());
+
+        // Deflate cannot go below ~1/1032; a lower declared ratio is forged
+        Path bomb = pad(writeRows(tmp.resolve("bomb.xlsx"), 10), tmp.resolve("bomb-padded.xlsx"), 0, 1_000_000);
+        declareSize(bomb, "xl/worksheets/sheet1.xml", 2_000_000_000L);
+        assertTrue(WorkbookFootprint.inspect(bomb.toFile()).getInflateRatio() < WorkbookFootprint.MIN_RELAXED_RATIO);
+        IOException e = assertThrows(IOException.class, () -> WorkbookFootprint.inspect(bomb.toFile()).open());
+        assertTrue(e.getMessage().contains("zip bomb"), e.getMessage());
+        assertEquals(limit, ZipSecureFile.getMinInflateRatio());
+    }
+
+    @Test
+    public void otherParsesNeverSeeTheLoweredLimit() throws Exception {
+        double limit = ZipSecureFile.getMinInflateRatio();
+        Path dense = pad(writeRows(tmp.resolve("dense.xlsx"), 10), tmp.resolve("dense-padded.xlsx"), 10_000,
+                1_000_000);
+        WorkbookFootprint relaxed = WorkbookFootprint.inspect(dense.toFile());
+        WorkbookFootprint plain = WorkbookFootprint.inspect(writeRows(tmp.resolve("plain.xlsx"), 10).toFile());
+        CountDownLatch lowered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean released = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Double> seenByRelaxed = pool.submit(() -> relaxed.guarded(() -> {
+                lowered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return ZipSecureFile.getMinInflateRatio();
+            }));
+            assertTrue(lowered.await(30, TimeUnit.SECONDS));
+            // A parse at the configured limit waits for the relaxed one
+            Future<Boolean> plainAfterRelease = pool
+                    .submit(() -> plain.guarded(() -> released.get() && ZipSecureFile.getMinInflateRatio() == limit));
+            Thread.sleep(200);
+            released.set(true);
+            release.countDown();
+            assertTrue(seenByRelaxed.get(30, TimeUnit.SECONDS) < limit);
+            assertTrue(plainAfterRelease.get(30, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(limit, ZipSecureFile.getMinInflateRatio());
+    }
+
+    @Test
+    public void streamingWriterTracksColumnsAndDeletesItsFiles() throws Exception {
+        try (Workbook wb = WorkbookFootprint.newWorkbook(WorkbookFootprint.WriteMode.SXSSF)) {
+            assertTrue(wb instanceof SXSSFWorkbook);
+            Sheet sheet = wb.createSheet("data");
+            for (int i = 0; i <= WorkbookFootprint.STREAMING_WINDOW; i++)
+                sheet.createRow(i).createCell(0).setCellValue("row " + i);
+            // Would throw for an untracked column
+            sheet.autoSizeColumn(0);
+            assertNull(sheet.getRow(0));
+        }
+        try (Workbook wb = WorkbookFootprint.newWorkbook(WorkbookFootprint.WriteMode.XSSF)) {
+            assertTrue(wb instanceof XSSFWorkbook);
+        }
+    }
+
+    private static Path writeRows(Path file, int rows) throws IOException {
+        try (XSSFWorkbook wb = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = wb.createSheet("data");
+            for (int i = 0; i < rows; i++) {
+                sheet.createRow(i).createCell(0).setCellValue("FAC-" + i);
+                sheet.getRow(i).createCell(1).setCellValue(i * 1.5);
+            }
+            wb.write(out);
+        }
+        return file;
+    }
+
+    // Overwrite the uncompressed size the central directory declares for entry
+    private static void declareSize(Path zip, String entry, long size) throws IOException {
+        byte[] bytes = Files.readAllBytes(zip);
+        byte[] name = entry.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i + 46 + name.length <= bytes.length; i++) {
+            if (buf.getInt(i) == 0x02014b50 && buf.getShort(i + 28) == name.length
+                    && Arrays.equals(Arrays.copyOfRange(bytes, i + 46, i + 46 + name.length), name)) {
+                buf.putInt(i + 24, (int) size);
+                Files.write(zip, bytes);
+                return;
+            }
+        }
+        fail("entry not found: " + entry);
+    }
+
+    // Copy an .xlsx adding a comment of random and blank characters to its
+    // sheet, which compresses to about (random / 2 + blank / 1000) bytes
+    private static Path pad(Path source, Path target, int random, int blank) throws IOException {
+        Random rnd = new Random(1);
+        StringBuilder comment = new StringBuilder("<!--");
+        for (int i = 0; i < random; i++)
+            comment.append(Character.forDigit(rnd.nextInt(16), 16));
+        for (int i = 0; i < blank; i++)
+            comment.append(' ');
+        comment.append("--></worksheet>");
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(source));
+                ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(target))) {
+            for (ZipEntry e = in.getNextEntry(); e != null; e = in.getNextEntry()) {
+                byte[] data = in.readAllBytes();
+                if (e.getName().equals("xl/worksheets/sheet1.xml"))
+                    data = new String(data, StandardCharsets.UTF_8).replace("</worksheet>", comment)
+                            .getBytes(StandardCharsets.UTF_8);
+                out.putNextEntry(new ZipEntry(e.getName()));
+                out.write(data);
+                out.closeEntry();
+            }
+        }
+        return target;
+    }
+}
@@ -0,0 +1,226 @@
+package com.carboncalc.util;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.SwingUtilities;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorkbookLoaderTest {
+
+    private static File writeWorkbook(Workbook wb, String suffix, String... sheets) throws IOException {
+        Path tmp = Files.createTempFile("loader-test", suffix);
+        tmp.toFile().deleteOnExit();
+        for (String s : sheets)
+            wb.createSheet(s).createRow(0).createCell(0).setCellValue(s);
+        try (FileOutputStream out = new FileOutputStream(tmp.toFile())) {
+            wb.write(out);
+        }
+        wb.close();
+        return tmp.toFile();
+    }
+
+    @Test
+    public void testReadSheetNames_xlsxInOrder_xlsEmpty() throws Exception {
+        File xlsx = writeWorkbook(new XSSFWorkbook(), ".xlsx", "Enero", "Datos", "Resumen");
+        assertEquals(Arrays.asList("Enero", "Datos", "Resumen"), WorkbookLoader.readSheetNames(xlsx));
+
+        File xls = writeWorkbook(new HSSFWorkbook(), ".xls", "Hoja1");
+        assertTrue(WorkbookLoader.readSheetNames(xls).isEmpty());
+        assertTrue(WorkbookLoader.readSheetNames(new File("missing.xlsx")).isEmpty());
+    }
+
+    @Test
+    public void testOpenHead_streamsOnlyTheFirstRowsWhenOverBudget() throws Exception {
+        XSSFWorkbook source = new XSSFWorkbook();
+        Sheet sheet = source.createSheet("Datos");
+        // Two blank rows before the header
+        sheet.createRow(2).createCell(1).setCellValue("Factura");
+        for (int i = 3; i < 300; i++) {
+            sheet.createRow(i).createCell(1).setCellValue("F-" + i);
+            sheet.getRow(i).createCell(2).setCellValue(i + 0.5);
+        }
+        source.createSheet("Otra");
+        File xlsx = writeWorkbook(source, ".xlsx");
+
+        try (Workbook head = WorkbookLoader.openHead(xlsx, 10, 1L)) {
+            assertEquals(1, head.getNumberOfSheets());
+            Sheet s = head.getSheet("Datos");
+            assertEquals(12, s.getLastRowNum());
+            assertEquals("Factura", s.getRow(2).getCell(1).getStringCellValue());
+            assertEquals("F-12", s.getRow(12).getCell(1).getStringCellValue());
+            assertEquals("12.5", s.getRow(12).getCell(2).getStringCellValue());
+        }
+        try (Workbook whole = WorkbookLoader.openHead(xlsx, 10, Long.MAX_VALUE)) {
+            assertEquals(2, whole.getNumberOfSheets());
+            assertEquals(299, whole.getSheet("Datos").getLastRowNum());
+        }
+    }
+
+    @Test
+    public void testLoad_reportsSheetNamesThenWorkbookOnEdt() throws Exception {
+        File xlsx = writeWorkbook(new XSSFWorkbook(), ".xlsx", "A", "B");
+        List<String> events = new ArrayList<>();
+        AtomicReference<Workbook> loaded = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        WorkbookLoader loader = new WorkbookLoader(null, null);
+        SwingUtilities.invokeAndWait(() -> loader.load(xlsx, new WorkbookLoader.Listener() {
+            @Override
+            public void sheetNamesRead(List<String> names) {
+                events.add("names:" + names + ":" + SwingUtilities.isEventDispatchThread());
+            }
+
+            @Override
+            public void loaded(Workbook workbook) {
+                events.add("loaded:" + SwingUtilities.isEventDispatchThread());
+                loaded.set(workbook);
+                done.countDown();
+            }
+
+            @Override
+            public void failed(Exception error) {
+                events.add("failed");
+                done.countDown();
+            }
+        }));
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("names:[A, B]:true", "loaded:true"), events);
+        try (Workbook wb = loaded.get()) {
+            assertEquals(2, wb.getNumberOfSheets());
+        }
+    }
+
+    @Test
+    public void testLoad_supersededLoadIsClosedAndNeverReported() throws Exception {
+        File xlsx = writeWorkbook(new XSSFWorkbook(), ".xlsx", "Nuevo");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean firstClosed = new AtomicBoolean();
+        AtomicBoolean firstReported = new AtomicBoolean();
+        AtomicReference<Workbook> second = new AtomicReference<>();
+        CountDownLatch secondDone = new CountDownLatch(1);
+
+        WorkbookLoader loader = new WorkbookLoader(null, null);
+        SwingUtilities.invokeAndWait(() -> {
+            loader.load(new File("slow.xlsx"), file -> {
+                started.countDown();
+                release.await();
+                return new XSSFWorkbook() {
+                    @Override
+                    public void close() throws IOException {
+                        firstClosed.set(true);
+                        super.close();
+                    }
+                };
+            }, new WorkbookLoader.Listener() {
+                @Override
+                public void loaded(Workbook workbook) {
+                    firstReported.set(true);
+                }
+
+                @Override
+                public void failed(Exception error) {
+                    firstReported.set(true);
+                }
+            });
+        });
+        // Supersede only once the first load is busy parsing
+        assertTrue(started.await(30, TimeUnit.SECONDS));
+        SwingUtilities.invokeAndWait(() -> {
+            loader.load(xlsx, new WorkbookLoader.Listener() {
+                @Override
+                public void loaded(Workbook workbook) {
+                    second.set(workbook);
+                    secondDone.countDown();
+                }
+
+                @Override
+                public void failed(Exception error) {
+                    secondDone.countDown();
+                }
+            });
+        });
+
+        assertTrue(secondDone.await(30, TimeUnit.SECONDS));
+        assertNotNull(second.get());
+        second.get().close();
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!firstClosed.get() && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertTrue(firstClosed.get());
+        // Let any pending done() callback run before checking
+        Thread.sleep(50);
+        SwingUtilities.invokeAndWait(() -> {
+        });
+        assertFalse(firstReported.get());
+        assertFalse(loader.isLoading());
+    }
+
+    @Test
+    public void testLoad_cancelledAfterParsingClosesWorkbook() throws Exception {
+        CountDownLatch parsed = new CountDownLatch(1);
+        AtomicBoolean closed = new AtomicBoolean();
+        AtomicBoolean reported = new AtomicBoolean();
+
+        WorkbookLoader loader = new WorkbookLoader(null, null);
+        // Hold the EDT until doInBackground has returned, so done() only
+        // runs after the cancel
+        SwingUtilities.invokeAndWait(() -> {
+            loader.load(new File("fast.xlsx"), file -> {
+                try {
+                    return new XSSFWorkbook() {
+                        @Override
+                        public void close() throws IOException {
+                            closed.set(true);
+                            super.close();
+                        }
+                    };
+                } finally {
+                    parsed.countDown();
+                }
+            }, new WorkbookLoader.Listener() {
+                @Override
+                public void loaded(Workbook workbook) {
+                    reported.set(true);
+                }
+
+                @Override
+                public void failed(Exception error) {
+                    reported.set(true);
+                }
+            });
+            try {
+                assertTrue(parsed.await(30, TimeUnit.SECONDS));
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            loader.cancel();
+        });
+        SwingUtilities.invokeAndWait(() -> {
+        });
+
+        assertTrue(closed.get());
+        assertFalse(reported.get());
+    }
+}
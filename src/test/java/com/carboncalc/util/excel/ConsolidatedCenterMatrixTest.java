@@ -0,0 +1,108 @@
+package com.carboncalc.util.excel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+public class ConsolidatedCenterMatrixTest {
+
+    private static void addRow(Sheet s, int r, String center, double value) {
+        Row row = s.createRow(r);
+        row.createCell(0).setCellValue(center);
+        row.createCell(1).setCellValue(value);
+    }
+
+    @Test
+    public void joinKeepsFirstAppearanceOrderAndSumsDuplicates() throws Exception {
+        try (Workbook wb = new XSSFWorkbook()) {
+            Sheet el = wb.createSheet("Electricidad - Por centro");
+            el.createRow(0).createCell(0).setCellValue("Centro");
+            addRow(el, 1, "B", 1.0);
+            addRow(el, 2, "A", 2.0);
+            addRow(el, 3, "B", 0.5);
+
+            Sheet gas = wb.createSheet("Gas - Por centro");
+            gas.createRow(0).createCell(0).setCellValue("Centro");
+            addRow(gas, 1, "C", 3.0);
+            addRow(gas, 2, "A", 4.0);
+
+            ConsolidatedCenterMatrix m = new ConsolidatedCenterMatrix();
+            assertEquals(3, m.join(ConsolidatedCenterMatrix.EL_MARKET, el, 1, el.getSheetName()));
+            assertEquals(2, m.join(ConsolidatedCenterMatrix.GAS, gas, 1, null));
+
+            assertEquals(java.util.Arrays.asList("B", "A", "C"), m.getCenters());
+            assertEquals(1.5, m.get(0, ConsolidatedCenterMatrix.EL_MARKET), 1e-9);
+            assertEquals(4.0, m.get(1, ConsolidatedCenterMatrix.GAS), 1e-9);
+            assertEquals(6.0, m.totalMarket(1), 1e-9);
+            assertEquals(3.0, m.scope1(2), 1e-9);
+
+            assertEquals("'Electricidad - Por centro'!B2+'Electricidad - Por centro'!B4",
+                    m.getSourceRef(0, ConsolidatedCenterMatrix.EL_MARKET));
+            assertNull(m.getSourceRef(1, ConsolidatedCenterMatrix.GAS));
+            assertNull(m.getSourceRef(2, ConsolidatedCenterMatrix.EL_MARKET));
+        }
+    }
+
+    @Test
+    public void joinEvaluatesFormulasWithoutCachedValue() throws Exception {
+        try (Workbook wb = new XSSFWorkbook()) {
+            Sheet s = wb.createSheet("Por centro");
+            s.createRow(0).createCell(0).setCellValue("Centro");
+            Row r = s.createRow(1);
+            r.createCell(0).setCellValue("A");
+            r.createCell(1).setCellFormula("2*3");
+
+            ConsolidatedCenterMatrix m = new ConsolidatedCenterMatrix();
+            m.join(ConsolidatedCenterMatrix.FUEL, s, 1, null);
+            assertEquals(6.0, m.get(0, ConsolidatedCenterMatrix.FUEL), 1e-9);
+        }
+    }
+
+    @Test
+    public void resultsReportWritesCachedValuesAndDirectReferences() throws Exception {
+        File src = Files.createTempFile("matrix-src", ".xlsx").toFile();
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            Sheet s = wb.createSheet("Gas - Por centro");
+            Row h = s.createRow(0);
+            h.createCell(0).setCellValue("Centro");
+            h.createCell(1).setCellValue("Consumo");
+            h.createCell(2).setCellValue("Emisiones gas");
+            for (int i = 1; i <= 3; i++) {
+                Row d = s.createRow(i);
+                d.createCell(0).setCellValue("Centro " + i);
+                d.createCell(2).setCellValue(i * 10.0);
+            }
+            try (FileOutputStream fos = new FileOutputStream(src)) {
+                wb.write(fos);
+            }
+        }
+
+        File out = Files.createTempFile("matrix-out", ".xlsx").toFile();
+        GeneralExcelExporter.exportResultsReport(out.getAbsolutePath(), null, src, null, null, true);
+
+        try (FileInputStream fis = new FileInputStream(out); XSSFWorkbook outWb = new XSSFWorkbook(fis)) {
+            Sheet generales = outWb.getSheet("Resultados generales");
+            Cell gasCell = generales.getRow(2).getCell(3);
+            assertEquals("'Gas - Por centro'!C3", gasCell.getCellFormula());
+            assertEquals(20.0, gasCell.getNumericCellValue(), 1e-9);
+            // Alcance 1 and totals carry cached values as well
+            assertEquals(20.0, generales.getRow(2).getCell(6).getNumericCellValue(), 1e-9);
+            assertEquals(60.0, generales.getRow(4).getCell(9).getNumericCellValue(), 1e-9);
+
+            Sheet alcance = outWb.getSheet("Resultados por alcance");
+            Cell a1 = alcance.getRow(3).getCell(1);
+            assertFalse(a1.getCellFormula().contains("VLOOKUP"));
+            assertEquals(30.0, a1.getNumericCellValue(), 1e-9);
+        }
+    }
+}
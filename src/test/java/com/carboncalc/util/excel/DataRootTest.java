@@ -0,0 +1,62 @@
+package com.carboncalc.util.excel;
+
+import com.carboncalc.util.SyntheticDataGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataRootTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    public void exportReadsFactorsFromItsDataRoot() throws Exception {
+        SyntheticDataGenerator.Options o = new SyntheticDataGenerator.Options();
+        o.setSeed(11);
+        o.setRows(60);
+        SyntheticDataGenerator gen = new SyntheticDataGenerator(o);
+        Path form = gen.writeFuelForm(tmp.resolve("fuel.xlsx"));
+        Path withFactors = Files.createDirectories(tmp.resolve("orgA").resolve("data"));
+        gen.writeReferenceData(withFactors);
+        Path empty = Files.createDirectories(tmp.resolve("orgB").resolve("data"));
+
+        assertEquals(1.0, factorHitRate(gen, form, withFactors), 1e-9);
+        assertEquals(0.0, factorHitRate(gen, form, empty), 1e-9);
+    }
+
+    @Test
+    public void currentYearFallsBackToCalendarYear() throws Exception {
+        DataRoot root = new DataRoot(tmp);
+        assertEquals(LocalDate.now().getYear(), root.currentYear());
+        Path year = Files.createDirectories(tmp.resolve("year")).resolve("current_year.txt");
+        Files.write(year, "2031\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(2031, root.currentYear());
+        Files.write(year, "next\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(LocalDate.now().getYear(), root.currentYear());
+    }
+
+    @Test
+    public void defaultsToDataUnderWorkingDirectory() {
+        assertSame(DataRoot.DEFAULT, DataRoot.of(null));
+        assertSame(DataRoot.DEFAULT, DataRoot.of(new ExportOptions()));
+        assertEquals(Path.of("data", "emission_factors"), DataRoot.DEFAULT.factorsDir());
+    }
+
+    private double factorHitRate(SyntheticDataGenerator gen, Path form, Path data) throws Exception {
+        ExportMetrics[] received = new ExportMetrics[1];
+        ExportOptions options = new ExportOptions();
+        options.setDataRoot(new DataRoot(data));
+        options.setMetricsListener(m -> received[0] = m);
+        FuelExcelExporter.exportFuelData(tmp.resolve("out.xlsx").toString(), form.toString(),
+                SyntheticDataGenerator.SHEET, gen.fuelMapping(), gen.getOptions().getYear(), "extended", null, null,
+                options);
+        return received[0].getHitRate(ExportMetrics.LOOKUP_FACTOR);
+    }
+}
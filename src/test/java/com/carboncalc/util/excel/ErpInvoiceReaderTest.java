@@ -0,0 +1,110 @@
+package com.carboncalc.util.excel;
+
+import com.carboncalc.model.enums.EnergyType;
+import com.carboncalc.util.CellUtils;
+import com.carboncalc.util.ExcelCsvLoader;
+import com.carboncalc.util.SyntheticDataGenerator;
+import com.carboncalc.util.WorkbookLoader;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ErpInvoiceReaderTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    public void streamedXlsxMatchesWorkbookReading() throws Exception {
+        SyntheticDataGenerator gen = generator(SyntheticDataGenerator.Format.XLSX);
+        Path erp = gen.writeErp(tmp.resolve("erp.xlsx"), EnergyType.GAS);
+        int year = gen.getOptions().getYear();
+        ErpInvoiceReader.Columns columns = ErpInvoiceReader.byHeader(gen.erpInvoiceHeader(),
+                gen.erpConformityHeader());
+
+        Set<String> conformed = ErpInvoiceReader.read(erp.toString(), SyntheticDataGenerator.SHEET, columns,
+                ErpInvoiceReader.conformed());
+        assertEquals(expected(erp, 0), conformed);
+        assertTrue(conformed.size() > 0 && conformed.size() < gen.getOptions().getRows());
+
+        // Excel date cells count by their four-digit year
+        Set<String> sinceYear = ErpInvoiceReader.read(erp.toString(), SyntheticDataGenerator.SHEET, columns,
+                ErpInvoiceReader.conformedSince(year));
+        assertEquals(expected(erp, year), sinceYear);
+        assertFalse(sinceYear.isEmpty());
+    }
+
+    @Test
+    public void csvAndColumnKeysUseTheWorkbookPath() throws Exception {
+        SyntheticDataGenerator gen = generator(SyntheticDataGenerator.Format.CSV);
+        Path erp = gen.writeErp(tmp.resolve("erp.csv"), EnergyType.ELECTRICITY);
+        String sheet = sheetName(erp);
+        Set<String> byName = ErpInvoiceReader.read(erp.toString(), sheet,
+                ErpInvoiceReader.byKey(gen.erpInvoiceHeader().toUpperCase(), "3"), ErpInvoiceReader.conformed());
+        assertEquals(expected(erp, 0), byName);
+
+        assertTrue(ErpInvoiceReader.read(erp.toString(), sheet, ErpInvoiceReader.byHeader("Nope", "Nope"),
+                ErpInvoiceReader.conformed()).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> ErpInvoiceReader.read(erp.toString(), sheet,
+                ErpInvoiceReader.byKey("Nope", "3"), ErpInvoiceReader.conformed()));
+        assertThrows(IllegalArgumentException.class, () -> ErpInvoiceReader.read(erp.toString(), "missing",
+                ErpInvoiceReader.byKey("0", "3"), ErpInvoiceReader.conformed()));
+    }
+
+    private static SyntheticDataGenerator generator(SyntheticDataGenerator.Format format) {
+        SyntheticDataGenerator.Options o = new SyntheticDataGenerator.Options();
+        o.setSeed(9);
+        o.setRows(600);
+        o.setConformedRatio(0.7);
+        o.setFormat(format);
+        return new SyntheticDataGenerator(o);
+    }
+
+    // Invoice numbers accepted by the rules, read cell by cell from a workbook
+    private static Set<String> expected(Path erp, int minYear) throws Exception {
+        Set<String> out = new HashSet<>();
+        try (Workbook wb = open(erp)) {
+            Sheet sheet = wb.getSheetAt(0);
+            DataFormatter df = new DataFormatter();
+            for (Row row : sheet) {
+                if (row.getRowNum() == 0)
+                    continue;
+                String invoice = CellUtils.getCellString(row.getCell(0), df, null).trim();
+                Cell conformity = row.getCell(3);
+                String text = CellUtils.getCellString(conformity, df, null).trim();
+                int year;
+                if (conformity != null && conformity.getCellType() == CellType.NUMERIC
+                        && DateUtil.isCellDateFormatted(conformity))
+                    year = conformity.getLocalDateTimeCellValue().getYear();
+                else
+                    year = ErpInvoiceReader.conformityYear(text);
+                if (!invoice.isEmpty() && (minYear > 0 ? year >= minYear : !text.isEmpty()))
+                    out.add(invoice);
+            }
+        }
+        return out;
+    }
+
+    private static String sheetName(Path erp) throws Exception {
+        try (Workbook wb = open(erp)) {
+            return wb.getSheetName(0);
+        }
+    }
+
+    private static Workbook open(Path file) throws Exception {
+        return file.toString().endsWith(".csv") ? ExcelCsvLoader.loadCsvAsWorkbookFromPath(file.toString())
+                : WorkbookLoader.open(file.toFile());
+    }
+}
@@ -0,0 +1,106 @@
+package com.carboncalc.util.excel;
+
+import com.carboncalc.util.SyntheticDataGenerator;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExportMetricsTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    public void nestedPhasesReportExclusiveTime() throws Exception {
+        ExportMetrics m = new ExportMetrics("test");
+        m.begin("outer");
+        Thread.sleep(20);
+        m.begin("inner");
+        Thread.sleep(40);
+        m.end();
+        m.end();
+        m.finish();
+        Map<String, Double> phases = m.getPhaseMillis();
+        assertTrue(phases.get("inner") >= 40.0, phases.toString());
+        assertTrue(phases.get("outer") >= 20.0 && phases.get("outer") < phases.get("inner"), phases.toString());
+        assertTrue(phases.get("outer") + phases.get("inner") <= m.getTotalMillis() + 0.001);
+    }
+
+    @Test
+    public void fuelExportWritesSheetSidecarAndNotifiesListener() throws Exception {
+        SyntheticDataGenerator.Options o = new SyntheticDataGenerator.Options();
+        o.setSeed(3);
+        o.setRows(200);
+        SyntheticDataGenerator gen = new SyntheticDataGenerator(o);
+        Path form = gen.writeFuelForm(tmp.resolve("fuel.xlsx"));
+        Path out = tmp.resolve("out.xlsx");
+
+        List<ExportMetrics> received = new ArrayList<>();
+        ExportOptions options = new ExportOptions();
+        options.setMetricsSheet(true);
+        options.setMetricsSidecar(true);
+        options.setMetricsListener(received::add);
+        FuelExcelExporter.exportFuelData(out.toString(), form.toString(), SyntheticDataGenerator.SHEET,
+                gen.fuelMapping(), o.getYear(), "extended", null, null, options);
+
+        assertEquals(1, received.size());
+        ExportMetrics m = received.get(0);
+        assertEquals(200, m.getRowsRead());
+        assertEquals(m.getRowsRead(), m.getRowsWritten() + m.getSkippedTotal());
+        assertTrue(m.getRowsWritten() > 0);
+        assertTrue(m.getPhaseMillis().keySet().containsAll(List.of(ExportMetrics.PHASE_READ,
+                ExportMetrics.PHASE_ROWS, ExportMetrics.PHASE_SHEETS, ExportMetrics.PHASE_WRITE)));
+        assertTrue(m.getPeakHeapBytes() > 0);
+
+        String json = new String(Files.readAllBytes(ExportMetrics.sidecarPath(out.toString())),
+                StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"module\": \"fuel\""), json);
+        assertTrue(json.contains("\"read\": 200"), json);
+
+        try (FileInputStream in = new FileInputStream(out.toFile()); Workbook wb = new XSSFWorkbook(in)) {
+            Sheet metrics = null;
+            for (int i = 0; i < wb.getNumberOfSheets(); i++)
+                if (wb.getSheetName(i).endsWith("Métricas"))
+                    metrics = wb.getSheetAt(i);
+            assertNotNull(metrics);
+            int row = findRow(metrics, "rows.read");
+            assertTrue(row >= 0);
+            assertEquals(200.0, metrics.getRow(row).getCell(1).getNumericCellValue());
+        }
+    }
+
+    @Test
+    public void defaultOptionsWriteNoMetrics() throws Exception {
+        SyntheticDataGenerator.Options o = new SyntheticDataGenerator.Options();
+        o.setRows(20);
+        SyntheticDataGenerator gen = new SyntheticDataGenerator(o);
+        Path form = gen.writeFuelForm(tmp.resolve("fuel.xlsx"));
+        Path out = tmp.resolve("out.xlsx");
+        FuelExcelExporter.exportFuelData(out.toString(), form.toString(), SyntheticDataGenerator.SHEET,
+                gen.fuelMapping(), o.getYear(), "extended", null, null, new ExportOptions());
+        assertFalse(Files.exists(ExportMetrics.sidecarPath(out.toString())));
+        try (FileInputStream in = new FileInputStream(out.toFile()); Workbook wb = new XSSFWorkbook(in)) {
+            for (int i = 0; i < wb.getNumberOfSheets(); i++)
+                assertFalse(wb.getSheetName(i).endsWith("Métricas"));
+        }
+    }
+
+    private static int findRow(Sheet sheet, String key) {
+        for (int r = 0; r <= sheet.getLastRowNum(); r++)
+            if (sheet.getRow(r) != null && key.equals(sheet.getRow(r).getCell(0).getStringCellValue()))
+                return r;
+        return -1;
+    }
+}
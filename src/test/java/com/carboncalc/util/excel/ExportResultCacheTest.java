@@ -0,0 +1,127 @@
+package com.carboncalc.util.excel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import com.carboncalc.model.GasMapping;
+import com.carboncalc.util.InvoiceKeySet;
+
+public class ExportResultCacheTest {
+
+    @Test
+    public void keyDependsOnContentNotOrder() throws Exception {
+        Path f = Files.createTempFile("cache-key", ".xlsx");
+        Files.write(f, "a".getBytes(StandardCharsets.UTF_8));
+        String k1 = ExportResultCache.key("gas").file(f.toString()).ints(1, 2)
+                .strings(new LinkedHashSet<>(Arrays.asList("F1", "F2"))).build();
+        String k2 = ExportResultCache.key("gas").file(f.toString()).ints(1, 2)
+                .strings(new LinkedHashSet<>(Arrays.asList("F2", "F1"))).build();
+        assertEquals(k1, k2);
+
+        assertNotEquals(k1, ExportResultCache.key("gas").file(f.toString()).ints(2, 1)
+                .strings(Arrays.asList("F1", "F2")).build());
+        Files.write(f, "b".getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(k1, ExportResultCache.key("gas").file(f.toString()).ints(1, 2)
+                .strings(Arrays.asList("F1", "F2")).build());
+        // the same invoices give the same key whatever the set implementation
+        InvoiceKeySet compact = new InvoiceKeySet();
+        compact.add("F2");
+        compact.add("F1");
+        assertEquals(ExportResultCache.key("gas").strings(new HashSet<>(Arrays.asList("F1", "F2"))).build(),
+                ExportResultCache.key("gas").strings(compact).build());
+        // adjacent parts do not run into each other
+        assertNotEquals(ExportResultCache.key("x").text("ab").text("c").build(),
+                ExportResultCache.key("x").text("a").text("bc").build());
+    }
+
+    @Test
+    public void storeRestoreAndLruEviction() throws Exception {
+        Path dir = Files.createTempDirectory("export-cache");
+        ExportResultCache cache = new ExportResultCache(dir, 2);
+        Path out = dir.resolveSibling(dir.getFileName() + "-out.xlsx");
+
+        assertFalse(cache.restore("k1", out.toString()));
+        for (String k : new String[] { "k1", "k2", "k3" }) {
+            Files.write(out, k.getBytes(StandardCharsets.UTF_8));
+            cache.store(k, out.toString());
+            // make the recency order deterministic regardless of clock resolution
+            Files.setLastModifiedTime(dir.resolve(k + ".xlsx"),
+                    FileTime.fromMillis(1_000_000L * (k.charAt(1) - '0')));
+        }
+        assertTrue(cache.size() <= 3);
+        Files.write(out, "k4".getBytes(StandardCharsets.UTF_8));
+        cache.store("k4", out.toString());
+
+        assertEquals(2, cache.size());
+        assertFalse(cache.restore("k1", out.toString()), "oldest entry evicted");
+        assertTrue(cache.restore("k3", out.toString()));
+        assertEquals("k3", new String(Files.readAllBytes(out), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void entriesStayWithinTheByteBudget() throws Exception {
+        Path dir = Files.createTempDirectory("export-cache");
+        ExportResultCache cache = new ExportResultCache(dir, 10, 250);
+        Path out = dir.resolveSibling(dir.getFileName() + "-out.xlsx");
+
+        for (int k = 1; k <= 3; k++) {
+            Files.write(out, new byte[100]);
+            cache.store("k" + k, out.toString());
+            Files.setLastModifiedTime(dir.resolve("k" + k + ".xlsx"), FileTime.fromMillis(1_000_000L * k));
+        }
+        assertEquals(2, cache.size());
+        assertEquals(200, cache.bytes());
+        assertFalse(cache.restore("k1", out.toString()), "oldest entry evicted");
+
+        // an output larger than the whole budget is never cached
+        Files.write(out, new byte[300]);
+        cache.store("big", out.toString());
+        assertFalse(cache.restore("big", out.toString()));
+        assertEquals(200, cache.bytes());
+    }
+
+    @Test
+    public void exporterServesUnchangedInputsFromCache() throws Exception {
+        Path prov = Files.createTempFile("prov-cache", ".xlsx");
+        try (XSSFWorkbook src = new XSSFWorkbook()) {
+            Row h = src.createSheet("prov").createRow(0);
+            h.createCell(0).setCellValue("Centro");
+            try (FileOutputStream fos = new FileOutputStream(prov.toFile())) {
+                src.write(fos);
+            }
+        }
+        Path dir = Files.createTempDirectory("export-cache-gas");
+        ExportOptions options = new ExportOptions();
+        options.setResultCache(new ExportResultCache(dir, 4));
+        GasMapping mapping = new GasMapping(3, 4, 5, 6, 7, 1, 2, "GAS");
+
+        Path first = Files.createTempFile("gas-cache-1", ".xlsx");
+        GasExcelExporter.exportGasData(first.toString(), prov.toString(), "prov", null, null, mapping, 2025,
+                "extended", Collections.emptySet(), options);
+        assertEquals(1, options.getResultCache().size());
+
+        Path second = Files.createTempFile("gas-cache-2", ".xlsx");
+        GasExcelExporter.exportGasData(second.toString(), prov.toString(), "prov", null, null, mapping, 2025,
+                "extended", Collections.emptySet(), options);
+        assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+        assertEquals(1, options.getResultCache().size());
+
+        // A different year is a different key
+        GasExcelExporter.exportGasData(second.toString(), prov.toString(), "prov", null, null, mapping, 2024,
+                "extended", Collections.emptySet(), options);
+        assertEquals(2, options.getResultCache().size());
+    }
+}
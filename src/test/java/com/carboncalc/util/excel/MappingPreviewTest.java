@@ -0,0 +1,165 @@
+package com.carboncalc.util.excel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import com.carboncalc.model.ElectricityMapping;
+import com.carboncalc.model.FuelMapping;
+
+public class MappingPreviewTest {
+
+    private static Sheet fuelSheet(Workbook wb) {
+        Sheet s = wb.createSheet("prov");
+        Row h = s.createRow(0);
+        String[] headers = { "Centro", "Responsable", "Factura", "Proveedor", "Fecha", "TipoComb", "TipoVeh",
+                "Importe", "Completion" };
+        for (int c = 0; c < headers.length; c++)
+            h.createCell(c).setCellValue(headers[c]);
+        // 1000 rows of 10 litres: the first half in 2025, the rest outside the year
+        for (int i = 1; i <= 1000; i++) {
+            Row r = s.createRow(i);
+            r.createCell(0).setCellValue(i % 4 == 0 ? "Centro A" : "Centro B");
+            r.createCell(2).setCellValue("F" + i);
+            r.createCell(4).setCellValue(i <= 500 ? "2025-03-10" : "2019-03-10");
+            r.createCell(5).setCellValue("Unobtainium");
+            r.createCell(7).setCellValue(10.0);
+        }
+        return s;
+    }
+
+    @Test
+    public void sampleRowsAreSpreadAndBounded() {
+        int[] rows = MappingPreview.sampleRows(1, 1000, 100);
+        assertEquals(100, rows.length);
+        assertEquals(1, rows[0]);
+        assertTrue(rows[99] > 980);
+        for (int i = 1; i < rows.length; i++)
+            assertTrue(rows[i] > rows[i - 1]);
+
+        assertArrayEquals(new int[] { 5, 6, 7 }, MappingPreview.sampleRows(5, 7, 100));
+        assertEquals(0, MappingPreview.sampleRows(5, 4, 100).length);
+    }
+
+    @Test
+    public void fuelPreviewProjectsSampleAndReportsSkipsAndUnmatched() throws Exception {
+        try (Workbook wb = new XSSFWorkbook()) {
+            Sheet s = fuelSheet(wb);
+            FuelMapping mapping = new FuelMapping(0, 1, 2, 3, 4, 5, 6, 7, 8);
+            MappingPreview preview = FuelExcelExporter.preview(s, mapping, 2025, null, null, 100);
+
+            assertEquals(1000, preview.getDataRows());
+            assertEquals(100, preview.getSampledRows());
+            assertEquals(10.0, preview.getScale(), 1e-9);
+            assertEquals(Integer.valueOf(50), preview.getSkipped().get(MappingPreview.SKIP_YEAR));
+            assertTrue(preview.getUnmatched().contains("Unobtainium"));
+
+            double projected = 0;
+            List<Map.Entry<String, double[]>> totals = preview.getProjectedTotals();
+            for (Map.Entry<String, double[]> e : totals)
+                projected += e.getValue()[0];
+            // 500 in-year rows of 10 litres each
+            assertEquals(5000.0, projected, 1e-6);
+        }
+    }
+
+    @Test
+    public void electricityPreviewOfEveryRowMatchesTheExport() throws Exception {
+        Path prov = Files.createTempFile("prov-preview", ".xlsx");
+        try (Workbook wb = new XSSFWorkbook()) {
+            Sheet s = wb.createSheet("prov");
+            Row h = s.createRow(0);
+            String[] headers = { "ID", "Centro", "Entidad", "CUPS", "Factura", "Inicio", "Fin", "Consumo" };
+            for (int c = 0; c < headers.length; c++)
+                h.createCell(c).setCellValue(headers[c]);
+            // A period spanning 2024, one crossing into it, one outside it and a
+            // repeated invoice number within the file
+            Object[][] rows = { { "Centro A", "F1", "2023-07-01", "2025-06-30", 731.0 },
+                    { "Centro A", "F2", "2024-12-17", "2025-01-15", 300.0 },
+                    { "Centro B", "F3", "2022-05-01", "2022-05-31", 99.0 },
+                    { "Centro B", "F4", "2024-03-01", "2024-03-31", 31.0 },
+                    { "Centro B", "F4", "2024-04-01", "2024-04-30", 30.0 } };
+            for (int i = 0; i < rows.length; i++) {
+                Row r = s.createRow(i + 1);
+                r.createCell(0).setCellValue(i + 1);
+                r.createCell(1).setCellValue((String) rows[i][0]);
+                r.createCell(3).setCellValue("ESPV" + i);
+                r.createCell(4).setCellValue((String) rows[i][1]);
+                r.createCell(5).setCellValue((String) rows[i][2]);
+                r.createCell(6).setCellValue((String) rows[i][3]);
+                r.createCell(7).setCellValue((Double) rows[i][4]);
+            }
+            try (FileOutputStream fos = new FileOutputStream(prov.toFile())) {
+                wb.write(fos);
+            }
+
+            ElectricityMapping mapping = new ElectricityMapping(3, 4, 5, 6, 7, 1, 2);
+            MappingPreview preview = ElectricityExcelExporter.preview(s, mapping, 2024, 100);
+            assertEquals(5, preview.getSampledRows());
+            assertEquals(Integer.valueOf(1), preview.getSkipped().get(MappingPreview.SKIP_YEAR));
+
+            Path out = Files.createTempFile("elec-preview", ".xlsx");
+            ElectricityExcelExporter.exportElectricityData(out.toString(), prov.toString(), "prov", null, null,
+                    mapping, 2024, "extended", Collections.emptySet());
+            try (FileInputStream fis = new FileInputStream(out.toFile()); Workbook result = new XSSFWorkbook(fis)) {
+                Sheet perCenter = result.getSheet("Electricidad - Por centro");
+                FormulaEvaluator eval = result.getCreationHelper().createFormulaEvaluator();
+                int centers = 0;
+                for (int i = 1; i <= perCenter.getLastRowNum(); i++) {
+                    Row r = perCenter.getRow(i);
+                    if (r == null || r.getCell(0) == null)
+                        continue;
+                    double[] expected = preview.getPerCenter().get(r.getCell(0).getStringCellValue());
+                    if (expected == null)
+                        continue;
+                    centers++;
+                    assertEquals(expected[0], eval.evaluate(r.getCell(1)).getNumberValue(), 1e-6);
+                    assertEquals(expected[1], eval.evaluate(r.getCell(2)).getNumberValue(), 1e-6);
+                }
+                assertEquals(preview.getPerCenter().size(), centers);
+            }
+            // 366 of F1's 731 kWh, 15 of F2's 30 days and both F4 rows
+            assertEquals(516.0, preview.getPerCenter().get("Centro A")[0], 1e-9);
+            assertEquals(61.0, preview.getPerCenter().get("Centro B")[0], 1e-9);
+        }
+    }
+
+    @Test
+    public void snapshotCopiesOnlySampledRowsAndPreviewsTheSame() throws Exception {
+        try (Workbook wb = new XSSFWorkbook()) {
+            Sheet s = fuelSheet(wb);
+            // a formula amount is copied as its value
+            s.getRow(1).createCell(7).setCellFormula("4+6");
+            FuelMapping mapping = new FuelMapping(0, 1, 2, 3, 4, 5, 6, 7, 8);
+
+            Sheet copy = MappingPreview.snapshot(s, 100);
+            assertNotSame(wb, copy.getWorkbook());
+            assertEquals(s.getLastRowNum(), copy.getLastRowNum());
+            assertEquals(102, copy.getPhysicalNumberOfRows());
+            assertEquals("Fecha", copy.getRow(0).getCell(4).getStringCellValue());
+
+            MappingPreview expected = FuelExcelExporter.preview(s, mapping, 2025, null, null, 100);
+            MappingPreview actual = FuelExcelExporter.preview(copy, mapping, 2025, null, null, 100);
+            assertEquals(expected.getDataRows(), actual.getDataRows());
+            assertEquals(expected.getSampledRows(), actual.getSampledRows());
+            assertEquals(expected.getSkipped(), actual.getSkipped());
+            assertEquals(expected.getUnmatched(), actual.getUnmatched());
+            assertEquals(expected.getPerCenter().keySet(), actual.getPerCenter().keySet());
+            for (String center : expected.getPerCenter().keySet())
+                assertArrayEquals(expected.getPerCenter().get(center), actual.getPerCenter().get(center), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.carboncalc.util.excel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import com.carboncalc.model.ElectricityMapping;
+import com.carboncalc.model.GasMapping;
+
+public class MultiYearExporterTest {
+
+    private static Path writeProvider() throws Exception {
+        // 2024-12-17 .. 2025-01-15: 15 days in each year
+        return writeProvider(new Object[][] { { "Centro A", "F1", "2024-12-17", "2025-01-15", 300.0 },
+                { "Centro B", "F2", "2023-03-01", "2023-03-31", 31.0 },
+                { "Centro A", "F3", "2022-05-01", "2022-05-31", 99.0 } });
+    }
+
+    private static Path writeProvider(Object[][] rows) throws Exception {
+        try (Workbook src = new XSSFWorkbook()) {
+            Sheet s = src.createSheet("prov");
+            Row h = s.createRow(0);
+            String[] headers = { "ID", "Centro", "Entidad", "CUPS", "Factura", "Inicio", "Fin", "Consumo" };
+            for (int i = 0; i < headers.length; i++)
+                h.createCell(i).setCellValue(headers[i]);
+            for (int i = 0; i < rows.length; i++) {
+                Row r = s.createRow(i + 1);
+                r.createCell(0).setCellValue(i + 1);
+                r.createCell(1).setCellValue((String) rows[i][0]);
+                r.createCell(3).setCellValue("ESMY" + i);
+                r.createCell(4).setCellValue((String) rows[i][1]);
+                r.createCell(5).setCellValue((String) rows[i][2]);
+                r.createCell(6).setCellValue((String) rows[i][3]);
+                r.createCell(7).setCellValue((Double) rows[i][4]);
+            }
+            Path prov = Files.createTempFile("prov-multiyear", ".xlsx");
+            try (FileOutputStream fos = new FileOutputStream(prov.toFile())) {
+                src.write(fos);
+            }
+            return prov;
+        }
+    }
+
+    @Test
+    public void prorationSpansYearsInOnePass() throws Exception {
+        Path prov = writeProvider();
+        GasMapping mapping = new GasMapping(3, 4, 5, 6, 7, 1, 2, "GAS");
+        Path out = Files.createTempFile("gas-years", ".xlsx");
+
+        Map<Integer, Map<String, double[]>> perYear = MultiYearExporter.exportGasYears(out.toString(),
+                prov.toString(), "prov", mapping, 2023, 2025, Collections.emptySet(), new ExportOptions());
+
+        assertEquals(3, perYear.size());
+        assertEquals(31.0, perYear.get(2023).get("Centro B")[0], 1e-9);
+        assertEquals(150.0, perYear.get(2024).get("Centro A")[0], 1e-9);
+        assertEquals(150.0, perYear.get(2025).get("Centro A")[0], 1e-9);
+        // The 2022 row is outside the range
+        assertNull(perYear.get(2023).get("Centro A"));
+
+        try (FileInputStream fis = new FileInputStream(out.toFile()); Workbook wb = new XSSFWorkbook(fis)) {
+            Sheet trend = wb.getSheet("Gas - Por año");
+            assertNotNull(trend);
+            assertEquals("2023", trend.getRow(1).getCell(1).getStringCellValue());
+            Row centerA = trend.getRow(2);
+            assertEquals("Centro A", centerA.getCell(0).getStringCellValue());
+            assertEquals(0.0, centerA.getCell(1).getNumericCellValue(), 1e-9);
+            assertEquals(150.0, centerA.getCell(2).getNumericCellValue(), 1e-9);
+            assertEquals(300.0, centerA.getCell(4).getNumericCellValue(), 1e-9);
+        }
+
+        // Same figure as a single-year export of 2025
+        Path single = Files.createTempFile("gas-2025", ".xlsx");
+        GasExcelExporter.exportGasData(single.toString(), prov.toString(), "prov", null, null, mapping, 2025,
+                "extended", Collections.emptySet());
+        try (FileInputStream fis = new FileInputStream(single.toFile()); Workbook wb = new XSSFWorkbook(fis)) {
+            Sheet perCenter = wb.getSheet("Gas - Por centro");
+            assertEquals(150.0, perCenter.getRow(1).getCell(1).getNumericCellValue(), 1e-9);
+        }
+    }
+
+    @Test
+    public void periodSpanningAWholeYearCountsTheSameInBothPaths() throws Exception {
+        // 2023-07-01 .. 2025-06-30 = 731 days, all 366 days of 2024 in between
+        Path prov = writeProvider(new Object[][] { { "Centro A", "F1", "2023-07-01", "2025-06-30", 731.0 } });
+        GasMapping gasMapping = new GasMapping(3, 4, 5, 6, 7, 1, 2, "GAS");
+        ElectricityMapping elecMapping = new ElectricityMapping(3, 4, 5, 6, 7, 1, 2);
+
+        Map<Integer, Map<String, double[]>> gasYears = MultiYearExporter.exportGasYears(
+                Files.createTempFile("gas-years", ".xlsx").toString(), prov.toString(), "prov", gasMapping, 2024,
+                2024, Collections.emptySet(), new ExportOptions());
+        Map<Integer, Map<String, double[]>> elecYears = MultiYearExporter.exportElectricityYears(
+                Files.createTempFile("elec-years", ".xlsx").toString(), prov.toString(), "prov", elecMapping, 2024,
+                2024, Collections.emptySet(), new ExportOptions());
+        assertEquals(366.0, gasYears.get(2024).get("Centro A")[0], 1e-9);
+        assertEquals(366.0, elecYears.get(2024).get("Centro A")[0], 1e-9);
+
+        Path gas = Files.createTempFile("gas-2024", ".xlsx");
+        GasExcelExporter.exportGasData(gas.toString(), prov.toString(), "prov", null, null, gasMapping, 2024,
+                "extended", Collections.emptySet());
+        assertEquals(366.0, perCenterConsumption(gas, "Gas - Por centro"), 1e-9);
+
+        Path elec = Files.createTempFile("elec-2024", ".xlsx");
+        ElectricityExcelExporter.exportElectricityData(elec.toString(), prov.toString(), "prov", null, null,
+                elecMapping, 2024, "extended", Collections.emptySet());
+        assertEquals(366.0, perCenterConsumption(elec, "Electricidad - Por centro"), 1e-9);
+    }
+
+    private static double perCenterConsumption(Path workbook, String sheet) throws Exception {
+        try (FileInputStream fis = new FileInputStream(workbook.toFile()); Workbook wb = new XSSFWorkbook(fis)) {
+            Sheet perCenter = wb.getSheet(sheet);
+            assertNotNull(perCenter, sheet);
+            FormulaEvaluator eval = wb.getCreationHelper().createFormulaEvaluator();
+            return eval.evaluate(perCenter.getRow(1).getCell(1)).getNumberValue();
+        }
+    }
+
+    @Test
+    public void rejectsEmptyRange() {
+        assertThrows(IllegalArgumentException.class, () -> MultiYearExporter.exportGasYears("x.xlsx", null, null,
+                new GasMapping(), 2025, 2024, null, null));
+    }
+}
@@ -0,0 +1,178 @@
+package com.carboncalc.util.excel;
+
+import com.carboncalc.util.SyntheticDataGenerator;
+import com.carboncalc.util.WorkbookFootprint;
+import com.carboncalc.util.WorkbookLoader;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProviderSourceTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    public void splitProviderFilesExportLikeOneFile() throws Exception {
+        SyntheticDataGenerator.Options o = new SyntheticDataGenerator.Options();
+        o.setSeed(5);
+        o.setRows(120);
+        // Text dates, so rows can be copied cell by cell
+        o.setDateStyles(Collections.singletonList(SyntheticDataGenerator.DateStyle.ISO));
+        SyntheticDataGenerator gen = new SyntheticDataGenerator(o);
+        Path whole = gen.writeElectricityProvider(tmp.resolve("provider.xlsx"));
+        // Rows 1-70 and 61-120: rows 61-70 are delivered in both files
+        Path first = copyRows(whole, tmp.resolve("part1.xlsx"), 1, 70);
+        Path second = copyRows(whole, tmp.resolve("part2.xlsx"), 61, 120);
+
+        ExportMetrics single = export(ProviderSource.single(whole.toString(), SyntheticDataGenerator.SHEET),
+                gen, tmp.resolve("single.xlsx"));
+        List<ProviderSource> parts = Arrays.asList(new ProviderSource(first.toString(), SyntheticDataGenerator.SHEET),
+                new ProviderSource(tmp.resolve("missing.xlsx").toString(), SyntheticDataGenerator.SHEET),
+                new ProviderSource(second.toString(), SyntheticDataGenerator.SHEET));
+        ExportMetrics merged = export(parts, gen, tmp.resolve("merged.xlsx"));
+
+        assertEquals(single.getRowsWritten(), merged.getRowsWritten());
+        assertEquals(single.getRowsRead() + 10, merged.getRowsRead());
+        // Repeated rows outside the year are skipped before the duplicate check
+        assertEquals(single.getSkippedTotal() + 10, merged.getSkippedTotal());
+        assertTrue(merged.getSkipped().getOrDefault(ExportMetrics.SKIP_DUPLICATE, 0L) > 0);
+
+        // Same detailed rows in the same order, ids continuing across files
+        try (Workbook a = open(tmp.resolve("single.xlsx")); Workbook b = open(tmp.resolve("merged.xlsx"))) {
+            Sheet sa = a.getSheetAt(0);
+            Sheet sb = b.getSheetAt(0);
+            assertEquals(sa.getLastRowNum(), sb.getLastRowNum());
+            for (int i = 1; i <= sa.getLastRowNum(); i++) {
+                assertEquals(i, (int) sb.getRow(i).getCell(0).getNumericCellValue());
+                assertEquals(sa.getRow(i).getCell(4).getStringCellValue(),
+                        sb.getRow(i).getCell(4).getStringCellValue());
+            }
+            assertEquals(1, Collections.frequency(sheetNames(b), "Diagnostics"));
+        }
+    }
+
+    @Test
+    public void unreadableSourcesAreDropped() {
+        List<Sheet> sheets = ProviderSource.openAll(Arrays.asList(
+                new ProviderSource(tmp.resolve("missing.xlsx").toString(), "data"),
+                new ProviderSource(tmp.resolve("other.xls").toString(), "data")));
+        assertTrue(sheets.isEmpty());
+        assertTrue(ProviderSource.single(null, "data").isEmpty());
+        assertTrue(ProviderSource.single("a.xlsx", null).isEmpty());
+    }
+
+    @Test
+    public void streamingWriterWritesTheSameWorkbook() throws Exception {
+        SyntheticDataGenerator.Options o = new SyntheticDataGenerator.Options();
+        o.setSeed(6);
+        // More rows than the streaming window, so the detailed sheet is flushed
+        o.setRows(WorkbookFootprint.STREAMING_WINDOW + 200);
+        SyntheticDataGenerator gen = new SyntheticDataGenerator(o);
+        List<ProviderSource> electricity = ProviderSource
+                .single(gen.writeElectricityProvider(tmp.resolve("e.xlsx")).toString(), SyntheticDataGenerator.SHEET);
+        List<ProviderSource> gas = ProviderSource
+                .single(gen.writeGasProvider(tmp.resolve("g.xlsx")).toString(), SyntheticDataGenerator.SHEET);
+        for (WorkbookFootprint.WriteMode mode : WorkbookFootprint.WriteMode.values()) {
+            ExportOptions options = new ExportOptions();
+            options.setWriteMode(mode);
+            ElectricityExcelExporter.exportElectricityData(tmp.resolve("e-" + mode + ".xlsx").toString(), electricity,
+                    null, null, gen.electricityMapping(), gen.getOptions().getYear(), "extended",
+                    Collections.emptySet(), options);
+            GasExcelExporter.exportGasData(tmp.resolve("g-" + mode + ".xlsx").toString(), gas, null, null,
+                    gen.gasMapping(), gen.getOptions().getYear(), "extended", Collections.emptySet(), options);
+        }
+        for (String module : new String[] { "e-", "g-" }) {
+            // The styles part of these outputs compresses beyond POI's default zip-bomb ratio
+            try (Workbook a = WorkbookLoader.open(tmp.resolve(module + "XSSF.xlsx").toFile());
+                    Workbook b = WorkbookLoader.open(tmp.resolve(module + "SXSSF.xlsx").toFile())) {
+                assertEquals(sheetNames(a), sheetNames(b));
+                assertTrue(a.getSheetAt(0).getLastRowNum() > WorkbookFootprint.STREAMING_WINDOW);
+                for (int s = 0; s < a.getNumberOfSheets(); s++)
+                    assertSameCells(a.getSheetAt(s), b.getSheetAt(s));
+            }
+        }
+    }
+
+    // Same values, formulas and cached formula results. XSSF drops the '$'
+    // of whole-column references when it parses a formula; SXSSF keeps them.
+    private static void assertSameCells(Sheet expected, Sheet actual) {
+        assertEquals(expected.getLastRowNum(), actual.getLastRowNum(), expected.getSheetName());
+        for (Row r : expected) {
+            Row other = actual.getRow(r.getRowNum());
+            assertNotNull(other, expected.getSheetName() + " row " + r.getRowNum());
+            for (Cell c : r) {
+                Cell o = other.getCell(c.getColumnIndex());
+                assertNotNull(o, expected.getSheetName() + " " + c.getAddress());
+                assertEquals(c.toString().replace("$", ""), o.toString().replace("$", ""),
+                        expected.getSheetName() + " " + c.getAddress());
+                if (c.getCellType() == CellType.FORMULA && c.getCachedFormulaResultType() == CellType.NUMERIC)
+                    assertEquals(c.getNumericCellValue(), o.getNumericCellValue(), 1e-9);
+            }
+        }
+    }
+
+    private ExportMetrics export(List<ProviderSource> sources, SyntheticDataGenerator gen, Path out)
+            throws Exception {
+        ExportMetrics[] received = new ExportMetrics[1];
+        ExportOptions options = new ExportOptions();
+        options.setMetricsListener(m -> received[0] = m);
+        ElectricityExcelExporter.exportElectricityData(out.toString(), sources, null, null,
+                gen.electricityMapping(), gen.getOptions().getYear(), "extended", Collections.emptySet(), options);
+        return received[0];
+    }
+
+    // Copy the header and data rows [from, to] of the provider sheet
+    private static Path copyRows(Path source, Path target, int from, int to) throws Exception {
+        try (Workbook in = open(source); Workbook out = new XSSFWorkbook()) {
+            Sheet src = in.getSheet(SyntheticDataGenerator.SHEET);
+            Sheet dst = out.createSheet(SyntheticDataGenerator.SHEET);
+            int next = 0;
+            for (int i = 0; i <= src.getLastRowNum(); i++) {
+                if (i != 0 && (i < from || i > to))
+                    continue;
+                Row r = src.getRow(i);
+                Row w = dst.createRow(next++);
+                for (Cell c : r) {
+                    Cell copy = w.createCell(c.getColumnIndex());
+                    if (c.getCellType() == CellType.NUMERIC)
+                        copy.setCellValue(c.getNumericCellValue());
+                    else
+                        copy.setCellValue(c.getStringCellValue());
+                }
+            }
+            try (OutputStream os = Files.newOutputStream(target)) {
+                out.write(os);
+            }
+        }
+        return target;
+    }
+
+    private static Workbook open(Path file) throws Exception {
+        try (InputStream in = Files.newInputStream(file)) {
+            return new XSSFWorkbook(in);
+        }
+    }
+
+    private static List<String> sheetNames(Workbook wb) {
+        String[] names = new String[wb.getNumberOfSheets()];
+        for (int i = 0; i < names.length; i++)
+            names[i] = wb.getSheetName(i);
+        return Arrays.asList(names);
+    }
+}
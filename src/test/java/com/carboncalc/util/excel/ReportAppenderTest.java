@@ -0,0 +1,186 @@
+package com.carboncalc.util.excel;
+
+import com.carboncalc.util.SyntheticDataGenerator;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReportAppenderTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    public void appendingTheRestOfTheYearMatchesAFullExport() throws Exception {
+        SyntheticDataGenerator gen = generator();
+        Path whole = gen.writeElectricityProvider(tmp.resolve("provider.xlsx"));
+        Path firstMonths = copyRows(whole, tmp.resolve("first.xlsx"), 70);
+        Path full = tmp.resolve("full.xlsx");
+        Path report = tmp.resolve("report.xlsx");
+        exportElectricity(whole, full, new ExportOptions());
+        exportElectricity(firstMonths, report, new ExportOptions());
+
+        ExportOptions append = new ExportOptions();
+        append.setAppend(true);
+        ExportMetrics[] received = new ExportMetrics[1];
+        append.setMetricsListener(m -> received[0] = m);
+        exportElectricity(whole, report, append);
+        // Only the rows after the first file are computed
+        assertTrue(received[0].getSkipped().getOrDefault(ExportMetrics.SKIP_DUPLICATE, 0L) > 0);
+
+        try (Workbook a = open(full); Workbook b = open(report)) {
+            Sheet sa = a.getSheet("Electricidad - Extendida");
+            Sheet sb = b.getSheet("Electricidad - Extendida");
+            assertEquals(sa.getLastRowNum(), sb.getLastRowNum());
+            for (int i = 1; i <= sa.getLastRowNum(); i++) {
+                assertEquals(i, (int) sb.getRow(i).getCell(0).getNumericCellValue());
+                assertEquals(sa.getRow(i).getCell(4).getStringCellValue(),
+                        sb.getRow(i).getCell(4).getStringCellValue());
+            }
+            assertSameValues(perCenter(a.getSheet("Electricidad - Por centro")),
+                    perCenter(b.getSheet("Electricidad - Por centro")));
+            Row total = b.getSheet("Electricidad - Total").getRow(1);
+            double consumption = 0.0;
+            for (double[] v : perCenter(b.getSheet("Electricidad - Por centro")).values())
+                consumption += v[0];
+            assertEquals(consumption, total.getCell(0).getNumericCellValue(), 1e-6);
+        }
+
+        // Nothing new: appending the same file again adds no rows
+        exportElectricity(whole, report, append);
+        assertEquals(0, received[0].getRowsWritten());
+    }
+
+    @Test
+    public void gasAppendReplacesTheEmptyPlaceholderRow() throws Exception {
+        SyntheticDataGenerator gen = generator();
+        Path whole = gen.writeGasProvider(tmp.resolve("gas.xlsx"));
+        Path header = copyRows(whole, tmp.resolve("header.xlsx"), 0);
+        Path full = tmp.resolve("full.xlsx");
+        Path report = tmp.resolve("report.xlsx");
+        exportGas(gen, whole, full, new ExportOptions());
+        exportGas(gen, header, report, new ExportOptions());
+        try (Workbook b = open(report)) {
+            assertTrue(perCenter(b.getSheet("Gas - Por centro")).containsKey("-"));
+        }
+
+        ExportOptions append = new ExportOptions();
+        append.setAppend(true);
+        exportGas(gen, whole, report, append);
+        try (Workbook a = open(full); Workbook b = open(report)) {
+            assertEquals(a.getSheet("Gas - Extendida").getLastRowNum(),
+                    b.getSheet("Gas - Extendida").getLastRowNum());
+            assertSameValues(perCenter(a.getSheet("Gas - Por centro")), perCenter(b.getSheet("Gas - Por centro")));
+            assertEquals(1, Collections.frequency(sheetNames(b), "Diagnostics"));
+        }
+    }
+
+    @Test
+    public void appendRejectsRebuiltSheetsAndCreatesMissingReports() throws Exception {
+        SyntheticDataGenerator gen = generator();
+        Path provider = gen.writeElectricityProvider(tmp.resolve("provider.xlsx"));
+        Path report = tmp.resolve("report.xlsx");
+        ExportOptions append = new ExportOptions();
+        append.setAppend(true);
+        // No report yet: a normal export
+        exportElectricity(provider, report, append);
+        assertTrue(Files.isRegularFile(report));
+
+        append.setSummarySheets(true);
+        assertThrows(IllegalArgumentException.class, () -> exportElectricity(provider, report, append));
+    }
+
+    private static SyntheticDataGenerator generator() {
+        SyntheticDataGenerator.Options o = new SyntheticDataGenerator.Options();
+        o.setSeed(9);
+        o.setRows(120);
+        // Text dates, so rows can be copied cell by cell
+        o.setDateStyles(Collections.singletonList(SyntheticDataGenerator.DateStyle.ISO));
+        return new SyntheticDataGenerator(o);
+    }
+
+    private void exportElectricity(Path provider, Path out, ExportOptions options) throws Exception {
+        SyntheticDataGenerator gen = generator();
+        ElectricityExcelExporter.exportElectricityData(out.toString(),
+                ProviderSource.single(provider.toString(), SyntheticDataGenerator.SHEET), null, null,
+                gen.electricityMapping(), gen.getOptions().getYear(), "extended", Collections.emptySet(), options);
+    }
+
+    private static void exportGas(SyntheticDataGenerator gen, Path provider, Path out, ExportOptions options)
+            throws Exception {
+        GasExcelExporter.exportGasData(out.toString(),
+                ProviderSource.single(provider.toString(), SyntheticDataGenerator.SHEET), null, null,
+                gen.gasMapping(), gen.getOptions().getYear(), "extended", Collections.emptySet(), options);
+    }
+
+    // Center -> cached values of the per-center sheet
+    private static Map<String, double[]> perCenter(Sheet sheet) {
+        Map<String, double[]> values = new HashMap<>();
+        for (int i = 1; i <= sheet.getLastRowNum(); i++) {
+            Row r = sheet.getRow(i);
+            double[] v = new double[r.getLastCellNum() - 1];
+            for (int c = 0; c < v.length; c++)
+                v[c] = r.getCell(c + 1).getNumericCellValue();
+            values.put(r.getCell(0).getStringCellValue(), v);
+        }
+        return values;
+    }
+
+    private static void assertSameValues(Map<String, double[]> expected, Map<String, double[]> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, double[]> e : expected.entrySet())
+            assertArrayEquals(e.getValue(), actual.get(e.getKey()), 1e-6, e.getKey());
+    }
+
+    // Copy the header and the first n data rows of the provider sheet
+    private static Path copyRows(Path source, Path target, int n) throws Exception {
+        try (Workbook in = open(source); Workbook out = new XSSFWorkbook()) {
+            Sheet src = in.getSheet(SyntheticDataGenerator.SHEET);
+            Sheet dst = out.createSheet(SyntheticDataGenerator.SHEET);
+            for (int i = 0; i <= Math.min(n, src.getLastRowNum()); i++) {
+                Row w = dst.createRow(i);
+                for (Cell c : src.getRow(i)) {
+                    Cell copy = w.createCell(c.getColumnIndex());
+                    if (c.getCellType() == CellType.NUMERIC)
+                        copy.setCellValue(c.getNumericCellValue());
+                    else
+                        copy.setCellValue(c.getStringCellValue());
+                }
+            }
+            try (OutputStream os = Files.newOutputStream(target)) {
+                out.write(os);
+            }
+        }
+        return target;
+    }
+
+    private static Workbook open(Path file) throws Exception {
+        try (InputStream in = Files.newInputStream(file)) {
+            return new XSSFWorkbook(in);
+        }
+    }
+
+    private static List<String> sheetNames(Workbook wb) {
+        String[] names = new String[wb.getNumberOfSheets()];
+        for (int i = 0; i < names.length; i++)
+            names[i] = wb.getSheetName(i);
+        return Arrays.asList(names);
+    }
+}
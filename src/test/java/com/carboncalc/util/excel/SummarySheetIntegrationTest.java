@@ -0,0 +1,126 @@
+package com.carboncalc.util.excel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import com.carboncalc.model.GasMapping;
+
+public class SummarySheetIntegrationTest {
+
+    private static Path writeProvider() throws Exception {
+        try (Workbook src = new XSSFWorkbook()) {
+            Sheet s = src.createSheet("prov");
+            Row h = s.createRow(0);
+            String[] headers = { "ID", "Centro", "Entidad", "CUPS", "Factura", "Inicio", "Fin", "Consumo" };
+            for (int i = 0; i < headers.length; i++)
+                h.createCell(i).setCellValue(headers[i]);
+            Object[][] rows = { { "Centro A", "F1", "2025-01-01", "2025-01-31", 100.0 },
+                    { "Centro A", "F2", "2025-02-01", "2025-02-28", 200.0 },
+                    { "Centro B", "F3", "2025-02-01", "2025-02-28", 50.0 } };
+            for (int i = 0; i < rows.length; i++) {
+                Row r = s.createRow(i + 1);
+                r.createCell(0).setCellValue(i + 1);
+                r.createCell(1).setCellValue((String) rows[i][0]);
+                r.createCell(3).setCellValue("ES000" + i);
+                r.createCell(4).setCellValue((String) rows[i][1]);
+                r.createCell(5).setCellValue((String) rows[i][2]);
+                r.createCell(6).setCellValue((String) rows[i][3]);
+                r.createCell(7).setCellValue((Double) rows[i][4]);
+            }
+            Path prov = Files.createTempFile("prov-summary", ".xlsx");
+            try (FileOutputStream fos = new FileOutputStream(prov.toFile())) {
+                src.write(fos);
+            }
+            return prov;
+        }
+    }
+
+    @Test
+    public void summarySheetOnlyWrittenOnRequest() throws Exception {
+        Path prov = writeProvider();
+        GasMapping mapping = new GasMapping(3, 4, 5, 6, 7, 1, 2, "GAS");
+
+        Path plain = Files.createTempFile("gas-plain", ".xlsx");
+        GasExcelExporter.exportGasData(plain.toString(), prov.toString(), "prov", null, null, mapping, 2025,
+                "extended", Collections.emptySet());
+        try (FileInputStream fis = new FileInputStream(plain.toFile()); Workbook wb = new XSSFWorkbook(fis)) {
+            assertNull(wb.getSheet("Gas - Resumen"));
+        }
+
+        ExportOptions options = new ExportOptions();
+        options.setSummarySheets(true);
+        Path out = Files.createTempFile("gas-summary", ".xlsx");
+        GasExcelExporter.exportGasData(out.toString(), prov.toString(), "prov", null, null, mapping, 2025,
+                "extended", Collections.emptySet(), options);
+
+        try (FileInputStream fis = new FileInputStream(out.toFile()); Workbook wb = new XSSFWorkbook(fis)) {
+            Sheet summary = wb.getSheet("Gas - Resumen");
+            assertNotNull(summary, "Expected the summary sheet when requested");
+            // First section is the monthly breakdown: title, header, 2 months, total
+            assertEquals("Por mes", summary.getRow(0).getCell(0).getStringCellValue());
+            assertEquals("2025-01", summary.getRow(2).getCell(0).getStringCellValue());
+            assertEquals(100.0, summary.getRow(2).getCell(1).getNumericCellValue(), 1e-9);
+            assertEquals("2025-02", summary.getRow(3).getCell(0).getStringCellValue());
+            assertEquals(250.0, summary.getRow(3).getCell(1).getNumericCellValue(), 1e-9);
+            assertEquals(350.0, summary.getRow(4).getCell(1).getNumericCellValue(), 1e-9);
+        }
+    }
+
+    @Test
+    public void monthlySheetSplitsPeriodsAcrossMonths() throws Exception {
+        try (Workbook src = new XSSFWorkbook()) {
+            Sheet s = src.createSheet("prov");
+            Row h = s.createRow(0);
+            String[] headers = { "ID", "Centro", "Entidad", "CUPS", "Factura", "Inicio", "Fin", "Consumo" };
+            for (int i = 0; i < headers.length; i++)
+                h.createCell(i).setCellValue(headers[i]);
+            // 15 Jan - 14 Feb: 17 days in January, 14 in February
+            Row r = s.createRow(1);
+            r.createCell(0).setCellValue(1);
+            r.createCell(1).setCellValue("Centro A");
+            r.createCell(3).setCellValue("ES0001");
+            r.createCell(4).setCellValue("F1");
+            r.createCell(5).setCellValue("2025-01-15");
+            r.createCell(6).setCellValue("2025-02-14");
+            r.createCell(7).setCellValue(310.0);
+            Path prov = Files.createTempFile("prov-monthly", ".xlsx");
+            try (FileOutputStream fos = new FileOutputStream(prov.toFile())) {
+                src.write(fos);
+            }
+
+            ExportOptions options = new ExportOptions();
+            options.setMonthlySheet(true);
+            options.setSummarySheets(true);
+            Path out = Files.createTempFile("gas-monthly", ".xlsx");
+            GasExcelExporter.exportGasData(out.toString(), prov.toString(), "prov", null, null,
+                    new GasMapping(3, 4, 5, 6, 7, 1, 2, "GAS"), 2025, "extended", Collections.emptySet(), options);
+
+            try (FileInputStream fis = new FileInputStream(out.toFile()); Workbook wb = new XSSFWorkbook(fis)) {
+                Sheet monthly = wb.getSheet("Gas - Mensual");
+                assertNotNull(monthly, "Expected the monthly sheet when requested");
+                assertEquals("2025-01", monthly.getRow(1).getCell(1).getStringCellValue());
+                Row centerRow = monthly.getRow(2);
+                assertEquals("Centro A", centerRow.getCell(0).getStringCellValue());
+                assertEquals(170.0, centerRow.getCell(1).getNumericCellValue(), 1e-9);
+                assertEquals(140.0, centerRow.getCell(2).getNumericCellValue(), 1e-9);
+                assertEquals(310.0, centerRow.getCell(13).getNumericCellValue(), 1e-9);
+
+                // The cube follows the same split: two month rows in the summary
+                Sheet summary = wb.getSheet("Gas - Resumen");
+                assertEquals(170.0, summary.getRow(2).getCell(1).getNumericCellValue(), 1e-9);
+                assertEquals(140.0, summary.getRow(3).getCell(1).getNumericCellValue(), 1e-9);
+            }
+        }
+    }
+}
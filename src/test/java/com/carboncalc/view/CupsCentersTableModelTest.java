@@ -0,0 +1,117 @@
+package com.carboncalc.view;
+
+import com.carboncalc.model.CupsCenterMapping;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CupsCentersTableModelTest {
+
+    private static final String[] COLUMNS = { "id", "cups", "marketer", "center", "acronym", "campus", "energy",
+            "street", "postal", "city", "province" };
+
+    private static CupsCenterMapping mapping(String cups, String center, String energy) {
+        return new CupsCenterMapping(cups, "M", center, "AC", "Campus", energy, "S", "28000", "Madrid", "Madrid");
+    }
+
+    private static List<CupsCenterMapping> inventory(int n) {
+        List<CupsCenterMapping> list = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+            list.add(mapping("ES" + i, String.format("Center %05d", i), i % 2 == 0 ? "ELECTRICITY" : "GAS"));
+        return sortAndNumber(list);
+    }
+
+    // What the CSV service persists: sorted by center name, ids from 1
+    private static List<CupsCenterMapping> sortAndNumber(List<CupsCenterMapping> mappings) {
+        Collections.sort(mappings);
+        long id = 1;
+        for (CupsCenterMapping m : mappings)
+            m.setId(id++);
+        return mappings;
+    }
+
+    // A fresh load of the persisted rows: equal content, new instances
+    private static List<CupsCenterMapping> reload(List<CupsCenterMapping> mappings) {
+        List<CupsCenterMapping> out = new ArrayList<>();
+        for (CupsCenterMapping m : mappings) {
+            CupsCenterMapping copy = new CupsCenterMapping(m.getCups(), m.getMarketer(), m.getCenterName(),
+                    m.getAcronym(), m.getCampus(), m.getEnergyType(), m.getStreet(), m.getPostalCode(), m.getCity(),
+                    m.getProvince());
+            copy.setId(m.getId());
+            out.add(copy);
+        }
+        return out;
+    }
+
+    private static String describe(TableModelEvent e) {
+        String type = e.getType() == TableModelEvent.INSERT ? "insert"
+                : e.getType() == TableModelEvent.DELETE ? "delete" : "update";
+        return type + ":" + e.getFirstRow() + "-" + e.getLastRow();
+    }
+
+    @Test
+    public void testBulkLoadFiresOneEventAndLabelsEachTokenOnce() {
+        CupsCentersTableModel model = new CupsCentersTableModel(COLUMNS);
+        AtomicInteger labelCalls = new AtomicInteger();
+        model.setEnergyLabeler(token -> {
+            labelCalls.incrementAndGet();
+            return "ELECTRICITY".equals(token) ? "Electricidad" : "Gas";
+        });
+        List<String> events = new ArrayList<>();
+        model.addTableModelListener(e -> events.add(describe(e)));
+
+        model.setMappings(inventory(40_000));
+
+        assertEquals(1, events.size());
+        assertEquals(2, labelCalls.get());
+        assertEquals(40_000, model.getRowCount());
+        assertEquals("Electricidad", model.getValueAt(0, CupsCentersTableModel.COL_ENERGY));
+        assertEquals("Gas", model.getValueAt(1, CupsCentersTableModel.COL_ENERGY));
+        assertEquals(1L, model.getValueAt(0, CupsCentersTableModel.COL_ID));
+        assertEquals("Center 00001", model.getValueAt(1, CupsCentersTableModel.COL_CENTER));
+    }
+
+    @Test
+    public void testCommitFiresRowEventsForAddEditDelete() {
+        CupsCentersTableModel model = new CupsCentersTableModel(COLUMNS);
+        model.setMappings(inventory(10));
+        List<String> events = new ArrayList<>();
+        model.addTableModelListener(e -> events.add(describe(e)));
+
+        // Add: lands at its sorted position; rows below get new ids
+        List<CupsCenterMapping> next = model.getMappings();
+        next.add(mapping("ESX", "Center 00004b", "GAS"));
+        model.commit(reload(sortAndNumber(next)));
+        assertEquals(List.of("insert:5-5", "update:5-10"), events);
+        assertEquals("Center 00004b", model.getValueAt(5, CupsCentersTableModel.COL_CENTER));
+        assertEquals(6L, model.getValueAt(5, CupsCentersTableModel.COL_ID));
+
+        // Edit that moves the row to the top
+        events.clear();
+        next = model.getMappings();
+        next.set(5, mapping("ESX", "A first", "GAS"));
+        model.commit(reload(sortAndNumber(next)));
+        assertEquals(List.of("delete:5-5", "insert:0-0", "update:0-10"), events);
+        assertEquals("A first", model.getValueAt(0, CupsCentersTableModel.COL_CENTER));
+
+        // Delete the last row
+        events.clear();
+        next = model.getMappings();
+        next.remove(10);
+        model.commit(reload(sortAndNumber(next)));
+        assertEquals(List.of("delete:10-10"), events);
+        assertEquals(10, model.getRowCount());
+
+        // The backend dropped an add it considered a duplicate: nothing changes
+        events.clear();
+        model.commit(reload(model.getMappings()));
+        assertTrue(events.isEmpty());
+        assertEquals(10, model.getRowCount());
+    }
+}